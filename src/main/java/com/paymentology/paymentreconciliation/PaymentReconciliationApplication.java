@@ -3,8 +3,10 @@ package com.paymentology.paymentreconciliation;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class PaymentReconciliationApplication {
 
     public static void main(String[] args) {
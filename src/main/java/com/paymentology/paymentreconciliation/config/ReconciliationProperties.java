@@ -0,0 +1,457 @@
+package com.paymentology.paymentreconciliation.config;
+
+import com.paymentology.paymentreconciliation.engine.MatchingRules;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tuning knobs of the reconciliation engine, bound from the {@code reconciliation.*} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "reconciliation")
+public class ReconciliationProperties {
+
+    private final Streaming streaming = new Streaming();
+
+    private final Parallel parallel = new Parallel();
+
+    private final Parser parser = new Parser();
+
+    private final Ingestion ingestion = new Ingestion();
+
+    private final Jobs jobs = new Jobs();
+
+    private final Execution execution = new Execution();
+
+    private final Ledger ledger = new Ledger();
+
+    private final Cache cache = new Cache();
+
+    private final CandidateSearch candidateSearch = new CandidateSearch();
+
+    private final Spill spill = new Spill();
+
+    private final Batch batch = new Batch();
+
+    private final NearMiss nearMiss = new NearMiss();
+
+    private final Export export = new Export();
+
+    private final Admission admission = new Admission();
+
+    private final Matching matching = new Matching();
+
+    @Data
+    public static class Streaming {
+
+        /**
+         * Whether uploads may be reconciled by the streaming engine at all.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Combined size of both uploads, in bytes, from which the streaming engine is used instead of loading both
+         * files in memory.
+         */
+        private long thresholdBytes = 64L * 1024 * 1024;
+    }
+
+    @Data
+    public static class Parallel {
+
+        /**
+         * Whether in-memory reconciliation may be spread over the common fork-join pool.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Combined record count of both files from which reconciliation runs in parallel.
+         */
+        private int thresholdRecords = 100_000;
+
+        /**
+         * Number of TransactionID hash partitions reconciled in parallel; 0 uses four per available processor.
+         */
+        private int shards;
+
+        public int getShardCount() {
+            return shards > 0 ? shards : 4 * Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @Data
+    public static class Parser {
+
+        /**
+         * Size of a file, in bytes, from which it is parsed in parallel chunks.
+         */
+        private long parallelThresholdBytes = 4L * 1024 * 1024;
+
+        /**
+         * Size, in bytes, of the chunks a file is parsed in.
+         */
+        private int chunkBytes = 1024 * 1024;
+    }
+
+    @Data
+    public static class Ingestion {
+
+        /**
+         * Whether uploads are memory-mapped and parsed in place rather than read onto the heap.
+         */
+        private boolean memoryMap = true;
+
+        /**
+         * Directory of the server-local files that may be reconciled by path; local reconciliation is disabled when
+         * blank.
+         */
+        private String localDirectory = "";
+
+        /**
+         * How many times its size the CSV content of a gzip- or zstd-compressed upload is taken to be when it is
+         * admitted and when it is decided whether it is streamed or spilled to disk; processor files shrink 5 to 10
+         * times when compressed.
+         */
+        private int compressionRatio = 8;
+    }
+
+    @Data
+    public static class Jobs {
+
+        /**
+         * Number of reconciliation jobs run at the same time.
+         */
+        private int threads = 2;
+
+        /**
+         * Number of submitted jobs that may wait for a thread; further submissions are rejected.
+         */
+        private int queueCapacity = 8;
+
+        /**
+         * How long the results of a finished job are kept.
+         */
+        private Duration retention = Duration.ofHours(1);
+
+        /**
+         * Largest number of records returned in one page of job results.
+         */
+        private int maxPageSize = 10_000;
+    }
+
+    @Data
+    public static class Execution {
+
+        /**
+         * Number of platform threads reconciliation work is offloaded to when requests are handled on virtual threads
+         * ({@code spring.threads.virtual.enabled}); 0 uses one per available processor.
+         */
+        private int computeThreads;
+
+        /**
+         * Number of offloaded reconciliations that may wait for a compute thread; further requests are rejected.
+         */
+        private int computeQueueCapacity = 256;
+
+        public int getComputeThreadCount() {
+            return computeThreads > 0 ? computeThreads : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @Data
+    public static class Ledger {
+
+        /**
+         * Directory of the persistent ledger files are incrementally reconciled against; the ledger is disabled when
+         * blank.
+         */
+        private String directory = "";
+
+        /**
+         * Size, in bytes, from which open items are appended to a new ledger segment.
+         */
+        private long segmentBytes = 256L * 1024 * 1024;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Whether upload results are cached by the content of both files; only uploads reconciled in memory, whose
+         * content fits the memory budget, are cached.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Memory budget of cached results, in bytes, as the length of their JSON; the least recently used results are
+         * evicted first.
+         */
+        private long maxBytes = 64L * 1024 * 1024;
+
+        /**
+         * Directory results evicted from memory, or too large for it, are spilled to; spilling is disabled when blank.
+         */
+        private String directory = "";
+
+        /**
+         * Disk budget of spilled results, in bytes.
+         */
+        private long diskMaxBytes = 1024L * 1024 * 1024;
+    }
+
+    @Data
+    public static class CandidateSearch {
+
+        /**
+         * Whether records left unmatched by TransactionID are matched on their other fields in a second pass.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Similarity, as a percentage of the points a pair can score without its TransactionID, a pair has to exceed
+         * to match in the second pass.
+         */
+        private double threshold = 90;
+
+        /**
+         * Largest block of records sharing a wallet reference, an amount and day, or a profile name and amount that
+         * is searched for candidates; larger blocks are skipped.
+         */
+        private int maxBlockSize = 64;
+
+        /**
+         * How candidates are found: by blocking keys, or by sorting the leftovers by amount and date and sweeping a
+         * time window over them.
+         */
+        private Strategy strategy = Strategy.BLOCKING;
+
+        /**
+         * Largest difference between the dates of a candidate pair of the sort-merge strategy.
+         */
+        private Duration window = Duration.ofDays(1);
+
+        /**
+         * Number of records the sort-merge strategy sorts in memory before spilling a sorted run to disk.
+         */
+        private int sortBufferRecords = 1_000_000;
+
+        /**
+         * Directory sorted runs are spilled to; the system temporary directory when blank.
+         */
+        private String spillDirectory = "";
+
+        public enum Strategy {
+            BLOCKING,
+            SORT_MERGE
+        }
+    }
+
+    @Data
+    public static class Spill {
+
+        /**
+         * Whether uploads whose records would exceed the memory budget are reconciled partition by partition from disk.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Heap, in bytes, the records of an upload may take before it is spilled; 0 uses a quarter of the maximum heap.
+         */
+        private long memoryBudgetBytes = 0;
+
+        /**
+         * Number of TransactionID partitions a spilled upload is split into; 0 sizes them to the memory budget.
+         */
+        private int partitions = 0;
+
+        /**
+         * Directory partitions are spilled to; the system temporary directory when blank.
+         */
+        private String directory = "";
+    }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Largest number of counterpart files, archive entries included, reconciled against one reference file.
+         */
+        private int maxFiles = 32;
+
+        /**
+         * Largest combined size, in bytes, of the files extracted from the zip archives of a batch.
+         */
+        private long maxExtractedBytes = 2L * 1024 * 1024 * 1024;
+    }
+
+    @Data
+    public static class NearMiss {
+
+        /**
+         * Whether the response lists, for every unmatched record, the closest records it was compared with.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of closest records listed per unmatched record.
+         */
+        private int topK = 3;
+
+        /**
+         * Similarity, as a percentage, a record has to reach to be listed as a near miss.
+         */
+        private double threshold = 60;
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Number of rows of a record batch of an Arrow export; a batch is buffered in memory until it is written.
+         */
+        private int batchRecords = 65_536;
+    }
+
+    @Data
+    public static class Admission {
+
+        /**
+         * Whether reconciliations are admitted against a global budget of heap and of concurrent reconciliations.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Heap, in bytes, the reconciliations running may claim together; 0 uses half of the maximum heap.
+         */
+        private long memoryBudgetBytes;
+
+        /**
+         * Number of reconciliations running at once; 0 uses one per available processor.
+         */
+        private int maxConcurrent;
+
+        /**
+         * Number of reconciliations that may wait for admission; further requests are rejected.
+         */
+        private int queueCapacity = 64;
+
+        /**
+         * How long a reconciliation waits for admission before it is rejected.
+         */
+        private Duration maxWait = Duration.ofSeconds(30);
+
+        /**
+         * Delay a rejected client is asked to wait before retrying, sent as the Retry-After header.
+         */
+        private Duration retryAfter = Duration.ofSeconds(5);
+
+        public int getMaxConcurrentCount() {
+            return maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @Data
+    public static class Matching {
+
+        /**
+         * Rules requests are matched with unless they name a rule set.
+         */
+        private final Rules rules = new Rules();
+
+        /**
+         * Further rule sets by name, typically one per processor, that a request may pick.
+         */
+        private final Map<String, Rules> ruleSets = new LinkedHashMap<>();
+
+        @Data
+        public static class Rules {
+
+            /**
+             * Points scored by an equal TransactionID.
+             */
+            private int transactionIdWeight = 6;
+
+            /**
+             * Points scored by an equal TransactionType.
+             */
+            private int transactionTypeWeight = 1;
+
+            /**
+             * Points scored by an equal TransactionDescription.
+             */
+            private int transactionDescriptionWeight = 2;
+
+            /**
+             * Points scored by an equal TransactionNarrative.
+             */
+            private int transactionNarrativeWeight = 2;
+
+            /**
+             * Points scored by an equal WalletReference.
+             */
+            private int walletReferenceWeight = 4;
+
+            /**
+             * Points scored by an equal ProfileName.
+             */
+            private int profileNameWeight = 1;
+
+            /**
+             * Points scored by amounts within the amount tolerance.
+             */
+            private int transactionAmountWeight = 4;
+
+            /**
+             * Points scored by an equal TransactionDate.
+             */
+            private int transactionDateWeight = 5;
+
+            /**
+             * Points scored by dates on the same day, at another time.
+             */
+            private int sameDayWeight = 3;
+
+            /**
+             * Points scored by dates whole days apart, within the date tolerance.
+             */
+            private int dateToleranceWeight = 2;
+
+            /**
+             * Minor units, such as cents, two amounts may differ by and still agree.
+             */
+            private long amountTolerance;
+
+            /**
+             * Whole days two dates may be apart, at the same time of day, to score the date tolerance weight.
+             */
+            private int dateToleranceDays = 1;
+
+            /**
+             * Similarity, as a percentage, a pair has to exceed to match.
+             */
+            private double threshold = 90;
+
+            public MatchingRules toMatchingRules() {
+                return MatchingRules.builder()
+                        .transactionIdWeight(transactionIdWeight)
+                        .transactionTypeWeight(transactionTypeWeight)
+                        .transactionDescriptionWeight(transactionDescriptionWeight)
+                        .transactionNarrativeWeight(transactionNarrativeWeight)
+                        .walletReferenceWeight(walletReferenceWeight)
+                        .profileNameWeight(profileNameWeight)
+                        .transactionAmountWeight(transactionAmountWeight)
+                        .transactionDateWeight(transactionDateWeight)
+                        .sameDayWeight(sameDayWeight)
+                        .dateToleranceWeight(dateToleranceWeight)
+                        .amountTolerance(amountTolerance)
+                        .dateToleranceDays(dateToleranceDays)
+                        .threshold(threshold)
+                        .build();
+            }
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package com.paymentology.paymentreconciliation.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentology.paymentreconciliation.dto.BatchReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.dto.LedgerReconciliationResponseDto;
 import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
 import com.paymentology.paymentreconciliation.service.ReconciliationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
 
 
 @RestController
@@ -18,14 +29,67 @@ import org.springframework.web.multipart.MultipartFile;
 @RequiredArgsConstructor
 public class ReconciliationController {
 
+    private static final String EXPORT_FILE_NAME = "reconciliation.arrow";
+    private static final MediaType ARROW_FILE = MediaType.parseMediaType("application/vnd.apache.arrow.file");
+
     private final ReconciliationService reconciliationService;
 
+    private final ObjectMapper objectMapper;
+
 
     @PostMapping("/upload")
     public ResponseEntity<ReconciliationResponseDto> upload(@RequestBody MultipartFile file1,
-                                                            @RequestBody MultipartFile file2) {
+                                                            @RequestBody MultipartFile file2,
+                                                            @RequestParam(required = false) String rules) {
+
+        return new ResponseEntity<>(reconciliationService.upload(file1, file2, rules), HttpStatus.OK);
+    }
+
+    @PostMapping("/upload/stream")
+    public ResponseEntity<StreamingResponseBody> uploadStream(@RequestBody MultipartFile file1,
+                                                              @RequestBody MultipartFile file2,
+                                                              @RequestParam(required = false) String rules) {
+
+        StreamingResponseBody body = output -> {
+            ReconciliationStreamWriter writer = new ReconciliationStreamWriter(objectMapper, output);
+            writer.summary(reconciliationService.upload(file1, file2, rules, writer));
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @PostMapping("/upload/export")
+    public ResponseEntity<StreamingResponseBody> uploadExport(@RequestBody MultipartFile file1,
+                                                              @RequestBody MultipartFile file2,
+                                                              @RequestParam(required = false) String rules) {
+
+        StreamingResponseBody body = output -> reconciliationService.export(file1, file2, rules, output);
+        return ResponseEntity.ok()
+                .contentType(ARROW_FILE)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(EXPORT_FILE_NAME).build().toString())
+                .body(body);
+    }
+
+    @PostMapping("/upload/batch")
+    public ResponseEntity<BatchReconciliationResponseDto> uploadBatch(@RequestParam MultipartFile reference,
+                                                                      @RequestParam List<MultipartFile> counterparts,
+                                                                      @RequestParam(required = false) String rules) {
+
+        return new ResponseEntity<>(reconciliationService.uploadBatch(reference, counterparts, rules), HttpStatus.OK);
+    }
+
+    @PostMapping("/reconcile/local")
+    public ResponseEntity<ReconciliationResponseDto> reconcileLocalFiles(@RequestParam String file1,
+                                                                         @RequestParam String file2) {
+
+        return new ResponseEntity<>(reconciliationService.reconcileLocalFiles(file1, file2), HttpStatus.OK);
+    }
+
+    @PostMapping("/ledger")
+    public ResponseEntity<LedgerReconciliationResponseDto> reconcileWithLedger(@RequestBody MultipartFile file,
+                                                                               @RequestParam FileSide side) {
 
-        return new ResponseEntity<>(reconciliationService.upload(file1, file2), HttpStatus.OK);
+        return new ResponseEntity<>(reconciliationService.reconcileWithLedger(file, side), HttpStatus.OK);
     }
 
 
@@ -0,0 +1,51 @@
+package com.paymentology.paymentreconciliation.controller;
+
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobDto;
+import com.paymentology.paymentreconciliation.dto.UnmatchedRecordPageDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.service.ReconciliationJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+
+@RestController
+@RequestMapping("/api/v1/jobs")
+@RequiredArgsConstructor
+public class ReconciliationJobController {
+
+    private final ReconciliationJobService reconciliationJobService;
+
+
+    @PostMapping
+    public ResponseEntity<ReconciliationJobDto> submit(@RequestBody MultipartFile file1,
+                                                       @RequestBody MultipartFile file2) {
+
+        return new ResponseEntity<>(reconciliationJobService.submit(file1, file2), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ReconciliationJobDto> getJob(@PathVariable String jobId) {
+
+        return new ResponseEntity<>(reconciliationJobService.getJob(jobId), HttpStatus.OK);
+    }
+
+    @GetMapping("/{jobId}/unmatched")
+    public ResponseEntity<UnmatchedRecordPageDto> getUnmatchedRecords(@PathVariable String jobId,
+                                                                      @RequestParam FileSide file,
+                                                                      @RequestParam(defaultValue = "0") int page,
+                                                                      @RequestParam(defaultValue = "1000") int size) {
+
+        return new ResponseEntity<>(reconciliationJobService.getUnmatchedRecords(jobId, file, page, size),
+                HttpStatus.OK);
+    }
+}
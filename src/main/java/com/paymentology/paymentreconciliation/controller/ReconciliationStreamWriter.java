@@ -0,0 +1,58 @@
+package com.paymentology.paymentreconciliation.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationStreamLineDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.ReconciliationSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes a reconciliation as newline-delimited JSON: one line per unmatched record, as soon as the engine reports
+ * it, then a last line holding the summary. A stream that does not end with the summary line is incomplete.
+ */
+class ReconciliationStreamWriter implements ReconciliationSink {
+
+    private final ObjectWriter writer;
+    private final JsonGenerator generator;
+
+    ReconciliationStreamWriter(ObjectMapper objectMapper, OutputStream output) throws IOException {
+        this.writer = objectMapper.writerFor(ReconciliationStreamLineDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(output);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void matched(ReconciliationDto first, ReconciliationDto second) {
+    }
+
+    @Override
+    public void unmatched(FileSide side, ReconciliationDto record) {
+        write(ReconciliationStreamLineDto.builder().file(side).record(record).build());
+    }
+
+    /**
+     * Writes the summary line and flushes the stream.
+     */
+    void summary(ReconciliationResponseDto summary) throws IOException {
+        write(ReconciliationStreamLineDto.builder().summary(summary).build());
+        generator.flush();
+    }
+
+    private void write(ReconciliationStreamLineDto line) {
+        try {
+            writer.writeValue(generator, line);
+            generator.writeRaw('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.paymentology.paymentreconciliation.controller;
+
+
+import com.paymentology.paymentreconciliation.dto.ResultCacheStatsDto;
+import com.paymentology.paymentreconciliation.service.ReconciliationResultCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api/v1/cache")
+@RequiredArgsConstructor
+public class ResultCacheController {
+
+    private final ReconciliationResultCache reconciliationResultCache;
+
+
+    @GetMapping("/stats")
+    public ResponseEntity<ResultCacheStatsDto> getStats() {
+
+        return new ResponseEntity<>(reconciliationResultCache.getStats(), HttpStatus.OK);
+    }
+}
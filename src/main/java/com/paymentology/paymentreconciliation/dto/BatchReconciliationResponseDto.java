@@ -0,0 +1,21 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BatchReconciliationResponseDto {
+
+    private String referenceFileName;
+    private int referenceTotalRecordCount;
+    private int counterpartFileCount;
+    List<ReconciliationResponseDto> counterpartResultList;
+
+}
@@ -0,0 +1,18 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class FieldDifferenceDto {
+
+    private String field;
+    private String value;
+    private String counterpartValue;
+
+}
@@ -0,0 +1,26 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class LedgerReconciliationResponseDto {
+
+    private String fileName;
+    private FileSide side;
+    private int totalRecordCount;
+    private int matchedRecordCount;
+    private int openedRecordCount;
+    List<ReconciliationDto> openedRecordList;
+    private int firstSideOpenCount;
+    private int secondSideOpenCount;
+
+}
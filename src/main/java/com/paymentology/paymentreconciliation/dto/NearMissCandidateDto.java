@@ -0,0 +1,20 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NearMissCandidateDto {
+
+    private ReconciliationDto record;
+    private double similarityScore;
+    private List<FieldDifferenceDto> differenceList;
+
+}
@@ -0,0 +1,19 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NearMissDto {
+
+    private ReconciliationDto record;
+    private List<NearMissCandidateDto> candidateList;
+
+}
@@ -1,5 +1,7 @@
 package com.paymentology.paymentreconciliation.dto;
 
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.engine.TransactionFingerprint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,18 +17,6 @@ import java.util.Objects;
 @Builder
 public class ReconciliationDto implements Comparable<ReconciliationDto> {
 
-    final int COEFFICIENT_TRANSACTION_ID = 6;
-    final int COEFFICIENT_TRANSACTION_DATE = 5;
-    final int COEFFICIENT_TRANSACTION_TIME_DIFFERENCE = 3;
-    final int COEFFICIENT_TRANSACTION_DAY_DIFFERENCE = 2;
-    final int COEFFICIENT_TRANSACTION_DESCRIPTION = 2;
-    final int COEFFICIENT_TRANSACTION_AMOUNT = 4;
-    final int COEFFICIENT_TRANSACTION_TYPE = 1;
-    final int COEFFICIENT_WALLET_REFERENCE = 4;
-    final int COEFFICIENT_TRANSACTION_NARRATIVE = 2;
-    final int COEFFICIENT_PROFILE_NAME = 1;
-
-
     private String transactionId;
     private String transactionType;
     private String transactionDescription;
@@ -62,45 +52,8 @@ public class ReconciliationDto implements Comparable<ReconciliationDto> {
     }
 
     public double calculateSimilarity(ReconciliationDto reconciliationDto) {
-
-
-        int numMatchingFields = 0; // number of fields that match
-        if (transactionId.equals(reconciliationDto.transactionId)) {
-            numMatchingFields += COEFFICIENT_TRANSACTION_ID;
-        }
-        if (transactionDate.equals(reconciliationDto.transactionDate)) {
-
-            numMatchingFields += COEFFICIENT_TRANSACTION_DATE;
-        } else if (transactionDate.toLocalDate().equals(reconciliationDto.transactionDate.minusDays(1)) ||
-                transactionDate.toLocalDate().equals(reconciliationDto.transactionDate.toLocalDate())) {
-            numMatchingFields += COEFFICIENT_TRANSACTION_TIME_DIFFERENCE;
-
-        } else if (transactionDate.equals(reconciliationDto.transactionDate.minusDays(1)) ||
-                transactionDate.equals(reconciliationDto.transactionDate.plusDays(1))) {
-            numMatchingFields += COEFFICIENT_TRANSACTION_DAY_DIFFERENCE;
-
-        }
-        if (transactionDescription.equals(reconciliationDto.transactionDescription)) {
-            numMatchingFields += COEFFICIENT_TRANSACTION_DESCRIPTION;
-        }
-        if (transactionAmount == reconciliationDto.transactionAmount) {
-            numMatchingFields += COEFFICIENT_TRANSACTION_AMOUNT;
-        }
-        if (transactionType.equals(reconciliationDto.transactionType)) {
-            numMatchingFields += COEFFICIENT_TRANSACTION_TYPE;
-        }
-        if (walletReference.equals(reconciliationDto.walletReference)) {
-            numMatchingFields += COEFFICIENT_WALLET_REFERENCE;
-        }
-        if (transactionNarrative.equals(reconciliationDto.transactionNarrative)) {
-            numMatchingFields += COEFFICIENT_TRANSACTION_NARRATIVE;
-        }
-        if (profileName.equals(reconciliationDto.profileName)) {
-            numMatchingFields += COEFFICIENT_PROFILE_NAME;
-        }
-
-        double similarityScore = ((double) numMatchingFields / 25) * 100;
-        return similarityScore;
+        return SimilarityScorer.DEFAULT.similarity(TransactionFingerprint.of(this), 0,
+                TransactionFingerprint.of(reconciliationDto), 0);
     }
 
 }
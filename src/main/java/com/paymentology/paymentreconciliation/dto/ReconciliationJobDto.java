@@ -0,0 +1,29 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReconciliationJobDto {
+
+    private String jobId;
+    private ReconciliationJobStatus status;
+    private String firstFileName;
+    private String secondFileName;
+    private long recordsRead;
+    private long matchedRecordCount;
+    private long unmatchedRecordCount;
+    private Instant submittedAt;
+    private Instant completedAt;
+    private ReconciliationResponseDto result;
+    private String error;
+}
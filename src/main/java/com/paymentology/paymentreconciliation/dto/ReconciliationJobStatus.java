@@ -0,0 +1,8 @@
+package com.paymentology.paymentreconciliation.dto;
+
+public enum ReconciliationJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -1,5 +1,6 @@
 package com.paymentology.paymentreconciliation.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,13 +15,19 @@ import java.util.List;
 public class ReconciliationResponseDto {
 
     private int firstFileTotalRecordCount;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     List<ReconciliationDto> firstFileUnmatchedRecordList;
     private int firstFileUnmatchedRecordCount;
     private String firstFileName;
     private int secondFileTotalRecordCount;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     List<ReconciliationDto> secondFileUnmatchedRecordList;
     private int secondFileUnmatchedRecordCount;
     private String secondFileName;
     private int matchedRecordCount;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    List<NearMissDto> firstFileNearMissList;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    List<NearMissDto> secondFileNearMissList;
 
 }
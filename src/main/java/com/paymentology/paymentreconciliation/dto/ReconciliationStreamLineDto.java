@@ -0,0 +1,24 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a streamed reconciliation response: either an unmatched record and the file it belongs to, or the
+ * summary that closes the stream.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReconciliationStreamLineDto {
+
+    private FileSide file;
+    private ReconciliationDto record;
+    private ReconciliationResponseDto summary;
+}
@@ -0,0 +1,24 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResultCacheStatsDto {
+
+    private long hitCount;
+    private long diskHitCount;
+    private long missCount;
+    private long evictionCount;
+    private long spillCount;
+    private int memoryEntryCount;
+    private long memoryBytes;
+    private int diskEntryCount;
+    private long diskBytes;
+
+}
@@ -6,7 +6,6 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
-import java.util.Set;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -14,9 +13,11 @@ import java.util.Set;
 @Builder
 public class TransactionSummaryDto {
 
-    private Set<ReconciliationDto> fileOneMatchedRecords;
-    private Set<ReconciliationDto> fileTwoMatchedRecords;
+    private List<ReconciliationDto> fileOneMatchedRecords;
+    private List<ReconciliationDto> fileTwoMatchedRecords;
     private List<ReconciliationDto> fileOneUnMatchedRecord;
     private List<ReconciliationDto> fileTwoUnMatchedRecord;
+    private List<NearMissDto> fileOneNearMisses;
+    private List<NearMissDto> fileTwoNearMisses;
 
 }
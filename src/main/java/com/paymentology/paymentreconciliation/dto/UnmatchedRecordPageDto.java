@@ -0,0 +1,23 @@
+package com.paymentology.paymentreconciliation.dto;
+
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UnmatchedRecordPageDto {
+
+    private String jobId;
+    private FileSide file;
+    private int page;
+    private int size;
+    private int totalRecordCount;
+    private List<ReconciliationDto> records;
+}
@@ -0,0 +1,178 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.util.Arrays;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+
+/**
+ * {@link CandidateSearch} over blocking keys.
+ * <p>
+ * The leftover records of the second file are indexed under blocking keys: their wallet reference, their amount and
+ * day, and their profile name and amount. A leftover of the first file is only scored against the records sharing one
+ * of its keys. Blocks larger than {@code maxBlockSize}, such as a round amount on a busy day, say little about a pair
+ * and are skipped, which keeps the pass near-linear.
+ */
+public class BlockingCandidateSearch implements CandidateSearch {
+
+    private static final int NONE = -1;
+
+    // Kinds of blocking keys, mixed into the key so that they share one table
+    private static final long WALLET_BLOCK = 0x9e3779b97f4a7c15L;
+    private static final long AMOUNT_DAY_BLOCK = 0xbf58476d1ce4e5b9L;
+    private static final long PROFILE_AMOUNT_BLOCK = 0x94d049bb133111ebL;
+    private static final int KEYS_PER_RECORD = 3;
+
+    private final int maxBlockSize;
+    private final MatchStatistics statistics = new MatchStatistics();
+    private final CandidatePairs pairs;
+
+    /**
+     * @param scorer       the scorer pairs are scored with
+     * @param threshold    the similarity, as a percentage of the points left without the TransactionID, a pair has
+     *                     to exceed to match
+     * @param maxBlockSize the largest block whose records are taken as candidates
+     */
+    public BlockingCandidateSearch(SimilarityScorer scorer, double threshold, int maxBlockSize) {
+        this.maxBlockSize = maxBlockSize;
+        this.pairs = new CandidatePairs(scorer, threshold, statistics);
+    }
+
+    @Override
+    public int match(TransactionView one, boolean[] matchedOne, TransactionView two, boolean[] matchedTwo) {
+        int unmatchedTwo = 0;
+        for (boolean matched : matchedTwo) {
+            unmatchedTwo += matched ? 0 : 1;
+        }
+        BlockTable blocks = new BlockTable(unmatchedTwo);
+        long[] keys = new long[KEYS_PER_RECORD];
+        for (int row = 0; row < matchedTwo.length; row++) {
+            if (!matchedTwo[row]) {
+                for (int k = blockKeys(two, row, keys) - 1; k >= 0; k--) {
+                    blocks.add(keys[k], row);
+                }
+            }
+        }
+
+        int[] seenBy = new int[matchedTwo.length];
+        Arrays.fill(seenBy, NONE);
+        for (int row = 0; row < matchedOne.length; row++) {
+            if (matchedOne[row]) {
+                continue;
+            }
+            for (int k = blockKeys(one, row, keys) - 1; k >= 0; k--) {
+                int slot = blocks.find(keys[k]);
+                if (slot == NONE || blocks.size(slot) > maxBlockSize) {
+                    continue;
+                }
+                for (int entry = blocks.head(slot); entry != NONE; entry = blocks.next(entry)) {
+                    int candidate = blocks.row(entry);
+                    if (seenBy[candidate] != row) {
+                        seenBy[candidate] = row;
+                        pairs.score(one, row, two, candidate);
+                    }
+                }
+            }
+        }
+        return pairs.matchGreedily(matchedOne, matchedTwo);
+    }
+
+    @Override
+    public MatchStatistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * Computes the blocking keys of a record; a key is left out when its fields are blank.
+     *
+     * @return the number of keys written to the array
+     */
+    private static int blockKeys(TransactionView view, int row, long[] keys) {
+        long amount = view.fingerprint(row, TRANSACTION_AMOUNT);
+        int count = 0;
+        if (!isBlank(view.text(row, WALLET_REFERENCE))) {
+            keys[count++] = Hashing.mix(view.fingerprint(row, WALLET_REFERENCE) ^ WALLET_BLOCK);
+        }
+        keys[count++] = Hashing.mix(Hashing.mix(amount ^ AMOUNT_DAY_BLOCK) + view.fingerprint(row, EPOCH_DAY));
+        if (!isBlank(view.text(row, PROFILE_NAME))) {
+            keys[count++] = Hashing.mix(Hashing.mix(amount ^ PROFILE_AMOUNT_BLOCK)
+                    + view.fingerprint(row, PROFILE_NAME));
+        }
+        return count;
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        return text == null || text.isEmpty();
+    }
+
+    /**
+     * Open-addressing table from a blocking key to the chain of rows filed under it. A row is filed under each of its
+     * keys, so chains link entries rather than rows.
+     */
+    private static final class BlockTable {
+
+        private final long[] slotKeys;
+        private final int[] slotHeads;
+        private final int[] slotSizes;
+        private final int mask;
+
+        private int[] entryRows;
+        private int[] entryNext;
+        private int entryCount;
+
+        BlockTable(int rows) {
+            // at most half full, as every row can bring a key of each kind
+            int capacity = Integer.highestOneBit(Math.max(rows * KEYS_PER_RECORD, 8) - 1) << 2;
+            slotKeys = new long[capacity];
+            slotHeads = new int[capacity];
+            slotSizes = new int[capacity];
+            Arrays.fill(slotHeads, NONE);
+            mask = capacity - 1;
+            entryRows = new int[Math.max(rows * KEYS_PER_RECORD, 16)];
+            entryNext = new int[entryRows.length];
+        }
+
+        void add(long key, int row) {
+            int slot = (int) Hashing.mix(key) & mask;
+            while (slotHeads[slot] != NONE && slotKeys[slot] != key) {
+                slot = slot + 1 & mask;
+            }
+            if (entryCount == entryRows.length) {
+                entryRows = Arrays.copyOf(entryRows, entryCount << 1);
+                entryNext = Arrays.copyOf(entryNext, entryCount << 1);
+            }
+            // chains are only walked to collect candidates, so prepending keeps no order that matters
+            slotKeys[slot] = key;
+            entryRows[entryCount] = row;
+            entryNext[entryCount] = slotHeads[slot];
+            slotHeads[slot] = entryCount++;
+            slotSizes[slot]++;
+        }
+
+        int find(long key) {
+            int slot = (int) Hashing.mix(key) & mask;
+            while (slotHeads[slot] != NONE) {
+                if (slotKeys[slot] == key) {
+                    return slot;
+                }
+                slot = slot + 1 & mask;
+            }
+            return NONE;
+        }
+
+        int size(int slot) {
+            return slotSizes[slot];
+        }
+
+        int head(int slot) {
+            return slotHeads[slot];
+        }
+
+        int next(int entry) {
+            return entryNext[entry];
+        }
+
+        int row(int entry) {
+            return entryRows[entry];
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.util.Arrays;
+
+/**
+ * Scores the candidate pairs of a {@link CandidateSearch} and picks the matches among them.
+ * <p>
+ * Pairs are scored without their TransactionID. The qualifying ones are packed into a single {@code long}, ordered by
+ * descending points, then row of the first file, then row of the second file, so that choosing them greedily is a
+ * primitive sort followed by one pass.
+ */
+final class CandidatePairs {
+
+    private static final int INDEX_BITS = 29;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    private final SimilarityScorer scorer;
+    private final int minPoints;
+    private final int maxPoints;
+    private final MatchStatistics statistics;
+
+    private long[] pairs = new long[16];
+    private int pairCount;
+
+    /**
+     * @param scorer     the scorer pairs are scored with
+     * @param threshold  the similarity, as a percentage of the points left without the TransactionID, a pair has to
+     *                   exceed to match
+     * @param statistics the tally the scored and matched pairs are added to
+     */
+    CandidatePairs(SimilarityScorer scorer, double threshold, MatchStatistics statistics) {
+        this.scorer = scorer;
+        this.maxPoints = scorer.perfectPoints() - scorer.points(SimilarityScorer.TRANSACTION_ID_MATCH);
+        int points = 0;
+        while (points <= maxPoints && (double) points / maxPoints * 100 <= threshold) {
+            points++;
+        }
+        this.minPoints = points;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Scores a candidate pair, keeping it when it qualifies.
+     */
+    void score(TransactionView one, int rowOne, TransactionView two, int rowTwo) {
+        statistics.scored(1);
+        int points = scorer.points(scorer.matchMask(one, rowOne, two, rowTwo) & ~SimilarityScorer.TRANSACTION_ID_MATCH);
+        if (points >= minPoints) {
+            if (pairCount == pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairCount << 1);
+            }
+            pairs[pairCount++] = ((long) (maxPoints - points) << INDEX_BITS | rowOne) << INDEX_BITS | rowTwo;
+        }
+    }
+
+    /**
+     * Matches the qualifying pairs whose rows are both still unmatched, best first, and forgets all pairs.
+     *
+     * @return the number of pairs matched
+     */
+    int matchGreedily(boolean[] matchedOne, boolean[] matchedTwo) {
+        Arrays.sort(pairs, 0, pairCount);
+        int matched = 0;
+        for (int p = 0; p < pairCount; p++) {
+            int rowOne = (int) (pairs[p] >>> INDEX_BITS & INDEX_MASK);
+            int rowTwo = (int) (pairs[p] & INDEX_MASK);
+            if (!matchedOne[rowOne] && !matchedTwo[rowTwo]) {
+                matchedOne[rowOne] = true;
+                matchedTwo[rowTwo] = true;
+                statistics.matched(maxPoints - (int) (pairs[p] >>> 2 * INDEX_BITS));
+                matched++;
+            }
+        }
+        pairCount = 0;
+        return matched;
+    }
+}
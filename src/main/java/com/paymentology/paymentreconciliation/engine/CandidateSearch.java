@@ -0,0 +1,31 @@
+package com.paymentology.paymentreconciliation.engine;
+
+/**
+ * Second matching pass over the records left unmatched by TransactionID, for pairs whose TransactionID was mistyped.
+ * <p>
+ * Comparing every leftover record of one file with every leftover of the other would be quadratic, so a search only
+ * scores each leftover against a small set of candidates, found by {@link BlockingCandidateSearch blocking keys} or
+ * by a {@link SortMergeCandidateSearch sorted sweep}. A pair is scored without its TransactionID, and matches when its
+ * similarity over the remaining fields exceeds the threshold of the search. Qualifying pairs are chosen greedily by
+ * descending points, then file order, so the outcome does not depend on which record is looked at first.
+ * <p>
+ * A search must not be shared between threads.
+ */
+public interface CandidateSearch {
+
+    /**
+     * Matches the unmatched rows of two views, flagging the rows it matches.
+     *
+     * @param one        the records of the first file
+     * @param matchedOne the matched flags of the first file, by row
+     * @param two        the records of the second file
+     * @param matchedTwo the matched flags of the second file, by row
+     * @return the number of pairs matched
+     */
+    int match(TransactionView one, boolean[] matchedOne, TransactionView two, boolean[] matchedTwo);
+
+    /**
+     * @return the tally of the pairs scored by the searches run so far
+     */
+    MatchStatistics statistics();
+}
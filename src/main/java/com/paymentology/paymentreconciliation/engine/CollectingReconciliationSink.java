@@ -0,0 +1,60 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sink that keeps the unmatched records of both files and ignores the matched pairs.
+ * <p>
+ * The records are handed back in file order, whatever the order they were reported in; records reported without
+ * their position come last, in the order they were reported.
+ */
+public class CollectingReconciliationSink implements ReconciliationSink {
+
+    private final List<Unmatched> firstFileUnmatched = new ArrayList<>();
+    private final List<Unmatched> secondFileUnmatched = new ArrayList<>();
+
+    @Override
+    public void matched(ReconciliationDto first, ReconciliationDto second) {
+    }
+
+    @Override
+    public void unmatched(FileSide side, ReconciliationDto record) {
+        unmatched(side, Integer.MAX_VALUE, record);
+    }
+
+    @Override
+    public void unmatched(FileSide side, int row, ReconciliationDto record) {
+        (side == FileSide.FIRST ? firstFileUnmatched : secondFileUnmatched).add(new Unmatched(row, record));
+    }
+
+    /**
+     * @return the unmatched records of the first file, in file order
+     */
+    public List<ReconciliationDto> getFirstFileUnmatched() {
+        return inFileOrder(firstFileUnmatched);
+    }
+
+    /**
+     * @return the unmatched records of the second file, in file order
+     */
+    public List<ReconciliationDto> getSecondFileUnmatched() {
+        return inFileOrder(secondFileUnmatched);
+    }
+
+    private static List<ReconciliationDto> inFileOrder(List<Unmatched> unmatched) {
+        // the sort is stable, so records without a position keep the order they were reported in
+        unmatched.sort(Comparator.comparingInt(Unmatched::row));
+        List<ReconciliationDto> records = new ArrayList<>(unmatched.size());
+        for (Unmatched entry : unmatched) {
+            records.add(entry.record());
+        }
+        return records;
+    }
+
+    private record Unmatched(int row, ReconciliationDto record) {
+    }
+}
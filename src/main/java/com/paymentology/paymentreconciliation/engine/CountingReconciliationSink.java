@@ -0,0 +1,64 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import lombok.Getter;
+
+/**
+ * Sink that counts the outcomes of a reconciliation before handing them to another sink.
+ */
+@Getter
+public class CountingReconciliationSink implements ReconciliationSink {
+
+    private final ReconciliationSink delegate;
+    private int matchedCount;
+    private int firstFileUnmatchedCount;
+    private int secondFileUnmatchedCount;
+
+    public CountingReconciliationSink(ReconciliationSink delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void read(FileSide side) {
+        delegate.read(side);
+    }
+
+    @Override
+    public void matched(ReconciliationDto first, ReconciliationDto second) {
+        matchedCount++;
+        delegate.matched(first, second);
+    }
+
+    @Override
+    public boolean requiresMatchedRecords() {
+        return delegate.requiresMatchedRecords();
+    }
+
+    @Override
+    public void unmatched(FileSide side, ReconciliationDto record) {
+        countUnmatched(side);
+        delegate.unmatched(side, record);
+    }
+
+    @Override
+    public void unmatched(FileSide side, int row, ReconciliationDto record) {
+        countUnmatched(side);
+        delegate.unmatched(side, row, record);
+    }
+
+    public int getFirstFileTotalCount() {
+        return matchedCount + firstFileUnmatchedCount;
+    }
+
+    public int getSecondFileTotalCount() {
+        return matchedCount + secondFileUnmatchedCount;
+    }
+
+    private void countUnmatched(FileSide side) {
+        if (side == FileSide.FIRST) {
+            firstFileUnmatchedCount++;
+        } else {
+            secondFileUnmatchedCount++;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts (amount, epoch second, row) keys, spilling to disk beyond a buffer of keys.
+ * <p>
+ * Keys are buffered in parallel primitive arrays. When the buffer is full it is sorted and written to a temporary run
+ * file, 20 bytes per key, and {@link #sorted()} merges the runs with the keys still buffered. Runs are only ever
+ * written and read sequentially, so the sort needs a buffer's worth of memory whatever the number of keys.
+ */
+final class ExternalKeySorter implements Closeable {
+
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+
+    private final int bufferKeys;
+    private final Path directory;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Closeable> openRuns = new ArrayList<>();
+
+    private long[] amounts;
+    private long[] seconds;
+    private int[] rows;
+    private int size;
+
+    /**
+     * @param bufferKeys the number of keys sorted in memory before a run is spilled
+     * @param directory  the directory run files are created in
+     */
+    ExternalKeySorter(int bufferKeys, Path directory) {
+        this.bufferKeys = Math.max(bufferKeys, 2);
+        this.directory = directory;
+        int capacity = Math.min(this.bufferKeys, 1024);
+        amounts = new long[capacity];
+        seconds = new long[capacity];
+        rows = new int[capacity];
+    }
+
+    void add(long amount, long epochSecond, int row) {
+        if (size == bufferKeys) {
+            spill();
+        }
+        if (size == amounts.length) {
+            int capacity = (int) Math.min((long) size << 1, bufferKeys);
+            amounts = Arrays.copyOf(amounts, capacity);
+            seconds = Arrays.copyOf(seconds, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        amounts[size] = amount;
+        seconds[size] = epochSecond;
+        rows[size++] = row;
+    }
+
+    /**
+     * @return the number of runs spilled so far
+     */
+    int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * Ends the input and gives all keys in order. The sorter can no longer be added to.
+     *
+     * @return a cursor over the keys by ascending amount, epoch second, then row
+     */
+    KeyCursor sorted() {
+        int[] order = sortBuffer();
+        KeyCursor buffered = new BufferCursor(order);
+        if (runs.isEmpty()) {
+            return buffered;
+        }
+        List<KeyCursor> cursors = new ArrayList<>(runs.size() + 1);
+        for (Path run : runs) {
+            RunCursor cursor = new RunCursor(run);
+            openRuns.add(cursor);
+            cursors.add(cursor);
+        }
+        cursors.add(buffered);
+        return new MergeCursor(cursors);
+    }
+
+    /**
+     * Deletes the run files.
+     */
+    @Override
+    public void close() {
+        for (Closeable run : openRuns) {
+            try {
+                run.close();
+            } catch (IOException ignored) {
+                // the file is deleted below either way
+            }
+        }
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ignored) {
+                // temporary files left behind are only a leak of disk space
+            }
+        }
+        runs.clear();
+    }
+
+    private void spill() {
+        int[] order = sortBuffer();
+        try {
+            Path run = Files.createTempFile(directory, "keys-", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_BYTES))) {
+                for (int i : order) {
+                    out.writeLong(amounts[i]);
+                    out.writeLong(seconds[i]);
+                    out.writeInt(rows[i]);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Sort run could not be written", ex);
+        }
+        size = 0;
+    }
+
+    /**
+     * @return the positions of the buffered keys in key order, by a stable bottom-up merge sort
+     */
+    private int[] sortBuffer() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] merged = new int[size];
+        for (int width = 1; width < size; width <<= 1) {
+            for (int low = 0; low < size; low += width << 1) {
+                int middle = Math.min(low + width, size);
+                int high = Math.min(low + (width << 1), size);
+                int left = low;
+                int right = middle;
+                for (int k = low; k < high; k++) {
+                    merged[k] = right >= high || left < middle && compare(order[left], order[right]) <= 0
+                            ? order[left++] : order[right++];
+                }
+            }
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+        return order;
+    }
+
+    private int compare(int a, int b) {
+        int byAmount = Long.compare(amounts[a], amounts[b]);
+        if (byAmount != 0) {
+            return byAmount;
+        }
+        int bySecond = Long.compare(seconds[a], seconds[b]);
+        return bySecond != 0 ? bySecond : Integer.compare(rows[a], rows[b]);
+    }
+
+    private static int compare(KeyCursor a, KeyCursor b) {
+        int byAmount = Long.compare(a.amount(), b.amount());
+        if (byAmount != 0) {
+            return byAmount;
+        }
+        int bySecond = Long.compare(a.epochSecond(), b.epochSecond());
+        return bySecond != 0 ? bySecond : Integer.compare(a.row(), b.row());
+    }
+
+    /**
+     * Forward-only cursor over sorted keys. The key accessors are valid after {@link #next()} returned {@code true}.
+     */
+    interface KeyCursor {
+
+        boolean next();
+
+        long amount();
+
+        long epochSecond();
+
+        int row();
+    }
+
+    private final class BufferCursor implements KeyCursor {
+
+        private final int[] order;
+        private int position = -1;
+
+        BufferCursor(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        public boolean next() {
+            return ++position < order.length;
+        }
+
+        @Override
+        public long amount() {
+            return amounts[order[position]];
+        }
+
+        @Override
+        public long epochSecond() {
+            return seconds[order[position]];
+        }
+
+        @Override
+        public int row() {
+            return rows[order[position]];
+        }
+    }
+
+    private static final class RunCursor implements KeyCursor, Closeable {
+
+        private final DataInputStream in;
+        private long amount;
+        private long epochSecond;
+        private int row;
+
+        RunCursor(Path run) {
+            try {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER_BYTES));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Sort run could not be read", ex);
+            }
+        }
+
+        @Override
+        public boolean next() {
+            try {
+                amount = in.readLong();
+                epochSecond = in.readLong();
+                row = in.readInt();
+                return true;
+            } catch (EOFException ex) {
+                return false;
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Sort run could not be read", ex);
+            }
+        }
+
+        @Override
+        public long amount() {
+            return amount;
+        }
+
+        @Override
+        public long epochSecond() {
+            return epochSecond;
+        }
+
+        @Override
+        public int row() {
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * K-way merge of sorted cursors, on a heap ordered by their current key.
+     */
+    private static final class MergeCursor implements KeyCursor {
+
+        private final PriorityQueue<KeyCursor> heap = new PriorityQueue<>(ExternalKeySorter::compare);
+        private KeyCursor current;
+
+        MergeCursor(List<KeyCursor> cursors) {
+            for (KeyCursor cursor : cursors) {
+                if (cursor.next()) {
+                    heap.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() {
+            if (current != null && current.next()) {
+                heap.add(current);
+            }
+            current = heap.poll();
+            return current != null;
+        }
+
+        @Override
+        public long amount() {
+            return current.amount();
+        }
+
+        @Override
+        public long epochSecond() {
+            return current.epochSecond();
+        }
+
+        @Override
+        public int row() {
+            return current.row();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.paymentology.paymentreconciliation.engine;
+
+/**
+ * Identifies which of the two uploaded files a record belongs to.
+ */
+public enum FileSide {
+    FIRST,
+    SECOND;
+
+    public FileSide opposite() {
+        return this == FIRST ? SECOND : FIRST;
+    }
+}
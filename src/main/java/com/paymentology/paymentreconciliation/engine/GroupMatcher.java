@@ -0,0 +1,539 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Pairs the records of the two files that share a TransactionID.
+ * <p>
+ * Every pair of the group is scored once into a score matrix, and the pairs above the threshold are chosen by a
+ * maximum-weight assignment (Hungarian algorithm). Pair weights put the number of matches first and their points
+ * second, so no assignment trades a match for a better score. The outcome only depends on the content and order of
+ * the group, not on which record happens to be compared first.
+ * <p>
+ * A pair is only scored exactly when it can still reach the threshold, or the report floor, and beat the best pair
+ * its left record has so far; otherwise scoring stops early and the matrix keeps an upper bound below that cut-off.
+ * The right records with the same amount as the left one are scored first, as the likeliest to score high, so the
+ * cut-off rises early. Pairs below the cut-off can be neither chosen nor reported, and the best points of every
+ * record stay exact.
+ * <p>
+ * Groups with a single record on either side take the best candidate directly. Groups with more than
+ * {@value #MAX_ASSIGNMENT_SIZE} records on a side, where the cubic assignment would get too expensive, fall back to
+ * picking qualifying pairs greedily by descending points.
+ * <p>
+ * Groups of more than {@value #MAX_MATRIX_PAIRS} pairs, such as the records of a TransactionID repeated throughout
+ * both files, are not scored into a matrix: every left record keeps its {@value #CANDIDATES} best qualifying right
+ * records only, is rescored against the right records still free once they are all taken, and the greedy pass takes
+ * the left records by their best free candidate, so it picks the same pairs as over the matrix. Their points are
+ * scored again when they are read.
+ * <p>
+ * A matcher reuses its buffers from one group to the next and must not be shared between threads.
+ */
+public class GroupMatcher {
+
+    public static final int MAX_ASSIGNMENT_SIZE = 64;
+    // 16 MB of points; the two sides of a greedy group then fit INDEX_BITS
+    public static final long MAX_MATRIX_PAIRS = 1L << 22;
+
+    private static final int CANDIDATES = 16;
+
+    private static final int NONE = -1;
+    private static final int INDEX_BITS = 21;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    private final SimilarityScorer scorer;
+    private final int minPoints;
+    private final int maxPoints;
+    // Points from which a pair is scored exactly
+    private final int exactPoints;
+    private final long maxMatrixPairs;
+
+    private int[] leftRows = new int[16];
+    private int[] rightRows = new int[16];
+    private int leftCount;
+    private int rightCount;
+
+    private int[] scores = new int[256];
+    private int[] matches = new int[16];
+    private int[] bestPoints = new int[16];
+    private int[] matchedPoints = new int[16];
+    private boolean[] rightTaken = new boolean[16];
+    // Whether the last group was scored into the matrix, otherwise the views its points are read from
+    private boolean scored;
+    private TransactionView left;
+    private TransactionView right;
+
+    // Candidates of the left records of a group without a matrix, best first
+    private int[] candidateRights = new int[0];
+    private int[] candidatePoints = new int[0];
+    private int[] candidateCounts = new int[0];
+    private int[] candidateCursors = new int[0];
+    private final MatchStatistics statistics = new MatchStatistics();
+
+    /**
+     * @param scorer    the scorer pairs are scored with
+     * @param threshold the similarity, as a percentage, a pair has to exceed to match
+     */
+    public GroupMatcher(SimilarityScorer scorer, double threshold) {
+        this(scorer, threshold, threshold);
+    }
+
+    /**
+     * @param scorer          the scorer pairs are scored with
+     * @param threshold       the similarity, as a percentage, a pair has to exceed to match
+     * @param reportThreshold the similarity, as a percentage, from which the points of unmatched pairs are read too
+     */
+    public GroupMatcher(SimilarityScorer scorer, double threshold, double reportThreshold) {
+        this(scorer, threshold, reportThreshold, MAX_MATRIX_PAIRS);
+    }
+
+    GroupMatcher(SimilarityScorer scorer, double threshold, double reportThreshold, long maxMatrixPairs) {
+        this.scorer = scorer;
+        this.minPoints = scorer.minPointsAbove(threshold);
+        this.maxPoints = scorer.maxPoints();
+        this.exactPoints = Math.min(minPoints, scorer.minPointsReaching(reportThreshold));
+        this.maxMatrixPairs = Math.min(maxMatrixPairs, MAX_MATRIX_PAIRS);
+    }
+
+    /**
+     * Empties the group, to start a new one.
+     */
+    public void reset() {
+        leftCount = 0;
+        rightCount = 0;
+    }
+
+    /**
+     * Adds a row of the left view to the group.
+     */
+    public void addLeft(int row) {
+        if (leftCount == leftRows.length) {
+            leftRows = Arrays.copyOf(leftRows, leftCount << 1);
+        }
+        leftRows[leftCount++] = row;
+    }
+
+    /**
+     * Adds a row of the right view to the group.
+     */
+    public void addRight(int row) {
+        if (rightCount == rightRows.length) {
+            rightRows = Arrays.copyOf(rightRows, rightCount << 1);
+        }
+        rightRows[rightCount++] = row;
+    }
+
+    /**
+     * Matches the group. Results are read with {@link #matchOf(int)} and {@link #bestPoints(int)}.
+     *
+     * @param left  the view the left rows belong to
+     * @param right the view the right rows belong to
+     * @return the number of matched pairs
+     */
+    public int match(TransactionView left, TransactionView right) {
+        if (matches.length < leftCount) {
+            matches = new int[leftRows.length];
+            bestPoints = new int[leftRows.length];
+            matchedPoints = new int[leftRows.length];
+        }
+        Arrays.fill(matches, 0, leftCount, NONE);
+        if (leftCount == 0 || rightCount == 0) {
+            Arrays.fill(bestPoints, 0, leftCount, 0);
+            return 0;
+        }
+
+        long pairCount = (long) leftCount * rightCount;
+        statistics.scored(pairCount);
+        scored = pairCount <= maxMatrixPairs;
+        this.left = scored ? null : left;
+        this.right = scored ? null : right;
+        int matched = scored ? matchScored(left, right, (int) pairCount) : matchUnscored(left, right);
+        for (int i = 0; i < leftCount; i++) {
+            if (matches[i] != NONE) {
+                statistics.matched(matchedPoints[i]);
+            }
+        }
+        return matched;
+    }
+
+    private int matchScored(TransactionView left, TransactionView right, int pairCount) {
+        if (scores.length < pairCount) {
+            scores = new int[Math.max(pairCount, scores.length << 1)];
+        }
+        for (int i = 0; i < leftCount; i++) {
+            int row = leftRows[i];
+            long amount = left.fingerprint(row, TransactionFingerprint.TRANSACTION_AMOUNT);
+            int best = 0;
+            // Same amount first, then the rest
+            for (int pass = 0; pass < 2; pass++) {
+                for (int j = 0; j < rightCount; j++) {
+                    if ((right.fingerprint(rightRows[j], TransactionFingerprint.TRANSACTION_AMOUNT) == amount)
+                            != (pass == 0)) {
+                        continue;
+                    }
+                    int points = scorer.points(left, row, right, rightRows[j], Math.min(exactPoints, best + 1));
+                    scores[i * rightCount + j] = points;
+                    best = Math.max(best, points);
+                }
+            }
+            bestPoints[i] = best;
+        }
+
+        int matched;
+        if (leftCount == 1 || rightCount == 1) {
+            matched = matchSingle();
+        } else if (leftCount <= MAX_ASSIGNMENT_SIZE && rightCount <= MAX_ASSIGNMENT_SIZE) {
+            matched = matchOptimal();
+        } else {
+            matched = matchGreedy();
+        }
+        for (int i = 0; i < leftCount; i++) {
+            if (matches[i] != NONE) {
+                matchedPoints[i] = scores[i * rightCount + matches[i]];
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @return the tally of every group this matcher matched so far
+     */
+    public MatchStatistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the number of left rows in the group
+     */
+    public int leftCount() {
+        return leftCount;
+    }
+
+    /**
+     * @param i the position of a left row in the group
+     * @return the left row at that position
+     */
+    public int leftRow(int i) {
+        return leftRows[i];
+    }
+
+    /**
+     * @return the number of right rows in the group
+     */
+    public int rightCount() {
+        return rightCount;
+    }
+
+    /**
+     * @param j the position of a right row in the group
+     * @return the right row at that position
+     */
+    public int rightRow(int j) {
+        return rightRows[j];
+    }
+
+    /**
+     * @param i the position of a left row in the group
+     * @param j the position of a right row in the group
+     * @return the points the pair scored in the last {@link #match(TransactionView, TransactionView) match}; exact
+     * when they reach the threshold or the report floor, otherwise possibly an upper bound below both
+     */
+    public int points(int i, int j) {
+        return scored ? scores[i * rightCount + j] : scorer.points(left, leftRows[i], right, rightRows[j], exactPoints);
+    }
+
+    /**
+     * @param i the position of a left row in the group
+     * @return the right row matched with it, or -1 when it is unmatched
+     */
+    public int matchOf(int i) {
+        return matches[i] == NONE ? NONE : rightRows[matches[i]];
+    }
+
+    /**
+     * @param i the position of a left row in the group
+     * @return the points of its match, or the best points it scored against the group when it is unmatched
+     */
+    public int bestPoints(int i) {
+        return matches[i] == NONE ? bestPoints[i] : matchedPoints[i];
+    }
+
+    private int matchSingle() {
+        if (leftCount == 1) {
+            int best = NONE;
+            for (int j = 0; j < rightCount; j++) {
+                if (scores[j] >= minPoints && (best == NONE || scores[j] > scores[best])) {
+                    best = j;
+                }
+            }
+            matches[0] = best;
+            return best == NONE ? 0 : 1;
+        }
+        int best = NONE;
+        for (int i = 0; i < leftCount; i++) {
+            if (scores[i] >= minPoints && (best == NONE || scores[i] > scores[best])) {
+                best = i;
+            }
+        }
+        if (best == NONE) {
+            return 0;
+        }
+        matches[best] = 0;
+        return 1;
+    }
+
+    private int matchGreedy() {
+        int pairCount = 0;
+        for (int i = 0; i < leftCount; i++) {
+            for (int j = 0; j < rightCount; j++) {
+                if (scores[i * rightCount + j] >= minPoints) {
+                    pairCount++;
+                }
+            }
+        }
+        long[] pairs = new long[pairCount];
+        pairCount = 0;
+        for (int i = 0; i < leftCount; i++) {
+            for (int j = 0; j < rightCount; j++) {
+                int points = scores[i * rightCount + j];
+                if (points >= minPoints) {
+                    // descending points, then ascending left and right positions
+                    pairs[pairCount++] = (long) (maxPoints - points) << 2 * INDEX_BITS
+                            | (long) i << INDEX_BITS | j;
+                }
+            }
+        }
+        Arrays.sort(pairs);
+
+        clearRightTaken();
+        int matched = 0;
+        for (int p = 0; p < pairCount; p++) {
+            int i = (int) (pairs[p] >>> INDEX_BITS & INDEX_MASK);
+            int j = (int) (pairs[p] & INDEX_MASK);
+            if (matches[i] == NONE && !rightTaken[j]) {
+                matches[i] = j;
+                rightTaken[j] = true;
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Greedy pass over a group without a score matrix, taking the same pairs as {@link #matchGreedy()}.
+     */
+    private int matchUnscored(TransactionView left, TransactionView right) {
+        if (candidateCounts.length < leftCount) {
+            candidateCounts = new int[leftRows.length];
+            candidateCursors = new int[leftRows.length];
+            candidateRights = new int[leftRows.length * CANDIDATES];
+            candidatePoints = new int[leftRows.length * CANDIDATES];
+        }
+        clearRightTaken();
+        // Left records by the points of their next candidate, descending, then by position
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int i = 0; i < leftCount; i++) {
+            int row = leftRows[i];
+            long amount = left.fingerprint(row, TransactionFingerprint.TRANSACTION_AMOUNT);
+            int best = 0;
+            candidateCounts[i] = 0;
+            candidateCursors[i] = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int j = 0; j < rightCount; j++) {
+                    if ((right.fingerprint(rightRows[j], TransactionFingerprint.TRANSACTION_AMOUNT) == amount)
+                            != (pass == 0)) {
+                        continue;
+                    }
+                    // Exact from the threshold, to rank the candidates, and above the best so far
+                    int points = scorer.points(left, row, right, rightRows[j], Math.min(minPoints, best + 1));
+                    best = Math.max(best, points);
+                    if (points >= minPoints) {
+                        offerCandidate(i, j, points);
+                    }
+                }
+            }
+            bestPoints[i] = best;
+            if (candidateCounts[i] > 0) {
+                queue.add(candidateKey(i));
+            }
+        }
+
+        int matched = 0;
+        while (!queue.isEmpty()) {
+            int i = (int) (queue.poll() & 0xFFFFFFFFL);
+            int k = i * CANDIDATES + candidateCursors[i];
+            int j = candidateRights[k];
+            if (rightTaken[j]) {
+                if (nextCandidate(i, left, right)) {
+                    queue.add(candidateKey(i));
+                }
+                continue;
+            }
+            matches[i] = j;
+            matchedPoints[i] = candidatePoints[k];
+            rightTaken[j] = true;
+            matched++;
+        }
+        return matched;
+    }
+
+    /**
+     * Moves a left record on to its best candidate still free, scoring it against the free right records again when
+     * it had as many candidates as it keeps and they were all taken.
+     *
+     * @return whether it has one
+     */
+    private boolean nextCandidate(int i, TransactionView left, TransactionView right) {
+        int base = i * CANDIDATES;
+        while (true) {
+            while (candidateCursors[i] < candidateCounts[i]) {
+                if (!rightTaken[candidateRights[base + candidateCursors[i]]]) {
+                    return true;
+                }
+                candidateCursors[i]++;
+            }
+            // Fewer candidates than kept were all the qualifying right records
+            if (candidateCounts[i] < CANDIDATES) {
+                return false;
+            }
+            candidateCounts[i] = 0;
+            candidateCursors[i] = 0;
+            long rescored = 0;
+            for (int j = 0; j < rightCount; j++) {
+                if (!rightTaken[j]) {
+                    int points = scorer.points(left, leftRows[i], right, rightRows[j], minPoints);
+                    if (points >= minPoints) {
+                        offerCandidate(i, j, points);
+                    }
+                    rescored++;
+                }
+            }
+            statistics.scored(rescored);
+        }
+    }
+
+    /**
+     * Inserts a pair among the candidates of its left record, ordered by descending points then ascending right
+     * position, dropping the last one when they are full.
+     */
+    private void offerCandidate(int i, int j, int points) {
+        int base = i * CANDIDATES;
+        int count = candidateCounts[i];
+        int k = count;
+        while (k > 0 && (points > candidatePoints[base + k - 1]
+                || points == candidatePoints[base + k - 1] && j < candidateRights[base + k - 1])) {
+            k--;
+        }
+        if (k == CANDIDATES) {
+            return;
+        }
+        int kept = Math.min(count, CANDIDATES - 1);
+        System.arraycopy(candidateRights, base + k, candidateRights, base + k + 1, kept - k);
+        System.arraycopy(candidatePoints, base + k, candidatePoints, base + k + 1, kept - k);
+        candidateRights[base + k] = j;
+        candidatePoints[base + k] = points;
+        candidateCounts[i] = kept + 1;
+    }
+
+    private long candidateKey(int i) {
+        return (long) (maxPoints - candidatePoints[i * CANDIDATES + candidateCursors[i]]) << 32 | i;
+    }
+
+    private void clearRightTaken() {
+        if (rightTaken.length < rightCount) {
+            rightTaken = new boolean[rightRows.length];
+        }
+        Arrays.fill(rightTaken, 0, rightCount, false);
+    }
+
+    private int matchOptimal() {
+        // Weights make any assignment with more matches outweigh one with fewer
+        boolean transposed = leftCount > rightCount;
+        int n = transposed ? rightCount : leftCount;
+        int m = transposed ? leftCount : rightCount;
+        long matchBonus = (long) n * maxPoints + 1;
+        long maxWeight = matchBonus + maxPoints;
+
+        long[] cost = new long[(n + 1) * (m + 1)];
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= m; j++) {
+                int points = transposed ? scores[(j - 1) * rightCount + i - 1] : scores[(i - 1) * rightCount + j - 1];
+                long weight = points >= minPoints ? matchBonus + points : 0;
+                cost[i * (m + 1) + j] = maxWeight - weight;
+            }
+        }
+
+        int[] assignment = hungarian(cost, n, m);
+        int matched = 0;
+        for (int j = 1; j <= m; j++) {
+            int i = assignment[j];
+            if (i == 0) {
+                continue;
+            }
+            int leftIndex = transposed ? j - 1 : i - 1;
+            int rightIndex = transposed ? i - 1 : j - 1;
+            if (scores[leftIndex * rightCount + rightIndex] >= minPoints) {
+                matches[leftIndex] = rightIndex;
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Minimum-cost assignment of n rows to m columns, n &lt;= m, over a 1-based cost matrix.
+     *
+     * @return for every column, the row assigned to it, or 0
+     */
+    private static int[] hungarian(long[] cost, int n, int m) {
+        int stride = m + 1;
+        long[] u = new long[n + 1];
+        long[] v = new long[m + 1];
+        int[] assignment = new int[m + 1];
+        int[] way = new int[m + 1];
+        long[] minCost = new long[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            assignment[0] = i;
+            int column = 0;
+            Arrays.fill(minCost, Long.MAX_VALUE);
+            Arrays.fill(used, false);
+            do {
+                used[column] = true;
+                int row = assignment[column];
+                long delta = Long.MAX_VALUE;
+                int nextColumn = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) {
+                        continue;
+                    }
+                    long reduced = cost[row * stride + j] - u[row] - v[j];
+                    if (reduced < minCost[j]) {
+                        minCost[j] = reduced;
+                        way[j] = column;
+                    }
+                    if (minCost[j] < delta) {
+                        delta = minCost[j];
+                        nextColumn = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[assignment[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minCost[j] -= delta;
+                    }
+                }
+                column = nextColumn;
+            } while (assignment[column] != 0);
+            do {
+                int previous = way[column];
+                assignment[column] = assignment[previous];
+                column = previous;
+            } while (column != 0);
+        }
+        return assignment;
+    }
+}
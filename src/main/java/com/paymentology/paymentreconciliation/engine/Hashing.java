@@ -0,0 +1,43 @@
+package com.paymentology.paymentreconciliation.engine;
+
+/**
+ * 64-bit hashing helpers shared by the engine's hash tables and fingerprints.
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * Hashes the characters of a text with FNV-1a followed by a finalizer, so that every output bit depends on every
+     * input character.
+     *
+     * @param text the text to hash
+     * @return the 64-bit hash of the text
+     */
+    public static long hash64(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Spreads the bits of a value (the MurmurHash3 64-bit finalizer). Used to turn keys into table slots.
+     *
+     * @param value the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,277 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.TransactionSummaryDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reconciles two files held in memory.
+ * <p>
+ * Records only ever match records sharing their TransactionID, so both files are hash-partitioned by TransactionID
+ * into shards that are reconciled independently, in parallel on the common {@link java.util.concurrent.ForkJoinPool}
+ * when there is more than one. Within a shard, every TransactionID group is paired by a {@link GroupMatcher}. Shards
+ * only flag the records they match, and the result is assembled in file order afterwards, so it does not depend on
+ * the number of shards.
+ * <p>
+ * Given a {@link CandidateSearch}, the records left unmatched by TransactionID then go through it, on the calling
+ * thread, so that pairs whose TransactionID differs can still be matched on their other fields.
+ * <p>
+ * Given a near-miss count, every shard also keeps, for the records its groups leave unmatched, the closest records of
+ * the group on the other side; those still unmatched after the candidate search are reported with them.
+ */
+public class InMemoryReconciler {
+
+    private final SimilarityScorer scorer;
+    private final double threshold;
+    private final int shards;
+    private final CandidateSearch candidateSearch;
+    private final int nearMissCount;
+    private final double nearMissThreshold;
+    private final MatchStatistics statistics = new MatchStatistics();
+
+    /**
+     * @param scorer    the scorer pairs are scored with
+     * @param threshold the similarity, as a percentage, a pair has to exceed to match
+     * @param shards    the number of shards to reconcile in parallel; 1 reconciles on the calling thread
+     */
+    public InMemoryReconciler(SimilarityScorer scorer, double threshold, int shards) {
+        this(scorer, threshold, shards, null);
+    }
+
+    /**
+     * @param scorer          the scorer pairs are scored with
+     * @param threshold       the similarity, as a percentage, a pair has to exceed to match
+     * @param shards          the number of shards to reconcile in parallel; 1 reconciles on the calling thread
+     * @param candidateSearch the second pass over the records left unmatched, or {@code null} for none
+     */
+    public InMemoryReconciler(SimilarityScorer scorer, double threshold, int shards, CandidateSearch candidateSearch) {
+        this(scorer, threshold, shards, candidateSearch, 0, 0);
+    }
+
+    /**
+     * @param scorer            the scorer pairs are scored with
+     * @param threshold         the similarity, as a percentage, a pair has to exceed to match
+     * @param shards            the number of shards to reconcile in parallel; 1 reconciles on the calling thread
+     * @param candidateSearch   the second pass over the records left unmatched, or {@code null} for none
+     * @param nearMissCount     the number of near misses reported per unmatched record; 0 reports none
+     * @param nearMissThreshold the similarity, as a percentage, a near miss has to reach
+     */
+    public InMemoryReconciler(SimilarityScorer scorer, double threshold, int shards, CandidateSearch candidateSearch,
+                              int nearMissCount, double nearMissThreshold) {
+        this.scorer = scorer;
+        this.threshold = threshold;
+        this.shards = Math.max(shards, 1);
+        this.candidateSearch = candidateSearch;
+        this.nearMissCount = Math.max(nearMissCount, 0);
+        this.nearMissThreshold = nearMissThreshold;
+    }
+
+    /**
+     * Reconciles two lists of records whose repeated text fields were not encoded.
+     *
+     * @param fileOne the records of the first file
+     * @param fileTwo the records of the second file
+     * @return the matched records of the first file and the unmatched records of both files, in file order, with the
+     * near misses of the unmatched records when they are reported
+     */
+    public TransactionSummaryDto reconcile(List<ReconciliationDto> fileOne, List<ReconciliationDto> fileTwo) {
+        return reconcile(fileOne, fileTwo, new TextDictionary());
+    }
+
+    /**
+     * Reconciles two lists of records. Both files are fingerprinted into a {@link RecordTable} for the time of the
+     * reconciliation.
+     *
+     * @param fileOne    the records of the first file
+     * @param fileTwo    the records of the second file
+     * @param dictionary the dictionary of the upload, which the repeated text fields of both files were interned in
+     * @return the matched records of the first file and the unmatched records of both files, in file order, with the
+     * near misses of the unmatched records when they are reported
+     */
+    public TransactionSummaryDto reconcile(List<ReconciliationDto> fileOne, List<ReconciliationDto> fileTwo,
+                                           TextDictionary dictionary) {
+        RecordTable tableOne = new RecordTable(fileOne, dictionary);
+        RecordTable tableTwo = new RecordTable(fileTwo, dictionary);
+        boolean[] matchedOne = new boolean[fileOne.size()];
+        boolean[] matchedTwo = new boolean[fileTwo.size()];
+
+        List<Shard> tasks = new ArrayList<>(shards);
+        if (shards == 1) {
+            tasks.add(new Shard(fileOne, tableOne, allRows(fileOne.size()), fileTwo, tableTwo,
+                    allRows(fileTwo.size()), matchedOne, matchedTwo));
+            tasks.get(0).invoke();
+        } else {
+            int[][] shardsOne = partition(tableOne);
+            int[][] shardsTwo = partition(tableTwo);
+            for (int shard = 0; shard < shards; shard++) {
+                tasks.add(new Shard(fileOne, tableOne, shardsOne[shard], fileTwo, tableTwo, shardsTwo[shard],
+                        matchedOne, matchedTwo));
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+        for (Shard task : tasks) {
+            statistics.add(task.matcher.statistics());
+        }
+        if (candidateSearch != null) {
+            candidateSearch.match(tableOne, matchedOne, tableTwo, matchedTwo);
+        }
+
+        List<ReconciliationDto> matched = new ArrayList<>();
+        List<ReconciliationDto> unmatchedOne = new ArrayList<>();
+        for (int row = 0; row < fileOne.size(); row++) {
+            (matchedOne[row] ? matched : unmatchedOne).add(fileOne.get(row));
+        }
+        List<ReconciliationDto> unmatchedTwo = new ArrayList<>();
+        for (int row = 0; row < fileTwo.size(); row++) {
+            if (!matchedTwo[row]) {
+                unmatchedTwo.add(fileTwo.get(row));
+            }
+        }
+
+        TransactionSummaryDto transactionSummaryDto = new TransactionSummaryDto();
+        transactionSummaryDto.setFileOneMatchedRecords(matched);
+        transactionSummaryDto.setFileTwoMatchedRecords(matched);
+        transactionSummaryDto.setFileOneUnMatchedRecord(unmatchedOne);
+        transactionSummaryDto.setFileTwoUnMatchedRecord(unmatchedTwo);
+        if (nearMissCount > 0) {
+            NearMissCollector nearMisses = tasks.get(0).nearMisses;
+            for (int shard = 1; shard < tasks.size(); shard++) {
+                nearMisses.merge(tasks.get(shard).nearMisses);
+            }
+            transactionSummaryDto.setFileOneNearMisses(
+                    nearMisses.report(fileOne, tableOne, matchedOne, fileTwo, tableTwo, true));
+            transactionSummaryDto.setFileTwoNearMisses(
+                    nearMisses.report(fileTwo, tableTwo, matchedTwo, fileOne, tableOne, false));
+        }
+        return transactionSummaryDto;
+    }
+
+    /**
+     * @return the tally of the pairs scored by the reconciliations run so far
+     */
+    public MatchStatistics statistics() {
+        if (candidateSearch == null) {
+            return statistics;
+        }
+        MatchStatistics total = new MatchStatistics();
+        total.add(statistics);
+        total.add(candidateSearch.statistics());
+        return total;
+    }
+
+    private int shardOf(RecordTable table, int row) {
+        long key = table.fingerprint(row, TransactionFingerprint.TRANSACTION_ID);
+        return (int) ((Hashing.mix(key) >>> 1) % shards);
+    }
+
+    /**
+     * @return the rows of every shard, in file order
+     */
+    private int[][] partition(RecordTable table) {
+        int[] shardOfRow = new int[table.size()];
+        int[] counts = new int[shards];
+        for (int row = 0; row < table.size(); row++) {
+            shardOfRow[row] = shardOf(table, row);
+            counts[shardOfRow[row]]++;
+        }
+        int[][] rows = new int[shards][];
+        for (int shard = 0; shard < shards; shard++) {
+            rows[shard] = new int[counts[shard]];
+            counts[shard] = 0;
+        }
+        for (int row = 0; row < table.size(); row++) {
+            int shard = shardOfRow[row];
+            rows[shard][counts[shard]++] = row;
+        }
+        return rows;
+    }
+
+    private static int[] allRows(int size) {
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            rows[row] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Reconciles the records of one shard. Shards flag disjoint rows, so they can share the flag arrays.
+     */
+    private class Shard extends RecursiveAction {
+
+        private final List<ReconciliationDto> fileOne;
+        private final RecordTable tableOne;
+        private final int[] rowsOne;
+        private final List<ReconciliationDto> fileTwo;
+        private final RecordTable tableTwo;
+        private final int[] rowsTwo;
+        private final boolean[] matchedOne;
+        private final boolean[] matchedTwo;
+        private final GroupMatcher matcher = nearMissCount > 0
+                ? new GroupMatcher(scorer, threshold, nearMissThreshold) : new GroupMatcher(scorer, threshold);
+        private final NearMissCollector nearMisses = nearMissCount > 0
+                ? new NearMissCollector(scorer, nearMissCount, nearMissThreshold) : null;
+
+        Shard(List<ReconciliationDto> fileOne, RecordTable tableOne, int[] rowsOne, List<ReconciliationDto> fileTwo,
+              RecordTable tableTwo, int[] rowsTwo, boolean[] matchedOne, boolean[] matchedTwo) {
+            this.fileOne = fileOne;
+            this.tableOne = tableOne;
+            this.rowsOne = rowsOne;
+            this.fileTwo = fileTwo;
+            this.tableTwo = tableTwo;
+            this.rowsTwo = rowsTwo;
+            this.matchedOne = matchedOne;
+            this.matchedTwo = matchedTwo;
+        }
+
+        @Override
+        protected void compute() {
+            // Key tables number the shard's rows from 0; rowsOne and rowsTwo map them back to file rows
+            TransactionKeyTable keysOne = new TransactionKeyTable(rowsOne.length);
+            for (int row : rowsOne) {
+                keysOne.add(fileOne.get(row).getTransactionId());
+            }
+            TransactionKeyTable keysTwo = new TransactionKeyTable(rowsTwo.length);
+            for (int row : rowsTwo) {
+                keysTwo.add(fileTwo.get(row).getTransactionId());
+            }
+
+            // Match every TransactionID group of fileOne, in order of first appearance, with its fileTwo group
+            for (int first = 0; first < rowsOne.length; first++) {
+                if (!keysOne.isFirstOfKey(first)) {
+                    continue;
+                }
+                int candidate = keysTwo.first(fileOne.get(rowsOne[first]).getTransactionId());
+                if (candidate == -1) {
+                    continue;
+                }
+
+                matcher.reset();
+                for (int row = first; row != -1; row = keysOne.next(row)) {
+                    matcher.addLeft(rowsOne[row]);
+                }
+                for (; candidate != -1; candidate = keysTwo.next(candidate)) {
+                    matcher.addRight(rowsTwo[candidate]);
+                }
+                matcher.match(tableOne, tableTwo);
+                if (nearMisses != null) {
+                    nearMisses.collect(matcher);
+                }
+
+                for (int i = 0; i < matcher.leftCount(); i++) {
+                    int row = matcher.leftRow(i);
+                    fileOne.get(row).setSimilarityScore(scorer.similarity(matcher.bestPoints(i)));
+                    int match = matcher.matchOf(i);
+                    if (match != -1) {
+                        matchedOne[row] = true;
+                        matchedTwo[match] = true;
+                    }
+                }
+            }
+        }
+    }
+}
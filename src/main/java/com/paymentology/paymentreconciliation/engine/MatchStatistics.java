@@ -0,0 +1,68 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.util.Arrays;
+
+/**
+ * Tally of the scoring work of a reconciliation: how many candidate pairs were scored, and how many matched pairs
+ * scored each number of points.
+ * <p>
+ * Points are small integers, so the histogram is a plain array indexed by points. A tally is not thread-safe; work
+ * split over threads keeps one tally per thread and {@link #add(MatchStatistics) adds} them up at the end.
+ */
+public class MatchStatistics {
+
+    private long scoredPairCount;
+    private long[] matchedPairCounts = new long[0];
+
+    /**
+     * @param pairs the number of candidate pairs just scored
+     */
+    public void scored(long pairs) {
+        scoredPairCount += pairs;
+    }
+
+    /**
+     * @param points the points of a pair just matched
+     */
+    public void matched(int points) {
+        if (points >= matchedPairCounts.length) {
+            matchedPairCounts = Arrays.copyOf(matchedPairCounts, points + 1);
+        }
+        matchedPairCounts[points]++;
+    }
+
+    /**
+     * Adds another tally to this one.
+     */
+    public void add(MatchStatistics other) {
+        scoredPairCount += other.scoredPairCount;
+        if (other.matchedPairCounts.length > matchedPairCounts.length) {
+            matchedPairCounts = Arrays.copyOf(matchedPairCounts, other.matchedPairCounts.length);
+        }
+        for (int points = 0; points < other.matchedPairCounts.length; points++) {
+            matchedPairCounts[points] += other.matchedPairCounts[points];
+        }
+    }
+
+    /**
+     * @return the number of candidate pairs scored
+     */
+    public long getScoredPairCount() {
+        return scoredPairCount;
+    }
+
+    /**
+     * @return one more than the highest points any matched pair scored
+     */
+    public int pointsRange() {
+        return matchedPairCounts.length;
+    }
+
+    /**
+     * @param points a number of points
+     * @return the number of matched pairs that scored them
+     */
+    public long matchedPairCount(int points) {
+        return points < matchedPairCounts.length ? matchedPairCounts[points] : 0;
+    }
+}
@@ -0,0 +1,61 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The rules deciding when two records match: a weight per field, the tolerances of the amount and the date, and the
+ * threshold. A rule set is compiled once into a {@link SimilarityScorer}, see
+ * {@link SimilarityScorer#compile(MatchingRules)}.
+ * <p>
+ * A field scores its weight when it is equal in both records, the amount when it is within {@code amountTolerance}
+ * minor units. A date that is not equal scores {@code sameDayWeight} on the same day, or {@code dateToleranceWeight}
+ * when it is a whole number of days, at most {@code dateToleranceDays}, apart. A similarity is the share, as a
+ * percentage, of the points of a pair whose fields are all equal; a pair matches when it exceeds {@code threshold}.
+ * The defaults are the historical rules of the service.
+ */
+@Value
+@Builder(toBuilder = true)
+public class MatchingRules {
+
+    public static final MatchingRules DEFAULT = MatchingRules.builder().build();
+
+    @Builder.Default
+    int transactionIdWeight = 6;
+    @Builder.Default
+    int transactionTypeWeight = 1;
+    @Builder.Default
+    int transactionDescriptionWeight = 2;
+    @Builder.Default
+    int transactionNarrativeWeight = 2;
+    @Builder.Default
+    int walletReferenceWeight = 4;
+    @Builder.Default
+    int profileNameWeight = 1;
+    @Builder.Default
+    int transactionAmountWeight = 4;
+    @Builder.Default
+    int transactionDateWeight = 5;
+    @Builder.Default
+    int sameDayWeight = 3;
+    @Builder.Default
+    int dateToleranceWeight = 2;
+
+    /**
+     * Minor units, such as cents, two amounts may differ by and still agree.
+     */
+    @Builder.Default
+    long amountTolerance = 0;
+
+    /**
+     * Whole days two dates may be apart, at the same time of day, to score {@code dateToleranceWeight}.
+     */
+    @Builder.Default
+    int dateToleranceDays = 1;
+
+    /**
+     * Similarity, as a percentage, a pair has to exceed to match.
+     */
+    @Builder.Default
+    double threshold = 90;
+}
@@ -0,0 +1,206 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.FieldDifferenceDto;
+import com.paymentology.paymentreconciliation.dto.NearMissCandidateDto;
+import com.paymentology.paymentreconciliation.dto.NearMissDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.paymentology.paymentreconciliation.engine.SimilarityScorer.*;
+
+/**
+ * Keeps, for every record its TransactionID group left unmatched, the records of the other file of the group that
+ * scored the most points against it, as long as they reach a minimum.
+ * <p>
+ * The pairs are read from the score matrix of the {@link GroupMatcher}, so nothing is scored twice. The candidates of
+ * a record are kept in a fixed-size min-heap of packed (points, row) longs, so a record costs O(K) memory whatever the
+ * size of its group, and only unmatched records get a heap at all. A collector serves one shard and must not be shared
+ * between threads.
+ */
+final class NearMissCollector {
+
+    // Marks a free heap slot; it sorts below any packed candidate
+    private static final long EMPTY = -1;
+
+    private final SimilarityScorer scorer;
+    private final int count;
+    private final int minPoints;
+    private final Map<Integer, long[]> candidatesOne = new HashMap<>();
+    private final Map<Integer, long[]> candidatesTwo = new HashMap<>();
+
+    /**
+     * @param scorer    the scorer pairs are scored with
+     * @param count     the number of candidates kept per record
+     * @param threshold the similarity, as a percentage, a candidate has to reach
+     */
+    NearMissCollector(SimilarityScorer scorer, int count, double threshold) {
+        this.scorer = scorer;
+        this.count = count;
+        this.minPoints = scorer.minPointsReaching(threshold);
+    }
+
+    /**
+     * Collects the candidates of the unmatched records of a group the matcher just matched.
+     */
+    void collect(GroupMatcher matcher) {
+        int leftCount = matcher.leftCount();
+        int rightCount = matcher.rightCount();
+        boolean[] rightMatched = new boolean[rightCount];
+        for (int i = 0; i < leftCount; i++) {
+            int match = matcher.matchOf(i);
+            for (int j = 0; match != -1 && j < rightCount; j++) {
+                rightMatched[j] |= matcher.rightRow(j) == match;
+            }
+        }
+
+        for (int i = 0; i < leftCount; i++) {
+            if (matcher.matchOf(i) != -1) {
+                continue;
+            }
+            long[] heap = null;
+            for (int j = 0; j < rightCount; j++) {
+                heap = offer(heap, matcher.points(i, j), matcher.rightRow(j));
+            }
+            if (heap != null) {
+                candidatesOne.put(matcher.leftRow(i), heap);
+            }
+        }
+        for (int j = 0; j < rightCount; j++) {
+            if (rightMatched[j]) {
+                continue;
+            }
+            long[] heap = null;
+            for (int i = 0; i < leftCount; i++) {
+                heap = offer(heap, matcher.points(i, j), matcher.leftRow(i));
+            }
+            if (heap != null) {
+                candidatesTwo.put(matcher.rightRow(j), heap);
+            }
+        }
+    }
+
+    /**
+     * Adds the candidates of another shard, whose rows are disjoint from this one's.
+     */
+    void merge(NearMissCollector other) {
+        candidatesOne.putAll(other.candidatesOne);
+        candidatesTwo.putAll(other.candidatesTwo);
+    }
+
+    /**
+     * @param records          the records of a file
+     * @param table            the fingerprints of the records
+     * @param matched          the rows of the file matched in the end
+     * @param counterparts     the records of the other file
+     * @param counterpartTable the fingerprints of the records of the other file
+     * @param firstFile        whether the records are those of the first file
+     * @return the near misses of the unmatched records that have candidates, in file order
+     */
+    List<NearMissDto> report(List<ReconciliationDto> records, RecordTable table, boolean[] matched,
+                             List<ReconciliationDto> counterparts, RecordTable counterpartTable, boolean firstFile) {
+        Map<Integer, long[]> candidates = firstFile ? candidatesOne : candidatesTwo;
+        List<NearMissDto> nearMisses = new ArrayList<>();
+        for (int row = 0; row < records.size(); row++) {
+            long[] heap = candidates.get(row);
+            if (heap == null || matched[row]) {
+                continue;
+            }
+            ReconciliationDto record = records.get(row);
+            long[] sorted = heap.clone();
+            Arrays.sort(sorted);
+            List<NearMissCandidateDto> candidateList = new ArrayList<>(count);
+            for (int k = sorted.length - 1; k >= 0 && sorted[k] != EMPTY; k--) {
+                int counterpartRow = Integer.MAX_VALUE - (int) sorted[k];
+                ReconciliationDto counterpart = counterparts.get(counterpartRow);
+                int mask = firstFile ? scorer.matchMask(table, row, counterpartTable, counterpartRow)
+                        : scorer.matchMask(counterpartTable, counterpartRow, table, row);
+                candidateList.add(NearMissCandidateDto.builder()
+                        .record(counterpart)
+                        .similarityScore(scorer.similarity((int) (sorted[k] >>> Integer.SIZE)))
+                        .differenceList(differences(mask, record, counterpart))
+                        .build());
+            }
+            nearMisses.add(NearMissDto.builder().record(record).candidateList(candidateList).build());
+        }
+        return nearMisses;
+    }
+
+    /**
+     * Offers a candidate to the heap of a record, creating the heap on the first candidate that qualifies.
+     *
+     * @return the heap, or {@code null} while no candidate qualified
+     */
+    private long[] offer(long[] heap, int points, int row) {
+        if (points < minPoints) {
+            return heap;
+        }
+        if (heap == null) {
+            heap = new long[count];
+            Arrays.fill(heap, EMPTY);
+        }
+        // Higher points first, then the lower row, so the kept candidates do not depend on the order of the group
+        long candidate = (long) points << Integer.SIZE | Integer.MAX_VALUE - row;
+        if (candidate > heap[0]) {
+            heap[0] = candidate;
+            siftDown(heap);
+        }
+        return heap;
+    }
+
+    private static void siftDown(long[] heap) {
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= heap.length) {
+                return;
+            }
+            if (child + 1 < heap.length && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[parent] <= heap[child]) {
+                return;
+            }
+            long swap = heap[parent];
+            heap[parent] = heap[child];
+            heap[child] = swap;
+            parent = child;
+        }
+    }
+
+    /**
+     * @return the fields the record and its counterpart differ on, named after their CSV column
+     */
+    private static List<FieldDifferenceDto> differences(int mask, ReconciliationDto record,
+                                                        ReconciliationDto counterpart) {
+        List<FieldDifferenceDto> differences = new ArrayList<>();
+        addDifference(differences, mask, TRANSACTION_ID_MATCH, "TransactionID", record.getTransactionId(),
+                counterpart.getTransactionId());
+        addDifference(differences, mask, TRANSACTION_TYPE_MATCH, "TransactionType", record.getTransactionType(),
+                counterpart.getTransactionType());
+        addDifference(differences, mask, TRANSACTION_DESCRIPTION_MATCH, "TransactionDescription",
+                record.getTransactionDescription(), counterpart.getTransactionDescription());
+        addDifference(differences, mask, TRANSACTION_NARRATIVE_MATCH, "TransactionNarrative",
+                record.getTransactionNarrative(), counterpart.getTransactionNarrative());
+        addDifference(differences, mask, WALLET_REFERENCE_MATCH, "WalletReference", record.getWalletReference(),
+                counterpart.getWalletReference());
+        addDifference(differences, mask, PROFILE_NAME_MATCH, "ProfileName", record.getProfileName(),
+                counterpart.getProfileName());
+        addDifference(differences, mask, TRANSACTION_DATE_MATCH, "TransactionDate",
+                String.valueOf(record.getTransactionDate()), String.valueOf(counterpart.getTransactionDate()));
+        addDifference(differences, mask, TRANSACTION_AMOUNT_MATCH, "TransactionAmount",
+                String.valueOf(record.getTransactionAmount()), String.valueOf(counterpart.getTransactionAmount()));
+        return differences;
+    }
+
+    private static void addDifference(List<FieldDifferenceDto> differences, int mask, int bit, String field,
+                                      String value, String counterpartValue) {
+        if ((mask & bit) == 0) {
+            differences.add(new FieldDifferenceDto(field, value, counterpartValue));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.TransactionSummaryDto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reconciles two files too large to be held in memory together, grace hash join style.
+ * <p>
+ * Records only ever match records sharing their TransactionID, so as they are read, the records of both files are
+ * hash-partitioned by TransactionID into temporary files, in the dictionary-coded {@link RecordCodec row format}
+ * behind their row number, the file name being kept once per file. The partitions are then loaded and reconciled
+ * one at a time by an {@link InMemoryReconciler}, so the heap only has to hold one partition of both files, plus the
+ * unmatched records that make up the result.
+ * <p>
+ * Unmatched records are put back in file order and go through the {@link CandidateSearch}, if any, just like on the
+ * in-memory path, so the result is the same as reconciling both files at once.
+ */
+public class PartitionedReconciler implements Closeable {
+
+    private static final int IO_BUFFER_BYTES = 16 * 1024;
+
+    private final SimilarityScorer scorer;
+    private final double threshold;
+    private final int shards;
+    private final CandidateSearch candidateSearch;
+    private final TextDictionary dictionary;
+    private final Path directory;
+    private final DataOutputStream[][] outputs;
+    private final String[] filenames = new String[FileSide.values().length];
+    private final long[] rowCounts = new long[FileSide.values().length];
+    private final MatchStatistics statistics = new MatchStatistics();
+
+    /**
+     * @param scorer          the scorer pairs are scored with
+     * @param threshold       the similarity, as a percentage, a pair has to exceed to match
+     * @param partitions      the number of partitions, each of which has to fit in memory
+     * @param shards          the number of shards each partition is reconciled in, see {@link InMemoryReconciler}
+     * @param candidateSearch the second pass over the records left unmatched, or {@code null} for none
+     * @param dictionary      the dictionary of the upload, which the partitions are coded against
+     * @param spillDirectory  the directory the partition files are created in
+     * @throws IOException if the partition files cannot be created
+     */
+    public PartitionedReconciler(SimilarityScorer scorer, double threshold, int partitions, int shards,
+                                 CandidateSearch candidateSearch, TextDictionary dictionary, Path spillDirectory)
+            throws IOException {
+        this.scorer = scorer;
+        this.threshold = threshold;
+        this.shards = shards;
+        this.candidateSearch = candidateSearch;
+        this.dictionary = dictionary;
+        Files.createDirectories(spillDirectory);
+        this.directory = Files.createTempDirectory(spillDirectory, "partitions-");
+        this.outputs = new DataOutputStream[FileSide.values().length][Math.max(partitions, 1)];
+        try {
+            for (FileSide side : FileSide.values()) {
+                for (int partition = 0; partition < outputs[side.ordinal()].length; partition++) {
+                    outputs[side.ordinal()][partition] = new DataOutputStream(new BufferedOutputStream(
+                            Files.newOutputStream(partitionFile(side, partition)), IO_BUFFER_BYTES));
+                }
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes the next record of a file to its partition.
+     *
+     * @param side   the file the record belongs to
+     * @param record the record
+     */
+    public void add(FileSide side, ReconciliationDto record) {
+        DataOutputStream[] sideOutputs = outputs[side.ordinal()];
+        int partition = (int) ((Hashing.mix(TransactionKeys.pack(record.getTransactionId())) >>> 1)
+                % sideOutputs.length);
+        filenames[side.ordinal()] = record.getFilename();
+        try {
+            sideOutputs[partition].writeLong(rowCounts[side.ordinal()]++);
+            RecordCodec.write(sideOutputs[partition], record, dictionary);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Partition could not be written", ex);
+        }
+    }
+
+    /**
+     * @param side a file
+     * @return the number of records of the file added so far
+     */
+    public long recordCount(FileSide side) {
+        return rowCounts[side.ordinal()];
+    }
+
+    /**
+     * Reconciles the partitions, once every record was added.
+     *
+     * @return the matched records of the first file and the unmatched records of both files, in file order
+     */
+    public TransactionSummaryDto reconcile() {
+        for (DataOutputStream[] sideOutputs : outputs) {
+            for (DataOutputStream output : sideOutputs) {
+                try {
+                    output.close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Partition could not be written", ex);
+                }
+            }
+        }
+
+        List<ReconciliationDto> matched = new ArrayList<>();
+        List<RowRecord> unmatchedOne = new ArrayList<>();
+        List<RowRecord> unmatchedTwo = new ArrayList<>();
+        for (int partition = 0; partition < outputs[0].length; partition++) {
+            List<RowRecord> one = readPartition(FileSide.FIRST, partition);
+            List<RowRecord> two = readPartition(FileSide.SECOND, partition);
+            InMemoryReconciler reconciler = new InMemoryReconciler(scorer, threshold, shards);
+            TransactionSummaryDto summary = reconciler.reconcile(records(one), records(two), dictionary);
+            statistics.add(reconciler.statistics());
+            matched.addAll(summary.getFileOneMatchedRecords());
+            collectUnmatched(one, summary.getFileOneUnMatchedRecord(), unmatchedOne);
+            collectUnmatched(two, summary.getFileTwoUnMatchedRecord(), unmatchedTwo);
+        }
+        unmatchedOne.sort(Comparator.comparingLong(RowRecord::row));
+        unmatchedTwo.sort(Comparator.comparingLong(RowRecord::row));
+
+        List<ReconciliationDto> leftoverOne = records(unmatchedOne);
+        List<ReconciliationDto> leftoverTwo = records(unmatchedTwo);
+        if (candidateSearch != null) {
+            boolean[] matchedOne = new boolean[leftoverOne.size()];
+            boolean[] matchedTwo = new boolean[leftoverTwo.size()];
+            candidateSearch.match(new RecordTable(leftoverOne, dictionary), matchedOne,
+                    new RecordTable(leftoverTwo, dictionary), matchedTwo);
+            leftoverOne = withoutMatched(leftoverOne, matchedOne, matched);
+            leftoverTwo = withoutMatched(leftoverTwo, matchedTwo, null);
+        }
+
+        TransactionSummaryDto transactionSummaryDto = new TransactionSummaryDto();
+        transactionSummaryDto.setFileOneMatchedRecords(matched);
+        transactionSummaryDto.setFileTwoMatchedRecords(matched);
+        transactionSummaryDto.setFileOneUnMatchedRecord(leftoverOne);
+        transactionSummaryDto.setFileTwoUnMatchedRecord(leftoverTwo);
+        return transactionSummaryDto;
+    }
+
+    /**
+     * @return the tally of the pairs scored by the reconciliation
+     */
+    public MatchStatistics statistics() {
+        if (candidateSearch == null) {
+            return statistics;
+        }
+        MatchStatistics total = new MatchStatistics();
+        total.add(statistics);
+        total.add(candidateSearch.statistics());
+        return total;
+    }
+
+    /**
+     * Deletes the partition files.
+     */
+    @Override
+    public void close() {
+        for (DataOutputStream[] sideOutputs : outputs) {
+            for (DataOutputStream output : sideOutputs) {
+                if (output != null) {
+                    try {
+                        output.close();
+                    } catch (IOException ignored) {
+                        // the file is deleted below either way
+                    }
+                }
+            }
+        }
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException ignored) {
+            // temporary files left behind are only a leak of disk space
+        }
+    }
+
+    private Path partitionFile(FileSide side, int partition) {
+        return directory.resolve("%s-%05d.rows".formatted(side.name().toLowerCase(), partition));
+    }
+
+    private List<RowRecord> readPartition(FileSide side, int partition) {
+        List<RowRecord> records = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(partitionFile(side, partition)), IO_BUFFER_BYTES))) {
+            while (true) {
+                long row;
+                try {
+                    row = input.readLong();
+                } catch (EOFException ex) {
+                    break;
+                }
+                records.add(new RowRecord(row, RecordCodec.read(input, dictionary, filenames[side.ordinal()])));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Partition could not be read", ex);
+        }
+        return records;
+    }
+
+    /**
+     * Finds the row numbers of the unmatched records of a partition; both lists are in file order.
+     */
+    private static void collectUnmatched(List<RowRecord> partition, List<ReconciliationDto> unmatched,
+                                         List<RowRecord> into) {
+        int next = 0;
+        for (RowRecord record : partition) {
+            if (next < unmatched.size() && unmatched.get(next) == record.record()) {
+                into.add(record);
+                next++;
+            }
+        }
+    }
+
+    private static List<ReconciliationDto> withoutMatched(List<ReconciliationDto> records, boolean[] matchedRows,
+                                                          List<ReconciliationDto> matched) {
+        List<ReconciliationDto> remaining = new ArrayList<>(records.size());
+        for (int row = 0; row < records.size(); row++) {
+            if (!matchedRows[row]) {
+                remaining.add(records.get(row));
+            } else if (matched != null) {
+                matched.add(records.get(row));
+            }
+        }
+        return remaining;
+    }
+
+    private static List<ReconciliationDto> records(List<RowRecord> rows) {
+        List<ReconciliationDto> records = new ArrayList<>(rows.size());
+        for (RowRecord row : rows) {
+            records.add(row.record());
+        }
+        return records;
+    }
+
+    private record RowRecord(long row, ReconciliationDto record) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+/**
+ * Receives reconciliation results as soon as the engine produces them, so callers decide what is retained.
+ */
+public interface ReconciliationSink {
+
+    /**
+     * Called once for every record read from a file, before its outcome is known.
+     *
+     * @param side the file the record was read from
+     */
+    default void read(FileSide side) {
+    }
+
+    /**
+     * Called once for every pair of records that were reconciled with each other. Matched records are only
+     * materialized for sinks that {@link #requiresMatchedRecords() require them}; other sinks get {@code null}s.
+     *
+     * @param first  the record of the first file, or {@code null}
+     * @param second the record of the second file, or {@code null}
+     */
+    void matched(ReconciliationDto first, ReconciliationDto second);
+
+    /**
+     * @return whether {@link #matched(ReconciliationDto, ReconciliationDto)} needs the records themselves, rather
+     * than just being told a pair matched
+     */
+    default boolean requiresMatchedRecords() {
+        return false;
+    }
+
+    /**
+     * Called once for every record that could not be reconciled.
+     *
+     * @param side   the file the record belongs to
+     * @param record the unmatched record
+     */
+    void unmatched(FileSide side, ReconciliationDto record);
+
+    /**
+     * Called instead of {@link #unmatched(FileSide, ReconciliationDto)} by engines that know where the record stands
+     * in its file, since they may report records out of file order.
+     *
+     * @param side   the file the record belongs to
+     * @param row    the position of the record in its file, counted from 0
+     * @param record the unmatched record
+     */
+    default void unmatched(FileSide side, int row, ReconciliationDto record) {
+        unmatched(side, record);
+    }
+}
@@ -0,0 +1,135 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary row format of a record, for records kept on disk: the TransactionID first, so that it can be read
+ * without decoding the rest, then the other text fields in modified UTF-8, each behind a presence flag, the amount and
+ * the date as epoch second. Rows have no framing of their own; callers frame them as they need.
+ * <p>
+ * Records that only live as long as the upload can use the dictionary-coded variant instead, where the repeated text
+ * fields are written as the variable-length code of their value in the {@link TextDictionary} of the upload, and the
+ * file name is left to the reader: such a row is a few bytes plus its TransactionID and WalletReference.
+ */
+public final class RecordCodec {
+
+    // Dictionary encoded fields, in the order of their codes in a coded row
+    private static final int[] ENCODED_FIELDS = {TransactionFingerprint.TRANSACTION_TYPE,
+            TransactionFingerprint.TRANSACTION_DESCRIPTION, TransactionFingerprint.TRANSACTION_NARRATIVE,
+            TransactionFingerprint.PROFILE_NAME};
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Writes a record.
+     */
+    public static void write(DataOutput output, ReconciliationDto record) throws IOException {
+        output.writeUTF(record.getTransactionId());
+        writeText(output, record.getTransactionType());
+        writeText(output, record.getTransactionDescription());
+        writeText(output, record.getTransactionNarrative());
+        writeText(output, record.getProfileName());
+        writeText(output, record.getWalletReference());
+        writeText(output, record.getFilename());
+        output.writeLong(record.getTransactionAmount());
+        output.writeLong(record.getTransactionDate().toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * Reads the TransactionID of a record, leaving the input on the rest of the record.
+     */
+    public static String readTransactionId(DataInput input) throws IOException {
+        return input.readUTF();
+    }
+
+    /**
+     * Reads a record.
+     */
+    public static ReconciliationDto read(DataInput input) throws IOException {
+        return ReconciliationDto.builder()
+                .transactionId(input.readUTF())
+                .transactionType(readText(input))
+                .transactionDescription(readText(input))
+                .transactionNarrative(readText(input))
+                .profileName(readText(input))
+                .walletReference(readText(input))
+                .filename(readText(input))
+                .transactionAmount(input.readLong())
+                .transactionDate(LocalDateTime.ofEpochSecond(input.readLong(), 0, ZoneOffset.UTC))
+                .build();
+    }
+
+    /**
+     * Writes a record in the dictionary-coded layout.
+     *
+     * @param dictionary the dictionary of the upload, which the row can only be read back with
+     */
+    public static void write(DataOutput output, ReconciliationDto record, TextDictionary dictionary)
+            throws IOException {
+        output.writeUTF(record.getTransactionId());
+        for (int field : ENCODED_FIELDS) {
+            writeCode(output, dictionary.encode(TransactionFingerprint.text(record, field)));
+        }
+        writeText(output, record.getWalletReference());
+        output.writeLong(record.getTransactionAmount());
+        output.writeLong(record.getTransactionDate().toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * Reads a record written in the dictionary-coded layout, its repeated text fields being the dictionary's strings.
+     *
+     * @param dictionary the dictionary the row was written with
+     * @param filename   the name of the file the record belongs to
+     */
+    public static ReconciliationDto read(DataInput input, TextDictionary dictionary, String filename)
+            throws IOException {
+        return ReconciliationDto.builder()
+                .transactionId(input.readUTF())
+                .transactionType(dictionary.decode(readCode(input)))
+                .transactionDescription(dictionary.decode(readCode(input)))
+                .transactionNarrative(dictionary.decode(readCode(input)))
+                .profileName(dictionary.decode(readCode(input)))
+                .walletReference(readText(input))
+                .filename(filename)
+                .transactionAmount(input.readLong())
+                .transactionDate(LocalDateTime.ofEpochSecond(input.readLong(), 0, ZoneOffset.UTC))
+                .build();
+    }
+
+    private static void writeCode(DataOutput output, int code) throws IOException {
+        while ((code & ~0x7f) != 0) {
+            output.writeByte(code & 0x7f | 0x80);
+            code >>>= 7;
+        }
+        output.writeByte(code);
+    }
+
+    private static int readCode(DataInput input) throws IOException {
+        int code = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = input.readByte();
+            code |= (next & 0x7f) << shift;
+            if (next >= 0) {
+                return code;
+            }
+        }
+    }
+
+    private static void writeText(DataOutput output, String text) throws IOException {
+        output.writeBoolean(text != null);
+        if (text != null) {
+            output.writeUTF(text);
+        }
+    }
+
+    private static String readText(DataInput input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
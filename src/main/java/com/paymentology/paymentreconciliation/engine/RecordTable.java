@@ -0,0 +1,115 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+
+/**
+ * {@link TransactionView} over a list of parsed records, the row being the position in the list.
+ * <p>
+ * The fingerprints are not kept on the records: they are computed from the records when the table is built and held
+ * in columns indexed by row, the repeated text fields as their codes in a {@link TextDictionary}, whose hashes stand
+ * for theirs. A row costs four longs and four ints, and the fingerprints only live as long as the reconciliation that
+ * built the table; the records are read back for the TransactionID and WalletReference texts only, which the table
+ * needs to rule out hash collisions. The records must therefore not change while the table is in use.
+ */
+public class RecordTable implements TransactionView {
+
+    // Dictionary encoded fields, in the order of their codes in a row
+    private static final int[] ENCODED_FIELDS = {TRANSACTION_TYPE, TRANSACTION_DESCRIPTION, TRANSACTION_NARRATIVE,
+            PROFILE_NAME};
+
+    private final List<ReconciliationDto> records;
+    private final TextDictionary dictionary;
+    private final long[] keys;
+    private final long[] amounts;
+    private final long[] dates;
+    private final long[] walletHashes;
+    private final int[] codes;
+
+    /**
+     * Builds the table of records whose repeated text fields were not encoded, against a dictionary of its own.
+     *
+     * @param records the records, in the order of their rows
+     */
+    public RecordTable(List<ReconciliationDto> records) {
+        this(records, new TextDictionary());
+    }
+
+    /**
+     * @param records    the records, in the order of their rows
+     * @param dictionary the dictionary of the upload, which the repeated text fields of the records were interned in;
+     *                   it must not be frozen
+     */
+    public RecordTable(List<ReconciliationDto> records, TextDictionary dictionary) {
+        int size = records.size();
+        this.records = records;
+        this.dictionary = dictionary;
+        keys = new long[size];
+        amounts = new long[size];
+        dates = new long[size];
+        walletHashes = new long[size];
+        codes = new int[size * ENCODED_FIELDS.length];
+        int row = 0;
+        for (ReconciliationDto record : records) {
+            keys[row] = TransactionKeys.pack(record.getTransactionId());
+            amounts[row] = record.getTransactionAmount();
+            dates[row] = record.getTransactionDate().toEpochSecond(ZoneOffset.UTC);
+            walletHashes[row] = TransactionFingerprint.hash(record.getWalletReference());
+            int base = row * ENCODED_FIELDS.length;
+            codes[base] = dictionary.encode(record.getTransactionType());
+            codes[base + 1] = dictionary.encode(record.getTransactionDescription());
+            codes[base + 2] = dictionary.encode(record.getTransactionNarrative());
+            codes[base + 3] = dictionary.encode(record.getProfileName());
+            row++;
+        }
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return amounts.length;
+    }
+
+    @Override
+    public long fingerprint(int row, int slot) {
+        return switch (slot) {
+            case TRANSACTION_ID -> keys[row];
+            case TRANSACTION_AMOUNT -> amounts[row];
+            case EPOCH_SECOND -> dates[row];
+            case EPOCH_DAY -> TransactionFingerprint.epochDay(dates[row]);
+            case WALLET_REFERENCE -> walletHashes[row];
+            default -> dictionary.hash(code(row, slot));
+        };
+    }
+
+    @Override
+    public CharSequence text(int row, int field) {
+        return switch (field) {
+            case TRANSACTION_ID -> records.get(row).getTransactionId();
+            case WALLET_REFERENCE -> records.get(row).getWalletReference();
+            default -> dictionary.decode(code(row, field));
+        };
+    }
+
+    @Override
+    public TextDictionary dictionary(int row) {
+        return dictionary;
+    }
+
+    @Override
+    public int code(int row, int field) {
+        int base = row * ENCODED_FIELDS.length;
+        return switch (field) {
+            case TRANSACTION_TYPE -> codes[base];
+            case TRANSACTION_DESCRIPTION -> codes[base + 1];
+            case TRANSACTION_NARRATIVE -> codes[base + 2];
+            case PROFILE_NAME -> codes[base + 3];
+            default -> throw new IllegalArgumentException("Not an encoded field: " + field);
+        };
+    }
+}
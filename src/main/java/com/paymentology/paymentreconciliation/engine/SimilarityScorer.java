@@ -0,0 +1,346 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+
+/**
+ * Scores the similarity of two records from their {@link TransactionFingerprint fingerprints}, as a compiled
+ * {@link MatchingRules rule set}.
+ * <p>
+ * Every field comparison sets one bit of a match mask, using integer compares only; the text of a field is read only
+ * when its hashes are equal, to rule out a collision. Fields encoded against dictionaries that
+ * {@link TextDictionary#sharesCodes(TextDictionary) share their codes} are compared by code, which needs no text. The score is then the weighted popcount of the mask: the
+ * weights are split into binary planes, so that summing them takes one {@code bitCount} per plane. Compiling a rule
+ * set resolves its weights into those planes and its tolerances into plain fields once, so a custom rule set scores
+ * as fast as the default one, and scoring allocates nothing.
+ * <p>
+ * When only pairs reaching a number of points matter, {@link #points(TransactionView, int, TransactionView, int, int)}
+ * scores the rules one at a time, heaviest first, and stops as soon as the points still to score cannot lift the pair
+ * to that floor; a pair whose TransactionID or amount differs is then usually settled after a rule or two. A caller
+ * that only needs to know whether a pair qualifies also passes a ceiling, and scoring stops as soon as the points
+ * already scored reach it.
+ */
+public final class SimilarityScorer {
+
+    // Match mask bits; the text fields use the bit of their fingerprint slot
+    public static final int TRANSACTION_ID_MATCH = 1 << TRANSACTION_ID;
+    public static final int TRANSACTION_TYPE_MATCH = 1 << TRANSACTION_TYPE;
+    public static final int TRANSACTION_DESCRIPTION_MATCH = 1 << TRANSACTION_DESCRIPTION;
+    public static final int TRANSACTION_NARRATIVE_MATCH = 1 << TRANSACTION_NARRATIVE;
+    public static final int WALLET_REFERENCE_MATCH = 1 << WALLET_REFERENCE;
+    public static final int PROFILE_NAME_MATCH = 1 << PROFILE_NAME;
+    public static final int TRANSACTION_AMOUNT_MATCH = 1 << 6;
+    public static final int TRANSACTION_DATE_MATCH = 1 << 7;
+    public static final int TRANSACTION_SAME_DAY_MATCH = 1 << 8;
+    public static final int TRANSACTION_DATE_TOLERANCE_MATCH = 1 << 9;
+
+    // All bits but the partial date tolerances, which exclude the exact date match
+    private static final int FULL_MATCH =
+            (1 << 10) - 1 & ~(TRANSACTION_SAME_DAY_MATCH | TRANSACTION_DATE_TOLERANCE_MATCH);
+
+    // Keeps the points of a pair, and the planes of the weights, well within an int
+    private static final int MAX_WEIGHT = 1 << 16;
+
+    // Rules of the bounded score beside the text fields, which are rules 0 to TEXT_FIELDS - 1
+    private static final int AMOUNT_RULE = TEXT_FIELDS;
+    private static final int DATE_RULE = TEXT_FIELDS + 1;
+
+    public static final SimilarityScorer DEFAULT = compile(MatchingRules.DEFAULT);
+
+    private final MatchingRules rules;
+    private final int[] weightPlanes;
+    private final long amountTolerance;
+    private final long dateToleranceSeconds;
+    // Points of a pair whose fields are all equal; a similarity is the share of these points scored
+    private final int scale;
+    // Rules with a weight, heaviest first, and the most points the rules from each position on can still add
+    private final int[] ruleOrder;
+    private final int[] pointsLeft;
+    private final int[] ruleWeights;
+
+    private SimilarityScorer(MatchingRules rules) {
+        int[] weights = new int[Integer.SIZE];
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_ID_MATCH)] = rules.getTransactionIdWeight();
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_TYPE_MATCH)] = rules.getTransactionTypeWeight();
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_DESCRIPTION_MATCH)] = rules.getTransactionDescriptionWeight();
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_NARRATIVE_MATCH)] = rules.getTransactionNarrativeWeight();
+        weights[Integer.numberOfTrailingZeros(WALLET_REFERENCE_MATCH)] = rules.getWalletReferenceWeight();
+        weights[Integer.numberOfTrailingZeros(PROFILE_NAME_MATCH)] = rules.getProfileNameWeight();
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_AMOUNT_MATCH)] = rules.getTransactionAmountWeight();
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_DATE_MATCH)] = rules.getTransactionDateWeight();
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_SAME_DAY_MATCH)] = rules.getSameDayWeight();
+        weights[Integer.numberOfTrailingZeros(TRANSACTION_DATE_TOLERANCE_MATCH)] = rules.getDateToleranceWeight();
+        for (int weight : weights) {
+            if (weight < 0 || weight > MAX_WEIGHT) {
+                throw new IllegalArgumentException("Matching rule weights must be between 0 and " + MAX_WEIGHT);
+            }
+        }
+        if (rules.getAmountTolerance() < 0 || rules.getDateToleranceDays() < 0) {
+            throw new IllegalArgumentException("Matching rule tolerances must not be negative");
+        }
+        if (rules.getThreshold() < 0 || rules.getThreshold() > 100) {
+            throw new IllegalArgumentException("Matching rule threshold must be between 0 and 100");
+        }
+        this.rules = rules;
+        this.weightPlanes = weightPlanes(weights);
+        this.amountTolerance = rules.getAmountTolerance();
+        this.dateToleranceSeconds = rules.getDateToleranceDays() * SECONDS_PER_DAY;
+        this.scale = points(FULL_MATCH);
+        if (scale == 0) {
+            throw new IllegalArgumentException("Matching rules must give at least one field a weight");
+        }
+        this.ruleWeights = Arrays.copyOf(weights, DATE_RULE + 1);
+        ruleWeights[DATE_RULE] = Math.max(rules.getTransactionDateWeight(),
+                Math.max(rules.getSameDayWeight(), rules.getDateToleranceWeight()));
+        // Heaviest first; among equal weights the amount and the date, which compare numbers only, come first
+        this.ruleOrder = IntStream.rangeClosed(0, DATE_RULE)
+                .filter(rule -> ruleWeights[rule] > 0)
+                .boxed()
+                .sorted(Comparator.<Integer>comparingInt(rule -> -ruleWeights[rule])
+                        .thenComparingInt(rule -> rule >= AMOUNT_RULE ? rule - DATE_RULE - 1 : rule))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.pointsLeft = new int[ruleOrder.length + 1];
+        for (int k = ruleOrder.length - 1; k >= 0; k--) {
+            pointsLeft[k] = pointsLeft[k + 1] + ruleWeights[ruleOrder[k]];
+        }
+    }
+
+    /**
+     * Compiles a rule set into a scorer.
+     *
+     * @param rules the rule set
+     * @return the scorer of the rule set
+     * @throws IllegalArgumentException if a weight or a tolerance is out of range, or every field weighs nothing
+     */
+    public static SimilarityScorer compile(MatchingRules rules) {
+        return new SimilarityScorer(rules);
+    }
+
+    /**
+     * @return the rule set the scorer was compiled from
+     */
+    public MatchingRules rules() {
+        return rules;
+    }
+
+    /**
+     * @return the similarity, as a percentage, a pair has to exceed to match under the rule set
+     */
+    public double threshold() {
+        return rules.getThreshold();
+    }
+
+    /**
+     * Compares two records field by field.
+     *
+     * @return the match mask of the pair
+     */
+    public int matchMask(TransactionView a, int rowA, TransactionView b, int rowB) {
+        int mask = 0;
+        boolean coded = shareDictionary(a, rowA, b, rowB);
+        for (int field = 0; field < TEXT_FIELDS; field++) {
+            if (textMatches(field, a, rowA, b, rowB, coded)) {
+                mask |= 1 << field;
+            }
+        }
+        if (amountMatches(a, rowA, b, rowB)) {
+            mask |= TRANSACTION_AMOUNT_MATCH;
+        }
+        return mask | dateMatch(a, rowA, b, rowB);
+    }
+
+    /**
+     * @param mask a match mask
+     * @return the points scored by the mask
+     */
+    public int points(int mask) {
+        int points = 0;
+        for (int plane = 0; plane < weightPlanes.length; plane++) {
+            points += Integer.bitCount(mask & weightPlanes[plane]) << plane;
+        }
+        return points;
+    }
+
+    /**
+     * @return the points scored by the pair
+     */
+    public int points(TransactionView a, int rowA, TransactionView b, int rowB) {
+        return points(matchMask(a, rowA, b, rowB));
+    }
+
+    /**
+     * Scores a pair only as far as it takes to tell whether it reaches {@code floor} points: rules are evaluated
+     * heaviest first, and scoring stops once the points left cannot lift the pair to the floor.
+     *
+     * @param floor the points from which the exact score is needed
+     * @return the points scored by the pair when they reach the floor, otherwise an upper bound of them below it
+     */
+    public int points(TransactionView a, int rowA, TransactionView b, int rowB, int floor) {
+        return points(a, rowA, b, rowB, floor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Scores a pair only as far as it takes to tell whether it reaches {@code floor} points, and stops as soon as it
+     * is certain to reach {@code ceiling} points, for callers that only need to know a pair qualifies.
+     *
+     * @param floor   the points from which the exact score is needed
+     * @param ceiling the points from which the exact score is not needed any more
+     * @return the points scored by the pair when they reach the floor and stay below the ceiling, an upper bound of
+     * them below the floor, or the points scored so far once they reach the ceiling
+     */
+    public int points(TransactionView a, int rowA, TransactionView b, int rowB, int floor, int ceiling) {
+        boolean coded = shareDictionary(a, rowA, b, rowB);
+        int points = 0;
+        for (int k = 0; k < ruleOrder.length && points < ceiling; k++) {
+            int bound = points + pointsLeft[k];
+            if (bound < floor) {
+                return bound;
+            }
+            int rule = ruleOrder[k];
+            if (rule == DATE_RULE) {
+                points += points(dateMatch(a, rowA, b, rowB));
+            } else if (rule == AMOUNT_RULE ? amountMatches(a, rowA, b, rowB)
+                    : textMatches(rule, a, rowA, b, rowB, coded)) {
+                points += ruleWeights[rule];
+            }
+        }
+        return points;
+    }
+
+    /**
+     * @return the points of a pair whose fields are all equal
+     */
+    public int perfectPoints() {
+        return points(FULL_MATCH);
+    }
+
+    /**
+     * @return an upper bound of the points any pair can score
+     */
+    public int maxPoints() {
+        return points(-1);
+    }
+
+    /**
+     * @param threshold a similarity, as a percentage
+     * @return the fewest points whose similarity exceeds the threshold, or more than {@link #maxPoints()} when no
+     * pair can exceed it
+     */
+    public int minPointsAbove(double threshold) {
+        int points = 0;
+        while (points <= maxPoints() && similarity(points) <= threshold) {
+            points++;
+        }
+        return points;
+    }
+
+    /**
+     * @param threshold a similarity, as a percentage
+     * @return the fewest points whose similarity reaches the threshold, or more than {@link #maxPoints()} when no
+     * pair can reach it
+     */
+    public int minPointsReaching(double threshold) {
+        int points = 0;
+        while (points <= maxPoints() && similarity(points) < threshold) {
+            points++;
+        }
+        return points;
+    }
+
+    /**
+     * @param points points scored by a pair
+     * @return the similarity, as a percentage, the points stand for
+     */
+    public double similarity(int points) {
+        return ((double) points / scale) * 100;
+    }
+
+    /**
+     * @return the similarity of the pair, as a percentage
+     */
+    public double similarity(TransactionView a, int rowA, TransactionView b, int rowB) {
+        return similarity(points(a, rowA, b, rowB));
+    }
+
+    /**
+     * @return a description of the weights, tolerances and scale of the scorer, which identifies how it scores
+     */
+    @Override
+    public String toString() {
+        return "SimilarityScorer" + Arrays.toString(weightPlanes) + "/" + scale + ";amountTolerance=" + amountTolerance
+                + ";dateToleranceDays=" + rules.getDateToleranceDays();
+    }
+
+    private static boolean shareDictionary(TransactionView a, int rowA, TransactionView b, int rowB) {
+        TextDictionary dictionary = a.dictionary(rowA);
+        return dictionary != null && dictionary.sharesCodes(b.dictionary(rowB));
+    }
+
+    private static boolean textMatches(int field, TransactionView a, int rowA, TransactionView b, int rowB,
+                                       boolean coded) {
+        if (coded && TextDictionary.isEncoded(field)) {
+            return a.code(rowA, field) == b.code(rowB, field);
+        }
+        long hash = a.fingerprint(rowA, field);
+        return hash == b.fingerprint(rowB, field) && (field == TRANSACTION_ID && TransactionKeys.isPacked(hash)
+                || sameText(a.text(rowA, field), b.text(rowB, field)));
+    }
+
+    private boolean amountMatches(TransactionView a, int rowA, TransactionView b, int rowB) {
+        long amountA = a.fingerprint(rowA, TRANSACTION_AMOUNT);
+        long amountB = b.fingerprint(rowB, TRANSACTION_AMOUNT);
+        return amountA == amountB || amountTolerance > 0 && Math.abs(amountA - amountB) <= amountTolerance;
+    }
+
+    /**
+     * @return the date bit of the match mask of the pair, or 0 when the dates do not agree at all
+     */
+    private int dateMatch(TransactionView a, int rowA, TransactionView b, int rowB) {
+        long apart = Math.abs(a.fingerprint(rowA, EPOCH_SECOND) - b.fingerprint(rowB, EPOCH_SECOND));
+        if (apart == 0) {
+            return TRANSACTION_DATE_MATCH;
+        }
+        if (a.fingerprint(rowA, EPOCH_DAY) == b.fingerprint(rowB, EPOCH_DAY)) {
+            return TRANSACTION_SAME_DAY_MATCH;
+        }
+        if (apart <= dateToleranceSeconds && apart % SECONDS_PER_DAY == 0) {
+            return TRANSACTION_DATE_TOLERANCE_MATCH;
+        }
+        return 0;
+    }
+
+    private static int[] weightPlanes(int[] weights) {
+        int maxWeight = 0;
+        for (int weight : weights) {
+            maxWeight |= weight;
+        }
+        int[] planes = new int[Integer.SIZE - Integer.numberOfLeadingZeros(maxWeight)];
+        for (int bit = 0; bit < weights.length; bit++) {
+            for (int plane = 0; plane < planes.length; plane++) {
+                if ((weights[bit] >> plane & 1) != 0) {
+                    planes[plane] |= 1 << bit;
+                }
+            }
+        }
+        return planes;
+    }
+
+    private static boolean sameText(CharSequence a, CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.length() != b.length()) {
+            return false;
+        }
+        for (int i = a.length() - 1; i >= 0; i--) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.nio.file.Path;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+
+/**
+ * {@link CandidateSearch} by sort-merge on amount and date.
+ * <p>
+ * The leftover records of both files are sorted by (amount, transaction date), with an {@link ExternalKeySorter} that
+ * spills sorted runs to disk beyond {@code sortBufferKeys} records, and both sorted sequences are then swept together.
+ * The sweep keeps a sliding window of the records of the second file with the same amount as the current record of the
+ * first file and a date within {@code windowSeconds} of it, and scores the current record against that window only.
+ * Windows larger than {@code maxBlockSize} are skipped, like oversized blocks of a {@link BlockingCandidateSearch}.
+ * <p>
+ * Sorting costs O(n log n) with sequential I/O only, and the sweep holds no more than a window in memory, which makes
+ * the cost predictable however the other fields are distributed.
+ */
+public class SortMergeCandidateSearch implements CandidateSearch {
+
+    private final int maxBlockSize;
+    private final long windowSeconds;
+    private final int sortBufferKeys;
+    private final Path spillDirectory;
+    private final MatchStatistics statistics = new MatchStatistics();
+    private final CandidatePairs pairs;
+
+    private long[] ringAmounts = new long[16];
+    private long[] ringSeconds = new long[16];
+    private int[] ringRows = new int[16];
+    private int windowStart;
+    private int windowSize;
+
+    /**
+     * @param scorer         the scorer pairs are scored with
+     * @param threshold      the similarity, as a percentage of the points left without the TransactionID, a pair
+     *                       has to exceed to match
+     * @param maxBlockSize   the largest window whose records are taken as candidates
+     * @param windowSeconds  the largest difference between the dates of a candidate pair
+     * @param sortBufferKeys the number of records sorted in memory before a run is spilled to disk
+     * @param spillDirectory the directory sort runs are spilled to
+     */
+    public SortMergeCandidateSearch(SimilarityScorer scorer, double threshold, int maxBlockSize, long windowSeconds,
+                                    int sortBufferKeys, Path spillDirectory) {
+        this.maxBlockSize = maxBlockSize;
+        this.windowSeconds = windowSeconds;
+        this.sortBufferKeys = sortBufferKeys;
+        this.spillDirectory = spillDirectory;
+        this.pairs = new CandidatePairs(scorer, threshold, statistics);
+    }
+
+    @Override
+    public int match(TransactionView one, boolean[] matchedOne, TransactionView two, boolean[] matchedTwo) {
+        try (ExternalKeySorter sorterOne = sort(one, matchedOne);
+             ExternalKeySorter sorterTwo = sort(two, matchedTwo)) {
+            ExternalKeySorter.KeyCursor left = sorterOne.sorted();
+            ExternalKeySorter.KeyCursor right = sorterTwo.sorted();
+            windowStart = 0;
+            windowSize = 0;
+            boolean rightPending = right.next();
+            while (left.next()) {
+                long amount = left.amount();
+                long second = left.epochSecond();
+                // take in the records up to the end of the window, in key order
+                while (rightPending && (right.amount() < amount
+                        || right.amount() == amount && right.epochSecond() <= second + windowSeconds)) {
+                    push(right.amount(), right.epochSecond(), right.row());
+                    rightPending = right.next();
+                }
+                // and drop the ones before its start
+                while (windowSize > 0 && (ringAmounts[windowStart] < amount
+                        || ringSeconds[windowStart] < second - windowSeconds)) {
+                    windowStart = windowStart + 1 & ringAmounts.length - 1;
+                    windowSize--;
+                }
+                if (windowSize > maxBlockSize) {
+                    continue;
+                }
+                for (int i = 0; i < windowSize; i++) {
+                    pairs.score(one, left.row(), two, ringRows[windowStart + i & ringRows.length - 1]);
+                }
+            }
+        }
+        return pairs.matchGreedily(matchedOne, matchedTwo);
+    }
+
+    @Override
+    public MatchStatistics statistics() {
+        return statistics;
+    }
+
+    private ExternalKeySorter sort(TransactionView view, boolean[] matched) {
+        ExternalKeySorter sorter = new ExternalKeySorter(sortBufferKeys, spillDirectory);
+        for (int row = 0; row < matched.length; row++) {
+            if (!matched[row]) {
+                sorter.add(view.fingerprint(row, TRANSACTION_AMOUNT), view.fingerprint(row, EPOCH_SECOND), row);
+            }
+        }
+        return sorter;
+    }
+
+    /**
+     * Appends a record to the window, a ring buffer whose capacity is a power of two.
+     */
+    private void push(long amount, long second, int row) {
+        if (windowSize == ringAmounts.length) {
+            ringAmounts = unwrap(ringAmounts);
+            ringSeconds = unwrap(ringSeconds);
+            ringRows = unwrap(ringRows);
+            windowStart = 0;
+        }
+        int end = windowStart + windowSize & ringAmounts.length - 1;
+        ringAmounts[end] = amount;
+        ringSeconds[end] = second;
+        ringRows[end] = row;
+        windowSize++;
+    }
+
+    private long[] unwrap(long[] ring) {
+        long[] grown = new long[ring.length << 1];
+        int head = ring.length - windowStart;
+        System.arraycopy(ring, windowStart, grown, 0, head);
+        System.arraycopy(ring, 0, grown, head, windowStart);
+        return grown;
+    }
+
+    private int[] unwrap(int[] ring) {
+        int[] grown = new int[ring.length << 1];
+        int head = ring.length - windowStart;
+        System.arraycopy(ring, windowStart, grown, 0, head);
+        System.arraycopy(ring, 0, grown, head, windowStart);
+        return grown;
+    }
+}
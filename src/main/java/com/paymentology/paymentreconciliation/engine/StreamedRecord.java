@@ -0,0 +1,20 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+/**
+ * A record of the streamed file, seen through its fingerprint (row 0 of the view). The record may live in a reused
+ * buffer, so it is only valid until the next record is read and has to be materialized to be kept.
+ */
+public interface StreamedRecord extends TransactionView {
+
+    /**
+     * @return the TransactionID of the record
+     */
+    CharSequence transactionId();
+
+    /**
+     * @return the record as a standalone {@link ReconciliationDto}
+     */
+    ReconciliationDto toDto();
+}
@@ -0,0 +1,188 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reconciles a stream of records against the {@link TransactionIndex} of the other file.
+ * <p>
+ * Only the indexed file is held in memory. A streamed record whose TransactionID is unknown to the index, or whose
+ * only candidate is already taken, is reported at once; so is a streamed record that equals the only indexed record
+ * of its TransactionID, when equal records clear the threshold, since no other pairing can do better. Any other
+ * streamed record that has candidates waits for the end of the stream, when each of those TransactionID groups is
+ * matched as a whole by a {@link GroupMatcher}, giving the same pairing as the in-memory engine.
+ * <p>
+ * Streamed records are scored through their fingerprint and only materialized when they are reported, or when they
+ * have to wait. The indexed rows matched so far are tracked by the reconciler, not the index, which it only reads.
+ * Unmatched records are reported with their position in their file, the index being built in file order.
+ */
+public class StreamingReconciler {
+
+    private final TransactionIndex index;
+    private final TextDictionary dictionary;
+    private final FileSide indexedSide;
+    private final ReconciliationSink sink;
+    private final SimilarityScorer scorer;
+    private final GroupMatcher matcher;
+    private final int minPoints;
+    // waiting records by the first indexed row of their TransactionID
+    private final Map<Integer, WaitingGroup> pending = new LinkedHashMap<>();
+    private final BitSet pendingHeads = new BitSet();
+    private final BitSet taken = new BitSet();
+    private final MatchStatistics statistics = new MatchStatistics();
+    private int streamedCount;
+
+    /**
+     * @param index       the index of the other file
+     * @param dictionary  the dictionary the streamed records are coded against: the one of the index, or an
+     *                    {@link TextDictionary#overlay() overlay} of it
+     * @param indexedSide the file the index was built from
+     * @param sink        the sink receiving the outcome of every record
+     * @param scorer      the scorer pairs are scored with
+     * @param threshold   the similarity, as a percentage, a pair has to exceed to match
+     */
+    public StreamingReconciler(TransactionIndex index, TextDictionary dictionary, FileSide indexedSide,
+                               ReconciliationSink sink, SimilarityScorer scorer, double threshold) {
+        this.index = index;
+        this.dictionary = dictionary;
+        this.indexedSide = indexedSide;
+        this.sink = sink;
+        this.scorer = scorer;
+        this.matcher = new GroupMatcher(scorer, threshold);
+        this.minPoints = scorer.minPointsAbove(threshold);
+    }
+
+    /**
+     * Matches one parsed record of the streamed file against the index.
+     *
+     * @param record the streamed record
+     */
+    public void accept(ReconciliationDto record) {
+        accept(TransactionFingerprint.of(record, dictionary));
+    }
+
+    /**
+     * Matches one record of the streamed file against the index.
+     *
+     * @param record the streamed record, only read during the call
+     */
+    public void accept(StreamedRecord record) {
+        int row = streamedCount++;
+        int head = index.first(record.transactionId());
+        if (head == -1) {
+            sink.unmatched(indexedSide.opposite(), row, record.toDto());
+            return;
+        }
+        if (pendingHeads.get(head)) {
+            pending.get(head).add(row, record.toDto());
+            return;
+        }
+        if (index.next(head) == -1) {
+            if (taken.get(head)) {
+                sink.unmatched(indexedSide.opposite(), row, record.toDto());
+                return;
+            }
+            // Only a perfect score settles the record here, so scoring stops at the first field that differs
+            int points = scorer.points(record, 0, index, head, scorer.perfectPoints());
+            statistics.scored(1);
+            if (points == scorer.perfectPoints() && points >= minPoints) {
+                statistics.matched(points);
+                taken.set(head);
+                report(record, head, points);
+                return;
+            }
+        }
+        WaitingGroup waiting = new WaitingGroup();
+        waiting.add(row, record.toDto());
+        pending.put(head, waiting);
+        pendingHeads.set(head);
+    }
+
+    /**
+     * Matches the records left waiting and reports the indexed records that were never matched. Must be called once
+     * the streamed file is exhausted.
+     */
+    public void finish() {
+        for (Map.Entry<Integer, WaitingGroup> group : pending.entrySet()) {
+            List<ReconciliationDto> records = group.getValue().records;
+            matcher.reset();
+            for (int i = 0; i < records.size(); i++) {
+                matcher.addLeft(i);
+            }
+            for (int row = group.getKey(); row != -1; row = index.next(row)) {
+                if (!taken.get(row)) {
+                    matcher.addRight(row);
+                }
+            }
+            matcher.match(new RecordTable(records, dictionary), index);
+
+            for (int i = 0; i < records.size(); i++) {
+                ReconciliationDto record = records.get(i);
+                int match = matcher.matchOf(i);
+                if (match == -1) {
+                    record.setSimilarityScore(scorer.similarity(matcher.bestPoints(i)));
+                    sink.unmatched(indexedSide.opposite(), group.getValue().rows[i], record);
+                } else {
+                    taken.set(match);
+                    report(record, match, matcher.bestPoints(i));
+                }
+            }
+        }
+        pending.clear();
+        pendingHeads.clear();
+        for (int row = taken.nextClearBit(0); row < index.size(); row = taken.nextClearBit(row + 1)) {
+            sink.unmatched(indexedSide, row, index.toDto(row));
+        }
+    }
+
+    /**
+     * @return the tally of the pairs scored so far, complete once {@link #finish()} returned
+     */
+    public MatchStatistics statistics() {
+        MatchStatistics total = new MatchStatistics();
+        total.add(statistics);
+        total.add(matcher.statistics());
+        return total;
+    }
+
+    private void report(StreamedRecord streamed, int indexedRow, int points) {
+        report(sink.requiresMatchedRecords() ? streamed.toDto() : null, indexedRow, points);
+    }
+
+    private void report(ReconciliationDto streamedRecord, int indexedRow, int points) {
+        if (!sink.requiresMatchedRecords()) {
+            sink.matched(null, null);
+            return;
+        }
+        streamedRecord.setSimilarityScore(scorer.similarity(points));
+        ReconciliationDto indexedRecord = index.toDto(indexedRow);
+        if (indexedSide == FileSide.FIRST) {
+            sink.matched(indexedRecord, streamedRecord);
+        } else {
+            sink.matched(streamedRecord, indexedRecord);
+        }
+    }
+
+    /**
+     * The streamed records of one TransactionID group waiting for the end of the stream, with their positions.
+     */
+    private static final class WaitingGroup {
+
+        private final List<ReconciliationDto> records = new ArrayList<>(2);
+        private int[] rows = new int[2];
+
+        void add(int row, ReconciliationDto record) {
+            if (records.size() == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[records.size()] = row;
+            records.add(record);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+
+/**
+ * Dictionary of the values of the repeated text columns of an upload, each given a dense int code.
+ * <p>
+ * TransactionType, TransactionDescription, TransactionNarrative and ProfileName take a handful of distinct values
+ * across a file ("DEDUCT", "Card Campaign", a set of merchant narratives). Both files of an upload are encoded against
+ * one dictionary, so every distinct value is held once as a {@code String}, records share it, and two records of the
+ * upload have the same value in such a field exactly when they have the same code: {@link SimilarityScorer} compares
+ * codes instead of hashes and text. Code {@value #NULL_CODE} stands for a missing value.
+ * <p>
+ * Encoding is thread-safe, so that the chunks of a file can be parsed in parallel. A value already in the dictionary
+ * is looked up without the lock, which is only taken to add a new one; an {@link Encoder} puts a small cache in front
+ * of the dictionary for a single parsing thread. Values are read back without the lock too: they live in a
+ * {@link Values} snapshot published through a volatile field, which is written again after every new value and
+ * replaced only once the values are copied into the grown arrays, so a thread that obtained a code, from the
+ * dictionary or from a thread that did, always reads its value and hash. A code is released into the table only after
+ * its value is published, and a grown table is published whole, so a lookup that finds a code reads its value.
+ * <p>
+ * A dictionary shared by work that runs concurrently and adds values of its own, such as the counterparts of a batch
+ * streamed against one reference, is {@link #overlay() overlaid} instead: the shared dictionary is frozen, and each
+ * overlay adds its new values after the codes of the frozen one, which it reads without any lock. Codes of a
+ * dictionary and of its overlays, but not of two overlays, can be compared, see {@link #sharesCodes(TextDictionary)}.
+ */
+public final class TextDictionary {
+
+    public static final int NULL_CODE = 0;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // The frozen dictionary this one overlays, or null
+    private final TextDictionary base;
+    // Code of the first value held by this dictionary rather than its base; values are stored from that code on
+    private final int firstCode;
+    private volatile Values values = new Values(INITIAL_CAPACITY);
+    // Open addressing table of codes by hash, 0 marking a free slot; written under the lock, looked up without it
+    private volatile int[] slots = new int[INITIAL_CAPACITY << 1];
+    private int size;
+    private boolean frozen;
+
+    public TextDictionary() {
+        this.base = null;
+        this.firstCode = NULL_CODE;
+        this.size = 1;
+    }
+
+    private TextDictionary(TextDictionary base) {
+        this.base = base;
+        this.firstCode = base.size();
+        this.size = firstCode;
+    }
+
+    /**
+     * @param field one of the text slot constants of {@link TransactionFingerprint}
+     * @return whether the field is encoded against the dictionary
+     */
+    public static boolean isEncoded(int field) {
+        return field == TRANSACTION_TYPE || field == TRANSACTION_DESCRIPTION || field == TRANSACTION_NARRATIVE
+                || field == PROFILE_NAME;
+    }
+
+    /**
+     * @param text a value, possibly {@code null}
+     * @return the code of the value, added to the dictionary when it is new
+     */
+    public int encode(CharSequence text) {
+        return text == null ? NULL_CODE : encode(text, TransactionFingerprint.hash(text));
+    }
+
+    /**
+     * @param text a value
+     * @param hash the {@link TransactionFingerprint#hash(CharSequence) fingerprint hash} of the value
+     * @return the code of the value, added to the dictionary when it is new
+     */
+    public int encode(CharSequence text, long hash) {
+        if (base != null) {
+            int code = base.slots[base.slot(text, hash)];
+            if (code != NULL_CODE) {
+                return code;
+            }
+        }
+        int code = find(text, hash);
+        return code != NULL_CODE ? code : add(text, hash);
+    }
+
+    /**
+     * @return the code of the value, or {@link #NULL_CODE} when it is not in the dictionary yet; read without the lock
+     */
+    private int find(CharSequence text, long hash) {
+        int[] table = slots;
+        int mask = table.length - 1;
+        int slot = (int) Hashing.mix(hash) & mask;
+        for (int code = (int) SLOTS.getAcquire(table, slot); code != NULL_CODE;
+             code = (int) SLOTS.getAcquire(table, slot)) {
+            // Read after the code, so that the snapshot holds its value
+            Values current = values;
+            int index = code - firstCode;
+            if (current.hashes[index] == hash && current.texts[index].contentEquals(text)) {
+                return code;
+            }
+            slot = slot + 1 & mask;
+        }
+        return NULL_CODE;
+    }
+
+    private synchronized int add(CharSequence text, long hash) {
+        if (frozen) {
+            throw new IllegalStateException("The dictionary is frozen");
+        }
+        int slot = slot(text, hash);
+        if (slots[slot] != NULL_CODE) {
+            return slots[slot];
+        }
+        Values current = values;
+        int index = size - firstCode;
+        if (index == current.texts.length) {
+            current = new Values(current, index << 1);
+        }
+        int code = size++;
+        current.texts[index] = text.toString();
+        current.hashes[index] = hash;
+        // Publishes the new value, and the grown arrays, to the threads reading without the lock, before its code
+        values = current;
+        SLOTS.setRelease(slots, slot, code);
+        if (size << 1 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * @param text a value, possibly {@code null}
+     * @return the instance of the value held by the dictionary, added when it is new
+     */
+    public String intern(CharSequence text) {
+        return decode(encode(text));
+    }
+
+    /**
+     * @param code a code given by the dictionary
+     * @return the value of the code, or {@code null} for {@link #NULL_CODE}
+     */
+    public String decode(int code) {
+        return code < firstCode ? base.decode(code) : values.texts[code - firstCode];
+    }
+
+    /**
+     * @param code a code given by the dictionary
+     * @return the fingerprint hash of the value of the code
+     */
+    public long hash(int code) {
+        return code < firstCode ? base.hash(code) : values.hashes[code - firstCode];
+    }
+
+    /**
+     * @return the number of distinct values, the missing one and those of the base included
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Freezes the dictionary and returns a new dictionary over it, for one of the tasks sharing it. The frozen
+     * dictionary can no longer be added to, and is read by its overlays without the lock.
+     *
+     * @return a dictionary holding the values of this one under the same codes, and adding new values of its own
+     */
+    public TextDictionary overlay() {
+        synchronized (this) {
+            frozen = true;
+        }
+        return new TextDictionary(this);
+    }
+
+    /**
+     * @param other a dictionary, possibly {@code null}
+     * @return whether a value has the same code in both dictionaries, so that codes can be compared instead of values
+     */
+    public boolean sharesCodes(TextDictionary other) {
+        return other == this || other != null && (other.base == this || base == other);
+    }
+
+    /**
+     * @return a new encoder, for use by a single thread
+     */
+    public Encoder encoder() {
+        return new Encoder();
+    }
+
+    /**
+     * @return the slot of the table holding the code of the value, or the free slot it would take; read under the lock
+     * or once frozen
+     */
+    private int slot(CharSequence text, long hash) {
+        Values current = values;
+        int[] table = slots;
+        int mask = table.length - 1;
+        int slot = (int) Hashing.mix(hash) & mask;
+        for (int code = table[slot]; code != NULL_CODE; code = table[slot]) {
+            int index = code - firstCode;
+            if (current.hashes[index] == hash && current.texts[index].contentEquals(text)) {
+                return slot;
+            }
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] hashes = values.hashes;
+        int[] grown = new int[slots.length << 1];
+        int mask = grown.length - 1;
+        for (int code = Math.max(firstCode, 1); code < size; code++) {
+            int slot = (int) Hashing.mix(hashes[code - firstCode]) & mask;
+            while (grown[slot] != NULL_CODE) {
+                slot = slot + 1 & mask;
+            }
+            grown[slot] = code;
+        }
+        slots = grown;
+    }
+
+    /**
+     * The values and hashes by code. Arrays are never shrunk or reused once replaced by grown ones.
+     */
+    private static final class Values {
+
+        private final String[] texts;
+        private final long[] hashes;
+
+        Values(int capacity) {
+            this.texts = new String[capacity];
+            this.hashes = new long[capacity];
+        }
+
+        Values(Values values, int capacity) {
+            this.texts = Arrays.copyOf(values.texts, capacity);
+            this.hashes = Arrays.copyOf(values.hashes, capacity);
+        }
+    }
+
+    /**
+     * Direct-mapped cache of the last codes a thread encoded, in front of the shared dictionary.
+     */
+    public final class Encoder {
+
+        private static final int CACHE_SIZE = 256;
+
+        private final long[] cachedHashes = new long[CACHE_SIZE];
+        private final int[] cachedCodes = new int[CACHE_SIZE];
+
+        private Encoder() {
+        }
+
+        /**
+         * @param text a value, possibly {@code null}
+         * @param hash the {@link TransactionFingerprint#hash(CharSequence) fingerprint hash} of the value
+         * @return the code of the value, added to the dictionary when it is new
+         */
+        public int encode(CharSequence text, long hash) {
+            if (text == null) {
+                return NULL_CODE;
+            }
+            int slot = (int) Hashing.mix(hash) & CACHE_SIZE - 1;
+            int code = cachedCodes[slot];
+            if (code != NULL_CODE && cachedHashes[slot] == hash && decode(code).contentEquals(text)) {
+                return code;
+            }
+            code = TextDictionary.this.encode(text, hash);
+            cachedHashes[slot] = hash;
+            cachedCodes[slot] = code;
+            return code;
+        }
+
+        /**
+         * @return the dictionary the encoder adds to
+         */
+        public TextDictionary dictionary() {
+            return TextDictionary.this;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+import java.time.ZoneOffset;
+
+/**
+ * Fingerprint of one record, computed once so that scoring a pair needs only integer compares. It is the form a
+ * streamed record is scored in; the records of a list are fingerprinted into the columns of a {@link RecordTable}
+ * instead, and a record never keeps its fingerprint.
+ * <p>
+ * Text fields are reduced to 64-bit hashes (the TransactionID to its {@link TransactionKeys packed key}), the amount
+ * is kept as is and the date becomes an epoch second and an epoch day. The fingerprint keeps a reference to its
+ * record to resolve hash collisions. A record parsed against a {@link TextDictionary} also keeps the codes of its
+ * encoded fields.
+ */
+public final class TransactionFingerprint implements StreamedRecord {
+
+    public static final int TRANSACTION_ID = 0;
+    public static final int TRANSACTION_TYPE = 1;
+    public static final int TRANSACTION_DESCRIPTION = 2;
+    public static final int TRANSACTION_NARRATIVE = 3;
+    public static final int WALLET_REFERENCE = 4;
+    public static final int PROFILE_NAME = 5;
+    public static final int TEXT_FIELDS = 6;
+
+    public static final int TRANSACTION_AMOUNT = 6;
+    public static final int EPOCH_SECOND = 7;
+    public static final int EPOCH_DAY = 8;
+    public static final int SLOTS = 9;
+
+    public static final long SECONDS_PER_DAY = 86_400;
+
+    private final long[] values = new long[SLOTS];
+    private final ReconciliationDto record;
+    private final TextDictionary dictionary;
+    private final int[] codes;
+
+    private TransactionFingerprint(ReconciliationDto record, TextDictionary dictionary) {
+        this.record = record;
+        this.dictionary = dictionary;
+        long epochSecond = record.getTransactionDate().toEpochSecond(ZoneOffset.UTC);
+        values[TRANSACTION_ID] = TransactionKeys.pack(record.getTransactionId());
+        values[TRANSACTION_TYPE] = hash(record.getTransactionType());
+        values[TRANSACTION_DESCRIPTION] = hash(record.getTransactionDescription());
+        values[TRANSACTION_NARRATIVE] = hash(record.getTransactionNarrative());
+        values[WALLET_REFERENCE] = hash(record.getWalletReference());
+        values[PROFILE_NAME] = hash(record.getProfileName());
+        values[TRANSACTION_AMOUNT] = record.getTransactionAmount();
+        values[EPOCH_SECOND] = epochSecond;
+        values[EPOCH_DAY] = epochDay(epochSecond);
+        if (dictionary == null) {
+            this.codes = null;
+            return;
+        }
+        this.codes = new int[TEXT_FIELDS];
+        for (int field = 0; field < TEXT_FIELDS; field++) {
+            if (TextDictionary.isEncoded(field)) {
+                String text = text(record, field);
+                codes[field] = text == null ? TextDictionary.NULL_CODE : dictionary.encode(text, values[field]);
+            }
+        }
+    }
+
+    /**
+     * @param record the record to fingerprint
+     * @return the fingerprint of the record
+     */
+    public static TransactionFingerprint of(ReconciliationDto record) {
+        return new TransactionFingerprint(record, null);
+    }
+
+    /**
+     * @param record     the record to fingerprint
+     * @param dictionary the dictionary the encoded fields of the record are coded against
+     * @return the fingerprint of the record
+     */
+    public static TransactionFingerprint of(ReconciliationDto record, TextDictionary dictionary) {
+        return new TransactionFingerprint(record, dictionary);
+    }
+
+    /**
+     * @param text the text of a field, possibly {@code null}
+     * @return the hash stored in a fingerprint for the text
+     */
+    public static long hash(CharSequence text) {
+        return text == null ? 0 : Hashing.hash64(text);
+    }
+
+    /**
+     * @param epochSecond a date as epoch second
+     * @return the epoch day of the date
+     */
+    public static long epochDay(long epochSecond) {
+        return Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+    }
+
+    /**
+     * @param record a record
+     * @param field  one of the text slot constants
+     * @return the text of the field on the record
+     */
+    public static String text(ReconciliationDto record, int field) {
+        return switch (field) {
+            case TRANSACTION_ID -> record.getTransactionId();
+            case TRANSACTION_TYPE -> record.getTransactionType();
+            case TRANSACTION_DESCRIPTION -> record.getTransactionDescription();
+            case TRANSACTION_NARRATIVE -> record.getTransactionNarrative();
+            case WALLET_REFERENCE -> record.getWalletReference();
+            case PROFILE_NAME -> record.getProfileName();
+            default -> throw new IllegalArgumentException("Not a text field: " + field);
+        };
+    }
+
+    @Override
+    public long fingerprint(int row, int slot) {
+        return values[slot];
+    }
+
+    @Override
+    public CharSequence text(int row, int field) {
+        return text(record, field);
+    }
+
+    @Override
+    public TextDictionary dictionary(int row) {
+        return dictionary;
+    }
+
+    @Override
+    public int code(int row, int field) {
+        if (codes == null) {
+            return StreamedRecord.super.code(row, field);
+        }
+        return codes[field];
+    }
+
+    @Override
+    public CharSequence transactionId() {
+        return record.getTransactionId();
+    }
+
+    @Override
+    public ReconciliationDto toDto() {
+        return record;
+    }
+}
@@ -0,0 +1,165 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+
+/**
+ * Index of the records of one file by TransactionID, consumed while the other file is streamed against it.
+ * <p>
+ * Records are not kept as objects: the TransactionIDs live in a {@link TransactionKeyTable} and every other field
+ * in a column indexed by row, with the date stored as epoch seconds and the file name once for the whole index.
+ * The repeated text fields are stored as their codes in a {@link TextDictionary}, which holds each distinct value and
+ * its hash once; the WalletReference, nearly unique per record, keeps its text and hash. The index is therefore a
+ * {@link TransactionView} candidates are scored against straight from the columns; a {@link ReconciliationDto} is
+ * only rebuilt for the records that are reported.
+ * <p>
+ * Once built, the index is only read: the rows a reconciliation matched are tracked by the reconciliation, so one index
+ * can be shared by reconciliations of several files running at the same time.
+ */
+public class TransactionIndex implements TransactionView {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Dictionary encoded fields, in the order of their codes in a row
+    private static final int[] ENCODED_FIELDS = {TRANSACTION_TYPE, TRANSACTION_DESCRIPTION, TRANSACTION_NARRATIVE,
+            PROFILE_NAME};
+
+    private final TransactionKeyTable keys = new TransactionKeyTable(INITIAL_CAPACITY);
+    private final TextDictionary dictionary;
+
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private long[] dates = new long[INITIAL_CAPACITY];
+    private int[] codes = new int[INITIAL_CAPACITY * ENCODED_FIELDS.length];
+    private long[] walletHashes = new long[INITIAL_CAPACITY];
+    private String[] walletReferences = new String[INITIAL_CAPACITY];
+    private String filename;
+
+    /**
+     * Creates an index with a dictionary of its own.
+     */
+    public TransactionIndex() {
+        this(new TextDictionary());
+    }
+
+    /**
+     * @param dictionary the dictionary of the upload, shared with the records scored against the index
+     */
+    public TransactionIndex(TextDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Adds a record to the index.
+     *
+     * @param record the record to add
+     */
+    public void add(ReconciliationDto record) {
+        int row = keys.add(record.getTransactionId());
+        if (row == amounts.length) {
+            grow();
+        }
+        amounts[row] = record.getTransactionAmount();
+        dates[row] = record.getTransactionDate().toEpochSecond(ZoneOffset.UTC);
+        for (int column = 0; column < ENCODED_FIELDS.length; column++) {
+            codes[row * ENCODED_FIELDS.length + column] =
+                    dictionary.encode(TransactionFingerprint.text(record, ENCODED_FIELDS[column]));
+        }
+        walletHashes[row] = TransactionFingerprint.hash(record.getWalletReference());
+        walletReferences[row] = record.getWalletReference();
+        filename = record.getFilename();
+    }
+
+    /**
+     * @param transactionId a TransactionID
+     * @return the first indexed row carrying the TransactionID, or -1 when there is none
+     */
+    public int first(CharSequence transactionId) {
+        return keys.first(transactionId);
+    }
+
+    /**
+     * @param row an indexed row
+     * @return the next row carrying the same TransactionID, or -1 when it is the last one
+     */
+    public int next(int row) {
+        return keys.next(row);
+    }
+
+    /**
+     * @return the number of records added to the index
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    @Override
+    public long fingerprint(int row, int slot) {
+        return switch (slot) {
+            case TRANSACTION_ID -> keys.key(row);
+            case TRANSACTION_AMOUNT -> amounts[row];
+            case EPOCH_SECOND -> dates[row];
+            case EPOCH_DAY -> TransactionFingerprint.epochDay(dates[row]);
+            case WALLET_REFERENCE -> walletHashes[row];
+            default -> dictionary.hash(code(row, slot));
+        };
+    }
+
+    @Override
+    public CharSequence text(int row, int field) {
+        return switch (field) {
+            case TRANSACTION_ID -> keys.transactionId(row);
+            case WALLET_REFERENCE -> walletReferences[row];
+            default -> dictionary.decode(code(row, field));
+        };
+    }
+
+    @Override
+    public TextDictionary dictionary(int row) {
+        return dictionary;
+    }
+
+    @Override
+    public int code(int row, int field) {
+        int base = row * ENCODED_FIELDS.length;
+        return switch (field) {
+            case TRANSACTION_TYPE -> codes[base];
+            case TRANSACTION_DESCRIPTION -> codes[base + 1];
+            case TRANSACTION_NARRATIVE -> codes[base + 2];
+            case PROFILE_NAME -> codes[base + 3];
+            default -> throw new IllegalArgumentException("Not an encoded field: " + field);
+        };
+    }
+
+    /**
+     * Rebuilds the record of a row.
+     *
+     * @param row an indexed row
+     * @return the record of the row
+     */
+    public ReconciliationDto toDto(int row) {
+        return ReconciliationDto.builder()
+                .transactionId(keys.transactionId(row))
+                .transactionType(dictionary.decode(code(row, TRANSACTION_TYPE)))
+                .transactionDescription(dictionary.decode(code(row, TRANSACTION_DESCRIPTION)))
+                .transactionNarrative(dictionary.decode(code(row, TRANSACTION_NARRATIVE)))
+                .transactionAmount(amounts[row])
+                .transactionDate(LocalDateTime.ofEpochSecond(dates[row], 0, ZoneOffset.UTC))
+                .profileName(dictionary.decode(code(row, PROFILE_NAME)))
+                .walletReference(walletReferences[row])
+                .filename(filename)
+                .build();
+    }
+
+    private void grow() {
+        int capacity = amounts.length << 1;
+        amounts = Arrays.copyOf(amounts, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        codes = Arrays.copyOf(codes, capacity * ENCODED_FIELDS.length);
+        walletHashes = Arrays.copyOf(walletHashes, capacity);
+        walletReferences = Arrays.copyOf(walletReferences, capacity);
+    }
+}
@@ -0,0 +1,177 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from TransactionID to the rows carrying it.
+ * <p>
+ * Rows are numbered from 0 in insertion order. Every distinct TransactionID takes one slot, probed linearly and keyed
+ * by its {@link TransactionKeys packed key}; the rows sharing it are chained in insertion order through a per-row
+ * {@code int} link. Nothing is boxed and no object is allocated per row, which keeps the table at a few dozen bytes
+ * per row.
+ */
+public class TransactionKeyTable {
+
+    private static final int NONE = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] slotKeys;
+    private int[] slotHeads;
+    private int[] slotTails;
+    private String[] slotIds;
+    private int mask;
+    private int keyCount;
+
+    private int[] next;
+    private int[] rowSlots;
+    private int size;
+
+    public TransactionKeyTable() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedRows the number of rows the table is sized for before it has to grow
+     */
+    public TransactionKeyTable(int expectedRows) {
+        int rows = Math.max(expectedRows, MIN_CAPACITY);
+        next = new int[rows];
+        rowSlots = new int[rows];
+        allocateSlots(Integer.highestOneBit(rows - 1) << 2);
+    }
+
+    /**
+     * Adds a row for the given TransactionID.
+     *
+     * @param transactionId the TransactionID of the row
+     * @return the number of the new row
+     */
+    public int add(String transactionId) {
+        if (keyCount * 2 >= slotKeys.length) {
+            rehash();
+        }
+        if (size == next.length) {
+            int capacity = size + (size >> 1);
+            next = Arrays.copyOf(next, capacity);
+            rowSlots = Arrays.copyOf(rowSlots, capacity);
+        }
+
+        long key = TransactionKeys.pack(transactionId);
+        int slot = findSlot(key, transactionId);
+        int row = size++;
+        next[row] = NONE;
+        rowSlots[row] = slot;
+        if (slotHeads[slot] == NONE) {
+            slotKeys[slot] = key;
+            slotHeads[slot] = row;
+            if (!TransactionKeys.isPacked(key)) {
+                slotIds[slot] = transactionId;
+            }
+            keyCount++;
+        } else {
+            next[slotTails[slot]] = row;
+        }
+        slotTails[slot] = row;
+        return row;
+    }
+
+    /**
+     * @param transactionId the TransactionID to look up
+     * @return the first row carrying the TransactionID, or -1 when there is none
+     */
+    public int first(CharSequence transactionId) {
+        return slotHeads[findSlot(TransactionKeys.pack(transactionId), transactionId)];
+    }
+
+    /**
+     * @param row a row of the table
+     * @return the next row carrying the same TransactionID, or -1 when it is the last one
+     */
+    public int next(int row) {
+        return next[row];
+    }
+
+    /**
+     * @param row a row of the table
+     * @return whether no earlier row carries the same TransactionID
+     */
+    public boolean isFirstOfKey(int row) {
+        return slotHeads[rowSlots[row]] == row;
+    }
+
+    /**
+     * @param row a row of the table
+     * @return the {@link TransactionKeys key} of the row's TransactionID
+     */
+    public long key(int row) {
+        return slotKeys[rowSlots[row]];
+    }
+
+    /**
+     * @param row a row of the table
+     * @return the TransactionID of the row
+     */
+    public String transactionId(int row) {
+        int slot = rowSlots[row];
+        long key = slotKeys[slot];
+        return TransactionKeys.isPacked(key) ? TransactionKeys.unpack(key) : slotIds[slot];
+    }
+
+    /**
+     * @return the number of rows in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of distinct TransactionIDs in the table
+     */
+    public int keyCount() {
+        return keyCount;
+    }
+
+    private int findSlot(long key, CharSequence transactionId) {
+        int slot = (int) Hashing.mix(key) & mask;
+        while (slotHeads[slot] != NONE
+                && (slotKeys[slot] != key
+                || !TransactionKeys.isPacked(key) && !slotIds[slot].contentEquals(transactionId))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void allocateSlots(int capacity) {
+        slotKeys = new long[capacity];
+        slotHeads = new int[capacity];
+        slotTails = new int[capacity];
+        slotIds = new String[capacity];
+        Arrays.fill(slotHeads, NONE);
+        mask = capacity - 1;
+    }
+
+    private void rehash() {
+        long[] oldKeys = slotKeys;
+        int[] oldHeads = slotHeads;
+        int[] oldTails = slotTails;
+        String[] oldIds = slotIds;
+        allocateSlots(oldKeys.length << 1);
+
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldHeads[oldSlot] == NONE) {
+                continue;
+            }
+            int slot = (int) Hashing.mix(oldKeys[oldSlot]) & mask;
+            while (slotHeads[slot] != NONE) {
+                slot = (slot + 1) & mask;
+            }
+            slotKeys[slot] = oldKeys[oldSlot];
+            slotHeads[slot] = oldHeads[oldSlot];
+            slotTails[slot] = oldTails[oldSlot];
+            slotIds[slot] = oldIds[oldSlot];
+            for (int row = slotHeads[slot]; row != NONE; row = next[row]) {
+                rowSlots[row] = slot;
+            }
+        }
+    }
+}
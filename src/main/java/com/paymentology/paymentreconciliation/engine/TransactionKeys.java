@@ -0,0 +1,67 @@
+package com.paymentology.paymentreconciliation.engine;
+
+/**
+ * Encodes TransactionIDs as {@code long} keys.
+ * <p>
+ * Numeric IDs of up to 17 digits, which covers the 16-digit IDs processors send, are packed losslessly: the value
+ * in the upper bits and the digit count, which preserves leading zeros, in the lower 5 bits. Such keys are never
+ * negative. Any other ID is replaced by its 64-bit hash with the sign bit set, and has to be compared by its text.
+ */
+public final class TransactionKeys {
+
+    private static final int MAX_PACKED_DIGITS = 17;
+    private static final int LENGTH_BITS = 5;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+    private TransactionKeys() {
+    }
+
+    /**
+     * @param transactionId the TransactionID to encode
+     * @return the key of the TransactionID
+     */
+    public static long pack(CharSequence transactionId) {
+        int length = transactionId.length();
+        if (length == 0 || length > MAX_PACKED_DIGITS) {
+            return hashed(transactionId);
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = transactionId.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return hashed(transactionId);
+            }
+            value = value * 10 + digit;
+        }
+        return value << LENGTH_BITS | length;
+    }
+
+    /**
+     * @param key a key returned by {@link #pack(CharSequence)}
+     * @return whether the key holds the whole TransactionID, rather than a hash of it
+     */
+    public static boolean isPacked(long key) {
+        return key >= 0;
+    }
+
+    /**
+     * Restores the TransactionID of a packed key.
+     *
+     * @param key a key for which {@link #isPacked(long)} holds
+     * @return the TransactionID, leading zeros included
+     */
+    public static String unpack(long key) {
+        int length = (int) (key & LENGTH_MASK);
+        char[] digits = new char[length];
+        long value = key >>> LENGTH_BITS;
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static long hashed(CharSequence transactionId) {
+        return Long.MIN_VALUE | Hashing.hash64(transactionId);
+    }
+}
@@ -0,0 +1,46 @@
+package com.paymentology.paymentreconciliation.engine;
+
+/**
+ * Read access to the fingerprints of a set of records, whatever their storage: a single parsed record, or a row of a
+ * columnar index. Lets {@link SimilarityScorer} compare records without materializing them.
+ * <p>
+ * Records parsed against a {@link TextDictionary} also expose the codes of their encoded fields, which the scorer
+ * compares instead of the hashes when both records of a pair come from the same dictionary.
+ */
+public interface TransactionView {
+
+    /**
+     * @param row  the row of the record
+     * @param slot one of the slot constants of {@link TransactionFingerprint}
+     * @return the fingerprint value of the record in the given slot
+     */
+    long fingerprint(int row, int slot);
+
+    /**
+     * Gives the text behind a hashed slot, used to rule out hash collisions.
+     *
+     * @param row   the row of the record
+     * @param field one of the text slot constants of {@link TransactionFingerprint}
+     * @return the text of the field
+     */
+    CharSequence text(int row, int field);
+
+    /**
+     * @param row the row of the record
+     * @return the dictionary the encoded fields of the record are coded against, or {@code null} when they are not
+     */
+    default TextDictionary dictionary(int row) {
+        return null;
+    }
+
+    /**
+     * @param row   the row of the record
+     * @param field a text slot constant of {@link TransactionFingerprint} for which
+     *              {@link TextDictionary#isEncoded(int)} holds
+     * @return the code of the field in the {@link #dictionary(int) dictionary} of the record
+     * @throws UnsupportedOperationException if the record has no dictionary
+     */
+    default int code(int row, int field) {
+        throw new UnsupportedOperationException("Record is not dictionary encoded");
+    }
+}
@@ -34,6 +34,22 @@ public class DefaultExceptionHandler extends ResponseEntityExceptionHandler {
     }
 
 
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<Object> notFoundException(NotFoundException e, WebRequest request) {
+        return handleError(HttpStatus.NOT_FOUND, e, request, e.getMessage());
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Object> tooManyRequestsException(TooManyRequestsException e, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        if (e.getRetryAfter() != null) {
+            long seconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        }
+        var apiError = new ApiErrorResponse(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        return handleExceptionInternal(e, apiError, headers, HttpStatus.TOO_MANY_REQUESTS, request);
+    }
+
     @ExceptionHandler({Exception.class})
     public ResponseEntity<Object> handleGenericException(Exception e, WebRequest request) {
         return handleError(HttpStatus.INTERNAL_SERVER_ERROR, e, request, null);
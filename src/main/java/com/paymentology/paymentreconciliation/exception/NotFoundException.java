@@ -0,0 +1,8 @@
+package com.paymentology.paymentreconciliation.exception;
+
+public class NotFoundException extends RuntimeException {
+
+    public NotFoundException(String msg) {
+        super(msg);
+    }
+}
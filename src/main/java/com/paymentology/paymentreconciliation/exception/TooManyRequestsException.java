@@ -0,0 +1,24 @@
+package com.paymentology.paymentreconciliation.exception;
+
+import java.time.Duration;
+
+public class TooManyRequestsException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public TooManyRequestsException(String msg) {
+        this(msg, null);
+    }
+
+    /**
+     * @param retryAfter how long the client should wait before retrying, sent as Retry-After, or {@code null}
+     */
+    public TooManyRequestsException(String msg, Duration retryAfter) {
+        super(msg);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,191 @@
+package com.paymentology.paymentreconciliation.export;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.ReconciliationSink;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.TimeStampSecTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes the outcome of a reconciliation as an Apache Arrow IPC file, with the {@link ResultColumn} schema.
+ * <p>
+ * The writer is the sink of the reconciliation: rows are buffered in Arrow vectors and written out as a ZSTD-compressed
+ * record batch every {@code batchRecords} rows, so memory is bounded by one batch whatever the size of the files, and
+ * a consumer maps the columns it scans straight from the file. {@link #finish(ReconciliationResponseDto)} writes the
+ * footer, holding the counts of the reconciliation as metadata; a file without it is incomplete. The writer has to be
+ * closed, finished or not, to release its vectors.
+ */
+public class ArrowResultWriter implements ReconciliationSink, AutoCloseable {
+
+    private final OutputStream output;
+    private final BufferAllocator allocator;
+    private final VectorSchemaRoot root;
+    private final ArrowFileWriter writer;
+    private final Map<String, String> metadata = new LinkedHashMap<>();
+    private final int batchRecords;
+    private final VarCharVector outcome;
+    private final VarCharVector file;
+    private final BigIntVector pairId;
+    private final VarCharVector transactionId;
+    private final VarCharVector profileName;
+    private final TimeStampSecTZVector transactionDate;
+    private final BigIntVector transactionAmount;
+    private final VarCharVector transactionNarrative;
+    private final VarCharVector transactionDescription;
+    private final VarCharVector transactionType;
+    private final VarCharVector walletReference;
+    private int rowCount;
+    private long pairCount;
+
+    /**
+     * @param output       the stream the file is written to; it is flushed but not closed
+     * @param batchRecords the number of rows of a record batch
+     */
+    public ArrowResultWriter(OutputStream output, int batchRecords) {
+        this.output = output;
+        this.batchRecords = Math.max(batchRecords, 1);
+        allocator = new RootAllocator();
+        root = VectorSchemaRoot.create(ResultColumn.schema(), allocator);
+        outcome = vector(ResultColumn.OUTCOME);
+        file = vector(ResultColumn.FILE);
+        pairId = vector(ResultColumn.PAIR_ID);
+        transactionId = vector(ResultColumn.TRANSACTION_ID);
+        profileName = vector(ResultColumn.PROFILE_NAME);
+        transactionDate = vector(ResultColumn.TRANSACTION_DATE);
+        transactionAmount = vector(ResultColumn.TRANSACTION_AMOUNT);
+        transactionNarrative = vector(ResultColumn.TRANSACTION_NARRATIVE);
+        transactionDescription = vector(ResultColumn.TRANSACTION_DESCRIPTION);
+        transactionType = vector(ResultColumn.TRANSACTION_TYPE);
+        walletReference = vector(ResultColumn.WALLET_REFERENCE);
+        root.allocateNew();
+        // The footer takes the metadata map as it is when the file ends, so the counts are added by finish
+        writer = new ArrowFileWriter(root, null, Channels.newChannel(output), metadata, IpcOption.DEFAULT,
+                CommonsCompressionFactory.INSTANCE, CompressionUtil.CodecType.ZSTD);
+        try {
+            writer.start();
+        } catch (IOException ex) {
+            close();
+            throw new UncheckedIOException("Export could not be written", ex);
+        }
+    }
+
+    @Override
+    public boolean requiresMatchedRecords() {
+        return true;
+    }
+
+    @Override
+    public void matched(ReconciliationDto first, ReconciliationDto second) {
+        long pair = pairCount++;
+        add("MATCHED", FileSide.FIRST, pair, first);
+        add("MATCHED", FileSide.SECOND, pair, second);
+    }
+
+    @Override
+    public void unmatched(FileSide side, ReconciliationDto record) {
+        add("UNMATCHED", side, -1, record);
+    }
+
+    /**
+     * Writes the last record batch and the footer, then flushes the stream.
+     *
+     * @param summary the counts and file names of the reconciliation, kept as metadata
+     */
+    public void finish(ReconciliationResponseDto summary) {
+        if (rowCount > 0) {
+            writeBatch();
+        }
+        metadata.put("first_file_name", summary.getFirstFileName());
+        metadata.put("first_file_total_record_count", String.valueOf(summary.getFirstFileTotalRecordCount()));
+        metadata.put("first_file_unmatched_record_count", String.valueOf(summary.getFirstFileUnmatchedRecordCount()));
+        metadata.put("second_file_name", summary.getSecondFileName());
+        metadata.put("second_file_total_record_count", String.valueOf(summary.getSecondFileTotalRecordCount()));
+        metadata.put("second_file_unmatched_record_count", String.valueOf(summary.getSecondFileUnmatchedRecordCount()));
+        metadata.put("matched_record_count", String.valueOf(summary.getMatchedRecordCount()));
+        metadata.values().removeIf(value -> value == null);
+        try {
+            writer.end();
+            output.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Export could not be written", ex);
+        }
+    }
+
+    /**
+     * Releases the vectors of the writer; the stream is left open.
+     */
+    @Override
+    public void close() {
+        // The Arrow writer is not closed: closing it would end an unfinished file with a footer and close the stream
+        try (allocator; root) {
+            // closed in reverse order: the vectors, then their allocator
+        }
+    }
+
+    private void add(String result, FileSide side, long pair, ReconciliationDto record) {
+        setText(outcome, result);
+        setText(file, side.name());
+        if (pair < 0) {
+            pairId.setNull(rowCount);
+        } else {
+            pairId.setSafe(rowCount, pair);
+        }
+        setText(transactionId, record.getTransactionId());
+        setText(profileName, record.getProfileName());
+        transactionDate.setSafe(rowCount, record.getTransactionDate().toEpochSecond(ZoneOffset.UTC));
+        transactionAmount.setSafe(rowCount, record.getTransactionAmount());
+        setText(transactionNarrative, record.getTransactionNarrative());
+        setText(transactionDescription, record.getTransactionDescription());
+        setText(transactionType, record.getTransactionType());
+        setText(walletReference, record.getWalletReference());
+        if (++rowCount == batchRecords) {
+            writeBatch();
+        }
+    }
+
+    private void setText(VarCharVector vector, String value) {
+        if (value == null) {
+            vector.setNull(rowCount);
+        } else {
+            vector.setSafe(rowCount, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeBatch() {
+        root.setRowCount(rowCount);
+        try {
+            writer.writeBatch();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Export could not be written", ex);
+        }
+        // The buffers are kept for the next batch
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.reset();
+        }
+        rowCount = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends FieldVector> T vector(ResultColumn column) {
+        return (T) root.getVector(column.ordinal());
+    }
+}
@@ -0,0 +1,71 @@
+package com.paymentology.paymentreconciliation.export;
+
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.util.Arrays;
+
+/**
+ * Schema of a columnar export: one row per record, matched records coming as two rows that share their pair id.
+ * <p>
+ * The schema is stable: columns are only ever appended, and every Arrow file carries its schema, so a reader can tell
+ * which columns it knows.
+ */
+public enum ResultColumn {
+
+    /**
+     * {@code MATCHED} or {@code UNMATCHED}.
+     */
+    OUTCOME("outcome", ArrowType.Utf8.INSTANCE, false),
+    /**
+     * The file the record was read from, {@code FIRST} or {@code SECOND}.
+     */
+    FILE("file", ArrowType.Utf8.INSTANCE, false),
+    /**
+     * Number of the matched pair, shared by both of its rows, counted from 0 in the order pairs were matched; null for
+     * unmatched records.
+     */
+    PAIR_ID("pair_id", new ArrowType.Int(64, true), true),
+    TRANSACTION_ID("transaction_id", ArrowType.Utf8.INSTANCE, true),
+    PROFILE_NAME("profile_name", ArrowType.Utf8.INSTANCE, true),
+    /**
+     * The CSV dates being read as UTC.
+     */
+    TRANSACTION_DATE("transaction_date", new ArrowType.Timestamp(TimeUnit.SECOND, "UTC"), false),
+    TRANSACTION_AMOUNT("transaction_amount", new ArrowType.Int(64, true), false),
+    TRANSACTION_NARRATIVE("transaction_narrative", ArrowType.Utf8.INSTANCE, true),
+    TRANSACTION_DESCRIPTION("transaction_description", ArrowType.Utf8.INSTANCE, true),
+    TRANSACTION_TYPE("transaction_type", ArrowType.Utf8.INSTANCE, true),
+    WALLET_REFERENCE("wallet_reference", ArrowType.Utf8.INSTANCE, true);
+
+    private static final Schema SCHEMA = new Schema(Arrays.stream(values()).map(ResultColumn::field).toList());
+
+    private final String columnName;
+    private final Field field;
+
+    ResultColumn(String columnName, ArrowType type, boolean nullable) {
+        this.columnName = columnName;
+        this.field = new Field(columnName, new FieldType(nullable, type, null), null);
+    }
+
+    /**
+     * @return the name of the column in the file
+     */
+    public String columnName() {
+        return columnName;
+    }
+
+    public Field field() {
+        return field;
+    }
+
+    /**
+     * @return the Arrow schema of an export, with every column in order
+     */
+    public static Schema schema() {
+        return SCHEMA;
+    }
+}
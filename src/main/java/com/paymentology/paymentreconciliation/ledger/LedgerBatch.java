@@ -0,0 +1,147 @@
+package com.paymentology.paymentreconciliation.ledger;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.GroupMatcher;
+import com.paymentology.paymentreconciliation.engine.MatchStatistics;
+import com.paymentology.paymentreconciliation.engine.RecordTable;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.engine.StreamedRecord;
+import com.paymentology.paymentreconciliation.engine.TextDictionary;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reconciles the records of one file against the open items of the other side of a {@link TransactionLedger}.
+ * <p>
+ * A record whose TransactionID has no open item on the other side is left open at once. The others wait for
+ * {@link #commit()}, when each TransactionID group is matched as a whole against its open items by a
+ * {@link GroupMatcher}, just like a streamed file against an index. Matched items are retired and the records left
+ * open are added to the ledger, so that they can be matched by a later file.
+ * <p>
+ * Nothing is written before the batch is committed, and a batch closed without being committed leaves the ledger
+ * unchanged. The ledger runs one batch at a time, so a batch must be closed by the thread that began it.
+ */
+public class LedgerBatch implements AutoCloseable {
+
+    private final TransactionLedger ledger;
+    @Getter
+    private final FileSide side;
+    private final SimilarityScorer scorer;
+    private final GroupMatcher matcher;
+    // Codes the groups of the batch, so that the records and the items of a group compare by code
+    private final TextDictionary dictionary = new TextDictionary();
+    @Getter
+    private final List<ReconciliationDto> openedRecords = new ArrayList<>();
+    // waiting records by the first ledger row of their TransactionID
+    private final Map<Integer, List<ReconciliationDto>> pending = new LinkedHashMap<>();
+    @Getter
+    private int recordCount;
+    @Getter
+    private int matchedCount;
+    private boolean closed;
+
+    LedgerBatch(TransactionLedger ledger, FileSide side, SimilarityScorer scorer, double threshold) {
+        this.ledger = ledger;
+        this.side = side;
+        this.scorer = scorer;
+        this.matcher = new GroupMatcher(scorer, threshold);
+    }
+
+    /**
+     * Adds one record of the file to the batch.
+     *
+     * @param record the record, only read during the call
+     */
+    public void accept(StreamedRecord record) {
+        recordCount++;
+        FileSide other = side.opposite();
+        int head = ledger.first(other, record.transactionId());
+        List<ReconciliationDto> waiting = head == -1 ? null : pending.get(head);
+        if (waiting != null) {
+            waiting.add(record.toDto());
+            return;
+        }
+        for (int row = head; row != -1; row = ledger.next(other, row)) {
+            if (ledger.isOpen(other, row)) {
+                waiting = new ArrayList<>(2);
+                waiting.add(record.toDto());
+                pending.put(head, waiting);
+                return;
+            }
+        }
+        openedRecords.add(record.toDto());
+    }
+
+    /**
+     * Matches the records left waiting against their open items and writes the outcome to the ledger. The counts and
+     * the records left open are final once this returns.
+     *
+     * @throws IOException if the ledger could not be read or written; it is then left unchanged
+     */
+    public void commit() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Ledger batch already closed");
+        }
+        FileSide other = side.opposite();
+        List<Integer> retired = new ArrayList<>();
+        for (Map.Entry<Integer, List<ReconciliationDto>> group : pending.entrySet()) {
+            List<ReconciliationDto> records = group.getValue();
+            List<Integer> rows = new ArrayList<>();
+            List<ReconciliationDto> items = new ArrayList<>();
+            for (int row = group.getKey(); row != -1; row = ledger.next(other, row)) {
+                if (ledger.isOpen(other, row)) {
+                    rows.add(row);
+                    items.add(ledger.read(other, row));
+                }
+            }
+
+            matcher.reset();
+            for (int i = 0; i < records.size(); i++) {
+                matcher.addLeft(i);
+            }
+            for (int j = 0; j < items.size(); j++) {
+                matcher.addRight(j);
+            }
+            matcher.match(new RecordTable(records, dictionary), new RecordTable(items, dictionary));
+
+            for (int i = 0; i < records.size(); i++) {
+                int match = matcher.matchOf(i);
+                if (match == -1) {
+                    ReconciliationDto record = records.get(i);
+                    record.setSimilarityScore(scorer.similarity(matcher.bestPoints(i)));
+                    openedRecords.add(record);
+                } else {
+                    retired.add(rows.get(match));
+                }
+            }
+        }
+        ledger.commit(side, openedRecords, retired.stream().mapToInt(Integer::intValue).toArray());
+        matchedCount = retired.size();
+        pending.clear();
+        close();
+    }
+
+    /**
+     * @return the candidate pairs scored and the points of the pairs matched so far
+     */
+    public MatchStatistics statistics() {
+        return matcher.statistics();
+    }
+
+    /**
+     * Ends the batch, discarding it unless it was committed, and lets the next one begin.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            ledger.release();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.paymentology.paymentreconciliation.ledger;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.RecordCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary layout of the open items kept in ledger segments.
+ * <p>
+ * An entry is its payload length as an {@code int} followed by the payload: the side of the item as one byte, then
+ * the item in the {@link RecordCodec row format} of the engine, which starts with the TransactionID so that an index
+ * can be rebuilt without decoding the rest.
+ */
+final class LedgerRecordCodec {
+
+    static final int LENGTH_BYTES = Integer.BYTES;
+
+    private LedgerRecordCodec() {
+    }
+
+    /**
+     * @param side   the side the item belongs to
+     * @param record the item
+     * @return the payload of the entry of the item
+     */
+    static byte[] encode(FileSide side, ReconciliationDto record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(side.ordinal());
+        RecordCodec.write(output, record);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param payload the payload of an entry
+     * @return the side the item belongs to
+     */
+    static FileSide side(byte[] payload) {
+        return FileSide.values()[payload[0]];
+    }
+
+    /**
+     * @param payload the payload of an entry
+     * @return the TransactionID of the item
+     */
+    static String transactionId(byte[] payload) throws IOException {
+        return RecordCodec.readTransactionId(input(payload));
+    }
+
+    /**
+     * @param payload the payload of an entry
+     * @return the item
+     */
+    static ReconciliationDto read(byte[] payload) throws IOException {
+        return RecordCodec.read(input(payload));
+    }
+
+    private static DataInputStream input(byte[] payload) {
+        return new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+    }
+}
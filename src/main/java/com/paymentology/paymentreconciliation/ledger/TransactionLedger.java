@@ -0,0 +1,505 @@
+package com.paymentology.paymentreconciliation.ledger;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.engine.TransactionKeyTable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent ledger of the records of both sides that are still open, that is not reconciled yet.
+ * <p>
+ * Open items are appended to segment files, see {@link LedgerRecordCodec}, and never rewritten in place. Each commit
+ * then appends one record to a commit log: the locations of the items it retired and the end of the segment once its
+ * items were added. That record is what makes the commit durable, all or nothing: when the ledger is opened, segment
+ * bytes beyond the end given by the last complete record are cut off, so a commit interrupted before its record was
+ * written leaves neither its items nor its retirements behind. Only a {@link TransactionKeyTable} of the open
+ * TransactionIDs and the location of every open item are held in memory, so a new file costs one index lookup per
+ * record plus reading the few items that share its TransactionIDs, whatever the size of the history.
+ * <p>
+ * The index is rebuilt from the segments when the ledger is opened. Whenever retired items outweigh open ones, on
+ * opening or after a commit, the open items are compacted into a fresh segment, the older ones deleted and the
+ * retired items dropped from the index.
+ * <p>
+ * Files are reconciled against the ledger one at a time through a {@link LedgerBatch}.
+ */
+@Slf4j
+public class TransactionLedger implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String COMMIT_LOG = "commit.log";
+    // segment, segment end and number of retired locations; the locations and a CRC32C of the record follow
+    private static final int COMMIT_HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private volatile OpenItems[] openItems = {new OpenItems(), new OpenItems()};
+    private FileChannel commitLog;
+    private int activeSegment;
+    // retired items still stored in the segments
+    private long deadCount;
+
+    private TransactionLedger(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the ledger kept in a directory, creating it when needed.
+     *
+     * @param directory    the directory of the ledger
+     * @param segmentBytes the size from which a new segment is started
+     * @return the opened ledger
+     */
+    public static TransactionLedger open(Path directory, long segmentBytes) throws IOException {
+        TransactionLedger ledger = new TransactionLedger(directory, segmentBytes);
+        try {
+            ledger.load();
+        } catch (IOException | RuntimeException ex) {
+            ledger.close();
+            throw ex;
+        }
+        return ledger;
+    }
+
+    /**
+     * Starts reconciling a file against the ledger. Batches run one at a time: this waits for the current batch to be
+     * closed.
+     *
+     * @param side      the side the records of the file belong to
+     * @param scorer    the scorer pairs are scored with
+     * @param threshold the similarity, as a percentage, a pair has to exceed to match
+     * @return the batch to feed the records of the file to
+     */
+    public LedgerBatch begin(FileSide side, SimilarityScorer scorer, double threshold) {
+        lock.lock();
+        try {
+            return new LedgerBatch(this, side, scorer, threshold);
+        } catch (RuntimeException | Error ex) {
+            // The batch that would have released the lock does not exist
+            lock.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param side a side
+     * @return the number of open items of the side
+     */
+    public int openCount(FileSide side) {
+        return openItems[side.ordinal()].openCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        List<FileChannel> channels = new ArrayList<>(segments.values());
+        channels.add(commitLog);
+        for (FileChannel channel : channels) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the first row of a TransactionID among the items of a side, retired or not, or -1
+     */
+    int first(FileSide side, CharSequence transactionId) {
+        return openItems[side.ordinal()].keys.first(transactionId);
+    }
+
+    /**
+     * @return the next row of the same TransactionID, or -1
+     */
+    int next(FileSide side, int row) {
+        return openItems[side.ordinal()].keys.next(row);
+    }
+
+    boolean isOpen(FileSide side, int row) {
+        return !openItems[side.ordinal()].retired.get(row);
+    }
+
+    /**
+     * Reads an open item back from its segment.
+     */
+    ReconciliationDto read(FileSide side, int row) throws IOException {
+        return LedgerRecordCodec.read(readPayload(openItems[side.ordinal()].locations[row]));
+    }
+
+    /**
+     * Writes the outcome of a batch: the records left open are appended to the active segment, then one commit record
+     * retires the items they matched. Nothing changes in memory before the commit record is durable, and a failed
+     * write is cut off again. The ledger is compacted afterwards when retired items outweigh open ones.
+     *
+     * @param side    the side of the batch
+     * @param opened  the records of the batch left open
+     * @param retired the rows of the opposite side the batch matched
+     */
+    void commit(FileSide side, List<ReconciliationDto> opened, int[] retired) throws IOException {
+        OpenItems candidates = openItems[side.opposite().ordinal()];
+        FileChannel segment = segments.get(activeSegment);
+        if (!opened.isEmpty() && segment.size() >= segmentBytes) {
+            segment = startSegment(activeSegment + 1);
+        }
+        long segmentStart = segment.size();
+        long logStart = commitLog.size();
+        try {
+            long[] locations = new long[opened.size()];
+            long offset = segmentStart;
+            for (int i = 0; i < opened.size(); i++) {
+                locations[i] = location(activeSegment, offset);
+                offset += append(segment, offset, LedgerRecordCodec.encode(side, opened.get(i)));
+            }
+            if (!opened.isEmpty()) {
+                segment.force(false);
+            }
+
+            long[] retiredLocations = new long[retired.length];
+            for (int i = 0; i < retired.length; i++) {
+                retiredLocations[i] = candidates.locations[retired[i]];
+            }
+            writeFully(commitLog, commitRecord(activeSegment, offset, retiredLocations), logStart);
+            commitLog.force(false);
+
+            OpenItems items = openItems[side.ordinal()];
+            for (int i = 0; i < opened.size(); i++) {
+                items.add(opened.get(i).getTransactionId(), locations[i]);
+            }
+            for (int row : retired) {
+                candidates.retire(row);
+            }
+            deadCount += retired.length;
+        } catch (IOException | RuntimeException ex) {
+            segment.truncate(segmentStart);
+            commitLog.truncate(logStart);
+            throw ex;
+        }
+
+        if (isCompactionDue()) {
+            try {
+                compact();
+            } catch (IOException ex) {
+                // the commit stands; the ledger is compacted again after a later commit or when it is opened
+                log.warn("Ledger compaction failed", ex);
+            }
+        }
+    }
+
+    void release() {
+        lock.unlock();
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        commitLog = FileChannel.open(directory.resolve(COMMIT_LOG), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CommitLog committed = readCommitLog();
+
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.valueOf(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(ids::add);
+        }
+        for (int id : ids) {
+            if (id < committed.base || id > committed.segment) {
+                // compacted away, or started by a commit that never completed
+                Files.delete(segmentPath(id));
+            } else {
+                if (id == committed.segment) {
+                    segment(id).truncate(committed.end);
+                }
+                deadCount += scan(id, committed.retired);
+            }
+        }
+        startSegment(committed.segment);
+
+        if (isCompactionDue()) {
+            compact();
+        }
+    }
+
+    private boolean isCompactionDue() {
+        return deadCount > 0 && deadCount >= openItems[0].openCount + openItems[1].openCount;
+    }
+
+    /**
+     * Indexes the live items of a segment.
+     *
+     * @return the number of retired items in the segment
+     */
+    private long scan(int id, long[] retired) throws IOException {
+        FileChannel channel = segment(id);
+        long dead = 0;
+        long offset = 0;
+        try (InputStream stream = Files.newInputStream(segmentPath(id));
+             DataInputStream input = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    payload = new byte[input.readInt()];
+                    input.readFully(payload);
+                } catch (EOFException ex) {
+                    // an entry cut short by a crash was never committed
+                    channel.truncate(offset);
+                    return dead;
+                }
+                long location = location(id, offset);
+                if (Arrays.binarySearch(retired, location) >= 0) {
+                    dead++;
+                } else {
+                    openItems[LedgerRecordCodec.side(payload).ordinal()]
+                            .add(LedgerRecordCodec.transactionId(payload), location);
+                }
+                offset += LedgerRecordCodec.LENGTH_BYTES + payload.length;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the open items into a new segment and indexes them afresh, leaving the retired ones out. The new
+     * segment becomes the base once a new commit log naming it has replaced the old one, which makes every older
+     * segment obsolete even if deleting them is interrupted.
+     */
+    private void compact() throws IOException {
+        int id = activeSegment + 1;
+        FileChannel target = startSegment(id);
+        OpenItems[] compacted = {new OpenItems(), new OpenItems()};
+        Path temporary = directory.resolve(COMMIT_LOG + ".tmp");
+        try {
+            long offset = 0;
+            for (OpenItems items : openItems) {
+                for (int row = 0; row < items.size; row++) {
+                    if (!items.retired.get(row)) {
+                        byte[] payload = readPayload(items.locations[row]);
+                        compacted[LedgerRecordCodec.side(payload).ordinal()]
+                                .add(LedgerRecordCodec.transactionId(payload), location(id, offset));
+                        offset += append(target, offset, payload);
+                    }
+                }
+            }
+            target.force(false);
+
+            try (FileChannel log = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(log, commitRecord(id, offset, new long[0]), 0);
+                log.force(false);
+            }
+            Files.move(temporary, directory.resolve(COMMIT_LOG), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            segments.remove(id).close();
+            Files.deleteIfExists(segmentPath(id));
+            Files.deleteIfExists(temporary);
+            activeSegment = id - 1;
+            throw ex;
+        }
+
+        FileChannel previousLog = commitLog;
+        commitLog = FileChannel.open(directory.resolve(COMMIT_LOG), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        previousLog.close();
+        openItems = compacted;
+        deadCount = 0;
+        for (int old : new ArrayList<>(segments.headMap(id).keySet())) {
+            segments.remove(old).close();
+            Files.delete(segmentPath(old));
+        }
+    }
+
+    /**
+     * Reads the commit log, cutting off a record left incomplete by a crash: that commit never happened.
+     */
+    private CommitLog readCommitLog() throws IOException {
+        long size = commitLog.size();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+        readFully(commitLog, buffer, 0);
+        buffer.flip();
+
+        CommitLog committed = new CommitLog();
+        List<long[]> retired = new ArrayList<>();
+        int retiredCount = 0;
+        while (buffer.remaining() >= COMMIT_HEADER_BYTES) {
+            int start = buffer.position();
+            int segment = buffer.getInt();
+            long end = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() < (long) count * Long.BYTES + Integer.BYTES) {
+                buffer.position(start);
+                break;
+            }
+            long[] locations = new long[count];
+            buffer.asLongBuffer().get(locations);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), start, buffer.position() - start);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                buffer.position(start);
+                break;
+            }
+            if (start == 0) {
+                committed.base = segment;
+            }
+            committed.segment = segment;
+            committed.end = end;
+            retired.add(locations);
+            retiredCount += count;
+        }
+        if (buffer.position() < size) {
+            commitLog.truncate(buffer.position());
+        }
+
+        committed.retired = new long[retiredCount];
+        int position = 0;
+        for (long[] locations : retired) {
+            System.arraycopy(locations, 0, committed.retired, position, locations.length);
+            position += locations.length;
+        }
+        Arrays.sort(committed.retired);
+        return committed;
+    }
+
+    private byte[] readPayload(long location) throws IOException {
+        FileChannel channel = segments.get((int) (location >>> OFFSET_BITS));
+        long offset = location & OFFSET_MASK;
+        ByteBuffer length = ByteBuffer.allocate(LedgerRecordCodec.LENGTH_BYTES);
+        readFully(channel, length, offset);
+        byte[] payload = new byte[length.getInt(0)];
+        readFully(channel, ByteBuffer.wrap(payload), offset + LedgerRecordCodec.LENGTH_BYTES);
+        return payload;
+    }
+
+    private FileChannel startSegment(int id) throws IOException {
+        FileChannel channel = segment(id);
+        activeSegment = id;
+        return channel;
+    }
+
+    private FileChannel segment(int id) throws IOException {
+        FileChannel channel = segments.get(id);
+        if (channel == null) {
+            channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            segments.put(id, channel);
+        }
+        return channel;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(SEGMENT_PREFIX + "%06d".formatted(id) + SEGMENT_SUFFIX);
+    }
+
+    private static long location(int segment, long offset) {
+        return (long) segment << OFFSET_BITS | offset;
+    }
+
+    private static ByteBuffer commitRecord(int segment, long end, long[] retired) {
+        ByteBuffer record = ByteBuffer.allocate(COMMIT_HEADER_BYTES + retired.length * Long.BYTES + Integer.BYTES);
+        record.putInt(segment).putLong(end).putInt(retired.length);
+        for (long location : retired) {
+            record.putLong(location);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, record.position());
+        return record.putInt((int) crc.getValue()).flip();
+    }
+
+    private static int append(FileChannel channel, long offset, byte[] payload) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(LedgerRecordCodec.LENGTH_BYTES + payload.length);
+        entry.putInt(payload.length).put(payload).flip();
+        writeFully(channel, entry, offset);
+        return entry.limit();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Ledger entry beyond the end of its segment");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * What the commit log says is committed: the base segment, the last segment written and its end, and the sorted
+     * locations of every retired item. An empty log commits an empty segment 0.
+     */
+    private static final class CommitLog {
+
+        private int base;
+        private int segment;
+        private long end;
+        private long[] retired;
+    }
+
+    /**
+     * The items of one side: their TransactionIDs, where each of them is stored and which of them are retired.
+     */
+    private static final class OpenItems {
+
+        private final TransactionKeyTable keys = new TransactionKeyTable();
+        private final BitSet retired = new BitSet();
+        private long[] locations = new long[16];
+        private int size;
+        private volatile int openCount;
+
+        void add(String transactionId, long location) {
+            int row = keys.add(transactionId);
+            if (row == locations.length) {
+                locations = Arrays.copyOf(locations, row + (row >> 1));
+            }
+            locations[row] = location;
+            size = row + 1;
+            openCount++;
+        }
+
+        void retire(int row) {
+            retired.set(row);
+            openCount--;
+        }
+    }
+}
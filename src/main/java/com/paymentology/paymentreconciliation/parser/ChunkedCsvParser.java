@@ -0,0 +1,138 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.TextDictionary;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses a whole CSV upload into records, in parallel.
+ * <p>
+ * A first pass tokenizes the content, without decoding anything, to cut it into chunks of about
+ * {@code chunkBytes} that end on record boundaries (quoted line breaks included) and to number their records. The
+ * chunks are then decoded in parallel on the common {@link java.util.concurrent.ForkJoinPool} through a
+ * {@link CsvRecordView} each, so the fingerprints come straight from the bytes. Records are returned in file
+ * order, and a record that cannot be parsed fails with the same message as the sequential parser, naming the file and
+ * the record number; when several do, the first one in the file is reported.
+ */
+public class ChunkedCsvParser {
+
+    private final int chunkBytes;
+
+    /**
+     * @param chunkBytes the size, in bytes, from which a chunk is closed at the next record boundary
+     */
+    public ChunkedCsvParser(int chunkBytes) {
+        this.chunkBytes = Math.max(chunkBytes, 1);
+    }
+
+    /**
+     * Parses CSV content whose first record is the header.
+     *
+     * @param content  the content, from position 0 to its limit
+     * @param filename the name of the file, reported in records and error messages
+     * @return the records of the file, in file order
+     * @throws BadRequestException if a record cannot be parsed
+     */
+    public ArrayList<ReconciliationDto> parse(ByteBuffer content, String filename) {
+        return parse(content, filename, new TextDictionary());
+    }
+
+    /**
+     * Parses CSV content whose first record is the header, encoding the repeated text fields against a dictionary.
+     *
+     * @param content    the content, from position 0 to its limit
+     * @param filename   the name of the file, reported in records and error messages
+     * @param dictionary the dictionary of the upload, shared by the chunks
+     * @return the records of the file, in file order
+     * @throws BadRequestException if a record cannot be parsed
+     */
+    public ArrayList<ReconciliationDto> parse(ByteBuffer content, String filename, TextDictionary dictionary) {
+        CsvTokenizer scanner = new CsvTokenizer(content, 0, content.limit());
+        List<Chunk> chunks = new ArrayList<>();
+        long firstRecord = 1;
+        long records = 0;
+        TransactionCsvLayout layout;
+        try {
+            if (!scanner.next()) {
+                return new ArrayList<>();
+            }
+            layout = TransactionCsvLayout.fromHeader(scanner);
+
+            int chunkStart = scanner.position();
+            while (scanner.next()) {
+                records++;
+                if (scanner.position() - chunkStart >= chunkBytes) {
+                    chunks.add(new Chunk(content, chunkStart, scanner.position(), firstRecord, layout, filename,
+                            dictionary));
+                    chunkStart = scanner.position();
+                    firstRecord += records;
+                    records = 0;
+                }
+            }
+            if (records > 0) {
+                chunks.add(new Chunk(content, chunkStart, scanner.position(), firstRecord, layout, filename,
+                        dictionary));
+            }
+        } catch (IOException ex) {
+            throw new BadRequestException(
+                    CsvRecordReader.PARSING_EXCEPTION.formatted(filename, firstRecord + records, ex.getMessage()));
+        }
+
+        ForkJoinTask.invokeAll(chunks);
+
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+            total += chunk.transactions.size();
+        }
+        ArrayList<ReconciliationDto> transactionList = new ArrayList<>(total);
+        for (Chunk chunk : chunks) {
+            transactionList.addAll(chunk.transactions);
+        }
+        return transactionList;
+    }
+
+    /**
+     * Decodes the records of one chunk, stopping at the first one that fails.
+     */
+    private static class Chunk extends RecursiveAction {
+
+        private final CsvTokenizer tokenizer;
+        private final CsvRecordView view;
+        private final long firstRecord;
+        private final String filename;
+        private final List<ReconciliationDto> transactions = new ArrayList<>();
+        private BadRequestException failure;
+
+        Chunk(ByteBuffer content, int start, int end, long firstRecord, TransactionCsvLayout layout,
+              String filename, TextDictionary dictionary) {
+            this.tokenizer = new CsvTokenizer(content, start, end);
+            this.view = new CsvRecordView(tokenizer, layout, filename, dictionary);
+            this.firstRecord = firstRecord;
+            this.filename = filename;
+        }
+
+        @Override
+        protected void compute() {
+            long recordNumber = firstRecord;
+            try {
+                for (; tokenizer.next(); recordNumber++) {
+                    view.load();
+                    transactions.add(view.toDto());
+                }
+            } catch (Exception ex) {
+                failure = new BadRequestException(
+                        CsvRecordReader.PARSING_EXCEPTION.formatted(filename, recordNumber, ex.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import com.paymentology.paymentreconciliation.engine.TextDictionary;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Reads CSV content record by record through a single reused {@link CsvRecordView}, typically over a memory-mapped
+ * file, so that records are fingerprinted from the bytes and only decoded when a consumer materializes them.
+ */
+public final class CsvRecordReader {
+
+    static final String PARSING_EXCEPTION = "Parsing file exception. File name: %s, record number: %s. Exception: %s";
+
+    private CsvRecordReader() {
+    }
+
+    /**
+     * Reads CSV content whose first record is the header.
+     *
+     * @param content  the content, from position 0 to its limit
+     * @param filename the name of the file, reported in records and error messages
+     * @param action   receives the view positioned on each record in file order; the view is only valid during the
+     *                 call
+     * @throws BadRequestException if a record cannot be parsed
+     */
+    public static void forEach(ByteBuffer content, String filename, Consumer<? super CsvRecordView> action) {
+        forEach(content, filename, new TextDictionary(), action);
+    }
+
+    /**
+     * Reads CSV content whose first record is the header, encoding the repeated text fields against a dictionary.
+     *
+     * @param content    the content, from position 0 to its limit
+     * @param filename   the name of the file, reported in records and error messages
+     * @param dictionary the dictionary of the upload
+     * @param action     receives the view positioned on each record in file order; the view is only valid during the
+     *                   call
+     * @throws BadRequestException if a record cannot be parsed
+     */
+    public static void forEach(ByteBuffer content, String filename, TextDictionary dictionary,
+                               Consumer<? super CsvRecordView> action) {
+        CsvTokenizer tokenizer = new CsvTokenizer(content, 0, content.limit());
+        long recordNumber = 0;
+        try {
+            if (!tokenizer.next()) {
+                return;
+            }
+            CsvRecordView view = new CsvRecordView(tokenizer, TransactionCsvLayout.fromHeader(tokenizer), filename,
+                    dictionary);
+            while (tokenizer.next()) {
+                recordNumber++;
+                try {
+                    view.load();
+                } catch (RuntimeException ex) {
+                    throw new BadRequestException(PARSING_EXCEPTION.formatted(filename, recordNumber, ex.getMessage()));
+                }
+                action.accept(view);
+            }
+        } catch (IOException ex) {
+            throw new BadRequestException(PARSING_EXCEPTION.formatted(filename, recordNumber + 1, ex.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.StreamedRecord;
+import com.paymentology.paymentreconciliation.engine.TextDictionary;
+import com.paymentology.paymentreconciliation.engine.TransactionFingerprint;
+import com.paymentology.paymentreconciliation.engine.TransactionKeys;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+
+/**
+ * Reusable view of the current record of a {@link CsvTokenizer}, fingerprinted straight from its bytes.
+ * <p>
+ * Plain ASCII fields are exposed as slices of the buffer rather than decoded, so a record that is matched and
+ * dropped never allocates a {@code String}; only escaped or non-ASCII fields are decoded when the record is loaded.
+ * The repeated text fields are encoded against the {@link TextDictionary} of the upload straight from the slices, so a
+ * value seen before costs a lookup, not a {@code String}. {@link #toDto()} materializes the record with the
+ * dictionary's strings; the fingerprint stays with the view.
+ */
+public class CsvRecordView implements StreamedRecord {
+
+    private final CsvTokenizer tokenizer;
+    private final TransactionCsvLayout layout;
+    private final String filename;
+    private final TextDictionary.Encoder encoder;
+    private final long[] values = new long[SLOTS];
+    private final CharSequence[] texts = new CharSequence[TEXT_FIELDS];
+    private final int[] codes = new int[TEXT_FIELDS];
+    private final Slice[] slices = new Slice[TEXT_FIELDS];
+
+    public CsvRecordView(CsvTokenizer tokenizer, TransactionCsvLayout layout, String filename) {
+        this(tokenizer, layout, filename, new TextDictionary());
+    }
+
+    /**
+     * @param dictionary the dictionary of the upload the repeated text fields are encoded against
+     */
+    public CsvRecordView(CsvTokenizer tokenizer, TransactionCsvLayout layout, String filename,
+                         TextDictionary dictionary) {
+        this.tokenizer = tokenizer;
+        this.layout = layout;
+        this.filename = filename;
+        this.encoder = dictionary.encoder();
+        for (int field = 0; field < TEXT_FIELDS; field++) {
+            slices[field] = new Slice();
+        }
+    }
+
+    /**
+     * Reads the current record of the tokenizer, in the column order of {@link ReconciliationDto}.
+     *
+     * @throws IllegalArgumentException if a column is missing, or the amount or the date cannot be parsed
+     */
+    public void load() {
+        int fields = tokenizer.fieldCount();
+        loadText(TRANSACTION_ID, layout.transactionId(fields));
+        loadText(TRANSACTION_TYPE, layout.transactionType(fields));
+        loadText(TRANSACTION_DESCRIPTION, layout.transactionDescription(fields));
+        loadText(TRANSACTION_NARRATIVE, layout.transactionNarrative(fields));
+        values[TRANSACTION_AMOUNT] = FieldParsers.parseAmount(tokenizer, layout.transactionAmount(fields));
+        long epochSecond = FieldParsers.parseEpochSecond(tokenizer, layout.transactionDate(fields));
+        values[EPOCH_SECOND] = epochSecond;
+        values[EPOCH_DAY] = TransactionFingerprint.epochDay(epochSecond);
+        loadText(PROFILE_NAME, layout.profileName(fields));
+        loadText(WALLET_REFERENCE, layout.walletReference(fields));
+        values[TRANSACTION_ID] = TransactionKeys.pack(texts[TRANSACTION_ID]);
+    }
+
+    private void loadText(int slot, int field) {
+        int start = tokenizer.start(field);
+        int end = tokenizer.end(field);
+        CharSequence text = isAscii(start, end) && !tokenizer.isEscaped(field)
+                ? slices[slot].of(start, end)
+                : tokenizer.text(field);
+        texts[slot] = text;
+        values[slot] = TransactionFingerprint.hash(text);
+        if (TextDictionary.isEncoded(slot)) {
+            codes[slot] = encoder.encode(text, values[slot]);
+        }
+    }
+
+    private boolean isAscii(int start, int end) {
+        for (int position = start; position < end; position++) {
+            if (tokenizer.byteAt(position) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long fingerprint(int row, int slot) {
+        return values[slot];
+    }
+
+    @Override
+    public CharSequence text(int row, int field) {
+        return texts[field];
+    }
+
+    @Override
+    public TextDictionary dictionary(int row) {
+        return encoder.dictionary();
+    }
+
+    @Override
+    public int code(int row, int field) {
+        return codes[field];
+    }
+
+    @Override
+    public CharSequence transactionId() {
+        return texts[TRANSACTION_ID];
+    }
+
+    @Override
+    public ReconciliationDto toDto() {
+        return ReconciliationDto.builder()
+                .transactionId(texts[TRANSACTION_ID].toString())
+                .transactionType(encoder.dictionary().decode(codes[TRANSACTION_TYPE]))
+                .transactionDescription(encoder.dictionary().decode(codes[TRANSACTION_DESCRIPTION]))
+                .transactionNarrative(encoder.dictionary().decode(codes[TRANSACTION_NARRATIVE]))
+                .transactionAmount(values[TRANSACTION_AMOUNT])
+                .transactionDate(LocalDateTime.ofEpochSecond(values[EPOCH_SECOND], 0, ZoneOffset.UTC))
+                .profileName(encoder.dictionary().decode(codes[PROFILE_NAME]))
+                .walletReference(texts[WALLET_REFERENCE].toString())
+                .filename(filename)
+                .build();
+    }
+
+    /**
+     * ASCII field of the current record, read in place.
+     */
+    private class Slice implements CharSequence {
+
+        private int start;
+        private int end;
+
+        Slice of(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) tokenizer.byteAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return tokenizer.decode(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return tokenizer.decode(start, end);
+        }
+    }
+}
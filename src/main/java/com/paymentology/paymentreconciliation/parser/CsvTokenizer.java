@@ -0,0 +1,194 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a region of bytes into CSV records, following the rules of {@code CSVFormat.DEFAULT}: comma delimiter,
+ * double-quote encapsulation with doubled quotes as escapes, {@code \n}, {@code \r} or {@code \r\n} line ends, and
+ * empty lines ignored.
+ * <p>
+ * The tokenizer works on the bytes directly and only records where every field starts and ends; text is decoded on
+ * demand by {@link #text(int)}. Reading a field never changes the position of the buffer, so several tokenizers may
+ * work on different regions of the same buffer concurrently.
+ */
+public class CsvTokenizer {
+
+    private static final byte DELIMITER = ',';
+    private static final byte QUOTE = '"';
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private final int arrayOffset;
+    private final int limit;
+    private int position;
+
+    // start and end of every field of the current record, the end negated for fields holding escaped quotes
+    private int[] bounds = new int[32];
+    private int fieldCount;
+    private byte[] scratch;
+
+    /**
+     * @param buffer the buffer to read
+     * @param from   the position of the first byte of the region
+     * @param to     the position after the last byte of the region
+     */
+    public CsvTokenizer(ByteBuffer buffer, int from, int to) {
+        this.buffer = buffer;
+        this.array = buffer.hasArray() ? buffer.array() : null;
+        this.arrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        this.position = from;
+        this.limit = to;
+    }
+
+    /**
+     * Moves to the next record, skipping empty lines.
+     *
+     * @return whether there was a record left in the region
+     * @throws IOException if an encapsulated field is malformed
+     */
+    public boolean next() throws IOException {
+        while (position < limit && (byteAt(position) == LF || byteAt(position) == CR)) {
+            position++;
+        }
+        if (position >= limit) {
+            return false;
+        }
+
+        fieldCount = 0;
+        while (true) {
+            byte terminator;
+            if (position < limit && byteAt(position) == QUOTE) {
+                terminator = readEncapsulatedField();
+            } else {
+                int start = position;
+                while (position < limit && !isSeparator(byteAt(position))) {
+                    position++;
+                }
+                addField(start, position, false);
+                terminator = position < limit ? byteAt(position++) : LF;
+            }
+            if (terminator != DELIMITER) {
+                if (terminator == CR && position < limit && byteAt(position) == LF) {
+                    position++;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the position right after the current record, where the next one starts
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * @return the number of fields of the current record
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return the position of the first byte of a field, quotes excluded
+     */
+    public int start(int field) {
+        return bounds[field << 1];
+    }
+
+    /**
+     * @return the position after the last byte of a field, quotes excluded
+     */
+    public int end(int field) {
+        return Math.abs(bounds[(field << 1) + 1]);
+    }
+
+    /**
+     * @return whether the field holds escaped quotes, so that its bytes are not its text
+     */
+    public boolean isEscaped(int field) {
+        return bounds[(field << 1) + 1] < 0;
+    }
+
+    /**
+     * @return the byte at an absolute position of the buffer
+     */
+    public byte byteAt(int index) {
+        return array != null ? array[arrayOffset + index] : buffer.get(index);
+    }
+
+    /**
+     * Decodes a field of the current record.
+     *
+     * @param field the index of the field
+     * @return the text of the field
+     */
+    public String text(int field) {
+        String text = decode(start(field), end(field));
+        return isEscaped(field) ? text.replace("\"\"", "\"") : text;
+    }
+
+    /**
+     * Decodes the UTF-8 bytes of a region of the buffer.
+     */
+    public String decode(int start, int end) {
+        if (array != null) {
+            return new String(array, arrayOffset + start, end - start, StandardCharsets.UTF_8);
+        }
+        if (scratch == null || scratch.length < end - start) {
+            scratch = new byte[Math.max(end - start, 64)];
+        }
+        buffer.get(start, scratch, 0, end - start);
+        return new String(scratch, 0, end - start, StandardCharsets.UTF_8);
+    }
+
+    private byte readEncapsulatedField() throws IOException {
+        int start = ++position;
+        boolean escaped = false;
+        while (true) {
+            if (position >= limit) {
+                throw new IOException("EOF reached before encapsulated token finished");
+            }
+            if (byteAt(position++) == QUOTE) {
+                if (position < limit && byteAt(position) == QUOTE) {
+                    escaped = true;
+                    position++;
+                } else {
+                    break;
+                }
+            }
+        }
+        addField(start, position - 1, escaped);
+
+        // Only whitespace may follow the closing quote
+        while (position < limit) {
+            byte b = byteAt(position++);
+            if (isSeparator(b)) {
+                return b;
+            }
+            if (!Character.isWhitespace((char) b)) {
+                throw new IOException("invalid char between encapsulated token and delimiter");
+            }
+        }
+        return LF;
+    }
+
+    private void addField(int start, int end, boolean escaped) {
+        if (fieldCount << 1 == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length << 1);
+        }
+        bounds[fieldCount << 1] = start;
+        bounds[(fieldCount << 1) + 1] = escaped ? -end : end;
+        fieldCount++;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == DELIMITER || b == LF || b == CR;
+    }
+}
@@ -0,0 +1,119 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parses the amount and date fields straight from the bytes of a {@link CsvTokenizer} record.
+ * <p>
+ * The fast paths only accept the fixed layouts the files use: an optionally signed integer of at most 18 digits,
+ * and a {@code yyyy-MM-dd HH:mm:ss} date with in-range values, read as a UTC epoch second. Anything else is decoded
+ * and handed to {@link Long#valueOf(String)} or {@link LocalDateTime#parse(CharSequence, DateTimeFormatter)}, so
+ * results and error messages are always those of the JDK parsers.
+ */
+public final class FieldParsers {
+
+    public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int MAX_FAST_DIGITS = 18;
+    private static final int DATE_LENGTH = 19;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long DAYS_0000_TO_1970 = 719_528;
+    private static final int[] DAYS_IN_MONTH = {0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private FieldParsers() {
+    }
+
+    /**
+     * @param tokenizer a tokenizer positioned on a record
+     * @param field     the index of the amount field
+     * @return the amount
+     * @throws NumberFormatException if the field is not a {@code long}
+     */
+    public static long parseAmount(CsvTokenizer tokenizer, int field) {
+        int start = tokenizer.start(field);
+        int end = tokenizer.end(field);
+        if (!tokenizer.isEscaped(field) && end > start) {
+            byte first = tokenizer.byteAt(start);
+            boolean negative = first == '-';
+            int digitsStart = negative || first == '+' ? start + 1 : start;
+            int digits = end - digitsStart;
+            if (digits > 0 && digits <= MAX_FAST_DIGITS) {
+                long value = 0;
+                int position = digitsStart;
+                for (; position < end; position++) {
+                    int digit = tokenizer.byteAt(position) - '0';
+                    if (digit < 0 || digit > 9) {
+                        break;
+                    }
+                    value = value * 10 + digit;
+                }
+                if (position == end) {
+                    return negative ? -value : value;
+                }
+            }
+        }
+        return Long.valueOf(tokenizer.text(field));
+    }
+
+    /**
+     * @param tokenizer a tokenizer positioned on a record
+     * @param field     the index of the date field
+     * @return the date as a UTC epoch second
+     * @throws java.time.format.DateTimeParseException if the field is not a {@code yyyy-MM-dd HH:mm:ss} date
+     */
+    public static long parseEpochSecond(CsvTokenizer tokenizer, int field) {
+        int start = tokenizer.start(field);
+        if (!tokenizer.isEscaped(field) && tokenizer.end(field) - start == DATE_LENGTH
+                && tokenizer.byteAt(start + 4) == '-' && tokenizer.byteAt(start + 7) == '-'
+                && tokenizer.byteAt(start + 10) == ' '
+                && tokenizer.byteAt(start + 13) == ':' && tokenizer.byteAt(start + 16) == ':') {
+            int year = number(tokenizer, start, 4);
+            int month = number(tokenizer, start + 5, 2);
+            int day = number(tokenizer, start + 8, 2);
+            int hour = number(tokenizer, start + 11, 2);
+            int minute = number(tokenizer, start + 14, 2);
+            int second = number(tokenizer, start + 17, 2);
+            if (year >= 1 && month >= 1 && month <= 12 && day >= 1
+                    && (day <= DAYS_IN_MONTH[month] || month == 2 && day == 29 && Year.isLeap(year))
+                    && hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59) {
+                return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+            }
+        }
+        return LocalDateTime.parse(tokenizer.text(field), DATE_FORMATTER).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Same computation as {@link java.time.LocalDate#toEpochDay()}, without building the date.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!Year.isLeap(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * @return the value of a run of decimal digits, or -1 when a byte is not a digit
+     */
+    private static int number(CsvTokenizer tokenizer, int start, int length) {
+        int value = 0;
+        for (int position = start; position < start + length; position++) {
+            int digit = tokenizer.byteAt(position) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
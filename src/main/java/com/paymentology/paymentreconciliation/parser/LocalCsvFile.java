@@ -0,0 +1,82 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A CSV file already on the server's disk, presented as an upload so that it goes through the same checks and
+ * engines. {@link MappedUpload} maps it in place instead of spooling it.
+ */
+public class LocalCsvFile implements MultipartFile {
+
+    private final Path path;
+    private final String originalFilename;
+
+    public LocalCsvFile(Path path) {
+        this(path, path.getFileName().toString());
+    }
+
+    /**
+     * @param path             the file
+     * @param originalFilename the name reported for the file, when it differs from the name on disk
+     */
+    public LocalCsvFile(Path path, String originalFilename) {
+        this.path = path;
+        this.originalFilename = originalFilename;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String getName() {
+        return path.getFileName().toString();
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/csv";
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
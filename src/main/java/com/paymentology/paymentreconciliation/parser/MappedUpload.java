@@ -0,0 +1,83 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mapping of a CSV upload, so that it is parsed from the page cache instead of being copied onto
+ * the heap.
+ * <p>
+ * A {@link LocalCsvFile} is mapped where it is. Any other upload is first moved into a temporary file with
+ * {@link MultipartFile#transferTo(java.io.File)}, which for a part the servlet container already spooled to disk is a
+ * rename rather than a copy; the temporary file is deleted on {@link #close()}. Since the upload is consumed, it
+ * cannot be read again once mapped. A mapping is addressed with {@code int} positions, so files of 2 GB or more
+ * cannot be mapped, see {@link #isMappable(MultipartFile)}.
+ */
+public final class MappedUpload implements Closeable {
+
+    private final ByteBuffer content;
+    private final Path temporaryFile;
+
+    private MappedUpload(ByteBuffer content, Path temporaryFile) {
+        this.content = content;
+        this.temporaryFile = temporaryFile;
+    }
+
+    /**
+     * @param file an upload
+     * @return whether the upload is small enough to be mapped
+     */
+    public static boolean isMappable(MultipartFile file) {
+        return file.getSize() <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param file the upload to map
+     * @return the mapping of the whole upload
+     * @throws IOException if the upload cannot be spooled or mapped
+     */
+    public static MappedUpload map(MultipartFile file) throws IOException {
+        if (file instanceof LocalCsvFile local) {
+            return map(local.getPath(), null);
+        }
+        Path temporaryFile = Files.createTempFile("reconciliation-", ".csv");
+        try {
+            file.transferTo(temporaryFile.toFile());
+            return map(temporaryFile, temporaryFile);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporaryFile);
+            throw ex;
+        }
+    }
+
+    private static MappedUpload map(Path path, Path temporaryFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to be mapped: " + size + " bytes");
+            }
+            return new MappedUpload(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), temporaryFile);
+        }
+    }
+
+    /**
+     * @return the mapped content, from position 0 to its limit
+     */
+    public ByteBuffer content() {
+        return content;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (temporaryFile != null) {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Positions of the transaction columns in a CSV file, resolved once from its header record.
+ * <p>
+ * Every accessor takes the number of fields of the record at hand and gives the index of its column. Lookups fail with the same messages as {@code CSVRecord.get(String)}, so that parse errors read the same whichever
+ * parser produced them.
+ */
+public class TransactionCsvLayout {
+
+    public static final String TRANSACTION_ID = "TransactionID";
+    public static final String TRANSACTION_TYPE = "TransactionType";
+    public static final String TRANSACTION_DESCRIPTION = "TransactionDescription";
+    public static final String TRANSACTION_NARRATIVE = "TransactionNarrative";
+    public static final String TRANSACTION_AMOUNT = "TransactionAmount";
+    public static final String TRANSACTION_DATE = "TransactionDate";
+    public static final String PROFILE_NAME = "ProfileName";
+    public static final String WALLET_REFERENCE = "WalletReference";
+
+    private final Map<String, Integer> columns;
+    private final int transactionId;
+    private final int transactionType;
+    private final int transactionDescription;
+    private final int transactionNarrative;
+    private final int transactionAmount;
+    private final int transactionDate;
+    private final int profileName;
+    private final int walletReference;
+
+    private TransactionCsvLayout(Map<String, Integer> columns) {
+        this.columns = columns;
+        this.transactionId = columns.getOrDefault(TRANSACTION_ID, -1);
+        this.transactionType = columns.getOrDefault(TRANSACTION_TYPE, -1);
+        this.transactionDescription = columns.getOrDefault(TRANSACTION_DESCRIPTION, -1);
+        this.transactionNarrative = columns.getOrDefault(TRANSACTION_NARRATIVE, -1);
+        this.transactionAmount = columns.getOrDefault(TRANSACTION_AMOUNT, -1);
+        this.transactionDate = columns.getOrDefault(TRANSACTION_DATE, -1);
+        this.profileName = columns.getOrDefault(PROFILE_NAME, -1);
+        this.walletReference = columns.getOrDefault(WALLET_REFERENCE, -1);
+    }
+
+    /**
+     * Resolves the columns from the header record of a file. As with {@code CSVFormat.DEFAULT}, a name given to
+     * several columns designates the last of them.
+     *
+     * @param tokenizer a tokenizer positioned on the header record
+     * @return the layout of the file
+     * @throws IllegalArgumentException if a header name is blank
+     */
+    public static TransactionCsvLayout fromHeader(CsvTokenizer tokenizer) {
+        List<String> names = new ArrayList<>(tokenizer.fieldCount());
+        for (int field = 0; field < tokenizer.fieldCount(); field++) {
+            names.add(tokenizer.text(field));
+        }
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (int column = 0; column < names.size(); column++) {
+            if (names.get(column).trim().isEmpty()) {
+                throw new IllegalArgumentException("A header name is missing in " + Arrays.toString(names.toArray()));
+            }
+            columns.put(names.get(column), column);
+        }
+        return new TransactionCsvLayout(columns);
+    }
+
+    /**
+     * @return a layout without any column, for a file without header
+     */
+    public static TransactionCsvLayout empty() {
+        return new TransactionCsvLayout(Map.of());
+    }
+
+    public int transactionId(int fieldCount) {
+        return field(transactionId, TRANSACTION_ID, fieldCount);
+    }
+
+    public int transactionType(int fieldCount) {
+        return field(transactionType, TRANSACTION_TYPE, fieldCount);
+    }
+
+    public int transactionDescription(int fieldCount) {
+        return field(transactionDescription, TRANSACTION_DESCRIPTION, fieldCount);
+    }
+
+    public int transactionNarrative(int fieldCount) {
+        return field(transactionNarrative, TRANSACTION_NARRATIVE, fieldCount);
+    }
+
+    public int transactionAmount(int fieldCount) {
+        return field(transactionAmount, TRANSACTION_AMOUNT, fieldCount);
+    }
+
+    public int transactionDate(int fieldCount) {
+        return field(transactionDate, TRANSACTION_DATE, fieldCount);
+    }
+
+    public int profileName(int fieldCount) {
+        return field(profileName, PROFILE_NAME, fieldCount);
+    }
+
+    public int walletReference(int fieldCount) {
+        return field(walletReference, WALLET_REFERENCE, fieldCount);
+    }
+
+    /**
+     * Gives the field index of a column within a record.
+     *
+     * @param column     the position of the column in the header, or -1 when the header lacks it
+     * @param name       the name of the column
+     * @param fieldCount the number of fields of the record
+     * @return the index of the column's field
+     * @throws IllegalArgumentException if the file has no such column, or the record is too short to hold it
+     */
+    private int field(int column, String name, int fieldCount) {
+        if (column < 0) {
+            throw new IllegalArgumentException(String.format("Mapping for %s not found, expected one of %s",
+                    name, columns.keySet()));
+        }
+        if (column >= fieldCount) {
+            throw new IllegalArgumentException(String.format(
+                    "Index for header '%s' is %d but CSVRecord only has %d values!", name, column, fieldCount));
+        }
+        return column;
+    }
+}
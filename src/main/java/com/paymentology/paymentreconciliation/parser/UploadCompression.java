@@ -0,0 +1,95 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compression of a CSV upload, told by the magic bytes it starts with rather than by its name.
+ * <p>
+ * A compressed upload is decompressed on the fly while it is parsed, so it is never inflated to disk or held whole in
+ * memory; the price is that it can neither be memory-mapped nor split into chunks, and is parsed sequentially.
+ */
+public enum UploadCompression {
+
+    NONE(new byte[0]),
+    GZIP(new byte[]{0x1f, (byte) 0x8b}),
+    ZSTD(new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd});
+
+    private static final String[] CSV_EXTENSIONS = {".csv", ".csv.gz", ".csv.zst"};
+    private static final int MAGIC_BYTES = 4;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final byte[] magic;
+
+    UploadCompression(byte[] magic) {
+        this.magic = magic;
+    }
+
+    /**
+     * @param filename the name of an upload, possibly {@code null}
+     * @return whether the name is that of a CSV file, plain or compressed
+     */
+    public static boolean isCsvFileName(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        for (String extension : CSV_EXTENSIONS) {
+            if (filename.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param file an upload
+     * @return the compression of the upload
+     * @throws IOException if the upload cannot be read
+     */
+    public static UploadCompression of(MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            return of(input.readNBytes(MAGIC_BYTES));
+        }
+    }
+
+    /**
+     * Opens an upload, decompressed when it is compressed.
+     *
+     * @param file an upload
+     * @return the CSV content of the upload
+     * @throws IOException if the upload cannot be read or is not valid gzip or zstd data
+     */
+    public static InputStream open(MultipartFile file) throws IOException {
+        InputStream input = new BufferedInputStream(file.getInputStream(), BUFFER_BYTES);
+        try {
+            input.mark(MAGIC_BYTES);
+            UploadCompression compression = of(input.readNBytes(MAGIC_BYTES));
+            input.reset();
+            return switch (compression) {
+                case NONE -> input;
+                case GZIP -> new GZIPInputStream(input, BUFFER_BYTES);
+                case ZSTD -> new BufferedInputStream(new ZstdInputStream(input), BUFFER_BYTES);
+            };
+        } catch (IOException | RuntimeException ex) {
+            input.close();
+            throw ex;
+        }
+    }
+
+    private static UploadCompression of(byte[] header) {
+        for (UploadCompression compression : values()) {
+            if (compression != NONE && header.length >= compression.magic.length
+                    && Arrays.equals(compression.magic, 0, compression.magic.length,
+                    header, 0, compression.magic.length)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+}
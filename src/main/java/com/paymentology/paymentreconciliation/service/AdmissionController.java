@@ -0,0 +1,164 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admits reconciliations against a global budget of heap and of concurrent reconciliations, so that a burst of large
+ * uploads is queued or turned away instead of exhausting the heap together.
+ * <p>
+ * Every request declares the heap it is expected to take, estimated from the size of its files. A request runs once
+ * both its memory and a concurrency slot are free; until then it waits in a first-come, first-served queue, so a large
+ * request is not starved by smaller ones behind it. When the queue is full, or a request waited longer than the
+ * configured maximum or was interrupted while waiting, it is rejected with a {@link TooManyRequestsException} carrying
+ * a Retry-After delay. A request larger than the whole budget is admitted alone rather than never.
+ */
+@Component
+public class AdmissionController implements MeterBinder {
+
+    private final ReconciliationProperties.Admission config;
+    private final long memoryBudget;
+    private final int maxConcurrent;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private long memoryInUse;
+    private int running;
+
+    public AdmissionController(ReconciliationProperties properties) {
+        this.config = properties.getAdmission();
+        this.memoryBudget = config.getMemoryBudgetBytes() > 0 ? config.getMemoryBudgetBytes()
+                : Runtime.getRuntime().maxMemory() / 2;
+        this.maxConcurrent = config.getMaxConcurrentCount();
+    }
+
+    /**
+     * Runs a request once the budget admits it.
+     *
+     * @param memoryBytes the heap the request is expected to take
+     * @param work        the request
+     * @return the result of the work
+     * @throws TooManyRequestsException if the queue is full, or the request waited too long or was interrupted
+     */
+    public <T> T admit(long memoryBytes, Supplier<T> work) {
+        if (!config.isEnabled()) {
+            return work.get();
+        }
+        long cost = Math.min(Math.max(memoryBytes, 0), memoryBudget);
+        acquire(cost);
+        try {
+            return work.get();
+        } finally {
+            release(cost);
+        }
+    }
+
+    /**
+     * @return the number of requests waiting to be admitted
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the heap, in bytes, claimed by the requests running
+     */
+    public long getMemoryInUse() {
+        lock.lock();
+        try {
+            return memoryInUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("reconciliation.admission.queue", this, AdmissionController::getQueueDepth).register(registry);
+        Gauge.builder("reconciliation.admission.memory", this, AdmissionController::getMemoryInUse)
+                .baseUnit("bytes").register(registry);
+        FunctionCounter.builder("reconciliation.admission.rejected", rejectedCount, AtomicLong::get)
+                .register(registry);
+    }
+
+    private void acquire(long cost) {
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && fits(cost)) {
+                take(cost);
+                return;
+            }
+            if (waiting.size() >= config.getQueueCapacity()) {
+                throw reject("Too many reconciliations waiting. Please retry later.");
+            }
+            Object ticket = new Object();
+            waiting.addLast(ticket);
+            long remaining = config.getMaxWait().toNanos();
+            try {
+                while (waiting.peekFirst() != ticket || !fits(cost)) {
+                    if (remaining <= 0) {
+                        throw reject("Reconciliation capacity is exhausted. Please retry later.");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                take(cost);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                TooManyRequestsException rejection =
+                        reject("Reconciliation was interrupted while waiting for capacity. Please retry later.");
+                rejection.initCause(ex);
+                throw rejection;
+            } finally {
+                waiting.remove(ticket);
+                // The next request in line may fit, or the head may have left without taking anything
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long cost) {
+        lock.lock();
+        try {
+            memoryInUse -= cost;
+            running--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(long cost) {
+        return running < maxConcurrent && (running == 0 || memoryInUse + cost <= memoryBudget);
+    }
+
+    private void take(long cost) {
+        memoryInUse += cost;
+        running++;
+    }
+
+    private TooManyRequestsException reject(String message) {
+        rejectedCount.incrementAndGet();
+        return new TooManyRequestsException(message, config.getRetryAfter());
+    }
+}
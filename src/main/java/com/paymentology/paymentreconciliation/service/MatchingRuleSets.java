@@ -0,0 +1,56 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The configured matching rule sets, each compiled into a {@link SimilarityScorer} once at startup, so that picking a
+ * rule set per request costs a map lookup and the scoring loop is the same whatever the rules. A rule set that does
+ * not compile fails the startup.
+ */
+@Component
+public class MatchingRuleSets {
+
+    private final SimilarityScorer defaultScorer;
+    private final Map<String, SimilarityScorer> scorers = new HashMap<>();
+
+    public MatchingRuleSets(ReconciliationProperties properties) {
+        ReconciliationProperties.Matching matching = properties.getMatching();
+        this.defaultScorer = SimilarityScorer.compile(matching.getRules().toMatchingRules());
+        matching.getRuleSets().forEach((name, rules) -> {
+            try {
+                scorers.put(name, SimilarityScorer.compile(rules.toMatchingRules()));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid matching rule set " + name + ": " + ex.getMessage(), ex);
+            }
+        });
+    }
+
+    /**
+     * @return the scorer of the default rule set
+     */
+    public SimilarityScorer defaultScorer() {
+        return defaultScorer;
+    }
+
+    /**
+     * @param name the name of a rule set, or {@code null} for the default one
+     * @return the scorer of the rule set
+     * @throws BadRequestException if no rule set has the name
+     */
+    public SimilarityScorer get(String name) {
+        if (name == null || name.isBlank()) {
+            return defaultScorer;
+        }
+        SimilarityScorer scorer = scorers.get(name);
+        if (scorer == null) {
+            throw new BadRequestException("Unknown matching rule set: " + name);
+        }
+        return scorer;
+    }
+}
@@ -0,0 +1,94 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import com.paymentology.paymentreconciliation.parser.LocalCsvFile;
+import com.paymentology.paymentreconciliation.parser.MappedUpload;
+import com.paymentology.paymentreconciliation.parser.UploadCompression;
+import lombok.Getter;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An upload together with what planning its reconciliation needs to know: its compression and the estimated size of
+ * its CSV content. Both are probed once, when the request comes in, so that admission, the choice of engine and the
+ * parsers never reopen the upload to tell them again.
+ * <p>
+ * Mapping an upload other than a {@link LocalCsvFile} consumes it, see {@link MappedUpload}, so any read after that is
+ * refused rather than left to find the upload moved away.
+ */
+@Getter
+final class ProbedUpload {
+
+    private final MultipartFile file;
+    private final UploadCompression compression;
+    private final long contentSize;
+    private boolean mapped;
+
+    private ProbedUpload(MultipartFile file, UploadCompression compression, long contentSize) {
+        this.file = file;
+        this.compression = compression;
+        this.contentSize = contentSize;
+    }
+
+    /**
+     * @param file             an upload
+     * @param compressionRatio how many times its compressed size the CSV content of a compressed upload is taken to be
+     * @return the probed upload
+     * @throws BadRequestException if the upload cannot be read
+     */
+    static ProbedUpload probe(MultipartFile file, int compressionRatio) {
+        UploadCompression compression;
+        try {
+            compression = UploadCompression.of(file);
+        } catch (IOException ex) {
+            throw new BadRequestException("File upload exception" + ex.getMessage());
+        }
+        long contentSize = compression == UploadCompression.NONE ? file.getSize()
+                : file.getSize() * compressionRatio;
+        return new ProbedUpload(file, compression, contentSize);
+    }
+
+    boolean isCompressed() {
+        return compression != UploadCompression.NONE;
+    }
+
+    String getOriginalFilename() {
+        return file.getOriginalFilename();
+    }
+
+    long getSize() {
+        return file.getSize();
+    }
+
+    byte[] getBytes() throws IOException {
+        checkNotMapped();
+        return file.getBytes();
+    }
+
+    /**
+     * @return the CSV content of the upload, decompressed when it is compressed
+     * @throws IOException if the upload cannot be read
+     */
+    InputStream open() throws IOException {
+        checkNotMapped();
+        return UploadCompression.open(file);
+    }
+
+    /**
+     * @return the mapping of the whole upload, which can no longer be read otherwise unless it is a local file
+     * @throws IOException if the upload cannot be spooled or mapped
+     */
+    MappedUpload map() throws IOException {
+        checkNotMapped();
+        mapped = !(file instanceof LocalCsvFile);
+        return MappedUpload.map(file);
+    }
+
+    private void checkNotMapped() {
+        if (mapped) {
+            throw new IllegalStateException("Upload " + file.getOriginalFilename() + " was consumed by its mapping");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs CPU-bound reconciliation work.
+ * <p>
+ * With virtual threads enabled ({@code spring.threads.virtual.enabled}), the work is offloaded to a fixed pool of platform threads and the calling virtual
+ * thread waits for it, which costs no carrier thread. This keeps parsing and matching from monopolising the carriers
+ * that serve I/O, and bounds how many reconciliations compete for the CPU: once the pool's queue is full, further work
+ * is rejected. Without virtual threads, work runs on the calling thread as before.
+ */
+@Component
+public class ReconciliationExecutor {
+
+    private final ThreadPoolExecutor computePool;
+
+    private final Duration retryAfter;
+
+    public ReconciliationExecutor(ReconciliationProperties properties, Environment environment) {
+        this.retryAfter = properties.getAdmission().getRetryAfter();
+        ReconciliationProperties.Execution execution = properties.getExecution();
+        if (!Threading.VIRTUAL.isActive(environment)) {
+            this.computePool = null;
+            return;
+        }
+        int threads = execution.getComputeThreadCount();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.computePool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(execution.getComputeQueueCapacity(), 1)),
+                runnable -> new Thread(runnable, "reconciliation-compute-" + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs a reconciliation and waits for its result.
+     *
+     * @param work the reconciliation
+     * @return the result of the work
+     * @throws TooManyRequestsException if the work is offloaded and the compute queue is full
+     */
+    public <T> T execute(Supplier<T> work) {
+        if (computePool == null) {
+            return work.get();
+        }
+        Future<T> result;
+        try {
+            result = computePool.submit(work::get);
+        } catch (RejectedExecutionException ex) {
+            throw new TooManyRequestsException("Too many reconciliations in progress. Please retry later.", retryAfter);
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for reconciliation", ex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (computePool != null) {
+            computePool.shutdownNow();
+        }
+    }
+}
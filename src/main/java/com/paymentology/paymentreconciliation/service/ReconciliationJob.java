@@ -0,0 +1,94 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobStatus;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.ReconciliationSink;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of one asynchronous reconciliation. The job is the sink of its own reconciliation: it keeps the unmatched
+ * records for paging and counts progress, which other threads may read at any time. Counters are only written by the
+ * thread running the job, and the record lists are only read once the job is completed.
+ */
+@Getter
+class ReconciliationJob implements ReconciliationSink {
+
+    private final String id;
+    private final String firstFileName;
+    private final String secondFileName;
+    private final Instant submittedAt = Instant.now();
+    private final List<ReconciliationDto> firstFileUnmatched = new ArrayList<>();
+    private final List<ReconciliationDto> secondFileUnmatched = new ArrayList<>();
+    private volatile ReconciliationJobStatus status = ReconciliationJobStatus.QUEUED;
+    private volatile long recordsRead;
+    private volatile long matchedRecordCount;
+    private volatile long unmatchedRecordCount;
+    private volatile Instant completedAt;
+    private volatile ReconciliationResponseDto result;
+    private volatile String error;
+
+    ReconciliationJob(String id, String firstFileName, String secondFileName) {
+        this.id = id;
+        this.firstFileName = firstFileName;
+        this.secondFileName = secondFileName;
+    }
+
+    void start() {
+        status = ReconciliationJobStatus.RUNNING;
+    }
+
+    void complete(ReconciliationResponseDto result) {
+        this.result = result;
+        completedAt = Instant.now();
+        status = ReconciliationJobStatus.COMPLETED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        completedAt = Instant.now();
+        status = ReconciliationJobStatus.FAILED;
+    }
+
+    List<ReconciliationDto> getUnmatched(FileSide side) {
+        return side == FileSide.FIRST ? firstFileUnmatched : secondFileUnmatched;
+    }
+
+    @Override
+    public void read(FileSide side) {
+        recordsRead++;
+    }
+
+    @Override
+    public void matched(ReconciliationDto first, ReconciliationDto second) {
+        matchedRecordCount++;
+    }
+
+    @Override
+    public void unmatched(FileSide side, ReconciliationDto record) {
+        getUnmatched(side).add(record);
+        unmatchedRecordCount++;
+    }
+
+    ReconciliationJobDto toDto() {
+        return ReconciliationJobDto.builder()
+                .jobId(id)
+                .status(status)
+                .firstFileName(firstFileName)
+                .secondFileName(secondFileName)
+                .recordsRead(recordsRead)
+                .matchedRecordCount(matchedRecordCount)
+                .unmatchedRecordCount(unmatchedRecordCount)
+                .submittedAt(submittedAt)
+                .completedAt(completedAt)
+                .result(result)
+                .error(error)
+                .build();
+    }
+}
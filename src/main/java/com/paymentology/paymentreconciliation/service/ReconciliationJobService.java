@@ -0,0 +1,14 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobDto;
+import com.paymentology.paymentreconciliation.dto.UnmatchedRecordPageDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface ReconciliationJobService {
+    ReconciliationJobDto submit(MultipartFile file1, MultipartFile file2);
+
+    ReconciliationJobDto getJob(String jobId);
+
+    UnmatchedRecordPageDto getUnmatchedRecords(String jobId, FileSide file, int page, int size);
+}
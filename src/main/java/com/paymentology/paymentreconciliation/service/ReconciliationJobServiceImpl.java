@@ -0,0 +1,180 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobStatus;
+import com.paymentology.paymentreconciliation.dto.UnmatchedRecordPageDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import com.paymentology.paymentreconciliation.exception.NotFoundException;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
+import com.paymentology.paymentreconciliation.parser.LocalCsvFile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class ReconciliationJobServiceImpl implements ReconciliationJobService {
+
+    private final ReconciliationService reconciliationService;
+
+    private final ReconciliationProperties properties;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, ReconciliationJob> jobs = new ConcurrentHashMap<>();
+
+    public ReconciliationJobServiceImpl(ReconciliationService reconciliationService,
+                                        ReconciliationProperties properties) {
+        this.reconciliationService = reconciliationService;
+        this.properties = properties;
+        ReconciliationProperties.Jobs config = properties.getJobs();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(config.getQueueCapacity(), 1)),
+                runnable -> new Thread(runnable, "reconciliation-job-" + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Submits two CSV files for reconciliation and returns at once.
+     * <p>
+     * The uploads are moved to temporary files before the request ends, then reconciled by the streaming engine on
+     * a bounded pool. When all threads are busy and the queue is full the job is rejected, so that clients back off
+     * instead of piling up work.
+     *
+     * @param file1 the first CSV file to be reconciled
+     * @param file2 the second CSV file to be reconciled
+     * @return the queued job
+     * @throws TooManyRequestsException if the job queue is full
+     */
+    @Override
+    public ReconciliationJobDto submit(MultipartFile file1, MultipartFile file2) {
+        purgeExpiredJobs();
+        ReconciliationJob job = new ReconciliationJob(UUID.randomUUID().toString(),
+                file1.getOriginalFilename(), file2.getOriginalFilename());
+        List<Path> spooled = new ArrayList<>(2);
+        try {
+            LocalCsvFile local1 = spool(file1, spooled);
+            LocalCsvFile local2 = spool(file2, spooled);
+            jobs.put(job.getId(), job);
+            executor.execute(() -> run(job, local1, local2, spooled));
+        } catch (RejectedExecutionException ex) {
+            jobs.remove(job.getId());
+            deleteAll(spooled);
+            throw new TooManyRequestsException("Too many reconciliation jobs in progress. Please retry later.",
+                    properties.getAdmission().getRetryAfter());
+        } catch (IOException ex) {
+            deleteAll(spooled);
+            throw new BadRequestException("File upload exception" + ex.getMessage());
+        }
+        return job.toDto();
+    }
+
+    @Override
+    public ReconciliationJobDto getJob(String jobId) {
+        return findJob(jobId).toDto();
+    }
+
+    /**
+     * Returns one page of the unmatched records of a completed job.
+     *
+     * @param jobId the job
+     * @param file  the file whose unmatched records are paged
+     * @param page  the zero-based page number
+     * @param size  the page size, capped by the configured maximum
+     * @return the page, empty past the last record
+     * @throws NotFoundException if the job does not exist or has expired
+     * @throws BadRequestException if the job is not completed or the page is invalid
+     */
+    @Override
+    public UnmatchedRecordPageDto getUnmatchedRecords(String jobId, FileSide file, int page, int size) {
+        ReconciliationJob job = findJob(jobId);
+        if (job.getStatus() != ReconciliationJobStatus.COMPLETED) {
+            throw new BadRequestException("Job %s is %s, results are only available once it is completed."
+                    .formatted(jobId, job.getStatus()));
+        }
+        if (page < 0 || size < 1) {
+            throw new BadRequestException("Invalid page request. Page must be 0 or more and size 1 or more.");
+        }
+        int pageSize = Math.min(size, properties.getJobs().getMaxPageSize());
+        List<ReconciliationDto> unmatched = job.getUnmatched(file);
+        int from = (int) Math.min((long) page * pageSize, unmatched.size());
+        int to = Math.min(from + pageSize, unmatched.size());
+        return UnmatchedRecordPageDto.builder()
+                .jobId(jobId)
+                .file(file)
+                .page(page)
+                .size(pageSize)
+                .totalRecordCount(unmatched.size())
+                .records(new ArrayList<>(unmatched.subList(from, to)))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ReconciliationJob job, LocalCsvFile file1, LocalCsvFile file2, List<Path> spooled) {
+        job.start();
+        try {
+            job.complete(reconciliationService.upload(file1, file2, null, job));
+        } catch (RuntimeException ex) {
+            log.warn("Reconciliation job {} failed: {}", job.getId(), ex.getMessage());
+            job.fail(ex.getMessage());
+        } finally {
+            deleteAll(spooled);
+        }
+    }
+
+    private ReconciliationJob findJob(String jobId) {
+        // Clients poll their jobs, so expired ones are dropped here too and not only when the next job comes
+        purgeExpiredJobs();
+        ReconciliationJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new NotFoundException("Job not found: " + jobId);
+        }
+        return job;
+    }
+
+    private void purgeExpiredJobs() {
+        Instant expiry = Instant.now().minus(properties.getJobs().getRetention());
+        jobs.values().removeIf(job -> job.getCompletedAt() != null && job.getCompletedAt().isBefore(expiry));
+    }
+
+    private static LocalCsvFile spool(MultipartFile file, List<Path> spooled) throws IOException {
+        Path path = Files.createTempFile("reconciliation-job-", ".csv");
+        spooled.add(path);
+        file.transferTo(path.toFile());
+        return new LocalCsvFile(path, file.getOriginalFilename());
+    }
+
+    private static void deleteAll(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                log.warn("Could not delete temporary file {}: {}", path, ex.getMessage());
+            }
+        }
+    }
+}
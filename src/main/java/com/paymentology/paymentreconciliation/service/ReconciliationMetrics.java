@@ -0,0 +1,161 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.MatchStatistics;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import com.paymentology.paymentreconciliation.exception.FileNotFoundException;
+import com.paymentology.paymentreconciliation.exception.NotFoundException;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the reconciliation stages, scraped with the rest of the application metrics from
+ * {@code /actuator/prometheus}.
+ * <p>
+ * Every request is timed as {@code reconciliation.requests} and every stage of it (reading an upload to disk,
+ * digesting it for the result cache, parsing, indexing, matching) as {@code reconciliation.stage}, both tagged with
+ * the endpoint and the outcome. Counters follow the bytes and records read, the candidate pairs scored and the
+ * records matched or left unmatched, and {@code reconciliation.similarity} is the distribution of the similarity of
+ * matched pairs. Rates such as records parsed per second come from the counters.
+ */
+@Component
+public class ReconciliationMetrics {
+
+    public static final String UPLOAD = "upload";
+    public static final String STREAM = "stream";
+    public static final String BATCH = "batch";
+    public static final String EXPORT = "export";
+    public static final String LOCAL = "local";
+    public static final String LEDGER = "ledger";
+
+    public static final String READ = "read";
+    public static final String DIGEST = "digest";
+    public static final String PARSE = "parse";
+    public static final String INDEX = "index";
+    public static final String MATCH = "match";
+
+    private static final double[] SIMILARITY_BUCKETS = {50, 60, 70, 80, 90, 95, 100};
+
+    private final MeterRegistry registry;
+
+    public ReconciliationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Runs and times a whole request.
+     *
+     * @param endpoint the endpoint the request came through
+     * @param work     the request
+     * @return the result of the request
+     */
+    public <T> T timeRequest(String endpoint, Supplier<T> work) {
+        return time("reconciliation.requests", null, endpoint, work);
+    }
+
+    /**
+     * Runs and times one stage of a request.
+     *
+     * @param stage    the stage
+     * @param endpoint the endpoint the request came through
+     * @param work     the stage
+     * @return the result of the stage
+     */
+    public <T> T timeStage(String stage, String endpoint, Supplier<T> work) {
+        return time("reconciliation.stage", stage, endpoint, work);
+    }
+
+    /**
+     * Runs and times one stage of a request that has no result.
+     */
+    public void timeStage(String stage, String endpoint, Runnable work) {
+        timeStage(stage, endpoint, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * @param bytes the size of the files of a request
+     */
+    public void recordBytesRead(String endpoint, long bytes) {
+        registry.counter("reconciliation.bytes.read", "endpoint", endpoint).increment(bytes);
+    }
+
+    /**
+     * @param records the number of records parsed from one file
+     */
+    public void recordRecordsRead(String endpoint, FileSide side, long records) {
+        registry.counter("reconciliation.records.read", "endpoint", endpoint, "file", side.name())
+                .increment(records);
+    }
+
+    /**
+     * @param records the number of records indexed to be matched against
+     */
+    public void recordIndexSize(String endpoint, long records) {
+        DistributionSummary.builder("reconciliation.index.size")
+                .baseUnit("records")
+                .tag("endpoint", endpoint)
+                .register(registry)
+                .record(records);
+    }
+
+    /**
+     * Records the candidate pairs scored and the similarity of every matched pair.
+     */
+    public void recordMatching(String endpoint, MatchStatistics statistics, SimilarityScorer scorer) {
+        registry.counter("reconciliation.pairs.scored", "endpoint", endpoint)
+                .increment(statistics.getScoredPairCount());
+        DistributionSummary similarity = DistributionSummary.builder("reconciliation.similarity")
+                .baseUnit("percent")
+                .serviceLevelObjectives(SIMILARITY_BUCKETS)
+                .tag("endpoint", endpoint)
+                .register(registry);
+        for (int points = 0; points < statistics.pointsRange(); points++) {
+            double score = scorer.similarity(points);
+            for (long pair = statistics.matchedPairCount(points); pair > 0; pair--) {
+                similarity.record(score);
+            }
+        }
+    }
+
+    /**
+     * Records how many records were matched and how many of each file were left unmatched.
+     */
+    public void recordOutcome(String endpoint, long matched, long firstUnmatched, long secondUnmatched) {
+        registry.counter("reconciliation.records.matched", "endpoint", endpoint).increment(matched);
+        registry.counter("reconciliation.records.unmatched", "endpoint", endpoint, "file", FileSide.FIRST.name())
+                .increment(firstUnmatched);
+        registry.counter("reconciliation.records.unmatched", "endpoint", endpoint, "file", FileSide.SECOND.name())
+                .increment(secondUnmatched);
+    }
+
+    private <T> T time(String name, String stage, String endpoint, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            T result = work.get();
+            outcome = "success";
+            return result;
+        } catch (TooManyRequestsException ex) {
+            outcome = "rejected";
+            throw ex;
+        } catch (BadRequestException | FileNotFoundException | NotFoundException ex) {
+            outcome = "client_error";
+            throw ex;
+        } finally {
+            Timer.Builder timer = Timer.builder(name).tag("endpoint", endpoint).tag("outcome", outcome);
+            if (stage != null) {
+                timer.tag("stage", stage);
+            }
+            sample.stop(timer.register(registry));
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.dto.ResultCacheStatsDto;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cache of upload results, keyed by a digest of the names and content of both files and of the matching
+ * configuration, so that re-submitting the same pair of files skips parsing and matching altogether.
+ * <p>
+ * Results are held in memory as their JSON, up to a byte budget counting the length of that JSON, and evicted least
+ * recently used first. Every hit is read back from the JSON, so each caller gets a copy of its own that it is free to
+ * change. With a spill directory configured, evicted results and results too large for memory are written there,
+ * under a budget of their own, and read back on a hit. Spilled results survive a restart. Without a spill directory,
+ * a result is only serialized as far as the memory budget: a larger one could not be kept anyway.
+ * <p>
+ * Only uploads whose content {@link #accepts(long) fits the memory budget} are worth caching: digesting a larger
+ * upload reads it once more, and its result would be evicted soon if it were kept at all.
+ * <p>
+ * The counts of {@link #getStats()} are also published as {@code reconciliation.cache.*} meters.
+ */
+@Component
+@Slf4j
+public class ReconciliationResultCache implements MeterBinder {
+
+    private static final String SPILL_SUFFIX = ".json";
+    // the array header of the JSON and the map entry and result holding it
+    private static final long ENTRY_BYTES = 96;
+
+    private final ReconciliationProperties.Cache config;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader resultReader;
+
+    private final Path spillDirectory;
+
+    private final LinkedHashMap<String, CachedResult> memory = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long memoryBytes;
+
+    private long diskBytes;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong diskHitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong spillCount = new AtomicLong();
+
+    /**
+     * @throws IllegalStateException if the mapper cannot write the dates of the records
+     */
+    public ReconciliationResultCache(ReconciliationProperties properties, ObjectMapper objectMapper) {
+        this.config = properties.getCache();
+        this.objectMapper = objectMapper;
+        try {
+            objectMapper.writeValueAsBytes(LocalDateTime.of(2014, 1, 12, 5, 33, 22));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Result cache needs a mapper that writes java.time values", ex);
+        }
+        // results spilled by an earlier version may hold properties the responses no longer have
+        this.resultReader = objectMapper.readerFor(ReconciliationResponseDto.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        String directory = config.getDirectory();
+        this.spillDirectory = directory == null || directory.isBlank() ? null : Path.of(directory);
+        if (spillDirectory != null) {
+            loadSpilledResults();
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * @param contentBytes the size of the content of both files of an upload
+     * @return whether the cache is enabled and the upload is small enough to be cached
+     */
+    public boolean accepts(long contentBytes) {
+        return config.isEnabled() && contentBytes <= config.getMaxBytes();
+    }
+
+    /**
+     * Digests two uploads, streaming their content, together with the configuration they are matched with.
+     *
+     * @param file1         the first file
+     * @param file2         the second file
+     * @param configuration a description of everything besides the files the result depends on
+     * @return the cache key of the pair
+     * @throws BadRequestException if either file cannot be read
+     */
+    public String key(MultipartFile file1, MultipartFile file2, String configuration) {
+        MessageDigest digest = newDigest();
+        digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[64 * 1024];
+        for (MultipartFile file : List.of(file1, file2)) {
+            digest.update((byte) 0);
+            digest.update(String.valueOf(file.getOriginalFilename()).getBytes(StandardCharsets.UTF_8));
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, file.getSize()));
+            try (InputStream input = file.getInputStream()) {
+                for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            } catch (IOException ex) {
+                throw new BadRequestException("File parsing exception" + ex.getMessage());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param key the cache key of a pair of files
+     * @return the cached result of the pair, or {@code null} when there is none
+     */
+    public ReconciliationResponseDto get(String key) {
+        byte[] json;
+        Path spilled;
+        synchronized (this) {
+            CachedResult cached = memory.get(key);
+            json = cached == null ? null : cached.json();
+            spilled = json == null && disk.get(key) != null ? spillPath(key) : null;
+        }
+        if (json != null) {
+            hitCount.incrementAndGet();
+            return read(json);
+        }
+        if (spilled != null) {
+            try {
+                json = Files.readAllBytes(spilled);
+                ReconciliationResponseDto response = resultReader.readValue(json);
+                hitCount.incrementAndGet();
+                diskHitCount.incrementAndGet();
+                put(key, json);
+                return response;
+            } catch (IOException ex) {
+                log.warn("Spilled result {} could not be read: {}", key, ex.getMessage());
+                removeSpilled(key);
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches the result of a pair of files, evicting the least recently used results beyond the memory budget. The
+     * result is copied: changing it afterwards does not change the cached one.
+     *
+     * @param key      the cache key of the pair
+     * @param response the result of the pair
+     */
+    public void put(String key, ReconciliationResponseDto response) {
+        long limit = spillDirectory == null ? config.getMaxBytes() - ENTRY_BYTES : Long.MAX_VALUE;
+        BoundedOutput json = new BoundedOutput(limit);
+        try {
+            objectMapper.writeValue(json, response);
+        } catch (ResultTooLargeException ex) {
+            log.debug("Result {} is larger than the cache", key);
+            return;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Result " + key + " could not be cached", ex);
+        }
+        put(key, json.toByteArray());
+    }
+
+    public synchronized ResultCacheStatsDto getStats() {
+        return ResultCacheStatsDto.builder()
+                .hitCount(hitCount.get())
+                .diskHitCount(diskHitCount.get())
+                .missCount(missCount.get())
+                .evictionCount(evictionCount.get())
+                .spillCount(spillCount.get())
+                .memoryEntryCount(memory.size())
+                .memoryBytes(memoryBytes)
+                .diskEntryCount(disk.size())
+                .diskBytes(diskBytes)
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("reconciliation.cache.requests", hitCount, AtomicLong::get)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("reconciliation.cache.requests", missCount, AtomicLong::get)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("reconciliation.cache.disk.hits", diskHitCount, AtomicLong::get).register(registry);
+        FunctionCounter.builder("reconciliation.cache.evictions", evictionCount, AtomicLong::get).register(registry);
+        FunctionCounter.builder("reconciliation.cache.spills", spillCount, AtomicLong::get).register(registry);
+        Gauge.builder("reconciliation.cache.size", this, cache -> cache.getStats().getMemoryBytes())
+                .baseUnit("bytes").tag("tier", "memory").register(registry);
+        Gauge.builder("reconciliation.cache.size", this, cache -> cache.getStats().getDiskBytes())
+                .baseUnit("bytes").tag("tier", "disk").register(registry);
+    }
+
+    private void put(String key, byte[] json) {
+        CachedResult cached = new CachedResult(json);
+        List<Map.Entry<String, CachedResult>> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (cached.weight() > config.getMaxBytes()) {
+                evicted.add(Map.entry(key, cached));
+            } else {
+                CachedResult previous = memory.put(key, cached);
+                memoryBytes += cached.weight() - (previous == null ? 0 : previous.weight());
+                Iterator<Map.Entry<String, CachedResult>> eldest = memory.entrySet().iterator();
+                while (memoryBytes > config.getMaxBytes()) {
+                    Map.Entry<String, CachedResult> entry = eldest.next();
+                    eldest.remove();
+                    memoryBytes -= entry.getValue().weight();
+                    evictionCount.incrementAndGet();
+                    evicted.add(entry);
+                }
+            }
+        }
+        if (spillDirectory != null) {
+            for (Map.Entry<String, CachedResult> entry : evicted) {
+                spill(entry.getKey(), entry.getValue().json());
+            }
+        }
+    }
+
+    private ReconciliationResponseDto read(byte[] json) {
+        try {
+            return resultReader.readValue(json);
+        } catch (IOException ex) {
+            // the JSON was written by this cache from a response
+            throw new UncheckedIOException("Cached result could not be read", ex);
+        }
+    }
+
+    private void spill(String key, byte[] json) {
+        synchronized (this) {
+            if (disk.containsKey(key)) {
+                return;
+            }
+        }
+        Path path = spillPath(key);
+        long size = json.length;
+        try {
+            Files.write(path, json);
+        } catch (IOException ex) {
+            log.warn("Result {} could not be spilled: {}", key, ex.getMessage());
+            return;
+        }
+        spillCount.incrementAndGet();
+
+        List<String> dropped = new ArrayList<>();
+        synchronized (this) {
+            disk.put(key, size);
+            diskBytes += size;
+            Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > config.getDiskMaxBytes()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                eldest.remove();
+                diskBytes -= entry.getValue();
+                dropped.add(entry.getKey());
+            }
+        }
+        dropped.forEach(this::deleteSpilled);
+    }
+
+    private void removeSpilled(String key) {
+        synchronized (this) {
+            Long size = disk.remove(key);
+            if (size == null) {
+                return;
+            }
+            diskBytes -= size;
+        }
+        deleteSpilled(key);
+    }
+
+    private void deleteSpilled(String key) {
+        try {
+            Files.deleteIfExists(spillPath(key));
+        } catch (IOException ex) {
+            log.warn("Spilled result {} could not be deleted: {}", key, ex.getMessage());
+        }
+    }
+
+    private void loadSpilledResults() {
+        try {
+            Files.createDirectories(spillDirectory);
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+                    String name = path.getFileName().toString();
+                    if (name.endsWith(SPILL_SUFFIX)) {
+                        long size = Files.size(path);
+                        disk.put(name.substring(0, name.length() - SPILL_SUFFIX.length()), size);
+                        diskBytes += size;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Result cache directory could not be read", ex);
+        }
+    }
+
+    private Path spillPath(String key) {
+        return spillDirectory.resolve(key + SPILL_SUFFIX);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Buffer of the JSON of a result that gives up once it would hold more than a limit.
+     */
+    private static final class BoundedOutput extends OutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final long limit;
+
+        BoundedOutput(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkLimit(1);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkLimit(len);
+            buffer.write(b, off, len);
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+
+        private void checkLimit(int length) throws ResultTooLargeException {
+            if (buffer.size() + (long) length > limit) {
+                throw new ResultTooLargeException();
+            }
+        }
+    }
+
+    // An IOException, so that the mapper passes it on as it is
+    private static final class ResultTooLargeException extends IOException {
+    }
+
+    private record CachedResult(byte[] json) {
+
+        long weight() {
+            return ENTRY_BYTES + json.length;
+        }
+    }
+}
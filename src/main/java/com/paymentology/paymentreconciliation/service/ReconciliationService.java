@@ -1,10 +1,29 @@
 package com.paymentology.paymentreconciliation.service;
 
+import com.paymentology.paymentreconciliation.dto.BatchReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.dto.LedgerReconciliationResponseDto;
 import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.ReconciliationSink;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 
 public interface ReconciliationService {
     ReconciliationResponseDto upload(MultipartFile file1, MultipartFile file2);
+
+    ReconciliationResponseDto upload(MultipartFile file1, MultipartFile file2, String ruleSet);
+
+    ReconciliationResponseDto upload(MultipartFile file1, MultipartFile file2, String ruleSet, ReconciliationSink sink);
+
+    ReconciliationResponseDto export(MultipartFile file1, MultipartFile file2, String ruleSet, OutputStream output);
+
+    BatchReconciliationResponseDto uploadBatch(MultipartFile reference, List<MultipartFile> counterparts,
+                                               String ruleSet);
+
+    ReconciliationResponseDto reconcileLocalFiles(String file1, String file2);
+
+    LedgerReconciliationResponseDto reconcileWithLedger(MultipartFile file, FileSide side);
 }
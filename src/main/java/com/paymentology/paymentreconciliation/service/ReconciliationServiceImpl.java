@@ -1,10 +1,39 @@
 package com.paymentology.paymentreconciliation.service;
 
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.BatchReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.dto.LedgerReconciliationResponseDto;
 import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
 import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
 import com.paymentology.paymentreconciliation.dto.TransactionSummaryDto;
+import com.paymentology.paymentreconciliation.engine.BlockingCandidateSearch;
+import com.paymentology.paymentreconciliation.engine.CandidateSearch;
+import com.paymentology.paymentreconciliation.engine.CollectingReconciliationSink;
+import com.paymentology.paymentreconciliation.engine.CountingReconciliationSink;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.InMemoryReconciler;
+import com.paymentology.paymentreconciliation.engine.PartitionedReconciler;
+import com.paymentology.paymentreconciliation.engine.RecordTable;
+import com.paymentology.paymentreconciliation.engine.ReconciliationSink;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.engine.SortMergeCandidateSearch;
+import com.paymentology.paymentreconciliation.engine.StreamedRecord;
+import com.paymentology.paymentreconciliation.engine.StreamingReconciler;
+import com.paymentology.paymentreconciliation.engine.TextDictionary;
+import com.paymentology.paymentreconciliation.engine.TransactionFingerprint;
+import com.paymentology.paymentreconciliation.engine.TransactionIndex;
 import com.paymentology.paymentreconciliation.exception.BadRequestException;
 import com.paymentology.paymentreconciliation.exception.FileNotFoundException;
+import com.paymentology.paymentreconciliation.export.ArrowResultWriter;
+import com.paymentology.paymentreconciliation.ledger.LedgerBatch;
+import com.paymentology.paymentreconciliation.ledger.TransactionLedger;
+import com.paymentology.paymentreconciliation.parser.ChunkedCsvParser;
+import com.paymentology.paymentreconciliation.parser.CsvRecordReader;
+import com.paymentology.paymentreconciliation.parser.CsvRecordView;
+import com.paymentology.paymentreconciliation.parser.FieldParsers;
+import com.paymentology.paymentreconciliation.parser.LocalCsvFile;
+import com.paymentology.paymentreconciliation.parser.MappedUpload;
+import com.paymentology.paymentreconciliation.parser.UploadCompression;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
@@ -15,24 +44,55 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Service
 @AllArgsConstructor
 @Slf4j
 public class ReconciliationServiceImpl implements ReconciliationService {
 
+    // Rough heap taken by a parsed record per byte of CSV: the record, its strings, date and fingerprint
+    private static final int HEAP_BYTES_PER_FILE_BYTE = 6;
+
+    private static final int MAX_PARTITIONS = 256;
+
+    private final ReconciliationProperties properties;
+
+    private final ReconciliationExecutor reconciliationExecutor;
+
+    private final TransactionLedgerProvider ledgerProvider;
+
+    private final ReconciliationResultCache resultCache;
+
+    private final ReconciliationMetrics metrics;
+
+    private final AdmissionController admissionController;
+
+    private final MatchingRuleSets ruleSets;
 
     /**
 
      Uploads and reconciles two CSV files, and returns the reconciliation result.
-     The method first checks the content and extension of the provided files, then converts them to a list of
-     ReconciliationDto objects. After that, the reconcileTransactions method is called to reconcile the two lists of
+     The method first checks the content and extension of the provided files and returns the cached result when the
+     same pair of files was reconciled before, see {@link ReconciliationResultCache}. Otherwise it converts them to a
+     list of ReconciliationDto objects. After that, the reconcileTransactions method is called to reconcile the two lists of
      transactions, and the result is returned in a ReconciliationResponseDto object that contains the total count and
      unmatched count of each file, the matched record count, and the unmatched record lists of each file.
+     The work runs on the {@link ReconciliationExecutor} and every stage of it is timed, see
+     {@link ReconciliationMetrics}.
      @param file1 the first CSV file to be reconciled
      @param file2 the second CSV file to be reconciled
      @return a ReconciliationResponseDto object that contains the reconciliation result
@@ -40,177 +100,938 @@ public class ReconciliationServiceImpl implements ReconciliationService {
      */
     @Override
     public ReconciliationResponseDto upload(MultipartFile file1, MultipartFile file2) {
+        ProbedUpload upload1 = probe(file1);
+        ProbedUpload upload2 = probe(file2);
+        return execute(ReconciliationMetrics.UPLOAD, List.of(upload1, upload2),
+                () -> reconcile(upload1, upload2, ruleSets.defaultScorer(), ReconciliationMetrics.UPLOAD));
+    }
+
+    /**
+     * Uploads and reconciles two CSV files like {@link #upload(MultipartFile, MultipartFile)}, matching them with the
+     * given rule set instead of the default one, see {@link MatchingRuleSets}.
+     *
+     * @param file1   the first CSV file to be reconciled
+     * @param file2   the second CSV file to be reconciled
+     * @param ruleSet the name of a configured matching rule set, or {@code null} for the default one
+     * @return a ReconciliationResponseDto object that contains the reconciliation result
+     * @throws BadRequestException if no rule set has the name, there is an error in checking files' content or
+     *                             extension, or parsing files
+     */
+    @Override
+    public ReconciliationResponseDto upload(MultipartFile file1, MultipartFile file2, String ruleSet) {
+        SimilarityScorer scorer = ruleSets.get(ruleSet);
+        ProbedUpload upload1 = probe(file1);
+        ProbedUpload upload2 = probe(file2);
+        return execute(ReconciliationMetrics.UPLOAD, List.of(upload1, upload2),
+                () -> reconcile(upload1, upload2, scorer, ReconciliationMetrics.UPLOAD));
+    }
+
+    private ReconciliationResponseDto reconcile(ProbedUpload file1, ProbedUpload file2, SimilarityScorer scorer,
+                                                String endpoint) {
+        checkFilesContentAndExtension(file1.getFile(), file2.getFile());
+        // Streamed and spilled uploads are there to be read once
+        if (!resultCache.accepts(file1.getContentSize() + file2.getContentSize()) || !isInMemoryUpload(file1, file2)) {
+            return reconcileFiles(file1, file2, scorer, endpoint);
+        }
 
+        String key = metrics.timeStage(ReconciliationMetrics.DIGEST, endpoint,
+                () -> resultCache.key(file1.getFile(), file2.getFile(), matchingConfiguration(scorer)));
+        ReconciliationResponseDto cached = resultCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ReconciliationResponseDto response = reconcileFiles(file1, file2, scorer, endpoint);
+        resultCache.put(key, response);
+        return response;
+    }
 
-        checkFilesContentAndExtension(file1, file2);
+    private ReconciliationResponseDto reconcileFiles(ProbedUpload file1, ProbedUpload file2, SimilarityScorer scorer,
+                                                     String endpoint) {
+        metrics.recordBytesRead(endpoint, file1.getSize() + file2.getSize());
+        if (isSpilledUpload(file1, file2)) {
+            return partitionedUpload(file1, file2, scorer, endpoint);
+        }
+        if (isStreamingUpload(file1, file2)) {
+            return streamingUpload(file1, file2, scorer, endpoint);
+        }
 
         // Convert MultipartFile objects to TransactionDto objects
-        List<ReconciliationDto> originalFileOne = convertFileToModel(file1);
-        List<ReconciliationDto> originalFileTwo = convertFileToModel(file2);
+        TextDictionary dictionary = new TextDictionary();
+        List<ReconciliationDto> originalFileOne = metrics.timeStage(ReconciliationMetrics.PARSE, endpoint,
+                () -> convertFileToModel(file1, endpoint, dictionary));
+        metrics.recordRecordsRead(endpoint, FileSide.FIRST, originalFileOne.size());
+        List<ReconciliationDto> originalFileTwo = metrics.timeStage(ReconciliationMetrics.PARSE, endpoint,
+                () -> convertFileToModel(file2, endpoint, dictionary));
+        metrics.recordRecordsRead(endpoint, FileSide.SECOND, originalFileTwo.size());
+
+        TransactionSummaryDto transactionSummaryDto = metrics.timeStage(ReconciliationMetrics.MATCH, endpoint,
+                () -> reconcileTransactions(originalFileOne, originalFileTwo, dictionary, scorer, endpoint));
+        metrics.recordOutcome(endpoint, transactionSummaryDto.getFileOneMatchedRecords().size(),
+                transactionSummaryDto.getFileOneUnMatchedRecord().size(),
+                transactionSummaryDto.getFileTwoUnMatchedRecord().size());
+
+        return toResponse(file1, originalFileOne.size(), file2, originalFileTwo.size(), transactionSummaryDto);
+    }
 
+    /**
+     * Reconciles two CSV files whose records would not fit in the memory budget: both files are hash-partitioned by
+     * TransactionID to disk as they are parsed, and the partitions are reconciled one at a time, see
+     * {@link PartitionedReconciler}. The result is the same as on the in-memory path.
+     *
+     * @param file1 the first CSV file to be reconciled
+     * @param file2 the second CSV file to be reconciled
+     * @param scorer the compiled rule set pairs are matched with
+     * @param endpoint the endpoint the files came through, for the metrics
+     * @return a ReconciliationResponseDto object that contains the reconciliation result
+     * @throws BadRequestException if there is an error parsing files
+     */
+    private ReconciliationResponseDto partitionedUpload(ProbedUpload file1, ProbedUpload file2,
+                                                        SimilarityScorer scorer, String endpoint) {
+        ReconciliationProperties.Spill spill = properties.getSpill();
+        long heapBytes = (file1.getContentSize() + file2.getContentSize()) * HEAP_BYTES_PER_FILE_BYTE;
+        int partitions = spill.getPartitions() > 0 ? spill.getPartitions()
+                : (int) Math.min(heapBytes / memoryBudget() + 1, MAX_PARTITIONS);
+        log.info("Reconciling {} and {} in {} partitions spilled to disk", file1.getOriginalFilename(),
+                file2.getOriginalFilename(), partitions);
+        ReconciliationProperties.Parallel parallel = properties.getParallel();
+        int shards = parallel.isEnabled() ? parallel.getShardCount() : 1;
+
+        TextDictionary dictionary = new TextDictionary();
+        try (PartitionedReconciler reconciler = new PartitionedReconciler(scorer, scorer.threshold(), partitions,
+                shards, candidateSearch(scorer), dictionary,
+                directoryOrTemp(spill.getDirectory()))) {
+            metrics.timeStage(ReconciliationMetrics.PARSE, endpoint, () -> {
+                forEachRecord(file1, endpoint, dictionary, record -> reconciler.add(FileSide.FIRST, record));
+                forEachRecord(file2, endpoint, dictionary, record -> reconciler.add(FileSide.SECOND, record));
+            });
+            int firstCount = (int) reconciler.recordCount(FileSide.FIRST);
+            int secondCount = (int) reconciler.recordCount(FileSide.SECOND);
+            metrics.recordRecordsRead(endpoint, FileSide.FIRST, firstCount);
+            metrics.recordRecordsRead(endpoint, FileSide.SECOND, secondCount);
 
-        TransactionSummaryDto transactionSummaryDto = reconcileTransactions(originalFileOne, originalFileTwo);
+            TransactionSummaryDto transactionSummaryDto = metrics.timeStage(ReconciliationMetrics.MATCH, endpoint,
+                    reconciler::reconcile);
+            metrics.recordMatching(endpoint, reconciler.statistics(), scorer);
+            metrics.recordOutcome(endpoint, transactionSummaryDto.getFileOneMatchedRecords().size(),
+                    transactionSummaryDto.getFileOneUnMatchedRecord().size(),
+                    transactionSummaryDto.getFileTwoUnMatchedRecord().size());
+            return toResponse(file1, firstCount, file2, secondCount, transactionSummaryDto);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Spill partitions could not be created", ex);
+        }
+    }
 
+    private static ReconciliationResponseDto toResponse(ProbedUpload file1, int firstCount, ProbedUpload file2,
+                                                        int secondCount, TransactionSummaryDto transactionSummaryDto) {
         return ReconciliationResponseDto.builder()
-                .firstFileTotalRecordCount(originalFileOne.size())
+                .firstFileTotalRecordCount(firstCount)
                 .firstFileUnmatchedRecordCount(transactionSummaryDto.getFileOneUnMatchedRecord().size())
                 .firstFileName(file1.getOriginalFilename())
-                .secondFileTotalRecordCount(originalFileTwo.size())
+                .secondFileTotalRecordCount(secondCount)
                 .secondFileUnmatchedRecordCount(transactionSummaryDto.getFileTwoUnMatchedRecord().size())
                 .secondFileName(file2.getOriginalFilename())
                 .matchedRecordCount(transactionSummaryDto.getFileOneMatchedRecords().size())
                 .firstFileUnmatchedRecordList(transactionSummaryDto.getFileOneUnMatchedRecord())
                 .secondFileUnmatchedRecordList(transactionSummaryDto.getFileTwoUnMatchedRecord())
+                .firstFileNearMissList(transactionSummaryDto.getFileOneNearMisses())
+                .secondFileNearMissList(transactionSummaryDto.getFileTwoNearMisses())
                 .build();
     }
 
     /**
-     * Checks the content and extension of two CSV files.
-     * <p>
-     * The method checks that both files have a ".csv" extension and that their content is not empty. If any of these
-     * conditions is not met, the method throws an exception with a descriptive error message.
+     * Uploads and reconciles two CSV files, handing every unmatched record to the given sink as soon as it is known
+     * instead of collecting them in the response. The files are always reconciled by the streaming engine, so memory
+     * does not grow with the number of unmatched records; since unmatched records are not held, they go through
+     * neither the candidate search nor the near-miss report. The work runs on the {@link ReconciliationExecutor}.
      *
-     * @param file1 the first file to check
-     * @param file2 the second file to check
-     * @throws BadRequestException if either file does not have a ".csv" extension
-     * @throws FileNotFoundException if either file is empty
+     * @param file1   the first CSV file to be reconciled
+     * @param file2   the second CSV file to be reconciled
+     * @param ruleSet the name of a configured matching rule set, or {@code null} for the default one
+     * @param sink    the sink receiving the outcome of every record
+     * @return a ReconciliationResponseDto object that contains the counts and file names, without record lists
+     * @throws BadRequestException if no rule set has the name, there is an error in checking files' content or
+     *                             extension, or parsing files
      */
-    private void checkFilesContentAndExtension(MultipartFile file1, MultipartFile file2) {
-        // Check file extensions
-        if (!file1.getOriginalFilename().endsWith(".csv") || !file2.getOriginalFilename().endsWith(".csv")) {
-            throw new BadRequestException("Invalid file format. Please provide two CSV files.");
+    @Override
+    public ReconciliationResponseDto upload(MultipartFile file1, MultipartFile file2, String ruleSet,
+                                            ReconciliationSink sink) {
+        SimilarityScorer scorer = ruleSets.get(ruleSet);
+        ProbedUpload upload1 = probe(file1);
+        ProbedUpload upload2 = probe(file2);
+        return execute(ReconciliationMetrics.STREAM, List.of(upload1, upload2), () -> {
+            checkFilesContentAndExtension(file1, file2);
+            metrics.recordBytesRead(ReconciliationMetrics.STREAM, file1.getSize() + file2.getSize());
+            ReconciliationResponseDto response =
+                    streamingReconcile(upload1, upload2, sink, scorer, ReconciliationMetrics.STREAM);
+            recordOutcome(ReconciliationMetrics.STREAM, response);
+            return response;
+        });
+    }
+
+    /**
+     * Uploads and reconciles two CSV files, writing every matched pair and unmatched record to the given stream as a
+     * columnar Arrow IPC file as soon as it is known. The files are always reconciled by the streaming engine, and the
+     * export is written one record batch at a time, so memory does not grow with the size of the result. As for
+     * {@link #upload(MultipartFile, MultipartFile, String, ReconciliationSink)}, there is no candidate search and no
+     * near-miss report.
+     *
+     * @param file1   the first CSV file to be reconciled
+     * @param file2   the second CSV file to be reconciled
+     * @param ruleSet the name of a configured matching rule set, or {@code null} for the default one
+     * @param output  the stream the export is written to
+     * @return a ReconciliationResponseDto object that contains the counts and file names, without record lists
+     * @throws BadRequestException if no rule set has the name, there is an error in checking files' content or
+     *                             extension, or parsing files
+     */
+    @Override
+    public ReconciliationResponseDto export(MultipartFile file1, MultipartFile file2, String ruleSet,
+                                            OutputStream output) {
+        SimilarityScorer scorer = ruleSets.get(ruleSet);
+        ProbedUpload upload1 = probe(file1);
+        ProbedUpload upload2 = probe(file2);
+        return execute(ReconciliationMetrics.EXPORT, List.of(upload1, upload2), () -> {
+            checkFilesContentAndExtension(file1, file2);
+            metrics.recordBytesRead(ReconciliationMetrics.EXPORT, file1.getSize() + file2.getSize());
+            try (ArrowResultWriter writer = new ArrowResultWriter(output, properties.getExport().getBatchRecords())) {
+                ReconciliationResponseDto response =
+                        streamingReconcile(upload1, upload2, writer, scorer, ReconciliationMetrics.EXPORT);
+                recordOutcome(ReconciliationMetrics.EXPORT, response);
+                writer.finish(response);
+                return response;
+            }
+        });
+    }
+
+    /**
+     * Reconciles two CSV files without loading both of them in memory. The unmatched records are collected and go
+     * through the candidate search, if any, as on the in-memory path; near misses are not reported.
+     *
+     * @param file1 the first CSV file to be reconciled
+     * @param file2 the second CSV file to be reconciled
+     * @param scorer the compiled rule set pairs are matched with
+     * @param endpoint the endpoint the files came through, for the metrics
+     * @return a ReconciliationResponseDto object that contains the reconciliation result
+     * @throws BadRequestException if there is an error parsing files
+     */
+    private ReconciliationResponseDto streamingUpload(ProbedUpload file1, ProbedUpload file2,
+                                                      SimilarityScorer scorer, String endpoint) {
+        CollectingReconciliationSink sink = new CollectingReconciliationSink();
+        ReconciliationResponseDto response = streamingReconcile(file1, file2, sink, scorer, endpoint);
+        setUnmatchedRecords(response, sink, scorer, endpoint);
+        recordOutcome(endpoint, response);
+        return response;
+    }
+
+    /**
+     * Sets the unmatched records a streamed reconciliation collected on its result, once they went through the
+     * {@link CandidateSearch}, if any, just like the records left unmatched on the in-memory path. The counts of the
+     * result follow the pairs the search matched.
+     *
+     * @param response the result of the streamed reconciliation
+     * @param sink     the sink that collected its unmatched records
+     * @param scorer   the compiled rule set pairs are matched with
+     * @param endpoint the endpoint the files came through, for the metrics
+     */
+    private void setUnmatchedRecords(ReconciliationResponseDto response, CollectingReconciliationSink sink,
+                                     SimilarityScorer scorer, String endpoint) {
+        List<ReconciliationDto> unmatchedOne = sink.getFirstFileUnmatched();
+        List<ReconciliationDto> unmatchedTwo = sink.getSecondFileUnmatched();
+        CandidateSearch search = candidateSearch(scorer);
+        if (search != null) {
+            TextDictionary dictionary = new TextDictionary();
+            boolean[] matchedOne = new boolean[unmatchedOne.size()];
+            boolean[] matchedTwo = new boolean[unmatchedTwo.size()];
+            int matched = metrics.timeStage(ReconciliationMetrics.MATCH, endpoint,
+                    () -> search.match(new RecordTable(unmatchedOne, dictionary), matchedOne,
+                            new RecordTable(unmatchedTwo, dictionary), matchedTwo));
+            metrics.recordMatching(endpoint, search.statistics(), scorer);
+            response.setMatchedRecordCount(response.getMatchedRecordCount() + matched);
+            response.setFirstFileUnmatchedRecordCount(response.getFirstFileUnmatchedRecordCount() - matched);
+            response.setSecondFileUnmatchedRecordCount(response.getSecondFileUnmatchedRecordCount() - matched);
+            response.setFirstFileUnmatchedRecordList(withoutMatched(unmatchedOne, matchedOne));
+            response.setSecondFileUnmatchedRecordList(withoutMatched(unmatchedTwo, matchedTwo));
+        } else {
+            response.setFirstFileUnmatchedRecordList(unmatchedOne);
+            response.setSecondFileUnmatchedRecordList(unmatchedTwo);
         }
+    }
 
-        // Check file content
-        if (file1.isEmpty() || file2.isEmpty()) {
-            throw new FileNotFoundException("Please provide two file content");
+    private static List<ReconciliationDto> withoutMatched(List<ReconciliationDto> records, boolean[] matched) {
+        List<ReconciliationDto> unmatched = new ArrayList<>(records.size());
+        for (int row = 0; row < records.size(); row++) {
+            if (!matched[row]) {
+                unmatched.add(records.get(row));
+            }
         }
+        return unmatched;
+    }
+
+    private void recordOutcome(String endpoint, ReconciliationResponseDto response) {
+        metrics.recordOutcome(endpoint, response.getMatchedRecordCount(), response.getFirstFileUnmatchedRecordCount(),
+                response.getSecondFileUnmatchedRecordCount());
     }
 
     /**
+     * Reconciles two CSV files with the streaming engine.
+     * <p>
+     * Only the smaller file is indexed; the larger one is streamed through the parser and every record is matched as
+     * soon as it is read. Peak memory therefore follows the size of the smaller file.
+     *
+     * @param file1 the first CSV file to be reconciled
+     * @param file2 the second CSV file to be reconciled
+     * @param sink  the sink receiving the outcome of every record
+     * @param scorer the compiled rule set pairs are matched with
+     * @param endpoint the endpoint the files came through, for the metrics
+     * @return a ReconciliationResponseDto object that contains the counts and file names, without record lists
+     * @throws BadRequestException if there is an error parsing files
+     */
+    private ReconciliationResponseDto streamingReconcile(ProbedUpload file1, ProbedUpload file2,
+                                                         ReconciliationSink sink, SimilarityScorer scorer,
+                                                         String endpoint) {
+        boolean indexFirst = file1.getContentSize() <= file2.getContentSize();
+        FileSide indexedSide = indexFirst ? FileSide.FIRST : FileSide.SECOND;
 
-     Reconciles two lists of {@link ReconciliationDto} objects to find matched and unmatched transactions.
-     @param fileOne the first list of transactions to reconcile
-     @param fileTwo the second list of transactions to reconcile
-     @return a {@link TransactionSummaryDto} object containing lists of matched and unmatched transactions
+        CountingReconciliationSink counts = new CountingReconciliationSink(sink);
+        TextDictionary dictionary = new TextDictionary();
+        TransactionIndex index = new TransactionIndex(dictionary);
+        metrics.timeStage(ReconciliationMetrics.INDEX, endpoint, () -> forEachRecord(indexFirst ? file1 : file2,
+                endpoint, dictionary, record -> {
+                    index.add(record);
+                    counts.read(indexedSide);
+                }));
+        metrics.recordIndexSize(endpoint, index.size());
+
+        StreamingReconciler reconciler =
+                new StreamingReconciler(index, dictionary, indexedSide, counts, scorer, scorer.threshold());
+        metrics.timeStage(ReconciliationMetrics.MATCH, endpoint, () -> {
+            streamRecords(indexFirst ? file2 : file1, endpoint, dictionary, record -> {
+                counts.read(indexedSide.opposite());
+                reconciler.accept(record);
+            });
+            reconciler.finish();
+        });
+        metrics.recordRecordsRead(endpoint, FileSide.FIRST, counts.getFirstFileTotalCount());
+        metrics.recordRecordsRead(endpoint, FileSide.SECOND, counts.getSecondFileTotalCount());
+        metrics.recordMatching(endpoint, reconciler.statistics(), scorer);
+
+        return toResponse(file1, file2, counts);
+    }
+
+    private static ReconciliationResponseDto toResponse(ProbedUpload file1, ProbedUpload file2,
+                                                        CountingReconciliationSink counts) {
+        return ReconciliationResponseDto.builder()
+                .firstFileTotalRecordCount(counts.getFirstFileTotalCount())
+                .firstFileUnmatchedRecordCount(counts.getFirstFileUnmatchedCount())
+                .firstFileName(file1.getOriginalFilename())
+                .secondFileTotalRecordCount(counts.getSecondFileTotalCount())
+                .secondFileUnmatchedRecordCount(counts.getSecondFileUnmatchedCount())
+                .secondFileName(file2.getOriginalFilename())
+                .matchedRecordCount(counts.getMatchedCount())
+                .build();
+    }
+
+    /**
+     * Reconciles one reference CSV file against several counterpart files, or zip archives of them, in one pass over
+     * the reference.
+     * <p>
+     * The reference is parsed and indexed once. The counterparts are then streamed against that index at the same
+     * time on the common {@link ForkJoinPool}. The index and its dictionary are frozen before the fan-out: each
+     * counterpart encodes its text against an {@link TextDictionary#overlay() overlay} of its own and tracks its own
+     * matches, so every result is the one {@link #upload(MultipartFile, MultipartFile, String)} would give for the
+     * pair, the reference being the first file. The work runs on the {@link ReconciliationExecutor}.
+     *
+     * @param reference    the CSV file every counterpart is reconciled against
+     * @param counterparts the CSV files or zip archives of CSV files to reconcile against the reference
+     * @param ruleSet      the name of a configured matching rule set, or {@code null} for the default one
+     * @return a BatchReconciliationResponseDto object that contains one result per counterpart, in posting order
+     * @throws BadRequestException if no rule set has the name, a file is not a CSV file or a zip archive of them, there
+     *                             are too many counterparts, or there is an error parsing files
+     * @throws FileNotFoundException if a file is empty
      */
-    private TransactionSummaryDto reconcileTransactions(List<ReconciliationDto> fileOne, List<ReconciliationDto> fileTwo) {
-        Map<String, List<ReconciliationDto>> fileOneMap = new HashMap<>();
-        Map<String, List<ReconciliationDto>> fileTwoMap = new HashMap<>();
+    @Override
+    public BatchReconciliationResponseDto uploadBatch(MultipartFile reference, List<MultipartFile> counterparts,
+                                                      String ruleSet) {
+        SimilarityScorer scorer = ruleSets.get(ruleSet);
+        String endpoint = ReconciliationMetrics.BATCH;
+        ProbedUpload probedReference = probe(reference);
+        List<ProbedUpload> uploads = new ArrayList<>();
+        if (counterparts != null) {
+            for (MultipartFile counterpart : counterparts) {
+                uploads.add(probe(counterpart));
+            }
+        }
+        List<ProbedUpload> files = new ArrayList<>(uploads);
+        files.add(probedReference);
+        return execute(endpoint, files, () -> {
+            checkFileContentAndExtension(reference);
+            List<Path> extracted = new ArrayList<>();
+            try {
+                return reconcileBatch(probedReference, counterpartFiles(uploads, extracted), scorer, endpoint);
+            } finally {
+                deleteAll(extracted);
+            }
+        });
+    }
 
-        Set<ReconciliationDto> matched = new HashSet<>();
+    private BatchReconciliationResponseDto reconcileBatch(ProbedUpload reference, List<ProbedUpload> counterparts,
+                                                          SimilarityScorer scorer, String endpoint) {
+        long bytes = reference.getSize();
+        for (ProbedUpload counterpart : counterparts) {
+            bytes += counterpart.getSize();
+        }
+        metrics.recordBytesRead(endpoint, bytes);
 
-        List<ReconciliationDto> unmatched1 = new ArrayList<>();
-        List<ReconciliationDto> unmatched2 = new ArrayList<>();
+        TextDictionary dictionary = new TextDictionary();
+        TransactionIndex index = new TransactionIndex(dictionary);
+        metrics.timeStage(ReconciliationMetrics.INDEX, endpoint,
+                () -> forEachRecord(reference, endpoint, dictionary, index::add));
+        metrics.recordIndexSize(endpoint, index.size());
+        metrics.recordRecordsRead(endpoint, FileSide.FIRST, index.size());
 
-        // Populate fileOneMap with records from fileOne
-        for (ReconciliationDto transaction : fileOne) {
-            String key = transaction.getTransactionId();
-            fileOneMap.computeIfAbsent(key, k -> new ArrayList<>()).add(transaction);
+        List<CounterpartReconciliation> tasks = new ArrayList<>(counterparts.size());
+        for (ProbedUpload counterpart : counterparts) {
+            tasks.add(new CounterpartReconciliation(reference, counterpart, index, dictionary.overlay(), scorer,
+                    endpoint));
         }
+        ForkJoinTask.invokeAll(tasks);
 
-        // Populate fileTwoMap with records from table 2
-        for (ReconciliationDto transaction : fileTwo) {
-            String key = transaction.getTransactionId();
-            fileTwoMap.computeIfAbsent(key, k -> new ArrayList<>()).add(transaction);
+        List<ReconciliationResponseDto> results = new ArrayList<>(tasks.size());
+        for (CounterpartReconciliation task : tasks) {
+            if (task.failure != null) {
+                throw task.failure;
+            }
+            results.add(task.response);
         }
+        return BatchReconciliationResponseDto.builder()
+                .referenceFileName(reference.getOriginalFilename())
+                .referenceTotalRecordCount(index.size())
+                .counterpartFileCount(results.size())
+                .counterpartResultList(results)
+                .build();
+    }
 
-        // Find matched transactions
-        for (String key : fileOneMap.keySet()) {
-            List<ReconciliationDto> transactionsListOne = fileOneMap.get(key);
-            List<ReconciliationDto> transactionListTwo = fileTwoMap.get(key);
+    /**
+     * Checks the counterparts of a batch, extracting the CSV entries of zip archives to temporary files.
+     *
+     * @param counterparts the posted counterparts
+     * @param extracted    receives the temporary files, to be deleted once the batch is done
+     * @return the CSV files to reconcile, in posting and archive order
+     */
+    private List<ProbedUpload> counterpartFiles(List<ProbedUpload> counterparts, List<Path> extracted) {
+        if (counterparts.isEmpty()) {
+            throw new BadRequestException("Please provide at least one counterpart file.");
+        }
+        ReconciliationProperties.Batch batch = properties.getBatch();
+        List<ProbedUpload> files = new ArrayList<>();
+        long extractableBytes = batch.getMaxExtractedBytes();
+        for (ProbedUpload counterpart : counterparts) {
+            String name = counterpart.getOriginalFilename();
+            if (name != null && name.endsWith(".zip")) {
+                extractableBytes -= extract(counterpart.getFile(), files, extracted, extractableBytes);
+            } else {
+                checkFileContentAndExtension(counterpart.getFile());
+                files.add(counterpart);
+            }
+            if (files.size() > batch.getMaxFiles()) {
+                throw new BadRequestException("Too many counterpart files. Please provide at most %d files."
+                        .formatted(batch.getMaxFiles()));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new BadRequestException("Please provide at least one counterpart file.");
+        }
+        return files;
+    }
 
-            if (transactionListTwo != null) {
-                for (ReconciliationDto transaction1 : transactionsListOne) {
-                    boolean foundMatch = false;
-                    for (ReconciliationDto transaction2 : transactionListTwo) {
-                        double similarity = transaction1.calculateSimilarity(transaction2);
-                        transaction1.setSimilarityScore(similarity);
-                        if (similarity > 90) {
-                            foundMatch = true;
-                            matched.add(transaction1);
-                            transactionListTwo.remove(transaction2);
-                            break;
+    /**
+     * Extracts the CSV entries of a zip archive to temporary files.
+     *
+     * @return the number of bytes extracted
+     */
+    private long extract(MultipartFile archive, List<ProbedUpload> files, List<Path> extracted, long maxBytes) {
+        long extractedBytes = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.isDirectory() || !UploadCompression.isCsvFileName(entry.getName())) {
+                    continue;
+                }
+                Path path = Files.createTempFile("reconciliation-batch-", ".csv");
+                extracted.add(path);
+                try (OutputStream output = Files.newOutputStream(path)) {
+                    for (int read = zip.read(buffer); read != -1; read = zip.read(buffer)) {
+                        extractedBytes += read;
+                        if (extractedBytes > maxBytes) {
+                            throw new BadRequestException("Archive %s is too large once extracted."
+                                    .formatted(archive.getOriginalFilename()));
                         }
-                    }
-                    if (!foundMatch) {
-                        unmatched1.add(transaction1);
+                        output.write(buffer, 0, read);
                     }
                 }
-                if (!transactionListTwo.isEmpty()) {
-                    unmatched2.addAll(transactionListTwo);
+                LocalCsvFile file = new LocalCsvFile(path, entry.getName());
+                checkFileContentAndExtension(file);
+                files.add(probe(file));
+                if (files.size() > properties.getBatch().getMaxFiles()) {
+                    break;
                 }
-                fileTwoMap.remove(key);
-            } else {
-                unmatched1.addAll(transactionsListOne);
             }
+        } catch (IOException ex) {
+            throw new BadRequestException("Archive extraction exception" + ex.getMessage());
         }
+        return extractedBytes;
+    }
 
-        // Add remaining unmatched records from table2Map to unmatched2 list
-        unmatched2.addAll(fileTwoMap.values().stream().flatMap(Collection::stream).collect(Collectors.toList()));
+    private static void deleteAll(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                log.warn("Could not delete temporary file {}: {}", path, ex.getMessage());
+            }
+        }
+    }
 
+    /**
+     * Reconciles two CSV files that are already on the server, under the configured local directory. The files are
+     * memory-mapped where they are, so nothing is uploaded or copied.
+     *
+     * @param file1 the path of the first CSV file, relative to the local directory
+     * @param file2 the path of the second CSV file, relative to the local directory
+     * @return a ReconciliationResponseDto object that contains the reconciliation result
+     * @throws BadRequestException if local files are disabled, a path leaves the local directory, or parsing fails
+     * @throws FileNotFoundException if either file does not exist or is empty
+     */
+    @Override
+    public ReconciliationResponseDto reconcileLocalFiles(String file1, String file2) {
+        String localDirectory = properties.getIngestion().getLocalDirectory();
+        if (localDirectory == null || localDirectory.isBlank()) {
+            throw new BadRequestException("Reconciliation of local files is disabled.");
+        }
+        Path directory = Path.of(localDirectory).toAbsolutePath().normalize();
+        LocalCsvFile localFile1 = resolveLocalFile(directory, file1);
+        LocalCsvFile localFile2 = resolveLocalFile(directory, file2);
+        ProbedUpload upload1 = probe(localFile1);
+        ProbedUpload upload2 = probe(localFile2);
+        return execute(ReconciliationMetrics.LOCAL, List.of(upload1, upload2),
+                () -> reconcile(upload1, upload2, ruleSets.defaultScorer(), ReconciliationMetrics.LOCAL));
+    }
 
-        TransactionSummaryDto transactionSummaryDto = new TransactionSummaryDto();
-        transactionSummaryDto.setFileOneMatchedRecords(matched);
-        transactionSummaryDto.setFileTwoMatchedRecords(matched);
-        transactionSummaryDto.setFileOneUnMatchedRecord(unmatched1);
-        transactionSummaryDto.setFileTwoUnMatchedRecord(unmatched2);
+    /**
+     * Reconciles one CSV file against the open items of the other side of the persistent ledger.
+     * <p>
+     * The file is streamed, so only the records that share a TransactionID with an open item are held until the end,
+     * and only those items are read back from the ledger. Matched items are retired and the records of the file that
+     * stay unmatched are added to the ledger as open items of its side, so the cost of a run follows the size of the
+     * file, not of the history.
+     *
+     * @param file the CSV file to be reconciled
+     * @param side the side the records of the file belong to
+     * @return a LedgerReconciliationResponseDto object that contains the outcome of the run and the open item counts
+     * @throws BadRequestException if the ledger is disabled, or there is an error in checking or parsing the file
+     * @throws FileNotFoundException if the file is empty
+     */
+    @Override
+    public LedgerReconciliationResponseDto reconcileWithLedger(MultipartFile file, FileSide side) {
+        TransactionLedger ledger = ledgerProvider.getLedger();
+        SimilarityScorer scorer = ruleSets.defaultScorer();
+        String endpoint = ReconciliationMetrics.LEDGER;
+        ProbedUpload upload = probe(file);
+        return execute(endpoint, List.of(upload), () -> {
+            checkFileContentAndExtension(file);
+            metrics.recordBytesRead(endpoint, file.getSize());
+            try (LedgerBatch batch = ledger.begin(side, scorer, scorer.threshold())) {
+                metrics.timeStage(ReconciliationMetrics.MATCH, endpoint, () -> {
+                    streamRecords(upload, endpoint, new TextDictionary(), batch::accept);
+                    commit(batch);
+                });
+                metrics.recordRecordsRead(endpoint, side, batch.getRecordCount());
+                metrics.recordMatching(endpoint, batch.statistics(), scorer);
+                long opened = batch.getOpenedRecords().size();
+                metrics.recordOutcome(endpoint, batch.getMatchedCount(), side == FileSide.FIRST ? opened : 0,
+                        side == FileSide.SECOND ? opened : 0);
+                return LedgerReconciliationResponseDto.builder()
+                        .fileName(file.getOriginalFilename())
+                        .side(side)
+                        .totalRecordCount(batch.getRecordCount())
+                        .matchedRecordCount(batch.getMatchedCount())
+                        .openedRecordCount(batch.getOpenedRecords().size())
+                        .openedRecordList(batch.getOpenedRecords())
+                        .firstSideOpenCount(ledger.openCount(FileSide.FIRST))
+                        .secondSideOpenCount(ledger.openCount(FileSide.SECOND))
+                        .build();
+            }
+        });
+    }
+
+    private static void commit(LedgerBatch batch) {
+        try {
+            batch.commit();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Ledger update failed", ex);
+        }
+    }
+
+    private LocalCsvFile resolveLocalFile(Path directory, String file) {
+        Path path = directory.resolve(file).normalize();
+        if (!path.startsWith(directory)) {
+            throw new BadRequestException("Invalid file path: " + file);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new FileNotFoundException("File not found: " + file);
+        }
+        return new LocalCsvFile(path);
+    }
+
+    /**
+     * @param scorer the compiled rule set pairs are matched with
+     * @return a description of the settings the outcome of a reconciliation in memory depends on, besides the files
+     */
+    private String matchingConfiguration(SimilarityScorer scorer) {
+        ReconciliationProperties.CandidateSearch search = properties.getCandidateSearch();
+        ReconciliationProperties.NearMiss nearMiss = properties.getNearMiss();
+        return scorer + ";threshold=" + scorer.threshold()
+                + (search.isEnabled() ? ";candidates=" + search.getStrategy() + "/" + search.getThreshold() + "/"
+                + search.getMaxBlockSize() + "/" + search.getWindow() : "")
+                + (nearMiss.isEnabled() ? ";nearMisses=" + nearMiss.getTopK() + "/" + nearMiss.getThreshold() : "");
+    }
+
+    /**
+     * @return the configured second pass over the records left unmatched, or {@code null} when it is disabled
+     */
+    private CandidateSearch candidateSearch(SimilarityScorer scorer) {
+        ReconciliationProperties.CandidateSearch search = properties.getCandidateSearch();
+        if (!search.isEnabled()) {
+            return null;
+        }
+        if (search.getStrategy() == ReconciliationProperties.CandidateSearch.Strategy.SORT_MERGE) {
+            return new SortMergeCandidateSearch(scorer, search.getThreshold(),
+                    search.getMaxBlockSize(), search.getWindow().toSeconds(), search.getSortBufferRecords(),
+                    directoryOrTemp(search.getSpillDirectory()));
+        }
+        return new BlockingCandidateSearch(scorer, search.getThreshold(), search.getMaxBlockSize());
+    }
+
+    /**
+     * Runs a request once the {@link AdmissionController} admits it, on the {@link ReconciliationExecutor}, timed as
+     * a request of the given endpoint.
+     */
+    private <T> T execute(String endpoint, List<ProbedUpload> files, Supplier<T> work) {
+        return admissionController.admit(memoryCost(files),
+                () -> reconciliationExecutor.execute(() -> metrics.timeRequest(endpoint, work)));
+    }
+
+    /**
+     * @return the heap a request is expected to take, from the size of its files; an upload beyond the spill budget
+     * is reconciled from disk, so it claims no more than the budget
+     */
+    private long memoryCost(List<ProbedUpload> files) {
+        long heapBytes = 0;
+        for (ProbedUpload file : files) {
+            heapBytes += file.getContentSize() * HEAP_BYTES_PER_FILE_BYTE;
+        }
+        return properties.getSpill().isEnabled() ? Math.min(heapBytes, memoryBudget()) : heapBytes;
+    }
+
+    /**
+     * @return the heap the records of an upload may take before it is spilled to disk
+     */
+    private long memoryBudget() {
+        long budget = properties.getSpill().getMemoryBudgetBytes();
+        return budget > 0 ? budget : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    private static Path directoryOrTemp(String directory) {
+        return Path.of(directory == null || directory.isBlank() ? System.getProperty("java.io.tmpdir") : directory);
+    }
+
+    private boolean isStreamingUpload(ProbedUpload file1, ProbedUpload file2) {
+        ReconciliationProperties.Streaming streaming = properties.getStreaming();
+        return streaming.isEnabled()
+                && file1.getContentSize() + file2.getContentSize() >= streaming.getThresholdBytes();
+    }
+
+    /**
+     * @return whether the records an upload holds in memory, the smaller file when it is streamed, would exceed the
+     * spill budget, so that both files are partitioned to disk instead
+     */
+    private boolean isSpilledUpload(ProbedUpload file1, ProbedUpload file2) {
+        long heldBytes = isStreamingUpload(file1, file2) ? Math.min(file1.getContentSize(), file2.getContentSize())
+                : file1.getContentSize() + file2.getContentSize();
+        return properties.getSpill().isEnabled() && heldBytes * HEAP_BYTES_PER_FILE_BYTE > memoryBudget();
+    }
+
+    private boolean isInMemoryUpload(ProbedUpload file1, ProbedUpload file2) {
+        return !isSpilledUpload(file1, file2) && !isStreamingUpload(file1, file2);
+    }
+
+    /**
+     * Probes the compression of an upload and estimates the size of its content, once for the whole request.
+     */
+    private ProbedUpload probe(MultipartFile file) {
+        return ProbedUpload.probe(file, properties.getIngestion().getCompressionRatio());
+    }
+
+    /**
+     * Checks the content and extension of two CSV files.
+     * <p>
+     * The method checks that both files have a ".csv", ".csv.gz" or ".csv.zst" extension and that their content is not
+     * empty. If any of these conditions is not met, the method throws an exception with a descriptive error message.
+     * Whether a file is actually compressed is told by its content, see {@link UploadCompression}.
+     *
+     * @param file1 the first file to check
+     * @param file2 the second file to check
+     * @throws BadRequestException if either file does not have a CSV extension
+     * @throws FileNotFoundException if either file is empty
+     */
+    private void checkFilesContentAndExtension(MultipartFile file1, MultipartFile file2) {
+        // Check file extensions
+        if (!UploadCompression.isCsvFileName(file1.getOriginalFilename())
+                || !UploadCompression.isCsvFileName(file2.getOriginalFilename())) {
+            throw new BadRequestException("Invalid file format. Please provide two CSV files.");
+        }
+
+        // Check file content
+        if (file1.isEmpty() || file2.isEmpty()) {
+            throw new FileNotFoundException("Please provide two file content");
+        }
+    }
+
+    /**
+     * Checks the content and extension of a single CSV file.
+     *
+     * @param file the file to check
+     * @throws BadRequestException if the file does not have a ".csv", ".csv.gz" or ".csv.zst" extension
+     * @throws FileNotFoundException if the file is empty
+     */
+    private void checkFileContentAndExtension(MultipartFile file) {
+        if (!UploadCompression.isCsvFileName(file.getOriginalFilename())) {
+            throw new BadRequestException("Invalid file format. Please provide a CSV file.");
+        }
+        if (file.isEmpty()) {
+            throw new FileNotFoundException("Please provide file content");
+        }
+    }
 
-        return transactionSummaryDto;
+    /**
 
+     Reconciles two lists of {@link ReconciliationDto} objects to find matched and unmatched transactions.
+     Large inputs are hash-partitioned by TransactionID and reconciled in parallel, see {@link InMemoryReconciler};
+     the result does not depend on it. When enabled, the records left unmatched are matched on their other fields by a
+     {@link CandidateSearch}, to recover pairs whose TransactionID was mistyped.
+     @param fileOne the first list of transactions to reconcile
+     @param fileTwo the second list of transactions to reconcile
+     @param dictionary the dictionary of the upload, which both lists were parsed against
+     @param scorer the compiled rule set pairs are matched with
+     @param endpoint the endpoint the files came through, for the metrics
+     @return a {@link TransactionSummaryDto} object containing lists of matched and unmatched transactions
+     */
+    private TransactionSummaryDto reconcileTransactions(List<ReconciliationDto> fileOne, List<ReconciliationDto> fileTwo,
+                                                        TextDictionary dictionary, SimilarityScorer scorer,
+                                                        String endpoint) {
+        ReconciliationProperties.Parallel parallel = properties.getParallel();
+        int shards = parallel.isEnabled() && fileOne.size() + fileTwo.size() >= parallel.getThresholdRecords()
+                ? parallel.getShardCount() : 1;
+        ReconciliationProperties.NearMiss nearMiss = properties.getNearMiss();
+        InMemoryReconciler reconciler = new InMemoryReconciler(scorer, scorer.threshold(), shards,
+                candidateSearch(scorer), nearMiss.isEnabled() ? nearMiss.getTopK() : 0, nearMiss.getThreshold());
+        TransactionSummaryDto summary = reconciler.reconcile(fileOne, fileTwo, dictionary);
+        metrics.recordIndexSize(endpoint, fileOne.size() + fileTwo.size());
+        metrics.recordMatching(endpoint, reconciler.statistics(), scorer);
+        return summary;
     }
 
     /**
 
      Converts the given CSV file to a list of ReconciliationDto objects.
      Each line in the CSV file is converted to a ReconciliationDto object, and the list of
-     these objects is returned.
+     these objects is returned. Large files are parsed in parallel chunks by the {@link ChunkedCsvParser}, unless
+     they are compressed or too large to be mapped or held in one array.
      @param file The CSV file to convert
+     @param endpoint the endpoint the file came through, for the metrics
+     @param dictionary the dictionary of the upload the repeated text fields are encoded against
      @return An ArrayList of ReconciliationDto objects representing the data in the CSV file
      @throws BadRequestException if there is an error parsing the file
      */
-    private ArrayList<ReconciliationDto> convertFileToModel(MultipartFile file) {
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), "UTF-8"));
-
-            CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
-                    .setSkipHeaderRecord(true)
-                    .setDelimiter(",")
-                    .setHeader()
-                    .build();
+    private ArrayList<ReconciliationDto> convertFileToModel(ProbedUpload file, String endpoint,
+                                                            TextDictionary dictionary) {
+        ReconciliationProperties.Parser parser = properties.getParser();
+        if (file.getSize() >= parser.getParallelThresholdBytes() && !file.isCompressed()
+                && MappedUpload.isMappable(file.getFile())) {
+            ChunkedCsvParser chunkedParser = new ChunkedCsvParser(parser.getChunkBytes());
+            if (isMapped(file)) {
+                try (MappedUpload upload = map(file, endpoint)) {
+                    return chunkedParser.parse(upload.content(), file.getOriginalFilename(), dictionary);
+                } catch (IOException ex) {
+                    throw new BadRequestException("File parsing exception" + ex.getMessage());
+                }
+            }
+            try {
+                return chunkedParser.parse(ByteBuffer.wrap(file.getBytes()), file.getOriginalFilename(), dictionary);
+            } catch (IOException ex) {
+                throw new BadRequestException("File parsing exception" + ex.getMessage());
+            }
+        }
 
-            Iterable<CSVRecord> csvRecords = csvFormat.parse(reader);
-            ArrayList<ReconciliationDto> transactionList = new ArrayList<>();
+        ArrayList<ReconciliationDto> transactionList = new ArrayList<>();
+        forEachRecord(file, endpoint, dictionary, transactionList::add);
+        return transactionList;
+    }
 
+    /**
+     * Parses the given CSV file record by record and hands every converted ReconciliationDto to the consumer, so
+     * that the file never has to be held in memory as a whole. A compressed file is decompressed as it is read.
+     *
+     * @param file       The CSV file to parse
+     * @param endpoint   the endpoint the file came through, for the metrics
+     * @param dictionary the dictionary of the upload the repeated text fields are encoded against
+     * @param consumer   the consumer receiving the records in file order
+     * @throws BadRequestException if there is an error parsing the file
+     */
+    private void forEachRecord(ProbedUpload file, String endpoint, TextDictionary dictionary,
+                               Consumer<ReconciliationDto> consumer) {
+        if (isMapped(file)) {
+            readMapped(file, endpoint, dictionary, view -> consumer.accept(view.toDto()));
+            return;
+        }
+        CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
+                .setSkipHeaderRecord(true)
+                .setDelimiter(",")
+                .setHeader()
+                .build();
 
-            for (CSVRecord csvRecord : csvRecords) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.open(), "UTF-8"))) {
+            for (CSVRecord csvRecord : csvFormat.parse(reader)) {
+                ReconciliationDto transaction;
                 try {
-                    ReconciliationDto transaction = ReconciliationDto.builder()
+                    transaction = ReconciliationDto.builder()
                             .transactionId(csvRecord.get("TransactionID"))
-                            .transactionType(csvRecord.get("TransactionType"))
-                            .transactionDescription(csvRecord.get("TransactionDescription"))
-                            .transactionNarrative(csvRecord.get("TransactionNarrative"))
+                            .transactionType(dictionary.intern(csvRecord.get("TransactionType")))
+                            .transactionDescription(dictionary.intern(csvRecord.get("TransactionDescription")))
+                            .transactionNarrative(dictionary.intern(csvRecord.get("TransactionNarrative")))
                             .transactionAmount(Long.valueOf(csvRecord.get("TransactionAmount")))
                             .transactionDate(LocalDateTime.parse(csvRecord.get("TransactionDate")
-                                    , DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
-                            .profileName(csvRecord.get("ProfileName"))
+                                    , FieldParsers.DATE_FORMATTER))
+                            .profileName(dictionary.intern(csvRecord.get("ProfileName")))
                             .walletReference(csvRecord.get("WalletReference"))
                             .filename(file.getOriginalFilename())
                             .build();
-
-                    transactionList.add(transaction);
                 } catch (Exception ex) {
 
                     String message = "Parsing file exception. File name: %s, record number: %s. Exception: %s"
                             .formatted(file.getOriginalFilename(), csvRecord.getRecordNumber(), ex.getMessage());
                     throw new BadRequestException(message);
                 }
-
+                consumer.accept(transaction);
             }
-            return transactionList;
+        } catch (IOException ex) {
+            throw new BadRequestException("File parsing exception" + ex.getMessage());
+        }
+    }
+
+    /**
+     * Streams the given CSV file record by record. When the file is memory-mapped, records are fingerprinted from the
+     * mapped bytes and only turned into ReconciliationDto objects when the consumer materializes them.
+     *
+     * @param file       The CSV file to stream
+     * @param endpoint   the endpoint the file came through, for the metrics
+     * @param dictionary the dictionary of the upload the repeated text fields are encoded against
+     * @param consumer   the consumer receiving the records in file order, only valid during the call
+     * @throws BadRequestException if there is an error parsing the file
+     */
+    private void streamRecords(ProbedUpload file, String endpoint, TextDictionary dictionary,
+                               Consumer<StreamedRecord> consumer) {
+        if (isMapped(file)) {
+            readMapped(file, endpoint, dictionary, consumer::accept);
+        } else {
+            forEachRecord(file, endpoint, dictionary,
+                    record -> consumer.accept(TransactionFingerprint.of(record, dictionary)));
+        }
+    }
+
+    private boolean isMapped(ProbedUpload file) {
+        if (!properties.getIngestion().isMemoryMap() || file.isCompressed()) {
+            return false;
+        }
+        if (!MappedUpload.isMappable(file.getFile())) {
+            log.info("{} is too large to be memory-mapped, it is read through the reader instead",
+                    file.getOriginalFilename());
+            return false;
+        }
+        return true;
+    }
 
+    private void readMapped(ProbedUpload file, String endpoint, TextDictionary dictionary,
+                            Consumer<CsvRecordView> action) {
+        try (MappedUpload upload = map(file, endpoint)) {
+            CsvRecordReader.forEach(upload.content(), file.getOriginalFilename(), dictionary, action);
         } catch (IOException ex) {
             throw new BadRequestException("File parsing exception" + ex.getMessage());
         }
     }
+
+    /**
+     * Maps the given file, moving an upload to disk first; the time it takes is the read stage of the metrics.
+     */
+    private MappedUpload map(ProbedUpload file, String endpoint) {
+        return metrics.timeStage(ReconciliationMetrics.READ, endpoint, () -> {
+            try {
+                return file.map();
+            } catch (IOException ex) {
+                throw new BadRequestException("File parsing exception" + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Streams one counterpart of a batch against the shared index of the reference, keeping the first failure instead
+     * of letting the pool rethrow a copy of it. The counterpart is encoded against its own overlay of the frozen
+     * dictionary of the index.
+     */
+    private class CounterpartReconciliation extends RecursiveAction {
+
+        private final ProbedUpload reference;
+        private final ProbedUpload counterpart;
+        private final TransactionIndex index;
+        private final TextDictionary dictionary;
+        private final SimilarityScorer scorer;
+        private final String endpoint;
+        private ReconciliationResponseDto response;
+        private RuntimeException failure;
+
+        CounterpartReconciliation(ProbedUpload reference, ProbedUpload counterpart, TransactionIndex index,
+                                  TextDictionary dictionary, SimilarityScorer scorer, String endpoint) {
+            this.reference = reference;
+            this.counterpart = counterpart;
+            this.index = index;
+            this.dictionary = dictionary;
+            this.scorer = scorer;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                CollectingReconciliationSink sink = new CollectingReconciliationSink();
+                CountingReconciliationSink counts = new CountingReconciliationSink(sink);
+                StreamingReconciler reconciler =
+                        new StreamingReconciler(index, dictionary, FileSide.FIRST, counts, scorer,
+                                scorer.threshold());
+                metrics.timeStage(ReconciliationMetrics.MATCH, endpoint, () -> {
+                    streamRecords(counterpart, endpoint, dictionary, record -> {
+                        counts.read(FileSide.SECOND);
+                        reconciler.accept(record);
+                    });
+                    reconciler.finish();
+                });
+                metrics.recordRecordsRead(endpoint, FileSide.SECOND, counts.getSecondFileTotalCount());
+                metrics.recordMatching(endpoint, reconciler.statistics(), scorer);
+
+                response = toResponse(reference, counterpart, counts);
+                setUnmatchedRecords(response, sink, scorer, endpoint);
+                recordOutcome(endpoint, response);
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+        }
+    }
 }
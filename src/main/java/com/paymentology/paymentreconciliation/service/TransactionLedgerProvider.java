@@ -0,0 +1,51 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import com.paymentology.paymentreconciliation.ledger.TransactionLedger;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Owns the {@link TransactionLedger} of the configured ledger directory, opening it on first use.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionLedgerProvider {
+
+    private final ReconciliationProperties properties;
+
+    private TransactionLedger ledger;
+
+    /**
+     * @return the ledger
+     * @throws BadRequestException if no ledger directory is configured
+     */
+    public synchronized TransactionLedger getLedger() {
+        if (ledger == null) {
+            ReconciliationProperties.Ledger config = properties.getLedger();
+            if (config.getDirectory() == null || config.getDirectory().isBlank()) {
+                throw new BadRequestException("Ledger reconciliation is disabled.");
+            }
+            try {
+                ledger = TransactionLedger.open(Path.of(config.getDirectory()), config.getSegmentBytes());
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Ledger could not be opened", ex);
+            }
+        }
+        return ledger;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (ledger != null) {
+            ledger.close();
+            ledger = null;
+        }
+    }
+}
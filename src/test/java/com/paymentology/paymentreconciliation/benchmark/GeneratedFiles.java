@@ -0,0 +1,72 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.parser.ChunkedCsvParser;
+import com.paymentology.paymentreconciliation.parser.LocalCsvFile;
+import com.paymentology.paymentreconciliation.parser.MappedUpload;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A pair of generated files shared by the benchmarks of one trial, see {@link SyntheticCsvGenerator}.
+ */
+@State(Scope.Benchmark)
+public class GeneratedFiles {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param("0.01")
+    public double duplicateIdRatio;
+
+    @Param("0.05")
+    public double mismatchRatio;
+
+    @Param("0")
+    public long dateSkewSeconds;
+
+    Path directory;
+    Path first;
+    Path second;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("reconciliation-benchmark-");
+        first = directory.resolve("first.csv");
+        second = directory.resolve("second.csv");
+        SyntheticCsvGenerator.builder()
+                .rows(rows)
+                .duplicateIdRatio(duplicateIdRatio)
+                .mismatchRatio(mismatchRatio)
+                .dateSkewSeconds(dateSkewSeconds)
+                .build()
+                .write(first, second);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(first);
+        Files.deleteIfExists(second);
+        Files.deleteIfExists(directory);
+    }
+
+    ByteBuffer map(Path file) throws IOException {
+        try (MappedUpload upload = MappedUpload.map(new LocalCsvFile(file))) {
+            return upload.content();
+        }
+    }
+
+    List<ReconciliationDto> parse(Path file) throws IOException {
+        return new ChunkedCsvParser(1024 * 1024).parse(map(file), file.getFileName().toString());
+    }
+}
@@ -0,0 +1,58 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.TransactionIndex;
+import com.paymentology.paymentreconciliation.engine.TransactionKeyTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of indexing one parsed file by TransactionID: the bare key table, and the columnar index the streaming engine
+ * builds over the smaller file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexBenchmark {
+
+    private List<ReconciliationDto> records;
+
+    @Setup(Level.Trial)
+    public void parse(GeneratedFiles files) throws IOException {
+        records = files.parse(files.first);
+    }
+
+    @Benchmark
+    public TransactionKeyTable buildKeyTable() {
+        TransactionKeyTable table = new TransactionKeyTable(records.size());
+        for (ReconciliationDto record : records) {
+            table.add(record.getTransactionId());
+        }
+        return table;
+    }
+
+    @Benchmark
+    public TransactionIndex buildTransactionIndex() {
+        TransactionIndex index = new TransactionIndex();
+        for (ReconciliationDto record : records) {
+            index.add(record);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,53 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.TransactionSummaryDto;
+import com.paymentology.paymentreconciliation.engine.InMemoryReconciler;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reconciling two already parsed files in memory, as {@code reconcileTransactions} does, sequentially or
+ * over TransactionID shards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatchingBenchmark {
+
+    @Param({"1", "0"})
+    public int shards;
+
+    private List<ReconciliationDto> first;
+    private List<ReconciliationDto> second;
+
+    @Setup(Level.Trial)
+    public void parse(GeneratedFiles files) throws IOException {
+        first = files.parse(files.first);
+        second = files.parse(files.second);
+    }
+
+    @Benchmark
+    public TransactionSummaryDto reconcile() {
+        int shardCount = shards > 0 ? shards : 4 * Runtime.getRuntime().availableProcessors();
+        return new InMemoryReconciler(SimilarityScorer.DEFAULT, 90, shardCount).reconcile(first, second);
+    }
+}
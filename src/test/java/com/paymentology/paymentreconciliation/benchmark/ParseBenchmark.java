@@ -0,0 +1,54 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.TransactionFingerprint;
+import com.paymentology.paymentreconciliation.parser.ChunkedCsvParser;
+import com.paymentology.paymentreconciliation.parser.CsvRecordReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse cost of one file: sequential fingerprinting straight from the mapped bytes, and the chunked parser that
+ * materializes every record. Divide by {@code rows} for the per-row cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    private ByteBuffer content;
+
+    @Setup(Level.Trial)
+    public void map(GeneratedFiles files) throws IOException {
+        content = files.map(files.second);
+    }
+
+    @Benchmark
+    public void fingerprintRecords(Blackhole blackhole) {
+        CsvRecordReader.forEach(content.duplicate(), "second.csv",
+                view -> blackhole.consume(view.fingerprint(0, TransactionFingerprint.TRANSACTION_ID)));
+    }
+
+    @Benchmark
+    public List<ReconciliationDto> parseChunked() {
+        return new ChunkedCsvParser(1024 * 1024).parse(content.duplicate(), "second.csv");
+    }
+}
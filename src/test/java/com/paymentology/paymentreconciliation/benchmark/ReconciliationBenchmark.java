@@ -0,0 +1,68 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.parser.LocalCsvFile;
+import com.paymentology.paymentreconciliation.service.AdmissionController;
+import com.paymentology.paymentreconciliation.service.MatchingRuleSets;
+import com.paymentology.paymentreconciliation.service.ReconciliationExecutor;
+import com.paymentology.paymentreconciliation.service.ReconciliationMetrics;
+import com.paymentology.paymentreconciliation.service.ReconciliationResultCache;
+import com.paymentology.paymentreconciliation.service.ReconciliationServiceImpl;
+import com.paymentology.paymentreconciliation.service.TransactionLedgerProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of a full {@code upload} of two files through the service, memory-mapped in place, with the
+ * in-memory or the streaming engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReconciliationBenchmark {
+
+    @Param({"in-memory", "streaming"})
+    public String engine;
+
+    private ReconciliationServiceImpl service;
+    private GeneratedFiles files;
+
+    @Setup(Level.Trial)
+    public void prepare(GeneratedFiles files) throws IOException {
+        this.files = files;
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getStreaming().setThresholdBytes("streaming".equals(engine) ? 0 : Long.MAX_VALUE);
+        properties.getCache().setEnabled(false);
+        service = new ReconciliationServiceImpl(properties,
+                new ReconciliationExecutor(properties, new MockEnvironment()),
+                new TransactionLedgerProvider(properties),
+                new ReconciliationResultCache(properties, new ObjectMapper().findAndRegisterModules()),
+                new ReconciliationMetrics(new SimpleMeterRegistry()), new AdmissionController(properties),
+                new MatchingRuleSets(properties));
+    }
+
+    @Benchmark
+    public ReconciliationResponseDto upload() {
+        return service.upload(new LocalCsvFile(files.first), new LocalCsvFile(files.second));
+    }
+}
@@ -0,0 +1,101 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.engine.TransactionFingerprint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scoring one pair of records, over a fixed set of pairs drawn from generated files: mostly counterparts,
+ * some unrelated records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    private final ReconciliationDto[] left = new ReconciliationDto[PAIRS];
+    private final ReconciliationDto[] right = new ReconciliationDto[PAIRS];
+    private final TransactionFingerprint[] leftFingerprints = new TransactionFingerprint[PAIRS];
+    private final TransactionFingerprint[] rightFingerprints = new TransactionFingerprint[PAIRS];
+
+    @Setup(Level.Trial)
+    public void pick() throws IOException {
+        GeneratedFiles files = new GeneratedFiles();
+        files.rows = 10_000;
+        files.duplicateIdRatio = 0.01;
+        files.mismatchRatio = 0.2;
+        files.dateSkewSeconds = 60;
+        files.generate();
+        try {
+            List<ReconciliationDto> first = files.parse(files.first);
+            List<ReconciliationDto> second = files.parse(files.second);
+            SplittableRandom random = new SplittableRandom(7);
+            for (int i = 0; i < PAIRS; i++) {
+                int row = random.nextInt(first.size());
+                left[i] = first.get(row);
+                right[i] = second.get(random.nextInt(10) == 0 ? random.nextInt(second.size()) : row);
+                leftFingerprints[i] = TransactionFingerprint.of(left[i]);
+                rightFingerprints[i] = TransactionFingerprint.of(right[i]);
+            }
+        } finally {
+            files.delete();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public int scoreFingerprints() {
+        SimilarityScorer scorer = SimilarityScorer.DEFAULT;
+        int points = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            points += scorer.points(leftFingerprints[i], 0, rightFingerprints[i], 0);
+        }
+        return points;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public int scoreFingerprintsBounded() {
+        SimilarityScorer scorer = SimilarityScorer.DEFAULT;
+        int floor = scorer.minPointsAbove(scorer.threshold());
+        int points = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            points += scorer.points(leftFingerprints[i], 0, rightFingerprints[i], 0, floor);
+        }
+        return points;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public double calculateSimilarity() {
+        double similarity = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            similarity += left[i].calculateSimilarity(right[i]);
+        }
+        return similarity;
+    }
+}
@@ -0,0 +1,114 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import lombok.Builder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a pair of transaction files with the header of {@code file1.csv}.
+ * <p>
+ * The second file mirrors the first row by row. A {@code mismatchRatio} share of its rows cannot be reconciled: half of
+ * them carry a TransactionID unknown to the first file, the other half keep the TransactionID but differ in amount,
+ * description and wallet reference. Every other row is copied, with its date moved by up to {@code dateSkewSeconds}
+ * either way. In both files a {@code duplicateIdRatio} share of rows reuse the TransactionID of an earlier row. The
+ * output only depends on the settings and the seed.
+ */
+@Builder
+public class SyntheticCsvGenerator {
+
+    public static final String HEADER = "ProfileName,TransactionDate,TransactionAmount,TransactionNarrative,"
+            + "TransactionDescription,TransactionID,TransactionType,WalletReference";
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LocalDateTime START = LocalDateTime.of(2014, 1, 11, 0, 0);
+    private static final long FIRST_ID = 584_011_808_649_511L;
+    private static final String[] PROFILES = {"Card Campaign", "Payroll", "Merchant Settlement", "Wallet Top-up"};
+    private static final String[] NARRATIVES = {
+            "*MOLEPS ATM25             MOLEPOLOLE    BW",
+            "*MOGODITSHANE2            MOGODITHSANE  BW",
+            "CAPITAL SAVINGS BANK      GABORONE      BW",
+            "PAYMENT BY CARD           FRANCISTOWN   BW"};
+    private static final String[] DESCRIPTIONS = {"DEDUCT", "REVERSAL", "PURCHASE"};
+
+    private final int rows;
+    @Builder.Default
+    private final double duplicateIdRatio = 0.01;
+    @Builder.Default
+    private final double mismatchRatio = 0.05;
+    @Builder.Default
+    private final long dateSkewSeconds = 0;
+    @Builder.Default
+    private final long seed = 42;
+
+    /**
+     * Writes both files.
+     *
+     * @param first  the file written as the first file
+     * @param second the file written as the counterpart
+     */
+    public void write(Path first, Path second) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (BufferedWriter out1 = Files.newBufferedWriter(first, StandardCharsets.UTF_8);
+             BufferedWriter out2 = Files.newBufferedWriter(second, StandardCharsets.UTF_8)) {
+            out1.write(HEADER);
+            out1.newLine();
+            out2.write(HEADER);
+            out2.newLine();
+            long[] ids = new long[rows];
+            for (int row = 0; row < rows; row++) {
+                ids[row] = row > 0 && random.nextDouble() < duplicateIdRatio
+                        ? ids[random.nextInt(row)]
+                        : FIRST_ID + row;
+                String profile = PROFILES[random.nextInt(PROFILES.length)];
+                LocalDateTime date = START.plusSeconds(row * 7L + random.nextInt(7));
+                long amount = -(random.nextInt(5_000) + 1) * 100L;
+                String narrative = NARRATIVES[random.nextInt(NARRATIVES.length)];
+                String description = DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)];
+                int type = random.nextInt(2);
+                String wallet = "P_" + Long.toString(Math.abs(random.nextLong()), 36);
+                writeRow(out1, profile, date, amount, narrative, description, Long.toString(ids[row]), type, wallet);
+
+                if (random.nextDouble() < mismatchRatio) {
+                    if (random.nextBoolean()) {
+                        writeRow(out2, profile, date, amount, narrative, description, "X" + ids[row], type, wallet);
+                    } else {
+                        writeRow(out2, profile, date, amount - 1, narrative, "ADJUSTMENT",
+                                Long.toString(ids[row]), type, wallet + "0");
+                    }
+                } else {
+                    long skew = dateSkewSeconds > 0 ? random.nextLong(-dateSkewSeconds, dateSkewSeconds + 1) : 0;
+                    writeRow(out2, profile, date.plusSeconds(skew), amount, narrative, description,
+                            Long.toString(ids[row]), type, wallet);
+                }
+            }
+        }
+    }
+
+    private static void writeRow(BufferedWriter out, String profile, LocalDateTime date, long amount,
+                                 String narrative, String description, String transactionId, int type,
+                                 String wallet) throws IOException {
+        out.write(profile);
+        out.write(',');
+        out.write(DATE_FORMATTER.format(date));
+        out.write(',');
+        out.write(Long.toString(amount));
+        out.write(',');
+        out.write(narrative);
+        out.write(',');
+        out.write(description);
+        out.write(',');
+        out.write(transactionId);
+        out.write(',');
+        out.write(Integer.toString(type));
+        out.write(',');
+        out.write(wallet);
+        out.newLine();
+    }
+}
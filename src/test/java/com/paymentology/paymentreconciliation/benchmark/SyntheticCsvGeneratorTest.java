@@ -0,0 +1,66 @@
+package com.paymentology.paymentreconciliation.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.parser.LocalCsvFile;
+import com.paymentology.paymentreconciliation.service.AdmissionController;
+import com.paymentology.paymentreconciliation.service.MatchingRuleSets;
+import com.paymentology.paymentreconciliation.service.ReconciliationExecutor;
+import com.paymentology.paymentreconciliation.service.ReconciliationMetrics;
+import com.paymentology.paymentreconciliation.service.ReconciliationResultCache;
+import com.paymentology.paymentreconciliation.service.ReconciliationServiceImpl;
+import com.paymentology.paymentreconciliation.service.TransactionLedgerProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticCsvGeneratorTest {
+
+    private final ReconciliationProperties properties = new ReconciliationProperties();
+
+    private final ReconciliationServiceImpl reconciliationService =
+            new ReconciliationServiceImpl(properties, new ReconciliationExecutor(properties, new MockEnvironment()),
+                    new TransactionLedgerProvider(properties),
+                    new ReconciliationResultCache(properties, new ObjectMapper().findAndRegisterModules()),
+                    new ReconciliationMetrics(new SimpleMeterRegistry()), new AdmissionController(properties),
+                    new MatchingRuleSets(properties));
+
+    @Test
+    void testMirroredFilesFullyMatch(@TempDir Path directory) throws IOException {
+        Path first = directory.resolve("first.csv");
+        Path second = directory.resolve("second.csv");
+        SyntheticCsvGenerator.builder().rows(2_000).mismatchRatio(0).dateSkewSeconds(0).build().write(first, second);
+
+        List<String> lines = Files.readAllLines(first);
+        assertEquals(SyntheticCsvGenerator.HEADER, lines.get(0));
+        assertEquals(2_001, lines.size());
+
+        ReconciliationResponseDto actual =
+                reconciliationService.upload(new LocalCsvFile(first), new LocalCsvFile(second));
+        assertEquals(2_000, actual.getMatchedRecordCount());
+    }
+
+    @Test
+    void testMismatchRatioLeavesRecordsUnmatched(@TempDir Path directory) throws IOException {
+        Path first = directory.resolve("first.csv");
+        Path second = directory.resolve("second.csv");
+        SyntheticCsvGenerator.builder().rows(2_000).mismatchRatio(0.1).duplicateIdRatio(0).build()
+                .write(first, second);
+
+        ReconciliationResponseDto actual =
+                reconciliationService.upload(new LocalCsvFile(first), new LocalCsvFile(second));
+
+        assertEquals(actual.getFirstFileUnmatchedRecordCount(), actual.getSecondFileUnmatchedRecordCount());
+        assertTrue(actual.getFirstFileUnmatchedRecordCount() > 100 && actual.getFirstFileUnmatchedRecordCount() < 300,
+                "unmatched: " + actual.getFirstFileUnmatchedRecordCount());
+    }
+}
@@ -1,9 +1,13 @@
 package com.paymentology.paymentreconciliation.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
 import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
 
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.ReconciliationSink;
 import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
 import com.paymentology.paymentreconciliation.service.ReconciliationService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -30,6 +34,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -82,7 +87,8 @@ class ReconciliationControllerTest {
         MockMultipartFile file2 = new MockMultipartFile("file2", "file2.csv", "text/csv", content2);
 
 
-        when(reconciliationService.upload(Mockito.any(MultipartFile.class),Mockito.any(MultipartFile.class))).thenReturn(responseDto);
+        when(reconciliationService.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class),
+                Mockito.<String>any())).thenReturn(responseDto);
 
         MvcResult resultActions = mvc.perform(MockMvcRequestBuilders
                 .multipart("/api/v1/upload")
@@ -114,7 +120,8 @@ class ReconciliationControllerTest {
         MockMultipartFile file1 = new MockMultipartFile("file1", "file1.txt", "text/plain", "test data".getBytes());
         MockMultipartFile file2 = new MockMultipartFile("file2", "file2.txt", "text/plain", "test data".getBytes());
 
-        when(reconciliationService.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class)))
+        when(reconciliationService.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class),
+                Mockito.<String>any()))
                 .thenThrow(new BadRequestException("Invalid file type"));
 
         MvcResult resultActions = mvc.perform(MockMvcRequestBuilders.multipart("/api/v1/upload")
@@ -126,6 +133,24 @@ class ReconciliationControllerTest {
                 .andReturn();
     }
 
+    @Test
+    public void testRejectedUploadCarriesRetryAfter() throws Exception {
+        MockMultipartFile file1 = new MockMultipartFile("file1", "file1.csv", "text/csv", "test data".getBytes());
+        MockMultipartFile file2 = new MockMultipartFile("file2", "file2.csv", "text/csv", "test data".getBytes());
+
+        when(reconciliationService.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class),
+                Mockito.<String>any()))
+                .thenThrow(new TooManyRequestsException("Too many reconciliations waiting. Please retry later.",
+                        Duration.ofMillis(1500)));
+
+        mvc.perform(MockMvcRequestBuilders.multipart("/api/v1/upload")
+                        .file(file1)
+                        .file(file2)
+                        .contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "2"));
+    }
+
     @Test
     public void testUploadWithInvalidContent() throws Exception {
 
@@ -138,7 +163,8 @@ class ReconciliationControllerTest {
         byte[] content2 = Files.readAllBytes(Paths.get(resource.getURI()));
         MockMultipartFile file2 = new MockMultipartFile("file2", "file2.csv", "text/csv", content2);
 
-        when(reconciliationService.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class)))
+        when(reconciliationService.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class),
+                Mockito.<String>any()))
                 .thenThrow(new BadRequestException("Invalid file type"));
 
         mvc.perform(MockMvcRequestBuilders
@@ -148,4 +174,36 @@ class ReconciliationControllerTest {
                 .contentType(MediaType.MULTIPART_FORM_DATA))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUploadStream() throws Exception {
+        MockMultipartFile file1 = new MockMultipartFile("file1", "file1.csv", "text/csv", "test data".getBytes());
+        MockMultipartFile file2 = new MockMultipartFile("file2", "file2.csv", "text/csv", "test data".getBytes());
+
+        when(reconciliationService.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class),
+                Mockito.<String>any(), Mockito.any(ReconciliationSink.class))).thenAnswer(invocation -> {
+            ReconciliationSink sink = invocation.getArgument(3);
+            sink.unmatched(FileSide.SECOND, ReconciliationDto.builder().transactionId("1").build());
+            return responseDto;
+        });
+
+        MvcResult asyncResult = mvc.perform(MockMvcRequestBuilders.multipart("/api/v1/upload/stream")
+                .file(file1)
+                .file(file2)
+                .contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals("SECOND", objectMapper.readTree(lines[0]).get("file").asText());
+        assertEquals("1", objectMapper.readTree(lines[0]).get("record").get("transactionId").asText());
+        assertEquals(5, objectMapper.readTree(lines[1]).get("summary").get("matchedRecordCount").asInt());
+    }
+}
@@ -0,0 +1,81 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingCandidateSearchTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2014, 1, 12, 5, 33, 22);
+
+    private ReconciliationDto transaction(String transactionId, long amount, String walletReference) {
+        return ReconciliationDto.builder()
+                .transactionId(transactionId)
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative("ENGEN")
+                .transactionAmount(amount)
+                .transactionDate(DATE)
+                .profileName("Card Campaign")
+                .walletReference(walletReference)
+                .build();
+    }
+
+    private boolean[] search(List<ReconciliationDto> one, boolean[] matchedOne, List<ReconciliationDto> two,
+                             boolean[] matchedTwo, int maxBlockSize) {
+        new BlockingCandidateSearch(SimilarityScorer.DEFAULT, 90, maxBlockSize)
+                .match(new RecordTable(one), matchedOne, new RecordTable(two), matchedTwo);
+        return matchedTwo;
+    }
+
+    @Test
+    void testMistypedTransactionIdIsMatched() {
+        List<ReconciliationDto> one = List.of(
+                transaction("0584011808649511", -10000, "P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5"),
+                transaction("0584011815513406", -32400, "P_NzI1MjA1NjZfMTM3ODczODI3Mi4wNzY5"));
+        List<ReconciliationDto> two = List.of(
+                transaction("0584011815513046", -32400, "P_NzI1MjA1NjZfMTM3ODczODI3Mi4wNzY5"),
+                transaction("0584011808694511", -10000, "P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5"));
+        boolean[] matchedOne = new boolean[2];
+
+        boolean[] matchedTwo = search(one, matchedOne, two, new boolean[2], 64);
+
+        assertArrayEquals(new boolean[]{true, true}, matchedOne);
+        assertArrayEquals(new boolean[]{true, true}, matchedTwo);
+    }
+
+    @Test
+    void testMatchedAndDissimilarRecordsAreLeftAlone() {
+        List<ReconciliationDto> one = List.of(
+                transaction("0584011808649511", -10000, "P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5"),
+                transaction("0584011815513406", -32400, "P_NzI1MjA1NjZfMTM3ODczODI3Mi4wNzY5"));
+        List<ReconciliationDto> two = List.of(
+                transaction("0584011808694511", -10000, "P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5"),
+                transaction("0584011815513046", -12400, "P_NzI1MjA1NjZfMTM3ODczODI3Mi4wNzY5"));
+        boolean[] matchedOne = {true, false};
+
+        boolean[] matchedTwo = search(one, matchedOne, two, new boolean[2], 64);
+
+        assertArrayEquals(new boolean[]{true, false}, matchedOne);
+        assertArrayEquals(new boolean[]{false, false}, matchedTwo);
+    }
+
+    @Test
+    void testOversizedBlocksAreSkipped() {
+        List<ReconciliationDto> one = List.of(transaction("0584011808649511", -10000, ""));
+        List<ReconciliationDto> two = List.of(
+                transaction("0584011808694511", -10000, ""),
+                transaction("0584011808964511", -10000, ""));
+        boolean[] matchedOne = new boolean[1];
+
+        search(one, matchedOne, two, new boolean[2], 1);
+        assertFalse(matchedOne[0]);
+
+        search(one, matchedOne, two, new boolean[2], 2);
+        assertTrue(matchedOne[0]);
+    }
+}
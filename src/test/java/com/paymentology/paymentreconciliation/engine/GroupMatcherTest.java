@@ -0,0 +1,149 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupMatcherTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2014, 1, 12, 5, 33, 22);
+
+    private ReconciliationDto transaction(long amount, LocalDateTime date, String narrative) {
+        return ReconciliationDto.builder()
+                .transactionId("0384012056029314")
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative(narrative)
+                .transactionAmount(amount)
+                .transactionDate(date)
+                .profileName("Card Campaign")
+                .walletReference("P_NzUyMDI4NjRf")
+                .build();
+    }
+
+    private GroupMatcher match(List<ReconciliationDto> left, List<ReconciliationDto> right) {
+        return match(new GroupMatcher(SimilarityScorer.DEFAULT, 90), left, right);
+    }
+
+    private GroupMatcher match(GroupMatcher matcher, List<ReconciliationDto> left, List<ReconciliationDto> right) {
+        for (int i = 0; i < left.size(); i++) {
+            matcher.addLeft(i);
+        }
+        for (int j = 0; j < right.size(); j++) {
+            matcher.addRight(j);
+        }
+        matcher.match(new RecordTable(left), new RecordTable(right));
+        return matcher;
+    }
+
+    @Test
+    void testLaterBetterCandidateIsNotLost() {
+        // the first left record accepts both right records, the second one only the first
+        List<ReconciliationDto> left = List.of(
+                transaction(-10000, DATE, "ENGEN"),
+                transaction(-10000, DATE.plusHours(2), "ENGEN"));
+        List<ReconciliationDto> right = List.of(
+                transaction(-10000, DATE.plusHours(2), "ENGEN"),
+                transaction(-10000, DATE, "ENGEN"));
+
+        GroupMatcher matcher = match(left, right);
+
+        assertEquals(1, matcher.matchOf(0));
+        assertEquals(0, matcher.matchOf(1));
+        assertEquals(25, matcher.bestPoints(0));
+        assertEquals(25, matcher.bestPoints(1));
+    }
+
+    @Test
+    void testMatchCountIsMaximizedBeforePoints() {
+        // the first left record prefers the first right record, which is the only one the second left record accepts
+        List<ReconciliationDto> left = List.of(
+                transaction(-10000, DATE, "ENGEN"),
+                transaction(-10000, DATE, "SHELL"));
+        List<ReconciliationDto> right = List.of(
+                transaction(-10000, DATE, "ENGEN"),
+                transaction(-10000, DATE.plusHours(1), "ENGEN"));
+
+        GroupMatcher matcher = match(left, right);
+
+        assertEquals(1, matcher.matchOf(0));
+        assertEquals(0, matcher.matchOf(1));
+        assertEquals(23, matcher.bestPoints(0));
+        assertEquals(23, matcher.bestPoints(1));
+    }
+
+    @Test
+    void testLargeGroupsAreMatchedGreedily() {
+        List<ReconciliationDto> left = new ArrayList<>();
+        List<ReconciliationDto> right = new ArrayList<>();
+        for (int i = 0; i < GroupMatcher.MAX_ASSIGNMENT_SIZE + 1; i++) {
+            left.add(transaction(-i, DATE, "ENGEN"));
+            right.add(transaction(-(GroupMatcher.MAX_ASSIGNMENT_SIZE - i), DATE, "ENGEN"));
+        }
+
+        GroupMatcher matcher = match(left, right);
+
+        for (int i = 0; i < left.size(); i++) {
+            assertEquals(GroupMatcher.MAX_ASSIGNMENT_SIZE - i, matcher.matchOf(i));
+        }
+    }
+
+    @Test
+    void testGroupsTooLargeForTheMatrixPickTheSamePairs() {
+        // identical records make every left record lose its candidates to the ones before it
+        List<ReconciliationDto> left = new ArrayList<>();
+        List<ReconciliationDto> right = new ArrayList<>();
+        for (int i = 0; i < GroupMatcher.MAX_ASSIGNMENT_SIZE + 6; i++) {
+            left.add(transaction(-10000 - i % 3 * 100, DATE.plusHours(i % 2), i % 5 == 0 ? "SHELL" : "ENGEN"));
+            right.add(transaction(-10000 - i % 4 * 100, DATE, i % 7 == 0 ? "SHELL" : "ENGEN"));
+        }
+
+        GroupMatcher scored = match(left, right);
+        GroupMatcher unscored = match(new GroupMatcher(SimilarityScorer.DEFAULT, 90, 70, 0), left, right);
+
+        for (int i = 0; i < left.size(); i++) {
+            assertEquals(scored.matchOf(i), unscored.matchOf(i));
+            assertEquals(scored.bestPoints(i), unscored.bestPoints(i));
+            for (int j = 0; j < right.size(); j++) {
+                if (scored.points(i, j) >= 23) {
+                    assertEquals(scored.points(i, j), unscored.points(i, j));
+                }
+            }
+        }
+        assertTrue(unscored.statistics().getScoredPairCount() > (long) left.size() * right.size());
+    }
+
+    @Test
+    void testUnmatchedRecordKeepsItsBestPoints() {
+        List<ReconciliationDto> left = List.of(transaction(-10000, DATE, "ENGEN"));
+        List<ReconciliationDto> right = List.of(transaction(-32400, DATE, "ENGEN"));
+
+        GroupMatcher matcher = match(left, right);
+
+        assertEquals(-1, matcher.matchOf(0));
+        assertEquals(21, matcher.bestPoints(0));
+    }
+
+    @Test
+    void testPairsAreScoredExactlyFromTheReportFloor() {
+        // 19 points: neither the amount nor the narrative agree
+        List<ReconciliationDto> left = List.of(transaction(-10000, DATE, "ENGEN"));
+        List<ReconciliationDto> right = List.of(
+                transaction(-32400, DATE, "SHELL"),
+                transaction(-10000, DATE, "ENGEN"));
+
+        GroupMatcher matcher = match(left, right);
+        assertEquals(1, matcher.matchOf(0));
+        assertEquals(25, matcher.points(0, 1));
+        assertTrue(matcher.points(0, 0) >= 19 && matcher.points(0, 0) < 23);
+
+        matcher = match(new GroupMatcher(SimilarityScorer.DEFAULT, 90, 70), left, right);
+        assertEquals(1, matcher.matchOf(0));
+        assertEquals(19, matcher.points(0, 0));
+    }
+}
@@ -0,0 +1,98 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.FieldDifferenceDto;
+import com.paymentology.paymentreconciliation.dto.NearMissCandidateDto;
+import com.paymentology.paymentreconciliation.dto.NearMissDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.TransactionSummaryDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearMissCollectorTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2014, 1, 12, 5, 33, 22);
+    private static final String WALLET = "P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5";
+
+    private ReconciliationDto transaction(String transactionId, long amount, String walletReference,
+                                          String profileName) {
+        return ReconciliationDto.builder()
+                .transactionId(transactionId)
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative("ENGEN")
+                .transactionAmount(amount)
+                .transactionDate(DATE)
+                .profileName(profileName)
+                .walletReference(walletReference)
+                .build();
+    }
+
+    private TransactionSummaryDto reconcile(List<ReconciliationDto> one, List<ReconciliationDto> two, int shards,
+                                            int nearMissCount) {
+        return new InMemoryReconciler(SimilarityScorer.DEFAULT, 90, shards, null, nearMissCount, 60)
+                .reconcile(one, two);
+    }
+
+    @Test
+    void testUnmatchedRecordsListTheirClosestCounterparts() {
+        ReconciliationDto record = transaction("0584011808649511", -10000, WALLET, "Card Campaign");
+        // 21 of 25 points, 20 points and 11 points, none of them a match
+        ReconciliationDto amountDiffers = transaction("0584011808649511", -32400, WALLET, "Card Campaign");
+        ReconciliationDto walletDiffers = transaction("0584011808649511", -10000, "P_NzI1MjA1NjZf", null);
+        ReconciliationDto dissimilar = ReconciliationDto.builder()
+                .transactionId("0584011808649511")
+                .transactionAmount(-500)
+                .transactionDate(DATE)
+                .build();
+
+        TransactionSummaryDto summary = reconcile(List.of(record),
+                List.of(dissimilar, walletDiffers, amountDiffers), 1, 2);
+
+        List<NearMissDto> nearMissesOne = summary.getFileOneNearMisses();
+        assertEquals(1, nearMissesOne.size());
+        assertSame(record, nearMissesOne.get(0).getRecord());
+        List<NearMissCandidateDto> candidates = nearMissesOne.get(0).getCandidateList();
+        assertEquals(2, candidates.size());
+        assertSame(amountDiffers, candidates.get(0).getRecord());
+        assertEquals(84, candidates.get(0).getSimilarityScore(), 0.001);
+        assertEquals(List.of(new FieldDifferenceDto("TransactionAmount", "-10000", "-32400")),
+                candidates.get(0).getDifferenceList());
+        assertSame(walletDiffers, candidates.get(1).getRecord());
+        assertEquals(80, candidates.get(1).getSimilarityScore(), 0.001);
+        assertEquals(List.of("WalletReference", "ProfileName"), candidates.get(1).getDifferenceList().stream()
+                .map(FieldDifferenceDto::getField).toList());
+
+        // the dissimilar record is below the threshold of every counterpart
+        List<NearMissDto> nearMissesTwo = summary.getFileTwoNearMisses();
+        assertEquals(List.of(walletDiffers, amountDiffers),
+                nearMissesTwo.stream().map(NearMissDto::getRecord).toList());
+        assertSame(record, nearMissesTwo.get(1).getCandidateList().get(0).getRecord());
+        assertEquals(List.of(new FieldDifferenceDto("TransactionAmount", "-32400", "-10000")),
+                nearMissesTwo.get(1).getCandidateList().get(0).getDifferenceList());
+    }
+
+    @Test
+    void testOnlyTheTopCandidatesOfUnmatchedRecordsAreKept() {
+        List<ReconciliationDto> one = List.of(
+                transaction("0584011808649511", -10000, WALLET, "Card Campaign"),
+                transaction("0584011815513406", -32400, WALLET, "Card Campaign"));
+        List<ReconciliationDto> two = List.of(
+                transaction("0584011808649511", -10000, "P_NzI1MjA1NjZf", null),
+                transaction("0584011808649511", -32400, WALLET, "Card Campaign"),
+                transaction("0584011815513406", -32400, WALLET, "Card Campaign"));
+
+        TransactionSummaryDto summary = reconcile(one, two, 1, 1);
+
+        assertEquals(1, summary.getFileOneNearMisses().size());
+        List<NearMissCandidateDto> candidates = summary.getFileOneNearMisses().get(0).getCandidateList();
+        assertEquals(1, candidates.size());
+        assertSame(two.get(1), candidates.get(0).getRecord());
+        assertEquals(2, summary.getFileTwoNearMisses().size());
+        assertEquals(summary, reconcile(one, two, 4, 1));
+        assertNull(new InMemoryReconciler(SimilarityScorer.DEFAULT, 90, 1).reconcile(one, two).getFileOneNearMisses());
+    }
+}
@@ -0,0 +1,165 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimilarityScorerTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2014, 1, 12, 5, 33, 22);
+
+    private ReconciliationDto transaction(String id, long amount, LocalDateTime date, String wallet) {
+        return ReconciliationDto.builder()
+                .transactionId(id)
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative("ENGEN TSOLAMOSESI         GABORONE      BW")
+                .transactionAmount(amount)
+                .transactionDate(date)
+                .profileName("Card Campaign")
+                .walletReference(wallet)
+                .build();
+    }
+
+    @Test
+    void testIdenticalRecordsScoreAllPoints() {
+        ReconciliationDto first = transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf");
+        ReconciliationDto second = transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf");
+
+        assertEquals(100.0, first.calculateSimilarity(second));
+    }
+
+    @Test
+    void testDateToleranceIsScoredLikeBefore() {
+        ReconciliationDto first = transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf");
+
+        // same day, other time: 6 + 3 + 2 + 4 + 1 + 4 + 2 + 1 points out of 25
+        assertEquals(92.0, first.calculateSimilarity(
+                transaction("0384012056029314", -10000, DATE.plusHours(1), "P_NzUyMDI4NjRf")));
+        // exactly one day apart
+        assertEquals(88.0, first.calculateSimilarity(
+                transaction("0384012056029314", -10000, DATE.minusDays(1), "P_NzUyMDI4NjRf")));
+        // more than one day apart
+        assertEquals(80.0, first.calculateSimilarity(
+                transaction("0384012056029314", -10000, DATE.plusDays(3), "P_NzUyMDI4NjRf")));
+    }
+
+    @Test
+    void testMatchMaskFlagsDifferingFields() {
+        ReconciliationDto first = transaction("TX-1", -10000, DATE, "P_NzUyMDI4NjRf");
+        ReconciliationDto second = transaction("TX-1", -32400, DATE, "P_other");
+
+        int mask = SimilarityScorer.DEFAULT.matchMask(TransactionFingerprint.of(first), 0,
+                TransactionFingerprint.of(second), 0);
+
+        assertNotEquals(0, mask & SimilarityScorer.TRANSACTION_ID_MATCH);
+        assertNotEquals(0, mask & SimilarityScorer.TRANSACTION_DATE_MATCH);
+        assertEquals(0, mask & SimilarityScorer.TRANSACTION_AMOUNT_MATCH);
+        assertEquals(0, mask & SimilarityScorer.WALLET_REFERENCE_MATCH);
+        assertEquals(17, SimilarityScorer.DEFAULT.points(mask));
+    }
+
+    @Test
+    void testCompiledRulesApplyTheirWeightsAndTolerances() {
+        SimilarityScorer scorer = SimilarityScorer.compile(MatchingRules.builder()
+                .walletReferenceWeight(0)
+                .amountTolerance(50)
+                .dateToleranceDays(2)
+                .threshold(80)
+                .build());
+        TransactionFingerprint first =
+                TransactionFingerprint.of(transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf"));
+
+        // within 50 cents and 2 days, with a wallet reference that weighs nothing: 18 of 21 points
+        TransactionFingerprint second =
+                TransactionFingerprint.of(transaction("0384012056029314", -10049, DATE.plusDays(2), "P_other"));
+        int mask = scorer.matchMask(first, 0, second, 0);
+        assertNotEquals(0, mask & SimilarityScorer.TRANSACTION_AMOUNT_MATCH);
+        assertNotEquals(0, mask & SimilarityScorer.TRANSACTION_DATE_TOLERANCE_MATCH);
+        assertEquals(18, scorer.points(mask));
+        assertEquals(21, scorer.perfectPoints());
+        assertEquals(80, scorer.threshold());
+
+        // one cent and one hour too far
+        TransactionFingerprint third = TransactionFingerprint.of(
+                transaction("0384012056029314", -10051, DATE.plusDays(2).plusHours(1), "P_other"));
+        assertEquals(12, scorer.points(first, 0, third, 0));
+        assertEquals(0, SimilarityScorer.DEFAULT.matchMask(first, 0, second, 0)
+                & (SimilarityScorer.TRANSACTION_AMOUNT_MATCH | SimilarityScorer.TRANSACTION_DATE_TOLERANCE_MATCH));
+        assertNotEquals(SimilarityScorer.DEFAULT.toString(), scorer.toString());
+    }
+
+    @Test
+    void testInvalidRulesDoNotCompile() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SimilarityScorer.compile(MatchingRules.builder().profileNameWeight(-1).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> SimilarityScorer.compile(MatchingRules.builder().amountTolerance(-1).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> SimilarityScorer.compile(MatchingRules.builder().threshold(101).build()));
+        assertEquals(SimilarityScorer.DEFAULT.toString(),
+                SimilarityScorer.compile(MatchingRules.DEFAULT.toBuilder().build()).toString());
+    }
+
+    @Test
+    void testBoundedPointsAreExactFromTheFloor() {
+        TransactionFingerprint first =
+                TransactionFingerprint.of(transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf"));
+        List<ReconciliationDto> others = List.of(
+                transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf"),
+                transaction("0384012056029314", -10000, DATE.plusHours(1), "P_NzUyMDI4NjRf"),
+                transaction("0384012056029314", -32400, DATE.minusDays(1), "P_other"),
+                transaction("TX-1", -32400, DATE.plusDays(3), "P_other"));
+        SimilarityScorer scorer = SimilarityScorer.DEFAULT;
+
+        for (ReconciliationDto record : others) {
+            TransactionFingerprint other = TransactionFingerprint.of(record);
+            int points = scorer.points(first, 0, other, 0);
+            for (int floor = 0; floor <= scorer.maxPoints() + 1; floor++) {
+                int bounded = scorer.points(first, 0, other, 0, floor);
+                if (points >= floor) {
+                    assertEquals(points, bounded);
+                } else {
+                    assertTrue(bounded >= points && bounded < floor);
+                }
+            }
+        }
+        assertEquals(23, scorer.minPointsAbove(90));
+        assertEquals(22, scorer.minPointsReaching(88));
+    }
+
+    @Test
+    void testBoundedPointsStopOnceTheCeilingIsReached() {
+        TransactionFingerprint first =
+                TransactionFingerprint.of(transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf"));
+        TransactionFingerprint other =
+                TransactionFingerprint.of(transaction("0384012056029314", -10000, DATE, "P_NzUyMDI4NjRf"));
+        SimilarityScorer scorer = SimilarityScorer.DEFAULT;
+        int minPoints = scorer.minPointsAbove(90);
+        int[] reads = new int[1];
+        TransactionView counted = new TransactionView() {
+            @Override
+            public long fingerprint(int row, int slot) {
+                reads[0]++;
+                return other.fingerprint(row, slot);
+            }
+
+            @Override
+            public CharSequence text(int row, int field) {
+                return other.text(row, field);
+            }
+        };
+
+        assertEquals(scorer.perfectPoints(), scorer.points(first, 0, counted, 0, minPoints));
+        int exactReads = reads[0];
+        reads[0] = 0;
+        int points = scorer.points(first, 0, counted, 0, minPoints, minPoints);
+
+        assertTrue(points >= minPoints && points < scorer.perfectPoints());
+        assertTrue(reads[0] < exactReads);
+    }
+}
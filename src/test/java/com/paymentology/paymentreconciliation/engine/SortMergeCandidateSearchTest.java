@@ -0,0 +1,86 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortMergeCandidateSearchTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2014, 1, 12, 5, 33, 22);
+    private static final long DAY = 86_400;
+
+    @TempDir
+    Path spillDirectory;
+
+    private ReconciliationDto transaction(String transactionId, long amount, LocalDateTime date) {
+        return ReconciliationDto.builder()
+                .transactionId(transactionId)
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative("ENGEN")
+                .transactionAmount(amount)
+                .transactionDate(date)
+                .profileName("Card Campaign")
+                .walletReference("P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5")
+                .build();
+    }
+
+    private int search(List<ReconciliationDto> one, boolean[] matchedOne, List<ReconciliationDto> two,
+                       boolean[] matchedTwo, double threshold, int sortBufferKeys) {
+        return new SortMergeCandidateSearch(SimilarityScorer.DEFAULT, threshold, 64, DAY, sortBufferKeys,
+                spillDirectory).match(new RecordTable(one), matchedOne, new RecordTable(two), matchedTwo);
+    }
+
+    @Test
+    void testRecordsWithinTheWindowAreMatched() {
+        List<ReconciliationDto> one = List.of(
+                transaction("0584011808649511", -10000, DATE),
+                transaction("0584011815513406", -32400, DATE));
+        List<ReconciliationDto> two = List.of(
+                transaction("0584011815513046", -32400, DATE.plusDays(2)),
+                transaction("0584011808694511", -10000, DATE.plusDays(1)));
+        boolean[] matchedOne = new boolean[2];
+        boolean[] matchedTwo = new boolean[2];
+
+        // a day apart, a pair only scores the next-day credit for its date
+        assertEquals(0, search(one, matchedOne, two, matchedTwo, 90, 1000));
+        assertEquals(1, search(one, matchedOne, two, matchedTwo, 70, 1000));
+
+        assertArrayEquals(new boolean[]{true, false}, matchedOne);
+        assertArrayEquals(new boolean[]{false, true}, matchedTwo);
+    }
+
+    @Test
+    void testSpilledSortMatchesInMemorySort() throws IOException {
+        List<ReconciliationDto> one = new ArrayList<>();
+        List<ReconciliationDto> two = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            one.add(transaction("A" + i, -100L * (i % 37), DATE.plusMinutes(i * 7L)));
+            two.add(transaction("B" + i, -100L * ((199 - i) % 37), DATE.plusMinutes((199 - i) * 7L)));
+        }
+
+        boolean[] inMemoryOne = new boolean[200];
+        boolean[] inMemoryTwo = new boolean[200];
+        int inMemory = search(one, inMemoryOne, two, inMemoryTwo, 90, 1_000);
+        boolean[] spilledOne = new boolean[200];
+        boolean[] spilledTwo = new boolean[200];
+        int spilled = search(one, spilledOne, two, spilledTwo, 90, 16);
+
+        assertEquals(200, inMemory);
+        assertEquals(inMemory, spilled);
+        assertArrayEquals(inMemoryOne, spilledOne);
+        assertArrayEquals(inMemoryTwo, spilledTwo);
+        try (var runs = Files.list(spillDirectory)) {
+            assertEquals(0, runs.count());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.paymentology.paymentreconciliation.engine.TransactionFingerprint.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDictionaryTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2014, 1, 12, 5, 33, 22);
+
+    private ReconciliationDto transaction(String narrative, String profileName) {
+        return ReconciliationDto.builder()
+                .transactionId("0384012056029314")
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative(narrative)
+                .transactionAmount(-10000)
+                .transactionDate(DATE)
+                .profileName(profileName)
+                .walletReference("P_NzUyMDI4NjRf")
+                .filename("file.csv")
+                .build();
+    }
+
+    @Test
+    void testEqualValuesShareCodeAndInstance() {
+        TextDictionary dictionary = new TextDictionary();
+        int code = dictionary.encode(new StringBuilder("Card Campaign"));
+        int other = dictionary.encode("ENGEN");
+
+        assertEquals(code, dictionary.encode("Card Campaign"));
+        assertNotEquals(code, other);
+        assertEquals(TextDictionary.NULL_CODE, dictionary.encode(null));
+        assertSame(dictionary.intern("Card Campaign"), dictionary.decode(code));
+        assertEquals(3, dictionary.size());
+    }
+
+    @Test
+    void testCodesSurviveGrowth() {
+        TextDictionary dictionary = new TextDictionary();
+        TextDictionary.Encoder encoder = dictionary.encoder();
+        int[] codes = new int[1000];
+        for (int i = 0; i < codes.length; i++) {
+            String text = "NARRATIVE " + i;
+            codes[i] = encoder.encode(text, TransactionFingerprint.hash(text));
+        }
+
+        for (int i = 0; i < codes.length; i++) {
+            String text = "NARRATIVE " + i;
+            assertEquals(codes[i], dictionary.encode(text));
+            assertEquals(text, dictionary.decode(codes[i]));
+            assertEquals(TransactionFingerprint.hash(text), dictionary.hash(codes[i]));
+        }
+        assertEquals(codes.length + 1, dictionary.size());
+    }
+
+    @Test
+    void testValuesAreReadWhileOtherThreadsGrowTheDictionary() throws Exception {
+        TextDictionary dictionary = new TextDictionary();
+        int threads = 4;
+        int valuesPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    TextDictionary.Encoder encoder = dictionary.encoder();
+                    int[] codes = new int[valuesPerThread];
+                    int wrong = 0;
+                    for (int i = 0; i < valuesPerThread; i++) {
+                        // every other value is shared with the other threads, the rest is this thread's own
+                        String text = i % 2 == 0 ? "SHARED " + i : "THREAD " + thread + " " + i;
+                        codes[i] = encoder.encode(text, TransactionFingerprint.hash(text));
+                        int earlier = codes[i / 2];
+                        String expected = i / 2 % 2 == 0 ? "SHARED " + i / 2 : "THREAD " + thread + " " + i / 2;
+                        if (!expected.equals(dictionary.decode(earlier))
+                                || dictionary.hash(earlier) != TransactionFingerprint.hash(expected)) {
+                            wrong++;
+                        }
+                    }
+                    return wrong;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1 + valuesPerThread / 2 + threads * valuesPerThread / 2, dictionary.size());
+    }
+
+    @Test
+    void testOverlaysShareTheCodesOfTheirBase() {
+        TextDictionary base = new TextDictionary();
+        int shared = base.encode("DEDUCT");
+        TextDictionary one = base.overlay();
+        TextDictionary two = base.overlay();
+
+        assertEquals(shared, one.encode("DEDUCT"));
+        int own = one.encode("ENGEN");
+        assertEquals(base.size(), own);
+        assertEquals("ENGEN", one.decode(own));
+        assertEquals("DEDUCT", one.decode(shared));
+        assertEquals(own, two.encode("SHELL"));
+        assertEquals("SHELL", two.decode(own));
+        assertThrows(IllegalStateException.class, () -> base.encode("ENGEN"));
+
+        assertTrue(base.sharesCodes(one));
+        assertTrue(two.sharesCodes(base));
+        assertFalse(one.sharesCodes(two));
+        assertFalse(one.sharesCodes(null));
+    }
+
+    @Test
+    void testFrozenDictionaryStillLooksUpItsValues() {
+        TextDictionary dictionary = new TextDictionary();
+        int code = dictionary.encode("DEDUCT");
+        dictionary.overlay();
+
+        // values already in the dictionary are found without adding them
+        assertEquals(code, dictionary.encode("DEDUCT"));
+        assertEquals(code, dictionary.encoder().encode("DEDUCT", TransactionFingerprint.hash("DEDUCT")));
+        assertThrows(IllegalStateException.class, () -> dictionary.encode("ENGEN"));
+    }
+
+    @Test
+    void testCodedRecordsScoreLikeHashedRecords() {
+        TextDictionary dictionary = new TextDictionary();
+        ReconciliationDto one = transaction("ENGEN", "Card Campaign");
+        ReconciliationDto two = transaction("SHELL", null);
+        TransactionFingerprint codedOne = TransactionFingerprint.of(one, dictionary);
+        TransactionFingerprint codedTwo = TransactionFingerprint.of(two, dictionary);
+
+        assertEquals(codedOne.code(0, TRANSACTION_DESCRIPTION), codedTwo.code(0, TRANSACTION_DESCRIPTION));
+        assertNotEquals(codedOne.code(0, TRANSACTION_NARRATIVE), codedTwo.code(0, TRANSACTION_NARRATIVE));
+        assertEquals(TextDictionary.NULL_CODE, codedTwo.code(0, PROFILE_NAME));
+        assertEquals(SimilarityScorer.DEFAULT.matchMask(TransactionFingerprint.of(one), 0,
+                        TransactionFingerprint.of(two), 0),
+                SimilarityScorer.DEFAULT.matchMask(codedOne, 0, codedTwo, 0));
+        // a record coded against another dictionary is compared by hash and text
+        TransactionFingerprint otherDictionary = TransactionFingerprint.of(one, new TextDictionary());
+        assertEquals(SimilarityScorer.DEFAULT.matchMask(codedOne, 0, codedOne, 0),
+                SimilarityScorer.DEFAULT.matchMask(codedOne, 0, otherDictionary, 0));
+    }
+
+    @Test
+    void testCodedRowRoundTrip() throws IOException {
+        TextDictionary dictionary = new TextDictionary();
+        ReconciliationDto record = transaction("ENGEN", null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RecordCodec.write(new DataOutputStream(bytes), record, dictionary);
+
+        ReconciliationDto read = RecordCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                dictionary, "file.csv");
+
+        assertEquals(record, read);
+        assertEquals("file.csv", read.getFilename());
+        assertSame(dictionary.intern("ENGEN"), read.getTransactionNarrative());
+    }
+}
@@ -0,0 +1,43 @@
+package com.paymentology.paymentreconciliation.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionKeyTableTest {
+
+    @Test
+    void testRowsAreChainedByTransactionIdInInsertionOrder() {
+        TransactionKeyTable table = new TransactionKeyTable();
+        for (int i = 0; i < 1000; i++) {
+            table.add(String.format("%016d", i % 300));
+        }
+
+        assertEquals(1000, table.size());
+        assertEquals(300, table.keyCount());
+        assertEquals(7, table.first("0000000000000007"));
+        assertEquals(307, table.next(7));
+        assertEquals(607, table.next(307));
+        assertEquals(907, table.next(607));
+        assertEquals(-1, table.next(907));
+        assertTrue(table.isFirstOfKey(7));
+        assertFalse(table.isFirstOfKey(307));
+        assertEquals(-1, table.first("7"));
+    }
+
+    @Test
+    void testTransactionIdsAreRestored() {
+        TransactionKeyTable table = new TransactionKeyTable();
+        table.add("0584011808649511");
+        table.add("TX-0001");
+        table.add("123456789012345678901234");
+        table.add("");
+
+        assertEquals("0584011808649511", table.transactionId(0));
+        assertEquals("TX-0001", table.transactionId(1));
+        assertEquals("123456789012345678901234", table.transactionId(2));
+        assertEquals("", table.transactionId(3));
+        assertEquals(1, table.first("TX-0001"));
+        assertEquals(-1, table.first("TX-0002"));
+    }
+}
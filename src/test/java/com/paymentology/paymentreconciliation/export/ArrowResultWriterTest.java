@@ -0,0 +1,140 @@
+package com.paymentology.paymentreconciliation.export;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.TimeStampSecTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.util.ByteArrayReadableSeekableByteChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrowResultWriterTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2014, 1, 12, 5, 33, 22);
+
+    private final BufferAllocator allocator = new RootAllocator();
+
+    @AfterEach
+    void closeAllocator() {
+        allocator.close();
+    }
+
+    private ReconciliationDto transaction(int n) {
+        return ReconciliationDto.builder()
+                .transactionId("05840118086495" + n)
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative(n % 3 == 0 ? null : "ENGEN")
+                .transactionAmount(-10000 - n)
+                .transactionDate(DATE.plusSeconds(n))
+                .profileName("Card Campaign")
+                .walletReference("P_NzI2ODY2ODlf" + n)
+                .build();
+    }
+
+    private byte[] write(int pairs, int unmatched, int batchRecords) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ArrowResultWriter writer = new ArrowResultWriter(bytes, batchRecords)) {
+            for (int n = 0; n < pairs; n++) {
+                writer.matched(transaction(n), transaction(n));
+            }
+            for (int n = 0; n < unmatched; n++) {
+                writer.unmatched(FileSide.SECOND, transaction(pairs + n));
+            }
+            writer.finish(ReconciliationResponseDto.builder()
+                    .firstFileName("file1.csv")
+                    .secondFileName("file2.csv")
+                    .matchedRecordCount(pairs)
+                    .secondFileUnmatchedRecordCount(unmatched)
+                    .build());
+        }
+        return bytes.toByteArray();
+    }
+
+    private ArrowFileReader reader(byte[] bytes) {
+        return new ArrowFileReader(new ByteArrayReadableSeekableByteChannel(bytes), allocator,
+                CommonsCompressionFactory.INSTANCE);
+    }
+
+    private static String text(VectorSchemaRoot root, ResultColumn column, int row) {
+        VarCharVector vector = (VarCharVector) root.getVector(column.columnName());
+        return vector.isNull(row) ? null : vector.getObject(row).toString();
+    }
+
+    private static Long number(VectorSchemaRoot root, ResultColumn column, int row) {
+        return ((BigIntVector) root.getVector(column.columnName())).getObject(row);
+    }
+
+    @Test
+    void testRecordBatchesReadBackWithArrow() throws IOException {
+        try (ArrowFileReader reader = reader(write(10, 5, 8))) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertEquals(ResultColumn.schema(), root.getSchema());
+            assertEquals("file1.csv", reader.getMetaData().get("first_file_name"));
+            assertEquals("10", reader.getMetaData().get("matched_record_count"));
+            assertEquals(4, reader.getRecordBlocks().size());
+
+            // rows 8 to 15: pairs 4 to 7, each as a FIRST and a SECOND row
+            assertTrue(reader.loadRecordBatch(reader.getRecordBlocks().get(1)));
+            assertEquals(8, root.getRowCount());
+            assertEquals("FIRST", text(root, ResultColumn.FILE, 0));
+            assertEquals("SECOND", text(root, ResultColumn.FILE, 1));
+            long[] pairIds = new long[8];
+            Arrays.setAll(pairIds, row -> number(root, ResultColumn.PAIR_ID, row));
+            assertArrayEquals(new long[]{4, 4, 5, 5, 6, 6, 7, 7}, pairIds);
+
+            assertTrue(reader.loadRecordBatch(reader.getRecordBlocks().get(2)));
+            assertEquals("MATCHED", text(root, ResultColumn.OUTCOME, 3));
+            assertEquals("UNMATCHED", text(root, ResultColumn.OUTCOME, 4));
+            assertNull(number(root, ResultColumn.PAIR_ID, 4));
+            assertEquals("0584011808649510", text(root, ResultColumn.TRANSACTION_ID, 4));
+            assertEquals(-10010, number(root, ResultColumn.TRANSACTION_AMOUNT, 4));
+            assertNull(text(root, ResultColumn.TRANSACTION_NARRATIVE, 6));
+
+            assertTrue(reader.loadRecordBatch(reader.getRecordBlocks().get(3)));
+            assertEquals(1, root.getRowCount());
+            assertEquals(DATE.plusSeconds(14).toEpochSecond(ZoneOffset.UTC),
+                    ((TimeStampSecTZVector) root.getVector(ResultColumn.TRANSACTION_DATE.columnName())).get(0));
+        }
+    }
+
+    @Test
+    void testEmptyResultHasSchemaAndFooterOnly() throws IOException {
+        try (ArrowFileReader reader = reader(write(0, 0, 8))) {
+            assertEquals(ResultColumn.schema(), reader.getVectorSchemaRoot().getSchema());
+            assertEquals(0, reader.getRecordBlocks().size());
+            assertEquals("0", reader.getMetaData().get("second_file_unmatched_record_count"));
+        }
+    }
+
+    @Test
+    void testUnfinishedFileIsRejected() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ArrowResultWriter writer = new ArrowResultWriter(bytes, 8)) {
+            for (int n = 0; n < 10; n++) {
+                writer.unmatched(FileSide.FIRST, transaction(n));
+            }
+        }
+
+        assertThrows(Exception.class, () -> {
+            try (ArrowFileReader reader = reader(bytes.toByteArray())) {
+                reader.getRecordBlocks();
+            }
+        });
+    }
+}
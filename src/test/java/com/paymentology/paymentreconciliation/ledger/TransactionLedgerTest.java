@@ -0,0 +1,160 @@
+package com.paymentology.paymentreconciliation.ledger;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
+import com.paymentology.paymentreconciliation.engine.TransactionFingerprint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionLedgerTest {
+
+    private static final double THRESHOLD = 90;
+
+    @Test
+    void testMatchedItemsAreRetiredAcrossReopen(@TempDir Path directory) throws IOException {
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 1024)) {
+            LedgerBatch first = reconcile(ledger, FileSide.FIRST, record("1", 100), record("2", 200), record("3", 300));
+            assertEquals(3, first.getOpenedRecords().size());
+            assertEquals(0, first.getMatchedCount());
+
+            LedgerBatch second = reconcile(ledger, FileSide.SECOND, record("1", 100), record("4", 400));
+            assertEquals(1, second.getMatchedCount());
+            assertEquals(List.of(record("4", 400)), second.getOpenedRecords());
+            assertEquals(2, ledger.openCount(FileSide.FIRST));
+            assertEquals(1, ledger.openCount(FileSide.SECOND));
+        }
+
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 1024)) {
+            assertEquals(2, ledger.openCount(FileSide.FIRST));
+            assertEquals(1, ledger.openCount(FileSide.SECOND));
+
+            LedgerBatch batch = reconcile(ledger, FileSide.SECOND, record("1", 100), record("2", 200));
+            assertEquals(1, batch.getMatchedCount());
+            assertEquals(List.of(record("1", 100)), batch.getOpenedRecords());
+            assertEquals(1, ledger.openCount(FileSide.FIRST));
+            assertEquals(2, ledger.openCount(FileSide.SECOND));
+        }
+    }
+
+    @Test
+    void testCommitCompactsRetiredItems(@TempDir Path directory) throws IOException {
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 64)) {
+            reconcile(ledger, FileSide.FIRST, record("1", 100), record("2", 200), record("3", 300));
+            reconcile(ledger, FileSide.FIRST, record("5", 500));
+            assertEquals(2, segmentCount(directory));
+
+            reconcile(ledger, FileSide.SECOND, record("1", 100), record("2", 200), record("3", 300));
+            assertEquals(1, segmentCount(directory));
+            assertEquals(1, ledger.openCount(FileSide.FIRST));
+            assertEquals(0, ledger.openCount(FileSide.SECOND));
+        }
+
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 64)) {
+            assertEquals(1, segmentCount(directory));
+            assertEquals(1, ledger.openCount(FileSide.FIRST));
+            assertEquals(0, ledger.openCount(FileSide.SECOND));
+
+            assertEquals(1, reconcile(ledger, FileSide.SECOND, record("5", 500)).getMatchedCount());
+        }
+    }
+
+    @Test
+    void testCommitWithoutItsCommitRecordIsUndoneOnReopen(@TempDir Path directory) throws IOException {
+        Path commitLog = directory.resolve("commit.log");
+        long committed;
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 1024)) {
+            reconcile(ledger, FileSide.FIRST, record("1", 100), record("2", 200), record("3", 300));
+            committed = Files.size(commitLog);
+            reconcile(ledger, FileSide.SECOND, record("1", 100), record("4", 400));
+        }
+        // a crash in the middle of writing the commit record of the second batch
+        try (FileChannel log = FileChannel.open(commitLog, StandardOpenOption.WRITE)) {
+            log.truncate(committed + 5);
+        }
+
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 1024)) {
+            assertEquals(3, ledger.openCount(FileSide.FIRST));
+            assertEquals(0, ledger.openCount(FileSide.SECOND));
+            assertEquals(committed, Files.size(commitLog));
+
+            LedgerBatch batch = reconcile(ledger, FileSide.SECOND, record("1", 100), record("4", 400));
+            assertEquals(1, batch.getMatchedCount());
+            assertEquals(List.of(record("4", 400)), batch.getOpenedRecords());
+        }
+    }
+
+    @Test
+    void testUncommittedBatchLeavesLedgerUnchanged(@TempDir Path directory) throws IOException {
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 1024)) {
+            reconcile(ledger, FileSide.FIRST, record("1", 100));
+            try (LedgerBatch batch = ledger.begin(FileSide.SECOND, SimilarityScorer.DEFAULT, THRESHOLD)) {
+                batch.accept(TransactionFingerprint.of(record("1", 100)));
+                batch.accept(TransactionFingerprint.of(record("2", 200)));
+            }
+            assertEquals(1, ledger.openCount(FileSide.FIRST));
+            assertEquals(0, ledger.openCount(FileSide.SECOND));
+        }
+    }
+
+    @Test
+    void testBatchThatFailsToStartReleasesLedger(@TempDir Path directory) throws IOException {
+        try (TransactionLedger ledger = TransactionLedger.open(directory, 1024)) {
+            // on another thread, so that a ledger left locked would keep this one waiting
+            CompletableFuture<LedgerBatch> failed =
+                    CompletableFuture.supplyAsync(() -> ledger.begin(FileSide.FIRST, null, THRESHOLD));
+            Exception exception = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(NullPointerException.class, exception.getCause());
+
+            LedgerBatch batch = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> reconcile(ledger, FileSide.FIRST, record("1", 100)));
+            assertEquals(1, batch.getOpenedRecords().size());
+        }
+    }
+
+    private static LedgerBatch reconcile(TransactionLedger ledger, FileSide side, ReconciliationDto... records)
+            throws IOException {
+        try (LedgerBatch batch = ledger.begin(side, SimilarityScorer.DEFAULT, THRESHOLD)) {
+            for (ReconciliationDto record : records) {
+                batch.accept(TransactionFingerprint.of(record));
+            }
+            batch.commit();
+            return batch;
+        }
+    }
+
+    private static long segmentCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    private static ReconciliationDto record(String transactionId, long amount) {
+        return ReconciliationDto.builder()
+                .transactionId(transactionId)
+                .transactionType("1")
+                .transactionDescription("DEDUCT")
+                .transactionNarrative("ATM")
+                .transactionAmount(amount)
+                .transactionDate(LocalDateTime.of(2014, 1, 11, 22, 27, 44))
+                .profileName("Card Campaign")
+                .walletReference("P_1")
+                .filename("file.csv")
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.paymentology.paymentreconciliation.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load driver for comparing the platform-thread and virtual-thread execution modes of a running instance.
+ * <p>
+ * Fires many concurrent uploads of small-to-medium generated files at {@code /api/v1/upload} and prints the
+ * throughput, latency percentiles and rejected requests. Run it once against an instance started with the defaults
+ * and once against one started on Java 21 with {@code --spring.threads.virtual.enabled=true}, see the README.
+ * Arguments, all optional: base URL, concurrent requests, total requests, records per file.
+ */
+public class UploadLoadComparison {
+
+    private static final String HEADER = "ProfileName,TransactionDate,TransactionAmount,TransactionNarrative,"
+            + "TransactionDescription,TransactionID,TransactionType,WalletReference\n";
+    private static final String BOUNDARY = "reconciliation-load-boundary";
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        int records = args.length > 3 ? Integer.parseInt(args[3]) : 2_000;
+
+        byte[] body = multipartBody(csv(records, 0), csv(records, records / 10));
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(requests));
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<?>> responses = new ArrayList<>(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        inFlight.release();
+                        if (failure != null || response.statusCode() >= 500) {
+                            failed.incrementAndGet();
+                        } else if (response.statusCode() == 429) {
+                            rejected.incrementAndGet();
+                        } else {
+                            latencies.add(System.nanoTime() - sent);
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).exceptionally(failure -> null).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("requests=%d concurrency=%d records/file=%d body=%d KB%n",
+                requests, concurrency, records, body.length / 1024);
+        System.out.printf("throughput=%.1f req/s ok=%d rejected=%d failed=%d%n",
+                sorted.size() / seconds, sorted.size(), rejected.get(), failed.get());
+        System.out.printf("latency p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99), percentile(sorted, 1));
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    /**
+     * @return a file of {@code records} transactions; files generated with different offsets share all but
+     * {@code offset} of their TransactionIDs
+     */
+    private static byte[] csv(int records, int offset) {
+        StringBuilder csv = new StringBuilder(HEADER);
+        LocalDateTime date = LocalDateTime.of(2014, 1, 11, 22, 27, 44);
+        for (int i = offset; i < records + offset; i++) {
+            csv.append("Card Campaign,")
+                    .append(date.plusSeconds(i * 37L).toString().replace('T', ' '))
+                    .append(',').append(-(i % 500 + 1) * 100L)
+                    .append(",*MOLEPS ATM25             MOLEPOLOLE    BW,DEDUCT,")
+                    .append(584011808649511L + i)
+                    .append(",1,P_NzI2ODY2ODlfMTM4MjcwMTU2NS45MzA5\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] multipartBody(byte[] file1, byte[] file2) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        part(body, "file1", file1);
+        part(body, "file2", file2);
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static void part(ByteArrayOutputStream body, String name, byte[] content) throws IOException {
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + name + ".csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+}
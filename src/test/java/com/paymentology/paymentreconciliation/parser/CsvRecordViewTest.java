@@ -0,0 +1,59 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.engine.TransactionFingerprint;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordViewTest {
+
+    private static final String HEADER = "ProfileName,TransactionDate,TransactionAmount,TransactionNarrative,"
+            + "TransactionDescription,TransactionID,TransactionType,WalletReference\n";
+
+    @Test
+    void testFingerprintMatchesMaterializedRecord() throws IOException {
+        String content = HEADER
+                + "Card Campaign,2014-01-11 22:27:44,-20000,*MOLEPS ATM25,DEDUCT,0584011808649511,1,P_NzI2\n"
+                + "\"Café \"\"Plus\"\"\",2000-02-29 00:00:00,+42,n,d,A-17,0,w\n"
+                + "p,1969-12-31 23:59:59,0,n,d,123456789012345678901,1,w\n"
+                + "p,2014-1-11 22:27:44,7,n,d,x,1,w\n";
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        CsvTokenizer tokenizer = new CsvTokenizer(direct, 0, bytes.length);
+        assertTrue(tokenizer.next());
+        CsvRecordView view = new CsvRecordView(tokenizer, TransactionCsvLayout.fromHeader(tokenizer), "file.csv");
+
+        assertTrue(tokenizer.next());
+        view.load();
+        assertFingerprintOfRecord(view);
+        assertEquals("0584011808649511", view.transactionId().toString());
+
+        assertTrue(tokenizer.next());
+        view.load();
+        assertFingerprintOfRecord(view);
+        assertEquals("Café \"Plus\"", view.toDto().getProfileName());
+        assertEquals(LocalDateTime.of(2000, 2, 29, 0, 0), view.toDto().getTransactionDate());
+
+        assertTrue(tokenizer.next());
+        view.load();
+        assertFingerprintOfRecord(view);
+
+        assertTrue(tokenizer.next());
+        assertThrows(RuntimeException.class, view::load);
+    }
+
+    private void assertFingerprintOfRecord(CsvRecordView view) {
+        ReconciliationDto record = view.toDto();
+        TransactionFingerprint expected = TransactionFingerprint.of(record);
+        for (int slot = 0; slot < TransactionFingerprint.SLOTS; slot++) {
+            assertEquals(expected.fingerprint(0, slot), view.fingerprint(0, slot), "slot " + slot);
+        }
+        assertEquals("file.csv", record.getFilename());
+    }
+}
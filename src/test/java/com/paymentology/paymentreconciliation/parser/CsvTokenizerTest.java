@@ -0,0 +1,45 @@
+package com.paymentology.paymentreconciliation.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvTokenizerTest {
+
+    private CsvTokenizer tokenizer(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return new CsvTokenizer(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    void testQuotedFieldsAndLineEnds() throws IOException {
+        CsvTokenizer tokenizer = tokenizer("A,B\r\n\r\n1,\"x\"\"y\"\n\"a\nb\" ,c,\n2");
+
+        assertTrue(tokenizer.next());
+        assertEquals(2, tokenizer.fieldCount());
+        assertTrue(tokenizer.next());
+        assertEquals("1", tokenizer.text(0));
+        assertEquals("x\"y", tokenizer.text(1));
+        assertTrue(tokenizer.isEscaped(1));
+        assertTrue(tokenizer.next());
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals("a\nb", tokenizer.text(0));
+        assertEquals("", tokenizer.text(2));
+        assertTrue(tokenizer.next());
+        assertEquals("2", tokenizer.text(0));
+        assertFalse(tokenizer.next());
+    }
+
+    @Test
+    void testMalformedEncapsulatedFieldFails() {
+        CsvTokenizer invalid = tokenizer("1,\"x\"z\n");
+        assertThrows(IOException.class, invalid::next);
+
+        CsvTokenizer unterminated = tokenizer("\"A");
+        assertThrows(IOException.class, unterminated::next);
+    }
+}
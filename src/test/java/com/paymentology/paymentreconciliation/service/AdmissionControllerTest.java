@@ -0,0 +1,167 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    private static final long BUDGET = 1000;
+
+    private AdmissionController controller(int queueCapacity, Duration maxWait) {
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getAdmission().setMemoryBudgetBytes(BUDGET);
+        properties.getAdmission().setMaxConcurrent(4);
+        properties.getAdmission().setQueueCapacity(queueCapacity);
+        properties.getAdmission().setMaxWait(maxWait);
+        properties.getAdmission().setRetryAfter(Duration.ofSeconds(7));
+        return new AdmissionController(properties);
+    }
+
+    @Test
+    void testRequestWaitsUntilMemoryIsReleased() throws Exception {
+        AdmissionController controller = controller(4, Duration.ofSeconds(10));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        controller.bindTo(registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> controller.admit(700, () -> {
+                started.countDown();
+                return awaitQuietly(release);
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(700, controller.getMemoryInUse());
+
+            // 700 + 400 is over the budget, so the second request waits in the queue
+            CompletableFuture<Long> second = CompletableFuture.supplyAsync(
+                    () -> controller.admit(400, controller::getMemoryInUse));
+            awaitQueueDepth(controller, 1);
+            assertEquals(1, registry.get("reconciliation.admission.queue").gauge().value());
+            assertFalse(second.isDone());
+
+            release.countDown();
+            assertTrue(first.get(10, TimeUnit.SECONDS));
+            assertEquals(400, second.get(10, TimeUnit.SECONDS));
+            assertEquals(0, controller.getQueueDepth());
+            assertEquals(0, controller.getMemoryInUse());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testRequestIsRejectedWithRetryAfter() throws Exception {
+        AdmissionController controller = controller(1, Duration.ofSeconds(10));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        controller.bindTo(registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // larger than the whole budget, so it runs alone
+            CompletableFuture.runAsync(() -> controller.admit(5000, () -> {
+                started.countDown();
+                return awaitQuietly(release);
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(BUDGET, controller.getMemoryInUse());
+            CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> controller.admit(1, () -> true));
+            awaitQueueDepth(controller, 1);
+
+            TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                    () -> controller.admit(1, () -> true));
+            assertEquals(Duration.ofSeconds(7), exception.getRetryAfter());
+            assertEquals(1, registry.get("reconciliation.admission.rejected").functionCounter().count());
+
+            release.countDown();
+            assertTrue(queued.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testRequestIsRejectedAfterMaxWait() throws Exception {
+        AdmissionController controller = controller(4, Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture.runAsync(() -> controller.admit(BUDGET, () -> {
+                started.countDown();
+                return awaitQuietly(release);
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            Exception exception = assertThrows(ExecutionException.class, () -> CompletableFuture
+                    .supplyAsync(() -> controller.admit(1, () -> true)).get(10, TimeUnit.SECONDS));
+            assertInstanceOf(TooManyRequestsException.class, exception.getCause());
+            assertEquals(0, controller.getQueueDepth());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testInterruptedRequestIsRejectedWithRetryAfter() throws Exception {
+        AdmissionController controller = controller(4, Duration.ofSeconds(10));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture.runAsync(() -> controller.admit(BUDGET, () -> {
+                started.countDown();
+                return awaitQuietly(release);
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            CompletableFuture<TooManyRequestsException> rejection = new CompletableFuture<>();
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Thread waiter = new Thread(() -> {
+                try {
+                    controller.admit(1, () -> true);
+                    rejection.complete(null);
+                } catch (TooManyRequestsException ex) {
+                    interrupted.set(Thread.currentThread().isInterrupted());
+                    rejection.complete(ex);
+                }
+            });
+            waiter.start();
+            awaitQueueDepth(controller, 1);
+            waiter.interrupt();
+
+            TooManyRequestsException exception = rejection.get(10, TimeUnit.SECONDS);
+            assertNotNull(exception);
+            assertEquals(Duration.ofSeconds(7), exception.getRetryAfter());
+            assertTrue(interrupted.get());
+            assertEquals(0, controller.getQueueDepth());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void awaitQueueDepth(AdmissionController controller, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (controller.getQueueDepth() != depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, controller.getQueueDepth());
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.parser.LocalCsvFile;
+import com.paymentology.paymentreconciliation.parser.MappedUpload;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProbedUploadTest {
+
+    private static final byte[] CONTENT = "TransactionID\n1\n".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testUploadIsNotReadAfterMapping() throws IOException {
+        ProbedUpload upload = ProbedUpload.probe(new MockMultipartFile("file1", "file1.csv", "text/csv", CONTENT), 8);
+
+        try (MappedUpload mapped = upload.map()) {
+            assertEquals(CONTENT.length, mapped.content().remaining());
+        }
+
+        assertThrows(IllegalStateException.class, upload::open);
+        assertThrows(IllegalStateException.class, upload::getBytes);
+        assertThrows(IllegalStateException.class, upload::map);
+    }
+
+    @Test
+    void testLocalFileIsReadAfterMapping(@TempDir Path directory) throws IOException {
+        Path path = Files.write(directory.resolve("file1.csv"), CONTENT);
+        ProbedUpload upload = ProbedUpload.probe(new LocalCsvFile(path), 8);
+
+        upload.map().close();
+
+        try (InputStream input = upload.open()) {
+            assertArrayEquals(CONTENT, input.readAllBytes());
+        }
+    }
+}
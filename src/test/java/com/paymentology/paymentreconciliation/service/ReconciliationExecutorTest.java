@@ -0,0 +1,81 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.exception.BadRequestException;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconciliationExecutorTest {
+
+    @Test
+    void testWorkRunsInlineByDefault() {
+        ReconciliationExecutor executor =
+                new ReconciliationExecutor(new ReconciliationProperties(), new MockEnvironment());
+
+        assertEquals(Thread.currentThread().getName(), executor.execute(() -> Thread.currentThread().getName()));
+    }
+
+    @Test
+    void testWorkIsOffloadedWithVirtualThreads() {
+        ReconciliationProperties properties = new ReconciliationProperties();
+        ReconciliationExecutor executor = new ReconciliationExecutor(properties, virtualThreads());
+        try {
+            assertTrue(executor.execute(() -> Thread.currentThread().getName()).startsWith("reconciliation-compute-"));
+
+            Exception exception = assertThrows(BadRequestException.class, () -> executor.execute(() -> {
+                throw new BadRequestException("Invalid file format. Please provide two CSV files.");
+            }));
+            assertEquals("Invalid file format. Please provide two CSV files.", exception.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testFullComputeQueueRejectsWork() throws Exception {
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.getExecution().setComputeThreads(1);
+        properties.getExecution().setComputeQueueCapacity(1);
+        ReconciliationExecutor executor = new ReconciliationExecutor(properties, virtualThreads());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture.runAsync(() -> executor.execute(() -> {
+                started.countDown();
+                return awaitQuietly(release);
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> executor.execute(() -> true));
+            CompletableFuture<Boolean> third = CompletableFuture.supplyAsync(() -> executor.execute(() -> true));
+
+            // one of them waits in the queue, the other one is rejected
+            Exception exception = assertThrows(ExecutionException.class, () ->
+                    CompletableFuture.anyOf(second, third).get(10, TimeUnit.SECONDS));
+            assertInstanceOf(TooManyRequestsException.class, exception.getCause());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static MockEnvironment virtualThreads() {
+        return new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true");
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
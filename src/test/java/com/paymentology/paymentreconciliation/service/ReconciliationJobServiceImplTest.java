@@ -0,0 +1,130 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationJobStatus;
+import com.paymentology.paymentreconciliation.dto.UnmatchedRecordPageDto;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.ReconciliationSink;
+import com.paymentology.paymentreconciliation.exception.NotFoundException;
+import com.paymentology.paymentreconciliation.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class ReconciliationJobServiceImplTest {
+
+    private final ReconciliationProperties properties = new ReconciliationProperties();
+
+    private ReconciliationJobServiceImpl jobService;
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    @Test
+    void testSubmittedJobCompletes() throws Exception {
+        jobService = new ReconciliationJobServiceImpl(reconciliationService(), properties);
+
+        ReconciliationJobDto submitted = jobService.submit(csv("file1_test.csv"), csv("file2_test.csv"));
+        ReconciliationJobDto job = awaitCompletion(submitted.getJobId());
+
+        assertEquals(ReconciliationJobStatus.COMPLETED, job.getStatus());
+        assertEquals(43, job.getRecordsRead());
+        assertEquals(12, job.getMatchedRecordCount());
+        assertEquals(19, job.getUnmatchedRecordCount());
+        assertEquals("file1_test.csv", job.getResult().getFirstFileName());
+
+        UnmatchedRecordPageDto page = jobService.getUnmatchedRecords(job.getJobId(), FileSide.SECOND, 1, 10);
+        assertEquals(17, page.getTotalRecordCount());
+        assertEquals(7, page.getRecords().size());
+    }
+
+    @Test
+    void testFullQueueRejectsJobs() throws Exception {
+        properties.getJobs().setThreads(1);
+        properties.getJobs().setQueueCapacity(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReconciliationService blocking = Mockito.mock(ReconciliationService.class);
+        when(blocking.upload(Mockito.any(MultipartFile.class), Mockito.any(MultipartFile.class),
+                Mockito.<String>any(), Mockito.any(ReconciliationSink.class))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+        jobService = new ReconciliationJobServiceImpl(blocking, properties);
+
+        ReconciliationJobDto running = jobService.submit(csv("file1_test.csv"), csv("file2_test.csv"));
+        ReconciliationJobDto queued = jobService.submit(csv("file1_test.csv"), csv("file2_test.csv"));
+
+        assertThrows(TooManyRequestsException.class, () ->
+                jobService.submit(csv("file1_test.csv"), csv("file2_test.csv")));
+        release.countDown();
+        // both jobs have to be done before the pool is shut down, which would interrupt the queued one
+        assertNotNull(awaitCompletion(running.getJobId()).getCompletedAt());
+        assertNotNull(awaitCompletion(queued.getJobId()).getCompletedAt());
+    }
+
+    @Test
+    void testUnknownJobFail() {
+        jobService = new ReconciliationJobServiceImpl(reconciliationService(), properties);
+
+        Exception exception = assertThrows(NotFoundException.class, () -> jobService.getJob("missing"));
+
+        assertEquals("Job not found: missing", exception.getMessage());
+    }
+
+    @Test
+    void testExpiredJobIsPurgedWhenRead() throws Exception {
+        properties.getJobs().setRetention(Duration.ofMillis(200));
+        jobService = new ReconciliationJobServiceImpl(reconciliationService(), properties);
+
+        ReconciliationJobDto job = awaitCompletion(
+                jobService.submit(csv("file1_test.csv"), csv("file2_test.csv")).getJobId());
+        assertEquals(ReconciliationJobStatus.COMPLETED, job.getStatus());
+        Thread.sleep(300);
+
+        assertThrows(NotFoundException.class, () ->
+                jobService.getUnmatchedRecords(job.getJobId(), FileSide.FIRST, 0, 10));
+        assertThrows(NotFoundException.class, () -> jobService.getJob(job.getJobId()));
+    }
+
+    private ReconciliationService reconciliationService() {
+        return new ReconciliationServiceImpl(properties, new ReconciliationExecutor(properties, new MockEnvironment()),
+                new TransactionLedgerProvider(properties),
+                new ReconciliationResultCache(properties, new ObjectMapper().findAndRegisterModules()),
+                new ReconciliationMetrics(new SimpleMeterRegistry()), new AdmissionController(properties),
+                new MatchingRuleSets(properties));
+    }
+
+    private ReconciliationJobDto awaitCompletion(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        ReconciliationJobDto job = jobService.getJob(jobId);
+        while (job.getCompletedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = jobService.getJob(jobId);
+        }
+        return job;
+    }
+
+    private static MockMultipartFile csv(String name) throws IOException {
+        byte[] content = Files.readAllBytes(Paths.get(new ClassPathResource(name).getURI()));
+        return new MockMultipartFile(name.substring(0, 5), name, "text/csv", content);
+    }
+}
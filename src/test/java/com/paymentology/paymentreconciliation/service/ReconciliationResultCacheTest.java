@@ -0,0 +1,149 @@
+package com.paymentology.paymentreconciliation.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconciliationResultCacheTest {
+
+    private final ReconciliationProperties properties = new ReconciliationProperties();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void testKeyFollowsContentNamesAndConfiguration() {
+        ReconciliationResultCache cache = new ReconciliationResultCache(properties, objectMapper);
+        String key = cache.key(file("a.csv", "x"), file("b.csv", "y"), "config");
+
+        assertEquals(key, cache.key(file("a.csv", "x"), file("b.csv", "y"), "config"));
+        assertNotEquals(key, cache.key(file("a.csv", "x"), file("b.csv", "z"), "config"));
+        assertNotEquals(key, cache.key(file("b.csv", "y"), file("a.csv", "x"), "config"));
+        assertNotEquals(key, cache.key(file("c.csv", "x"), file("b.csv", "y"), "config"));
+        assertNotEquals(key, cache.key(file("a.csv", "x"), file("b.csv", "y"), "other"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedResultIsEvicted() {
+        properties.getCache().setMaxBytes(2 * weight(response(1)));
+        ReconciliationResultCache cache = new ReconciliationResultCache(properties, objectMapper);
+
+        cache.put("a", response(1));
+        cache.put("b", response(1));
+        assertNotNull(cache.get("a"));
+        cache.put("c", response(1));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getStats().getEvictionCount());
+        assertEquals(3, cache.getStats().getHitCount());
+        assertEquals(1, cache.getStats().getMissCount());
+    }
+
+    @Test
+    void testEvictedResultIsSpilledToDisk(@TempDir Path directory) {
+        properties.getCache().setMaxBytes(2 * weight(response(1)));
+        properties.getCache().setDirectory(directory.toString());
+        ReconciliationResultCache cache = new ReconciliationResultCache(properties, objectMapper);
+
+        cache.put("a", response(1));
+        cache.put("b", response(1));
+        cache.put("c", response(1));
+        cache.put("large", response(20));
+        assertEquals(2, cache.getStats().getSpillCount());
+
+        ReconciliationResponseDto spilled = cache.get("large");
+        assertEquals(response(20), spilled);
+        assertEquals(1, cache.getStats().getDiskHitCount());
+
+        ReconciliationResultCache restarted = new ReconciliationResultCache(properties, objectMapper);
+        assertEquals(response(1), restarted.get("a"));
+    }
+
+    @Test
+    void testCallersGetCopiesOfTheCachedResult() {
+        ReconciliationResultCache cache = new ReconciliationResultCache(properties, objectMapper);
+        ReconciliationResponseDto response = response(2);
+        cache.put("a", response);
+        response.getFirstFileUnmatchedRecordList().get(0).setStatus("changed after put");
+
+        ReconciliationResponseDto first = cache.get("a");
+        first.getFirstFileUnmatchedRecordList().get(1).setSimilarityScore(50);
+        first.setMatchedRecordCount(7);
+
+        assertEquals(response(2), cache.get("a"));
+        assertNotSame(first, cache.get("a"));
+    }
+
+    @Test
+    void testResultsAreWeighedByTheirJson() throws JsonProcessingException {
+        assertEquals(objectMapper.writeValueAsBytes(response(20)).length
+                        - objectMapper.writeValueAsBytes(response(1)).length,
+                weight(response(20)) - weight(response(1)));
+    }
+
+    @Test
+    void testResultLargerThanMemoryIsDroppedWithoutSpilling() {
+        properties.getCache().setMaxBytes(2 * weight(response(1)));
+        ReconciliationResultCache cache = new ReconciliationResultCache(properties, objectMapper);
+
+        cache.put("large", response(20));
+        cache.put("small", response(1));
+
+        assertNull(cache.get("large"));
+        assertNotNull(cache.get("small"));
+        assertEquals(1, cache.getStats().getMemoryEntryCount());
+    }
+
+    @Test
+    void testMapperWithoutJavaTimeIsRejected() {
+        assertThrows(IllegalStateException.class, () -> new ReconciliationResultCache(properties, new ObjectMapper()));
+    }
+
+    private long weight(ReconciliationResponseDto response) {
+        ReconciliationResultCache cache = new ReconciliationResultCache(new ReconciliationProperties(), objectMapper);
+        cache.put("weighed", response);
+        return cache.getStats().getMemoryBytes();
+    }
+
+    private static MockMultipartFile file(String name, String content) {
+        return new MockMultipartFile("file", name, "text/csv", content.getBytes());
+    }
+
+    private static ReconciliationResponseDto response(int unmatched) {
+        List<ReconciliationDto> records = new ArrayList<>();
+        for (int i = 0; i < unmatched; i++) {
+            records.add(ReconciliationDto.builder()
+                    .transactionId("id-" + i)
+                    .transactionType("1")
+                    .transactionDescription("DEDUCT")
+                    .transactionNarrative("ATM")
+                    .transactionAmount(-100)
+                    .transactionDate(LocalDateTime.of(2014, 1, 11, 22, 27, 44))
+                    .profileName("Card Campaign")
+                    .walletReference("P_1")
+                    .filename("file1.csv")
+                    .build());
+        }
+        return ReconciliationResponseDto.builder()
+                .firstFileName("file1.csv")
+                .firstFileTotalRecordCount(unmatched)
+                .firstFileUnmatchedRecordCount(unmatched)
+                .firstFileUnmatchedRecordList(records)
+                .secondFileName("file2.csv")
+                .secondFileUnmatchedRecordList(List.of())
+                .build();
+    }
+}
@@ -1,31 +1,100 @@
 package com.paymentology.paymentreconciliation.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymentology.paymentreconciliation.config.ReconciliationProperties;
+import com.paymentology.paymentreconciliation.dto.BatchReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.dto.LedgerReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.dto.ReconciliationDto;
 import com.paymentology.paymentreconciliation.dto.ReconciliationResponseDto;
+import com.paymentology.paymentreconciliation.engine.CollectingReconciliationSink;
+import com.paymentology.paymentreconciliation.engine.FileSide;
+import com.paymentology.paymentreconciliation.engine.MatchingRules;
+import com.paymentology.paymentreconciliation.engine.SimilarityScorer;
 import com.paymentology.paymentreconciliation.exception.BadRequestException;
 import com.paymentology.paymentreconciliation.exception.FileNotFoundException;
+import com.paymentology.paymentreconciliation.export.ResultColumn;
+import com.github.luben.zstd.Zstd;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class ReconciliationServiceImplTest {
 
+    @Spy
+    private ReconciliationProperties properties = new ReconciliationProperties();
+
+    @Spy
+    private ReconciliationExecutor reconciliationExecutor =
+            new ReconciliationExecutor(properties, new MockEnvironment());
+
+    @Spy
+    private TransactionLedgerProvider ledgerProvider = new TransactionLedgerProvider(properties);
+
+    @Spy
+    private ReconciliationResultCache resultCache =
+            new ReconciliationResultCache(properties, new ObjectMapper().findAndRegisterModules());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ReconciliationMetrics metrics = new ReconciliationMetrics(meterRegistry);
+
+    @Spy
+    private AdmissionController admissionController = new AdmissionController(properties);
+
+    @Spy
+    private MatchingRuleSets ruleSets = new MatchingRuleSets(properties);
+
     @InjectMocks
     private ReconciliationServiceImpl reconciliationService;
 
-    @BeforeEach
-    void setUp() {
+    // file1_test.csv and file2_test.csv: 12 matches, 2 and 17 unmatched records
+    private MockMultipartFile file1;
+    private MockMultipartFile file2;
 
+    @BeforeEach
+    void setUp() throws IOException {
+        // results of the same files must be computed again when only engine settings change
+        properties.getCache().setEnabled(false);
+        file1 = csv("file1", "file1_test.csv");
+        file2 = csv("file2", "file2_test.csv");
     }
 
     @Test
@@ -75,6 +144,275 @@ class ReconciliationServiceImplTest {
 
     }
 
+    @Test
+    void testFileUploadWithNamedRuleSet() throws IOException {
+        ruleSet("lenient", 50);
+
+        ReconciliationResponseDto actual = reconciliationService.upload(file1, file2, "lenient");
+
+        assertEquals(14, actual.getFirstFileTotalRecordCount());
+        // one more pair clears a threshold of 50 than of 90
+        assertEquals(13, actual.getMatchedRecordCount());
+        assertEquals(12, reconciliationService.upload(file1, file2).getMatchedRecordCount());
+        Exception exception = assertThrows(BadRequestException.class,
+                () -> reconciliationService.upload(file1, file2, "unknown"));
+        assertEquals("Unknown matching rule set: unknown", exception.getMessage());
+    }
+
+    @Test
+    void testStreamingAppliesThresholdToPerfectMatches() throws IOException {
+        MockMultipartFile file2 = csv("file2", "file1_test.csv");
+        // a pair must score above the threshold, so not even identical records clear 100
+        ruleSet("strict", 100);
+
+        ReconciliationResponseDto inMemory = reconciliationService.upload(file1, file2, "strict");
+        properties.getStreaming().setThresholdBytes(0);
+        ReconciliationResponseDto streamed = reconciliationService.upload(file1, file2, "strict");
+
+        assertEquals(0, inMemory.getMatchedRecordCount());
+        assertEquals(inMemory.getMatchedRecordCount(), streamed.getMatchedRecordCount());
+        assertEquals(inMemory.getFirstFileUnmatchedRecordCount(), streamed.getFirstFileUnmatchedRecordCount());
+    }
+
+    @Test
+    void testStreamingFileUploadSuccess() throws IOException {
+        properties.getStreaming().setThresholdBytes(0);
+
+        ReconciliationResponseDto actual = reconciliationService.upload(file1, file2);
+
+        assertEquals(14, actual.getFirstFileTotalRecordCount());
+        assertEquals(2, actual.getFirstFileUnmatchedRecordCount());
+        assertEquals(29, actual.getSecondFileTotalRecordCount());
+        assertEquals(17, actual.getSecondFileUnmatchedRecordCount());
+        assertEquals(12, actual.getMatchedRecordCount());
+        assertEquals(17, actual.getSecondFileUnmatchedRecordList().size());
+    }
+
+    @Test
+    void testSinkUploadStreamsUnmatchedRecords() throws IOException {
+        CollectingReconciliationSink sink = new CollectingReconciliationSink();
+        ReconciliationResponseDto actual = reconciliationService.upload(file1, file2, null, sink);
+
+        assertEquals(12, actual.getMatchedRecordCount());
+        assertEquals(2, actual.getFirstFileUnmatchedRecordCount());
+        assertEquals(17, actual.getSecondFileUnmatchedRecordCount());
+        assertNull(actual.getFirstFileUnmatchedRecordList());
+        assertEquals(2, sink.getFirstFileUnmatched().size());
+        assertEquals(17, sink.getSecondFileUnmatched().size());
+    }
+
+    @Test
+    void testExportWritesEveryRecord(@TempDir Path directory) throws IOException {
+        properties.getExport().setBatchRecords(16);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReconciliationResponseDto actual = reconciliationService.export(file1, file2, null, bytes);
+        Path export = directory.resolve("reconciliation.arrow");
+        Files.write(export, bytes.toByteArray());
+
+        assertEquals(12, actual.getMatchedRecordCount());
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(Files.newByteChannel(export), allocator,
+                     CommonsCompressionFactory.INSTANCE)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            VarCharVector outcomes = (VarCharVector) root.getVector(ResultColumn.OUTCOME.columnName());
+            assertEquals("12", reader.getMetaData().get("matched_record_count"));
+            assertEquals("file2_test.csv", reader.getMetaData().get("second_file_name"));
+            int rows = 0;
+            int unmatched = 0;
+            while (reader.loadNextBatch()) {
+                rows += root.getRowCount();
+                for (int row = 0; row < root.getRowCount(); row++) {
+                    unmatched += outcomes.getObject(row).toString().equals("UNMATCHED") ? 1 : 0;
+                }
+            }
+            assertEquals(2 * 12 + 2 + 17, rows);
+            assertEquals(2 + 17, unmatched);
+        }
+    }
+
+    @Test
+    void testCompressedFileUploadMatchesPlain() throws IOException {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(gzip)) {
+            output.write(content("file1_test.csv"));
+        }
+
+        // compression is told by content, so a gzip file named .csv is decompressed too
+        MockMultipartFile file1 = csv("file1", "file1_test.csv", gzip.toByteArray());
+        MockMultipartFile file2 = new MockMultipartFile("file2", "file2_test.csv.zst", "application/zstd",
+                Zstd.compress(content("file2_test.csv")));
+        ReconciliationResponseDto inMemory = reconciliationService.upload(file1, file2);
+        properties.getStreaming().setThresholdBytes(0);
+        ReconciliationResponseDto streamed = reconciliationService.upload(file1, file2);
+
+        for (ReconciliationResponseDto actual : List.of(inMemory, streamed)) {
+            assertEquals(14, actual.getFirstFileTotalRecordCount());
+            assertEquals(2, actual.getFirstFileUnmatchedRecordCount());
+            assertEquals(29, actual.getSecondFileTotalRecordCount());
+            assertEquals(17, actual.getSecondFileUnmatchedRecordCount());
+            assertEquals(12, actual.getMatchedRecordCount());
+        }
+    }
+
+    @Test
+    void testCompressedUploadIsProbedOnce() throws IOException {
+        MockMultipartFile file1 = spy(csv("file1", "file1_test.csv.gz", gzip(content("file1_test.csv"))));
+        MockMultipartFile file2 = spy(csv("file2", "file2_test.csv.gz", gzip(content("file2_test.csv"))));
+        properties.getStreaming().setThresholdBytes(4 * (file1.getSize() + file2.getSize()));
+        properties.getIngestion().setCompressionRatio(2);
+        ReconciliationResponseDto inMemory = reconciliationService.upload(file1, file2);
+        properties.getIngestion().setCompressionRatio(8);
+        ReconciliationResponseDto streamed = reconciliationService.upload(file1, file2);
+
+        assertEquals(inMemory, streamed);
+        // only the content estimated from the ratio reaches the streaming threshold
+        assertEquals(1, meterRegistry.get("reconciliation.stage")
+                .tags("endpoint", "upload", "stage", "index").timer().count());
+        // once to probe it and once to parse it, on both paths
+        verify(file1, times(4)).getInputStream();
+        verify(file2, times(4)).getInputStream();
+    }
+
+    @Test
+    void testParallelFileUploadMatchesSequential() throws IOException {
+        ReconciliationResponseDto sequential = reconciliationService.upload(file1, file2);
+        properties.getParallel().setThresholdRecords(0);
+        properties.getParallel().setShards(8);
+        ReconciliationResponseDto parallel = reconciliationService.upload(file1, file2);
+
+        assertEquals(sequential.getMatchedRecordCount(), parallel.getMatchedRecordCount());
+        assertEquals(sequential.getFirstFileUnmatchedRecordList(), parallel.getFirstFileUnmatchedRecordList());
+        assertEquals(sequential.getSecondFileUnmatchedRecordList(), parallel.getSecondFileUnmatchedRecordList());
+    }
+
+    @Test
+    void testSpilledFileUploadMatchesInMemory(@TempDir Path directory) throws IOException {
+        ReconciliationResponseDto inMemory = reconciliationService.upload(file1, file2);
+        properties.getSpill().setMemoryBudgetBytes(1);
+        properties.getSpill().setPartitions(4);
+        properties.getSpill().setDirectory(directory.toString());
+        ReconciliationResponseDto spilled = reconciliationService.upload(file1, file2);
+
+        assertEquals(inMemory.getFirstFileTotalRecordCount(), spilled.getFirstFileTotalRecordCount());
+        assertEquals(inMemory.getSecondFileTotalRecordCount(), spilled.getSecondFileTotalRecordCount());
+        assertEquals(inMemory.getMatchedRecordCount(), spilled.getMatchedRecordCount());
+        assertEquals(inMemory.getFirstFileUnmatchedRecordList(), spilled.getFirstFileUnmatchedRecordList());
+        assertEquals(inMemory.getSecondFileUnmatchedRecordList(), spilled.getSecondFileUnmatchedRecordList());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testDuplicateRowsAreCountedByEveryEngine(@TempDir Path directory) throws IOException {
+        List<String> lines = new String(content("file1_test.csv"), StandardCharsets.UTF_8).lines().toList();
+        byte[] content = String.join("\n", lines.get(0), lines.get(1), lines.get(1)).getBytes(StandardCharsets.UTF_8);
+        MockMultipartFile file1 = csv("file1", "file1_test.csv", content);
+        MockMultipartFile file2 = csv("file2", "file2_test.csv", content);
+        ReconciliationResponseDto inMemory = reconciliationService.upload(file1, file2);
+        properties.getStreaming().setThresholdBytes(0);
+        ReconciliationResponseDto streamed = reconciliationService.upload(file1, file2);
+        properties.getSpill().setMemoryBudgetBytes(1);
+        properties.getSpill().setDirectory(directory.toString());
+        ReconciliationResponseDto spilled = reconciliationService.upload(file1, file2);
+
+        for (ReconciliationResponseDto actual : List.of(inMemory, streamed, spilled)) {
+            assertEquals(2, actual.getFirstFileTotalRecordCount());
+            assertEquals(2, actual.getMatchedRecordCount());
+            assertEquals(0, actual.getFirstFileUnmatchedRecordCount());
+            assertEquals(0, actual.getSecondFileUnmatchedRecordCount());
+        }
+    }
+
+    @Test
+    void testBatchUploadMatchesPairUploads() throws IOException {
+        MockMultipartFile reference = csv("reference", "file1_test.csv");
+        MockMultipartFile counterpart = csv("counterparts", "file2_test.csv");
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(zipped)) {
+            zip.putNextEntry(new ZipEntry("processors/file1_copy.csv"));
+            zip.write(reference.getBytes());
+            zip.putNextEntry(new ZipEntry("processors/readme.txt"));
+            zip.write("not a file to reconcile".getBytes());
+            zip.putNextEntry(new ZipEntry("processors/file2_copy.csv"));
+            zip.write(counterpart.getBytes());
+        }
+        MockMultipartFile archive =
+                new MockMultipartFile("counterparts", "processors.zip", "application/zip", zipped.toByteArray());
+
+        BatchReconciliationResponseDto batch =
+                reconciliationService.uploadBatch(reference, List.of(counterpart, archive), null);
+
+        assertEquals("file1_test.csv", batch.getReferenceFileName());
+        assertEquals(14, batch.getReferenceTotalRecordCount());
+        assertEquals(3, batch.getCounterpartFileCount());
+        ReconciliationResponseDto pair = reconciliationService.upload(reference, counterpart);
+        for (int i : new int[]{0, 2}) {
+            ReconciliationResponseDto result = batch.getCounterpartResultList().get(i);
+            assertEquals(pair.getFirstFileTotalRecordCount(), result.getFirstFileTotalRecordCount());
+            assertEquals(pair.getSecondFileTotalRecordCount(), result.getSecondFileTotalRecordCount());
+            assertEquals(pair.getMatchedRecordCount(), result.getMatchedRecordCount());
+            assertEquals(pair.getFirstFileUnmatchedRecordCount(), result.getFirstFileUnmatchedRecordCount());
+            assertEquals(pair.getSecondFileUnmatchedRecordCount(), result.getSecondFileUnmatchedRecordCount());
+            assertEquals(pair.getSecondFileUnmatchedRecordCount(), result.getSecondFileUnmatchedRecordList().size());
+        }
+        ReconciliationResponseDto itself = batch.getCounterpartResultList().get(1);
+        assertEquals("processors/file1_copy.csv", itself.getSecondFileName());
+        assertEquals(14, itself.getMatchedRecordCount());
+        assertEquals(0, itself.getFirstFileUnmatchedRecordCount());
+    }
+
+    @Test
+    void testBatchUploadWithManyDistinctCounterparts() throws IOException {
+        MockMultipartFile reference = csv("reference", "file1_test.csv");
+        List<String> lines = Files.readAllLines(Paths.get(new ClassPathResource("file2_test.csv").getURI()));
+        List<MultipartFile> counterparts = new ArrayList<>();
+        for (int k = 0; k < 24; k++) {
+            // every counterpart brings text values of its own, encoded while the others are streamed
+            StringBuilder csv = new StringBuilder(lines.get(0)).append('\n');
+            for (int i = 1; i < lines.size(); i++) {
+                String[] fields = lines.get(i).split(",", -1);
+                if (i % 3 == 0) {
+                    fields[3] = "NARRATIVE " + k + "-" + i;
+                }
+                if (k % 2 == 1) {
+                    fields[0] = "Processor " + k;
+                }
+                csv.append(String.join(",", fields)).append('\n');
+            }
+            counterparts.add(csv("counterparts", "processor" + k + ".csv",
+                    csv.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        ruleSet("lenient", 50);
+
+        BatchReconciliationResponseDto batch = reconciliationService.uploadBatch(reference, counterparts, "lenient");
+
+        assertEquals(counterparts.size(), batch.getCounterpartFileCount());
+        for (int k = 0; k < counterparts.size(); k++) {
+            ReconciliationResponseDto pair = reconciliationService.upload(reference, counterparts.get(k), "lenient");
+            ReconciliationResponseDto result = batch.getCounterpartResultList().get(k);
+            assertEquals("processor" + k + ".csv", result.getSecondFileName());
+            assertEquals(pair.getMatchedRecordCount(), result.getMatchedRecordCount());
+            assertEquals(sorted(pair.getFirstFileUnmatchedRecordList()),
+                    sorted(result.getFirstFileUnmatchedRecordList()));
+            assertEquals(sorted(pair.getSecondFileUnmatchedRecordList()),
+                    sorted(result.getSecondFileUnmatchedRecordList()));
+        }
+    }
+
+    @Test
+    void testBatchUploadTooManyFilesFail() {
+        properties.getBatch().setMaxFiles(1);
+        MockMultipartFile reference = new MockMultipartFile("reference", "file1.csv", "text/csv", "data".getBytes());
+        MockMultipartFile counterpart =
+                new MockMultipartFile("counterparts", "file2.csv", "text/csv", "data".getBytes());
+
+        Exception exception = assertThrows(BadRequestException.class, () ->
+                reconciliationService.uploadBatch(reference, List.of(counterpart, counterpart), null));
+
+        assertEquals("Too many counterpart files. Please provide at most 1 files.", exception.getMessage());
+    }
+
     @Test
     void testFileUploadInvalidContentFail() throws IOException {
         ClassPathResource resource1 = new ClassPathResource("file1_invalid_format.csv");
@@ -95,6 +433,180 @@ class ReconciliationServiceImplTest {
     }
 
 
+    @Test
+    void testChunkedParsingMatchesSequential() throws IOException {
+        ReconciliationResponseDto sequential = reconciliationService.upload(file1, file2);
+        properties.getParser().setParallelThresholdBytes(0);
+        properties.getParser().setChunkBytes(256);
+        ReconciliationResponseDto chunked = reconciliationService.upload(file1, file2);
+
+        assertEquals(sequential, chunked);
+    }
+
+    @Test
+    void testChunkedParsingInvalidContentFail() throws IOException {
+        properties.getParser().setParallelThresholdBytes(0);
+        MockMultipartFile file1 = csv("file1", "file1_invalid_format.csv");
+        MockMultipartFile file2 = csv("file2", "file2.csv");
+
+        Exception exception = assertThrows(BadRequestException.class, () ->
+                reconciliationService.upload(file1, file2));
+
+        assertEquals("Parsing file exception. File name: file1_invalid_format.csv, record number:" +
+                " 1. Exception: For input string: \"-20000;*MOLEPS ATM25             MOLEPOLOLE    BW\"", exception.getMessage());
+    }
+
+    @Test
+    void testMappedStreamingMatchesReader() throws IOException {
+        properties.getStreaming().setThresholdBytes(0);
+        ReconciliationResponseDto mapped = reconciliationService.upload(file1, file2);
+        properties.getIngestion().setMemoryMap(false);
+        ReconciliationResponseDto read = reconciliationService.upload(file1, file2);
+
+        assertEquals(read, mapped);
+    }
+
+    @Test
+    void testLocalFileReconciliationSuccess(@TempDir Path directory) throws IOException {
+        properties.getIngestion().setLocalDirectory(directory.toString());
+        Files.copy(Paths.get(new ClassPathResource("file1_test.csv").getURI()), directory.resolve("file1_test.csv"));
+        Files.copy(Paths.get(new ClassPathResource("file2_test.csv").getURI()), directory.resolve("file2_test.csv"));
+
+        ReconciliationResponseDto actual = reconciliationService.reconcileLocalFiles("file1_test.csv", "file2_test.csv");
+
+        assertEquals(14, actual.getFirstFileTotalRecordCount());
+        assertEquals(2, actual.getFirstFileUnmatchedRecordCount());
+        assertEquals(29, actual.getSecondFileTotalRecordCount());
+        assertEquals(17, actual.getSecondFileUnmatchedRecordCount());
+        assertEquals(12, actual.getMatchedRecordCount());
+        assertTrue(Files.exists(directory.resolve("file1_test.csv")));
+    }
+
+    @Test
+    void testLocalFileOutsideDirectoryFail(@TempDir Path directory) {
+        properties.getIngestion().setLocalDirectory(directory.resolve("uploads").toString());
+
+        Exception exception = assertThrows(BadRequestException.class, () ->
+                reconciliationService.reconcileLocalFiles("../file1.csv", "file2.csv"));
+
+        assertEquals("Invalid file path: ../file1.csv", exception.getMessage());
+    }
+
+    @Test
+    void testRepeatedUploadIsServedFromCache() throws IOException {
+        properties.getCache().setEnabled(true);
+        ReconciliationResponseDto first = reconciliationService.upload(file1, file2);
+        ReconciliationResponseDto second = reconciliationService.upload(
+                csv("file1", "file1_test.csv"), csv("file2", "file2_test.csv"));
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        assertEquals(12, second.getMatchedRecordCount());
+        assertEquals(1, resultCache.getStats().getHitCount());
+        assertEquals(1, resultCache.getStats().getMissCount());
+    }
+
+    @Test
+    void testStreamedUploadIsNotCached() throws IOException {
+        properties.getCache().setEnabled(true);
+        properties.getStreaming().setThresholdBytes(0);
+
+        reconciliationService.upload(file1, file2);
+        reconciliationService.upload(file1, file2);
+
+        assertEquals(0, resultCache.getStats().getMissCount());
+        assertEquals(0, resultCache.getStats().getMemoryEntryCount());
+    }
+
+    @Test
+    void testLedgerReconciliationMatchesUpload(@TempDir Path directory) throws IOException {
+        properties.getLedger().setDirectory(directory.toString());
+        MockMultipartFile file1 = csv("file", "file1_test.csv");
+        MockMultipartFile file2 = csv("file", "file2_test.csv");
+
+        try {
+            LedgerReconciliationResponseDto first = reconciliationService.reconcileWithLedger(file1, FileSide.FIRST);
+            assertEquals(14, first.getTotalRecordCount());
+            assertEquals(0, first.getMatchedRecordCount());
+            assertEquals(14, first.getFirstSideOpenCount());
+
+            LedgerReconciliationResponseDto second = reconciliationService.reconcileWithLedger(file2, FileSide.SECOND);
+            assertEquals(29, second.getTotalRecordCount());
+            assertEquals(12, second.getMatchedRecordCount());
+            assertEquals(17, second.getOpenedRecordCount());
+            assertEquals(2, second.getFirstSideOpenCount());
+            assertEquals(17, second.getSecondSideOpenCount());
+        } finally {
+            ledgerProvider.close();
+        }
+    }
+
+    @Test
+    void testLedgerReconciliationDisabledFail() {
+        MockMultipartFile file = new MockMultipartFile("file", "file1.csv", "text/csv", "test data".getBytes());
+
+        Exception exception = assertThrows(BadRequestException.class, () ->
+                reconciliationService.reconcileWithLedger(file, FileSide.FIRST));
+
+        assertEquals("Ledger reconciliation is disabled.", exception.getMessage());
+    }
+
+    @Test
+    void testCandidateSearchMatchesMistypedTransactionId() throws IOException {
+        MockMultipartFile file2 = mistypedSecondFile();
+
+        assertEquals(11, reconciliationService.upload(file1, file2).getMatchedRecordCount());
+
+        properties.getCandidateSearch().setEnabled(true);
+        ReconciliationResponseDto actual = reconciliationService.upload(file1, file2);
+
+        assertEquals(12, actual.getMatchedRecordCount());
+        assertEquals(2, actual.getFirstFileUnmatchedRecordCount());
+        assertEquals(17, actual.getSecondFileUnmatchedRecordCount());
+
+        properties.getCandidateSearch().setStrategy(ReconciliationProperties.CandidateSearch.Strategy.SORT_MERGE);
+        assertEquals(12, reconciliationService.upload(file1, file2).getMatchedRecordCount());
+    }
+
+    @Test
+    void testCandidateSearchRunsOnStreamedUpload() throws IOException {
+        MockMultipartFile file2 = mistypedSecondFile();
+        properties.getCandidateSearch().setEnabled(true);
+
+        ReconciliationResponseDto inMemory = reconciliationService.upload(file1, file2);
+        properties.getStreaming().setThresholdBytes(0);
+        ReconciliationResponseDto streamed = reconciliationService.upload(file1, file2);
+
+        assertEquals(12, streamed.getMatchedRecordCount());
+        assertEquals(inMemory.getMatchedRecordCount(), streamed.getMatchedRecordCount());
+        assertEquals(inMemory.getFirstFileUnmatchedRecordCount(), streamed.getFirstFileUnmatchedRecordCount());
+        assertEquals(inMemory.getSecondFileUnmatchedRecordCount(), streamed.getSecondFileUnmatchedRecordCount());
+        assertEquals(inMemory.getFirstFileUnmatchedRecordList(), streamed.getFirstFileUnmatchedRecordList());
+        assertEquals(inMemory.getSecondFileUnmatchedRecordList(), streamed.getSecondFileUnmatchedRecordList());
+    }
+
+    @Test
+    void testUploadRecordsMetrics() throws IOException {
+        reconciliationService.upload(file1, file2);
+        MockMultipartFile invalid = new MockMultipartFile("file2", "file2.txt", "text/plain", file2.getBytes());
+        assertThrows(BadRequestException.class, () -> reconciliationService.upload(file1, invalid));
+
+        assertEquals(1, meterRegistry.get("reconciliation.requests")
+                .tags("endpoint", "upload", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("reconciliation.requests")
+                .tags("endpoint", "upload", "outcome", "client_error").timer().count());
+        assertEquals(2, meterRegistry.get("reconciliation.stage")
+                .tags("endpoint", "upload", "stage", "parse").timer().count());
+        assertEquals(file1.getSize() + file2.getSize(),
+                meterRegistry.get("reconciliation.bytes.read").counter().count());
+        assertEquals(29, meterRegistry.get("reconciliation.records.read").tag("file", "SECOND").counter().count());
+        assertEquals(12, meterRegistry.get("reconciliation.records.matched").counter().count());
+        assertEquals(17, meterRegistry.get("reconciliation.records.unmatched").tag("file", "SECOND").counter()
+                .count());
+        assertEquals(12, meterRegistry.get("reconciliation.similarity").summary().count());
+        assertTrue(meterRegistry.get("reconciliation.pairs.scored").counter().count() >= 12);
+    }
+
     @Test
     void testFileUploadEmptyContentFail() throws IOException {
         ClassPathResource resource1 = new ClassPathResource("file1_invalid_format.csv");
@@ -112,4 +624,118 @@ class ReconciliationServiceImplTest {
 
         assertEquals("Please provide two file content",exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testMovedUploadIsReadOnce(@TempDir Path directory) throws IOException {
+        properties.getStreaming().setThresholdBytes(0);
+        properties.getCandidateSearch().setEnabled(true);
+        ReconciliationResponseDto copied = reconciliationService.upload(file1, file2);
+
+        // like a part the servlet container spooled to disk, whose transfer is a rename
+        ReconciliationResponseDto moved = reconciliationService.upload(new MovedUpload(directory, file1),
+                new MovedUpload(directory, file2));
+
+        assertEquals(copied, moved);
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static byte[] content(String name) throws IOException {
+        return Files.readAllBytes(Paths.get(new ClassPathResource(name).getURI()));
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(gzip)) {
+            output.write(content);
+        }
+        return gzip.toByteArray();
+    }
+
+    private static MockMultipartFile csv(String parameter, String name) throws IOException {
+        return csv(parameter, name, content(name));
+    }
+
+    private static MockMultipartFile csv(String parameter, String name, byte[] content) {
+        return new MockMultipartFile(parameter, name, "text/csv", content);
+    }
+
+    /**
+     * @return file2_test.csv with one TransactionID mistyped, whose record only the candidate search matches
+     */
+    private static MockMultipartFile mistypedSecondFile() throws IOException {
+        String content = new String(content("file2_test.csv"), StandardCharsets.UTF_8);
+        return csv("file2", "file2_test.csv",
+                content.replace("0584011808649511", "0584011808694511").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void ruleSet(String name, double threshold) {
+        doReturn(SimilarityScorer.compile(MatchingRules.builder().threshold(threshold).build()))
+                .when(ruleSets).get(name);
+    }
+
+    private static List<String> sorted(List<ReconciliationDto> records) {
+        return records.stream()
+                .map(record -> record.getTransactionId() + "|" + record.getTransactionNarrative() + "|"
+                        + record.getProfileName() + "|" + record.getTransactionAmount())
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Upload spooled to a file, which {@link #transferTo(File)} moves away, so it can only be read until then.
+     */
+    private static final class MovedUpload implements MultipartFile {
+
+        private final MultipartFile upload;
+        private final Path path;
+        private final long size;
+
+        MovedUpload(Path directory, MultipartFile upload) throws IOException {
+            this.upload = upload;
+            this.path = Files.write(Files.createTempFile(directory, "upload-", ".tmp"), upload.getBytes());
+            this.size = upload.getSize();
+        }
+
+        @Override
+        public String getName() {
+            return upload.getName();
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return upload.getOriginalFilename();
+        }
+
+        @Override
+        public String getContentType() {
+            return upload.getContentType();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.move(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}